@@ -30,6 +30,7 @@ import org.wordpress.android.ui.prefs.UserPrefs;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.ImageHelper;
+import org.wordpress.android.util.StringUtils;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
@@ -112,7 +113,10 @@ public class GCMIntentService extends GCMBaseIntentService {
         } else { // create a placeholder note
             note = new Note(extras);
             WordPress.wpDB.addNote(note, true);
-            refreshNotes();
+            // only fetch the pushed note, the list isn't refreshed as a whole
+            if (!updateNote(note_id)) {
+                refreshNotes();
+            }
         }
 
         /*
@@ -275,13 +279,30 @@ public class GCMIntentService extends GCMBaseIntentService {
         sendBroadcast(msgIntent);
     }
 
+    /*
+     * fetch the pushed note and replace its placeholder, returns false if the push has no note id
+     */
+    private boolean updateNote(String noteId) {
+        int id = StringUtils.stringToInt(noteId);
+        if (id == 0) {
+            return false;
+        }
+        NotificationUtils.updateNotification(id, new NotificationUtils.NoteUpdatedListener() {
+            @Override
+            public void onNoteUpdated(int noteId) {
+                broadcastNewNotification();
+            }
+        });
+        return true;
+    }
+
     public void refreshNotes() {
         NotificationUtils.refreshNotifications(new RestRequest.Listener() {
             @Override
             public void onResponse(JSONObject jsonObject) {
                 try {
                     List<Note> notes = NotificationUtils.parseNotes(jsonObject);
-                    WordPress.wpDB.saveNotes(notes, true);
+                    WordPress.wpDB.mergeNotes(notes);
                     broadcastNewNotification();
                 } catch (JSONException e) {
                     AppLog.e(T.NOTIFS, "Can't parse restRequest JSON response, notifications: " + e);
@@ -39,10 +39,14 @@ import org.wordpress.android.ui.prefs.UserPrefs;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.BitmapLruCache;
+import org.wordpress.android.util.ImageResizer;
+import org.wordpress.android.util.SqlUtils;
 import org.wordpress.android.util.Utils;
 import org.wordpress.android.util.VolleyUtils;
 import org.wordpress.android.util.WPMobileStatsUtil;
 import org.wordpress.passcodelock.AppLockManager;
+import org.xmlrpc.android.XMLRPCCompression;
+import org.xmlrpc.android.XMLRPCResponseCache;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -56,6 +60,8 @@ public class WordPress extends Application {
     public static final String ACCESS_TOKEN_PREFERENCE="wp_pref_wpcom_access_token";
     public static final String WPCOM_USERNAME_PREFERENCE="wp_pref_wpcom_username";
     public static final String WPCOM_PASSWORD_PREFERENCE="wp_pref_wpcom_password";
+    public static final String COMPRESS_REQUESTS_PREFERENCE="wp_pref_compress_requests";
+    public static final String WRITE_AHEAD_LOGGING_PREFERENCE="wp_pref_write_ahead_logging";
     private static final String APP_ID_PROPERTY="oauth.app_id";
     private static final String APP_SECRET_PROPERTY="oauth.app_secret";
     private static final String APP_REDIRECT_PROPERTY="oauth.redirect_uri";
@@ -101,6 +107,9 @@ public class WordPress extends Application {
             AppLog.enableCrashlytics(true);
         }
         versionName = getVersionName(this);
+        // the databases apply the setting when they're opened
+        SqlUtils.setWriteAheadLoggingEnabled(PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(WRITE_AHEAD_LOGGING_PREFERENCE, false));
         initWpDb();
         wpStatsDB = new WordPressStatsDB(this);
         mContext = this;
@@ -112,6 +121,7 @@ public class WordPress extends Application {
         if (settings.getInt("wp_pref_last_activity", -1) >= 0) {
             shouldRestoreSelectedActivity = true;
         }
+        XMLRPCCompression.setRequestCompressionEnabled(settings.getBoolean(COMPRESS_REQUESTS_PREFERENCE, false));
         registerForCloudMessaging(this);
 
         // Uncomment this line if you want to test the app locking feature
@@ -434,6 +444,9 @@ public class WordPress extends Application {
         UserPrefs.reset();
         ReaderDatabase.reset();
 
+        // cached XML-RPC responses contain account data
+        XMLRPCResponseCache.clear();
+
         // send broadcast that user is signing out - this is received by WPActionBarActivity
         // descendants
         Intent broadcastIntent = new Intent();
@@ -517,6 +530,7 @@ public class WordPress extends Application {
 
         @Override
         public void onLowMemory() {
+            ImageResizer.clearReusableBitmap();
         }
 
         @Override
@@ -533,6 +547,9 @@ public class WordPress extends Application {
             if (level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN && mBitmapCache != null) {
                 mBitmapCache.evictAll();
             }
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                ImageResizer.clearReusableBitmap();
+            }
 
         }
 
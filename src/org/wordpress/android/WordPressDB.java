@@ -8,6 +8,7 @@ import android.database.Cursor;
 import android.database.CursorIndexOutOfBoundsException;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Base64;
@@ -17,6 +18,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.wordpress.android.datasets.CommentTable;
+import org.wordpress.android.datasets.SearchIndexTable;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.models.MediaFile;
 import org.wordpress.android.models.Note;
@@ -29,7 +31,9 @@ import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.MapUtils;
 import org.wordpress.android.util.SqlUtils;
 import org.wordpress.android.util.StringUtils;
+import org.wordpress.android.util.TaskDispatcher;
 import org.wordpress.android.util.Utils;
+import org.xmlrpc.android.XMLRPCStructBinder;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -41,7 +45,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Vector;
 
@@ -52,7 +55,7 @@ import javax.crypto.spec.DESKeySpec;
 
 public class WordPressDB {
 
-    private static final int DATABASE_VERSION = 26;
+    private static final int DATABASE_VERSION = 35;
 
     private static final String CREATE_TABLE_SETTINGS = "create table if not exists accounts (id integer primary key autoincrement, "
             + "url text, blogName text, username text, password text, imagePlacement text, centerThumbnail boolean, fullSizeImage boolean, maxImageWidth text, maxImageWidthId integer);";
@@ -138,13 +141,57 @@ public class WordPressDB {
     private static final String ADD_MEDIA_UPLOAD_STATE = "alter table media add uploadState default '';";
     private static final String ADD_MEDIA_VIDEOPRESS_SHORTCODE = "alter table media add videoPressShortcode text default '';";
 
+    // number of failed upload attempts of a queued media file, and when (ms) it can be retried
+    private static final String ADD_MEDIA_UPLOAD_ATTEMPTS = "alter table media add uploadAttempts integer default 0;";
+    private static final String ADD_MEDIA_UPLOAD_RETRY_AT = "alter table media add uploadRetryAt integer default 0;";
+
+    // upload policy of the full size images linked from resized ones, and the queue of the full size
+    // images waiting to be uploaded (on Wi-Fi or while charging) and linked from their post
+    private static final String ADD_DEFER_FULL_SIZE_IMAGE = "alter table accounts add deferFullSizeImage boolean default 0;";
+    private static final String DEFERRED_MEDIA_UPLOADS_TABLE = "deferred_media_uploads";
+    private static final String CREATE_TABLE_DEFERRED_MEDIA_UPLOADS = "create table if not exists deferred_media_uploads ("
+            + "id integer primary key autoincrement, blogId integer, remotePostId text, filePath text, fileName text, "
+            + "mimeType text, resizedURL text, fullSizeURL text, uploadAttempts integer default 0);";
+
+    // content hash index of the uploaded media files: the SHA-1 of local files, by path, size and
+    // modification date (and resize width), and the media item each hash was uploaded as on a blog
+    private static final String MEDIA_CONTENT_HASHES_TABLE = "media_content_hashes";
+    private static final String CREATE_TABLE_MEDIA_CONTENT_HASHES = "create table if not exists media_content_hashes ("
+            + "sourceKey text primary key, contentHash text);";
+    private static final String UPLOADED_MEDIA_TABLE = "uploaded_media";
+    private static final String CREATE_TABLE_UPLOADED_MEDIA = "create table if not exists uploaded_media ("
+            + "blogId integer, contentHash text, mediaId text, url text, primary key (blogId, contentHash));";
+
     // create table to store notifications
     private static final String NOTES_TABLE = "notes";
     private static final String CREATE_TABLE_NOTES = "create table if not exists notes (id integer primary key, "
             + "note_id text, message text, type text, raw_note_data text, timestamp integer, placeholder boolean);";
 
+    // notification fields shown by the notes list, extracted from raw_note_data when the note is saved
+    private static final String ADD_NOTES_SUBJECT = "alter table notes add subject text default '';";
+    private static final String ADD_NOTES_ICON_URL = "alter table notes add icon_url text default '';";
+    private static final String ADD_NOTES_UNREAD = "alter table notes add unread text default '0';";
+    private static final String ADD_NOTES_COMMENT_PREVIEW = "alter table notes add comment_preview text default '';";
+
     // add hidden flag to blog settings (accounts)
     private static final String ADD_ACCOUNTS_HIDDEN_FLAG = "alter table accounts add isHidden boolean default 0;";
+
+    // add last modification date to posts, used as the high-water mark of the incremental post sync
+    private static final String ADD_POST_DATE_MODIFIED_GMT = "alter table posts add date_modified_gmt date default 0;";
+
+    // indexes matching the where clauses of the post, media, comment, category and theme upserts/lookups
+    private static final String[] CREATE_INDEXES = {
+            "create index if not exists idx_posts_blog_postid on posts (blogID, postid, isPage);",
+            "create index if not exists idx_posts_blog_date on posts (blogID, isPage, date_created_gmt);",
+            "create index if not exists idx_media_blog_mediaid on media (blogId, mediaId);",
+            "create index if not exists idx_media_post_path on media (postID, filePath);",
+            "create index if not exists idx_comments_blog_comment on comments (blog_id, comment_id);",
+            "create index if not exists idx_cats_blog_name on cats (blog_id, category_name);",
+            "create index if not exists idx_themes_blog_theme on themes (blogId, themeId);"};
+
+    // index in the order of the posts list, so its windows are read without sorting the posts of the blog
+    private static final String CREATE_POSTS_LIST_INDEX = "create index if not exists idx_posts_list "
+            + "on posts (blogID, isPage, localDraft, date_created_gmt, id);";
    
     private SQLiteDatabase db;
 
@@ -155,6 +202,8 @@ public class WordPressDB {
     public WordPressDB(Context ctx) {
         this.context = ctx;
         db = ctx.openOrCreateDatabase(DATABASE_NAME, 0, null);
+        // with write-ahead logging, the post, media and comment syncs don't block the reads of the lists
+        SqlUtils.applyJournalMode(db);
 
         // Create tables if they don't exist
         db.execSQL(CREATE_TABLE_SETTINGS);
@@ -249,8 +298,63 @@ public class WordPressDB {
                 //The ALTER TABLE command in SQLite allows the user to rename a table or to add a new column to an existing table. 
                 //It is not possible to rename a column, remove a column, or add or remove constraints from a table.
                 currentVersion++;
+            case 26:
+                db.execSQL(ADD_POST_DATE_MODIFIED_GMT);
+                currentVersion++;
+            case 27:
+                for (String createIndex : CREATE_INDEXES) {
+                    db.execSQL(createIndex);
+                }
+                currentVersion++;
+            case 28:
+                // intentionally a no-op: the full-text search indexes first created here are replaced
+                // by the reset at version 33
+                currentVersion++;
+            case 29:
+                db.execSQL(ADD_NOTES_SUBJECT);
+                db.execSQL(ADD_NOTES_ICON_URL);
+                db.execSQL(ADD_NOTES_UNREAD);
+                db.execSQL(ADD_NOTES_COMMENT_PREVIEW);
+                migrateNotesListColumns();
+                currentVersion++;
+            case 30:
+                db.execSQL(ADD_MEDIA_UPLOAD_ATTEMPTS);
+                db.execSQL(ADD_MEDIA_UPLOAD_RETRY_AT);
+                currentVersion++;
+            case 31:
+                db.execSQL(ADD_DEFER_FULL_SIZE_IMAGE);
+                db.execSQL(CREATE_TABLE_DEFERRED_MEDIA_UPLOADS);
+                currentVersion++;
+            case 32:
+                db.execSQL(CREATE_TABLE_MEDIA_CONTENT_HASHES);
+                db.execSQL(CREATE_TABLE_UPLOADED_MEDIA);
+                currentVersion++;
+            case 33:
+                // full-text search indexes, the existing posts, media and themes are queued for indexing
+                SearchIndexTable.reset(db);
+                currentVersion++;
+            case 34:
+                db.execSQL(CREATE_POSTS_LIST_INDEX);
+                currentVersion++;
         }
         db.setVersion(DATABASE_VERSION);
+
+        if (SearchIndexTable.hasPendingRows(db)) {
+            updateSearchIndexesInBackground();
+        }
+    }
+
+    /*
+     * indexes the rows queued after an upgrade (or a write that wasn't followed by a search), so
+     * the first search doesn't have to
+     */
+    private void updateSearchIndexesInBackground() {
+        TaskDispatcher.execute(TaskDispatcher.Priority.BACKGROUND, new Runnable() {
+            @Override
+            public void run() {
+                SearchIndexTable.updateIndexes(db);
+            }
+        });
     }
 
     public SQLiteDatabase getDatabase() {
@@ -427,6 +531,7 @@ public class WordPressDB {
         values.put("imagePlacement", blog.getImagePlacement());
         values.put("centerThumbnail", blog.isFeaturedImageCapable());
         values.put("fullSizeImage", blog.isFullSizeImage());
+        values.put("deferFullSizeImage", blog.isDeferFullSizeImage());
         values.put("maxImageWidth", blog.getMaxImageWidth());
         values.put("maxImageWidthId", blog.getMaxImageWidthId());
         values.put("location", blog.isLocation());
@@ -468,6 +573,8 @@ public class WordPressDB {
         // TODO: should this also delete posts and other related info?
         int rowsAffected = db.delete(SETTINGS_TABLE, "id=?", new String[]{Integer.toString(id)});
         deleteQuickPressShortcutsForAccount(ctx, id);
+        db.delete(DEFERRED_MEDIA_UPLOADS_TABLE, "blogId=?", new String[]{Integer.toString(id)});
+        db.delete(UPLOADED_MEDIA_TABLE, "blogId=?", new String[]{Integer.toString(id)});
         return (rowsAffected > 0);
     }
 
@@ -496,7 +603,7 @@ public class WordPressDB {
     public Blog instantiateBlogByLocalId(int localId) {
         String[] fields =
                 new String[]{"url", "blogName", "username", "password", "httpuser", "httppassword", "imagePlacement",
-                             "centerThumbnail", "fullSizeImage", "maxImageWidth", "maxImageWidthId",
+                             "centerThumbnail", "fullSizeImage", "deferFullSizeImage", "maxImageWidth", "maxImageWidthId",
                              "blogId", "location", "dotcomFlag", "dotcom_username", "dotcom_password", "api_key",
                              "api_blogid", "wpVersion", "postFormats", "isScaledImage",
                              "scaledImgWidth", "homeURL", "blog_options", "isAdmin", "isHidden"};
@@ -525,6 +632,7 @@ public class WordPressDB {
                 blog.setImagePlacement(c.getString(c.getColumnIndex("imagePlacement")));
                 blog.setFeaturedImageCapable(c.getInt(c.getColumnIndex("centerThumbnail")) > 0);
                 blog.setFullSizeImage(c.getInt(c.getColumnIndex("fullSizeImage")) > 0);
+                blog.setDeferFullSizeImage(c.getInt(c.getColumnIndex("deferFullSizeImage")) > 0);
                 blog.setMaxImageWidth(c.getString(c.getColumnIndex("maxImageWidth")));
                 blog.setMaxImageWidthId(c.getInt(c.getColumnIndex("maxImageWidthId")));
                 blog.setRemoteBlogId(c.getInt(c.getColumnIndex("blogId")));
@@ -744,146 +852,524 @@ public class WordPressDB {
 
     /**
      * Saves a list of posts to the db
-     * @param postsList: list of post objects
+     * @param postsList: list of post values, bound by a PostValuesBinder
      * @param localBlogId: the posts table blog id
      * @param isPage: boolean to save as pages
+     * @param shouldOverwrite: false to keep the posts with local changes as they are
      */
-    public void savePosts(List<?> postsList, int localBlogId, boolean isPage, boolean shouldOverwrite) {
-        if (postsList != null && postsList.size() != 0) {
-            db.beginTransaction();
-            try {
-                for (Object post : postsList) {
-                    ContentValues values = new ContentValues();
+    public void savePosts(List<ContentValues> postsList, int localBlogId, boolean isPage, boolean shouldOverwrite) {
+        upsertPosts(postsList, localBlogId, isPage, shouldOverwrite, true);
+    }
 
-                    // Sanity checks
-                    if (!(post instanceof Map)) {
-                        continue;
-                    }
-                    Map<?, ?> postMap = (Map<?, ?>) post;
-                    String postID = MapUtils.getMapStr(postMap, (isPage) ? "page_id" : "postid");
-                    if (TextUtils.isEmpty(postID)) {
-                        // If we don't have a post or page ID, move on
-                        continue;
-                    }
+    /**
+     * Updates posts already in the db, posts that are not in the db or that have local changes are skipped
+     * @param postsList: list of post values, bound by a PostValuesBinder or a WpPostValuesBinder
+     */
+    public void updateExistingPosts(List<ContentValues> postsList, int localBlogId, boolean isPage) {
+        upsertPosts(postsList, localBlogId, isPage, false, false);
+    }
 
-                    values.put("blogID", localBlogId);
-                    values.put("postid", postID);
-                    values.put("title", MapUtils.getMapStr(postMap, "title"));
-                    Date dateCreated = MapUtils.getMapDate(postMap, "dateCreated");
-                    if (dateCreated != null) {
-                        values.put("dateCreated", dateCreated.getTime());
-                    } else {
-                        Date now = new Date();
-                        values.put("dateCreated", now.getTime());
-                    }
+    /*
+     * bulk upsert using compiled statements: the post is looked up on (blogID, postid, isPage), then
+     * updated by id or inserted. The binders give every post of a list the same columns, so the
+     * update and insert statements are compiled once per column set.
+     */
+    private void upsertPosts(List<ContentValues> postsList, int localBlogId, boolean isPage, boolean shouldOverwrite,
+                             boolean insertMissing) {
+        if (postsList == null || postsList.size() == 0) {
+            return;
+        }
 
-                    Date dateCreatedGmt = MapUtils.getMapDate(postMap, "date_created_gmt");
-                    if (dateCreatedGmt != null) {
-                        values.put("date_created_gmt", dateCreatedGmt.getTime());
-                    } else {
-                        dateCreatedGmt = new Date((Long) values.get("dateCreated"));
-                        values.put("date_created_gmt", dateCreatedGmt.getTime() + (dateCreatedGmt.getTimezoneOffset() * 60000));
-                    }
+        SQLiteStatement stmtFind = db.compileStatement(
+                "SELECT id FROM " + POSTS_TABLE + " WHERE blogID=?1 AND postid=?2 AND isPage=?3");
+        SQLiteStatement stmtIsLocalChange = db.compileStatement(
+                "SELECT isLocalChange FROM " + POSTS_TABLE + " WHERE id=?1");
+        Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+        db.beginTransaction();
+        try {
+            for (ContentValues values : postsList) {
+                String postID = values.getAsString("postid");
+                if (TextUtils.isEmpty(postID)) {
+                    // If we don't have a post or page ID, move on
+                    continue;
+                }
+                values.put("blogID", localBlogId);
 
-                    values.put("description", MapUtils.getMapStr(postMap, "description"));
-                    values.put("link", MapUtils.getMapStr(postMap, "link"));
-                    values.put("permaLink", MapUtils.getMapStr(postMap, "permaLink"));
+                stmtFind.bindLong(1, localBlogId);
+                stmtFind.bindString(2, postID);
+                stmtFind.bindLong(3, SqlUtils.boolToSql(isPage));
+                long localTablePostId = SqlUtils.longForStatement(stmtFind);
+                stmtFind.clearBindings();
 
-                    Object[] postCategories = (Object[]) postMap.get("categories");
-                    JSONArray jsonCategoriesArray = new JSONArray();
-                    if (postCategories != null) {
-                        for (Object postCategory : postCategories) {
-                            jsonCategoriesArray.put(postCategory.toString());
-                        }
-                    }
-                    values.put("categories", jsonCategoriesArray.toString());
-
-                    Object[] custom_fields = (Object[]) postMap.get("custom_fields");
-                    JSONArray jsonCustomFieldsArray = new JSONArray();
-                    if (custom_fields != null) {
-                        for (Object custom_field : custom_fields) {
-                            jsonCustomFieldsArray.put(custom_field.toString());
-                            // Update geo_long and geo_lat from custom fields
-                            if (!(custom_field instanceof Map))
-                                continue;
-                            Map<?, ?> customField = (Map<?, ?>) custom_field;
-                            if (customField.get("key") != null && customField.get("value") != null) {
-                                if (customField.get("key").equals("geo_longitude"))
-                                    values.put("longitude", customField.get("value").toString());
-                                if (customField.get("key").equals("geo_latitude"))
-                                    values.put("latitude", customField.get("value").toString());
-                            }
+                if (localTablePostId != 0) {
+                    if (!shouldOverwrite) {
+                        stmtIsLocalChange.bindLong(1, localTablePostId);
+                        boolean isLocalChange = SqlUtils.sqlToBool((int) SqlUtils.longForStatement(stmtIsLocalChange));
+                        stmtIsLocalChange.clearBindings();
+                        if (isLocalChange) {
+                            continue;
                         }
                     }
-                    values.put("custom_fields", jsonCustomFieldsArray.toString());
-
-                    values.put("mt_excerpt", MapUtils.getMapStr(postMap, (isPage) ? "excerpt" : "mt_excerpt"));
-                    values.put("mt_text_more", MapUtils.getMapStr(postMap, (isPage) ? "text_more" : "mt_text_more"));
-                    values.put("mt_allow_comments", MapUtils.getMapInt(postMap, "mt_allow_comments", 0));
-                    values.put("mt_allow_pings", MapUtils.getMapInt(postMap, "mt_allow_pings", 0));
-                    values.put("wp_slug", MapUtils.getMapStr(postMap, "wp_slug"));
-                    values.put("wp_password", MapUtils.getMapStr(postMap, "wp_password"));
-                    values.put("wp_author_id", MapUtils.getMapStr(postMap, "wp_author_id"));
-                    values.put("wp_author_display_name", MapUtils.getMapStr(postMap, "wp_author_display_name"));
-                    values.put("post_status", MapUtils.getMapStr(postMap, (isPage) ? "page_status" : "post_status"));
-                    values.put("userid", MapUtils.getMapStr(postMap, "userid"));
-
-                    if (isPage) {
-                        values.put("isPage", true);
-                        values.put("wp_page_parent_id", MapUtils.getMapStr(postMap, "wp_page_parent_id"));
-                        values.put("wp_page_parent_title", MapUtils.getMapStr(postMap, "wp_page_parent_title"));
-                    } else {
-                        values.put("mt_keywords", MapUtils.getMapStr(postMap, "mt_keywords"));
-                        values.put("wp_post_format", MapUtils.getMapStr(postMap, "wp_post_format"));
-                    }
+                    SQLiteStatement stmtUpdate = getUpsertStatement(statements, POSTS_TABLE, values, "id=?");
+                    int index = SqlUtils.bindContentValues(stmtUpdate, values);
+                    stmtUpdate.bindLong(index, localTablePostId);
+                    stmtUpdate.execute();
+                    stmtUpdate.clearBindings();
+                } else if (insertMissing) {
+                    SQLiteStatement stmtInsert = getUpsertStatement(statements, POSTS_TABLE, values, null);
+                    SqlUtils.bindContentValues(stmtInsert, values);
+                    stmtInsert.executeInsert();
+                    stmtInsert.clearBindings();
+                }
+            }
 
-                    String whereClause = "blogID=? AND postID=? AND isPage=?";
-                    if (!shouldOverwrite) {
-                        whereClause += " AND NOT isLocalChange=1";
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            SqlUtils.closeStatement(stmtFind);
+            SqlUtils.closeStatement(stmtIsLocalChange);
+            for (SQLiteStatement stmt : statements.values()) {
+                SqlUtils.closeStatement(stmt);
+            }
+        }
+
+        // index the synced posts now, on the sync thread, rather than when searching
+        SearchIndexTable.updateIndex(db, SearchIndexTable.POSTS_SEARCH_TABLE);
+    }
+
+    /*
+     * returns the update statement (or the insert statement when whereClause is null) for the columns
+     * of the passed values, the where args are bound after the values. The statements are compiled
+     * once per column set and cached in the passed map
+     */
+    private SQLiteStatement getUpsertStatement(Map<String, SQLiteStatement> statements, String table,
+                                               ContentValues values, String whereClause) {
+        boolean isUpdate = (whereClause != null);
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+        for (String column : values.keySet()) {
+            if (columns.length() > 0) {
+                columns.append(isUpdate ? "=?," : ",");
+                placeholders.append(",");
+            }
+            columns.append(column);
+            placeholders.append("?");
+        }
+        String sql;
+        if (isUpdate) {
+            sql = "UPDATE " + table + " SET " + columns + "=? WHERE " + whereClause;
+        } else {
+            sql = "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")";
+        }
+        SQLiteStatement stmt = statements.get(sql);
+        if (stmt == null) {
+            stmt = db.compileStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * @return the remote ids of the uploaded posts (or pages) of this blog
+     */
+    public List<String> getUploadedPostIds(int localBlogId, boolean isPage) {
+        List<String> postIds = new ArrayList<String>();
+        Cursor c = db.query(POSTS_TABLE, new String[]{"postid"}, "blogID=? AND isPage=? AND localDraft != 1",
+                new String[]{String.valueOf(localBlogId), String.valueOf(SqlUtils.boolToSql(isPage))},
+                null, null, null);
+        try {
+            while (c.moveToNext()) {
+                postIds.add(c.getString(0));
+            }
+        } finally {
+            c.close();
+        }
+        return postIds;
+    }
+
+    /**
+     * @return the most recent modification date (GMT, in ms) of the synced posts (or pages) of this
+     * blog, 0 if none was synced with its modification date
+     */
+    public long getPostsModifiedHighWaterMark(int localBlogId, boolean isPage) {
+        return SqlUtils.longForQuery(db, "SELECT MAX(date_modified_gmt) FROM " + POSTS_TABLE
+                + " WHERE blogID=? AND isPage=? AND localDraft != 1",
+                new String[]{String.valueOf(localBlogId), String.valueOf(SqlUtils.boolToSql(isPage))});
+    }
+
+    /**
+     * Deletes the uploaded posts (or pages) that were deleted on the server: the posts created since
+     * sinceDateGmt that are not in keepPostIds
+     * @param sinceDateGmt: start of the synced date range, 0 when all the posts of the blog were synced
+     */
+    public void deleteUploadedPostsNotIn(int localBlogId, boolean isPage, List<String> keepPostIds, long sinceDateGmt) {
+        StringBuilder where = new StringBuilder("blogID=? AND isPage=? AND localDraft != 1 AND date_created_gmt >= ?");
+        List<String> args = new ArrayList<String>();
+        args.add(String.valueOf(localBlogId));
+        args.add(String.valueOf(SqlUtils.boolToSql(isPage)));
+        args.add(String.valueOf(sinceDateGmt));
+        if (keepPostIds != null && keepPostIds.size() > 0) {
+            where.append(" AND postid NOT IN (");
+            for (int i = 0; i < keepPostIds.size(); i++) {
+                where.append(i > 0 ? ",?" : "?");
+                args.add(keepPostIds.get(i));
+            }
+            where.append(")");
+        }
+        db.delete(POSTS_TABLE, where.toString(), args.toArray(new String[args.size()]));
+    }
+
+    /**
+     * Binds the post (or page) structs returned by metaWeblog.getRecentPosts, metaWeblog.getPost,
+     * wp.getPages and wp.getPage into posts table values, see savePosts()
+     */
+    public static class PostValuesBinder extends XMLRPCStructBinder<ContentValues> {
+        private static final String[] POST_MEMBERS = {"postid", "title", "dateCreated", "date_created_gmt",
+                "description", "link", "permaLink", "categories", "custom_fields", "mt_excerpt", "mt_text_more",
+                "mt_allow_comments", "mt_allow_pings", "wp_slug", "wp_password", "wp_author_id",
+                "wp_author_display_name", "post_status", "userid", "mt_keywords", "wp_post_format"};
+        private static final String[] PAGE_MEMBERS = {"page_id", "title", "dateCreated", "date_created_gmt",
+                "description", "link", "permaLink", "categories", "custom_fields", "excerpt", "text_more",
+                "mt_allow_comments", "mt_allow_pings", "wp_slug", "wp_password", "wp_author_id",
+                "wp_author_display_name", "page_status", "userid", "wp_page_parent_id", "wp_page_parent_title"};
+
+        // string columns set to "" when the member is missing from the response
+        private static final String[] STRING_COLUMNS = {"postid", "title", "description", "link", "permaLink",
+                "mt_excerpt", "mt_text_more", "wp_slug", "wp_password", "wp_author_id", "wp_author_display_name",
+                "post_status", "userid"};
+        private static final String[] POST_STRING_COLUMNS = {"mt_keywords", "wp_post_format"};
+        private static final String[] PAGE_STRING_COLUMNS = {"wp_page_parent_id", "wp_page_parent_title"};
+
+        private final boolean mIsPage;
+
+        public PostValuesBinder(boolean isPage) {
+            super(isPage ? PAGE_MEMBERS : POST_MEMBERS);
+            mIsPage = isPage;
+        }
+
+        @Override
+        public ContentValues newTarget() {
+            ContentValues values = new ContentValues();
+            for (String column : STRING_COLUMNS) {
+                values.put(column, "");
+            }
+            for (String column : (mIsPage ? PAGE_STRING_COLUMNS : POST_STRING_COLUMNS)) {
+                values.put(column, "");
+            }
+            values.put("categories", new JSONArray().toString());
+            values.put("custom_fields", new JSONArray().toString());
+            values.put("mt_allow_comments", 0);
+            values.put("mt_allow_pings", 0);
+            if (mIsPage) {
+                values.put("isPage", true);
+            }
+            return values;
+        }
+
+        @Override
+        public ContentValues copyTarget(ContentValues values) {
+            return new ContentValues(values);
+        }
+
+        @Override
+        public void bindMember(ContentValues values, String name, Object value) {
+            if (name.equals("page_id")) {
+                values.put("postid", toStr(value));
+            } else if (name.equals("dateCreated") || name.equals("date_created_gmt")) {
+                Date date = toDate(value);
+                if (date != null) {
+                    values.put(name, date.getTime());
+                }
+            } else if (name.equals("categories")) {
+                JSONArray jsonCategoriesArray = new JSONArray();
+                if (value instanceof Object[]) {
+                    for (Object postCategory : (Object[]) value) {
+                        jsonCategoriesArray.put(postCategory.toString());
                     }
+                }
+                values.put("categories", jsonCategoriesArray.toString());
+            } else if (name.equals("custom_fields")) {
+                bindCustomFields(values, value);
+            } else if (name.equals("excerpt")) {
+                values.put("mt_excerpt", toStr(value));
+            } else if (name.equals("text_more")) {
+                values.put("mt_text_more", toStr(value));
+            } else if (name.equals("page_status")) {
+                values.put("post_status", toStr(value));
+            } else if (name.equals("mt_allow_comments") || name.equals("mt_allow_pings")) {
+                values.put(name, toInt(value, 0));
+            } else {
+                values.put(name, toStr(value));
+            }
+        }
 
-                    int result = db.update(POSTS_TABLE, values, whereClause,
-                            new String[]{String.valueOf(localBlogId), postID, String.valueOf(SqlUtils.boolToSql(isPage))});
-                    if (result == 0)
-                        db.insert(POSTS_TABLE, null, values);
+        static void bindCustomFields(ContentValues values, Object value) {
+            JSONArray jsonCustomFieldsArray = new JSONArray();
+            if (value instanceof Object[]) {
+                for (Object custom_field : (Object[]) value) {
+                    jsonCustomFieldsArray.put(custom_field.toString());
+                    // Update geo_long and geo_lat from custom fields
+                    if (!(custom_field instanceof Map))
+                        continue;
+                    Map<?, ?> customField = (Map<?, ?>) custom_field;
+                    if (customField.get("key") != null && customField.get("value") != null) {
+                        if (customField.get("key").equals("geo_longitude"))
+                            values.put("longitude", customField.get("value").toString());
+                        if (customField.get("key").equals("geo_latitude"))
+                            values.put("latitude", customField.get("value").toString());
+                    }
                 }
+            }
+            values.put("custom_fields", jsonCustomFieldsArray.toString());
+        }
 
-                db.setTransactionSuccessful();
-            } finally {
-                db.endTransaction();
+        @Override
+        public ContentValues onStructEnd(ContentValues values) {
+            if (!values.containsKey("dateCreated")) {
+                values.put("dateCreated", new Date().getTime());
+            }
+            if (!values.containsKey("date_created_gmt")) {
+                Date dateCreatedGmt = new Date(values.getAsLong("dateCreated"));
+                values.put("date_created_gmt", dateCreatedGmt.getTime() + (dateCreatedGmt.getTimezoneOffset() * 60000));
             }
+            return values;
         }
     }
 
-    public List<PostsListPost> getPostsListPosts(int blogId, boolean loadPages) {
+    /**
+     * Binds the post (or page) structs returned by wp.getPosts and wp.getPost into posts table values,
+     * see savePosts(). Members that wp.getPosts doesn't return (author display name, parent page title)
+     * are left out, so updates keep their current values.
+     */
+    public static class WpPostValuesBinder extends XMLRPCStructBinder<ContentValues> {
+        private static final String[] MEMBERS = {"post_id", "post_title", "post_date", "post_date_gmt",
+                "post_modified_gmt", "post_status", "post_format", "post_name", "post_author", "post_password",
+                "post_excerpt", "post_content", "post_parent", "link", "comment_status", "ping_status", "terms",
+                "custom_fields"};
+        private static final String MORE_TAG_START = "<!--more";
+        private static final String MORE_TAG_END = "-->";
+
+        private final boolean mIsPage;
+
+        public WpPostValuesBinder(boolean isPage) {
+            super(MEMBERS);
+            mIsPage = isPage;
+        }
+
+        @Override
+        public ContentValues newTarget() {
+            ContentValues values = new ContentValues();
+            values.put("categories", new JSONArray().toString());
+            values.put("custom_fields", new JSONArray().toString());
+            values.put("isPage", mIsPage);
+            return values;
+        }
+
+        @Override
+        public ContentValues copyTarget(ContentValues values) {
+            return new ContentValues(values);
+        }
+
+        @Override
+        public void bindMember(ContentValues values, String name, Object value) {
+            if (name.equals("post_id")) {
+                values.put("postid", toStr(value));
+            } else if (name.equals("post_title")) {
+                values.put("title", toStr(value));
+            } else if (name.equals("post_date") || name.equals("post_date_gmt") || name.equals("post_modified_gmt")) {
+                Date date = toDate(value);
+                if (date != null) {
+                    String column = name.equals("post_date") ? "dateCreated"
+                            : (name.equals("post_date_gmt") ? "date_created_gmt" : "date_modified_gmt");
+                    values.put(column, date.getTime());
+                }
+            } else if (name.equals("post_status")) {
+                values.put("post_status", toStr(value));
+            } else if (name.equals("post_format")) {
+                if (!mIsPage) {
+                    values.put("wp_post_format", toStr(value));
+                }
+            } else if (name.equals("post_name")) {
+                values.put("wp_slug", toStr(value));
+            } else if (name.equals("post_author")) {
+                values.put("wp_author_id", toStr(value));
+                values.put("userid", toStr(value));
+            } else if (name.equals("post_password")) {
+                values.put("wp_password", toStr(value));
+            } else if (name.equals("post_excerpt")) {
+                values.put("mt_excerpt", toStr(value));
+            } else if (name.equals("post_content")) {
+                bindContent(values, toStr(value));
+            } else if (name.equals("post_parent")) {
+                if (mIsPage) {
+                    values.put("wp_page_parent_id", toStr(value));
+                }
+            } else if (name.equals("link")) {
+                values.put("link", toStr(value));
+                values.put("permaLink", toStr(value));
+            } else if (name.equals("comment_status")) {
+                values.put("mt_allow_comments", "open".equals(value) ? 1 : 0);
+            } else if (name.equals("ping_status")) {
+                values.put("mt_allow_pings", "open".equals(value) ? 1 : 0);
+            } else if (name.equals("terms")) {
+                bindTerms(values, value);
+            } else if (name.equals("custom_fields")) {
+                PostValuesBinder.bindCustomFields(values, value);
+            }
+        }
+
+        /*
+         * metaWeblog returns the content split on the more tag, the app stores it the same way
+         */
+        private void bindContent(ContentValues values, String content) {
+            int moreStart = content.indexOf(MORE_TAG_START);
+            int moreEnd = (moreStart != -1 ? content.indexOf(MORE_TAG_END, moreStart) : -1);
+            if (moreEnd == -1) {
+                values.put("description", content);
+                values.put("mt_text_more", "");
+            } else {
+                values.put("description", content.substring(0, moreStart));
+                values.put("mt_text_more", content.substring(moreEnd + MORE_TAG_END.length()));
+            }
+        }
+
+        /*
+         * categories are stored as a JSON array of names, tags as a comma separated list
+         */
+        private void bindTerms(ContentValues values, Object value) {
+            JSONArray categories = new JSONArray();
+            StringBuilder tags = new StringBuilder();
+            if (value instanceof Object[]) {
+                for (Object term : (Object[]) value) {
+                    if (!(term instanceof Map)) {
+                        continue;
+                    }
+                    Map<?, ?> termMap = (Map<?, ?>) term;
+                    String taxonomy = MapUtils.getMapStr(termMap, "taxonomy");
+                    String termName = MapUtils.getMapStr(termMap, "name");
+                    if (taxonomy.equals("category")) {
+                        categories.put(termName);
+                    } else if (taxonomy.equals("post_tag")) {
+                        if (tags.length() > 0) {
+                            tags.append(", ");
+                        }
+                        tags.append(termName);
+                    }
+                }
+            }
+            values.put("categories", categories.toString());
+            if (!mIsPage) {
+                values.put("mt_keywords", tags.toString());
+            }
+        }
+
+        @Override
+        public ContentValues onStructEnd(ContentValues values) {
+            if (!values.containsKey("dateCreated")) {
+                values.put("dateCreated", new Date().getTime());
+            }
+            if (!values.containsKey("date_created_gmt")) {
+                Date dateCreatedGmt = new Date(values.getAsLong("dateCreated"));
+                values.put("date_created_gmt", dateCreatedGmt.getTime() + (dateCreatedGmt.getTimezoneOffset() * 60000));
+            }
+            return values;
+        }
+    }
 
+    /**
+     * Returns a window of the posts list, in the list order: local drafts first, then newest first.
+     * Keyset pagination: the window starts right after afterPost, so the query seeks through the
+     * (blogID, isPage, localDraft, date_created_gmt, id) index, in its order, instead of skipping
+     * and sorting the rows of the previous windows. After a local draft, the window is completed
+     * with the first posts which aren't local drafts.
+     * @param afterPost: last post of the previous window, null for the first window
+     * @param maxPosts: window size
+     */
+    public List<PostsListPost> getPostsListPosts(int blogId, boolean loadPages, PostsListPost afterPost, int maxPosts) {
         List<PostsListPost> posts = new ArrayList<PostsListPost>();
-        Cursor c;
-        c = db.query(POSTS_TABLE,
+        String where = "blogID=? AND isPage=? AND NOT (localDraft=1 AND uploaded=1)";
+        String blogIdStr = String.valueOf(blogId);
+        String isPage = (loadPages ? "1" : "0");
+        if (afterPost == null) {
+            addPostsListPosts(posts, where, new String[] { blogIdStr, isPage }, maxPosts);
+            return posts;
+        }
+
+        // the range on date_created_gmt is resolved by the index, the posts sharing the date of
+        // afterPost are then filtered on their id
+        String dateCreatedGmt = String.valueOf(afterPost.getDateCreatedGmt());
+        addPostsListPosts(posts,
+                where + " AND localDraft=? AND date_created_gmt<=? AND NOT (date_created_gmt=? AND id>=?)",
+                new String[] { blogIdStr, isPage, String.valueOf(SqlUtils.boolToSql(afterPost.isLocalDraft())),
+                        dateCreatedGmt, dateCreatedGmt, String.valueOf(afterPost.getPostId()) },
+                maxPosts);
+        if (afterPost.isLocalDraft() && posts.size() < maxPosts) {
+            addPostsListPosts(posts, where + " AND localDraft=0", new String[] { blogIdStr, isPage },
+                    maxPosts - posts.size());
+        }
+
+        return posts;
+    }
+
+    private void addPostsListPosts(List<PostsListPost> posts, String where, String[] args, int maxPosts) {
+        // only the columns shown by the list, never the post content
+        Cursor c = db.query(POSTS_TABLE,
                 new String[] { "id", "blogID", "title",
                         "date_created_gmt", "post_status", "localDraft", "isLocalChange" },
-                "blogID=? AND isPage=? AND NOT (localDraft=1 AND uploaded=1)",
-                new String[] {String.valueOf(blogId), (loadPages) ? "1" : "0"}, null, null, "localDraft DESC, date_created_gmt DESC");
-        int numRows = c.getCount();
-        c.moveToFirst();
+                where, args, null, null,
+                "localDraft DESC, date_created_gmt DESC, id DESC", Integer.toString(maxPosts));
+        try {
+            while (c.moveToNext()) {
+                String postTitle = StringUtils.unescapeHTML(c.getString(2));
+                posts.add(new PostsListPost(
+                        c.getInt(0),
+                        c.getInt(1),
+                        postTitle,
+                        c.getLong(3),
+                        c.getString(4),
+                        SqlUtils.sqlToBool(c.getInt(5)),
+                        SqlUtils.sqlToBool(c.getInt(6))
+                ));
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
+        }
+    }
 
-        for (int i = 0; i < numRows; ++i) {
-            String postTitle = StringUtils.unescapeHTML(c.getString(c.getColumnIndex("title")));
-
-            // Create the PostsListPost and add it to the Array
-            PostsListPost post = new PostsListPost(
-                    c.getInt(c.getColumnIndex("id")),
-                    c.getInt(c.getColumnIndex("blogID")),
-                    postTitle,
-                    c.getLong(c.getColumnIndex("date_created_gmt")),
-                    c.getString(c.getColumnIndex("post_status")),
-                    SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("localDraft"))),
-                    SqlUtils.sqlToBool(c.getInt(c.getColumnIndex("isLocalChange")))
-            );
-            posts.add(i, post);
-            c.moveToNext();
+    /**
+     * Searches the title and content of the local posts or pages, title matches first, then the
+     * posts matching the most often. Words are matched as prefixes.
+     */
+    public List<PostsListPost> searchPostsListPosts(int blogId, boolean loadPages, String searchTerm, int maxPosts) {
+        List<PostsListPost> posts = new ArrayList<PostsListPost>();
+        String matchQuery = SearchIndexTable.getMatchQuery(searchTerm);
+        if (matchQuery == null) {
+            return posts;
+        }
+        SearchIndexTable.updateIndex(db, SearchIndexTable.POSTS_SEARCH_TABLE);
+
+        String searchTable = SearchIndexTable.POSTS_SEARCH_TABLE;
+        Cursor c = db.rawQuery("SELECT id, blogID, " + POSTS_TABLE + ".title, date_created_gmt, post_status, localDraft, isLocalChange"
+                + " FROM " + POSTS_TABLE + " JOIN " + searchTable + " ON " + searchTable + ".docid=" + POSTS_TABLE + ".id"
+                + " WHERE " + searchTable + " MATCH ? AND blogID=? AND isPage=? AND NOT (localDraft=1 AND uploaded=1)"
+                + " ORDER BY (id IN (SELECT docid FROM " + searchTable + " WHERE title MATCH ?)) DESC,"
+                + " length(offsets(" + searchTable + ")) DESC, date_created_gmt DESC LIMIT " + maxPosts,
+                new String[] { matchQuery, String.valueOf(blogId), loadPages ? "1" : "0", matchQuery });
+        try {
+            while (c.moveToNext()) {
+                posts.add(new PostsListPost(
+                        c.getInt(0),
+                        c.getInt(1),
+                        StringUtils.unescapeHTML(c.getString(2)),
+                        c.getLong(3),
+                        c.getString(4),
+                        SqlUtils.sqlToBool(c.getInt(5)),
+                        SqlUtils.sqlToBool(c.getInt(6))
+                ));
+            }
+        } finally {
+            SqlUtils.closeCursor(c);
         }
-        c.close();
 
         return posts;
     }
@@ -1079,6 +1565,33 @@ public class WordPressDB {
         return (returnValue);
     }
 
+    /**
+     * Replaces the categories of a blog with the passed ones in a single transaction
+     * @param categories: values with the wp_id, parent_id and category_name of each category
+     */
+    public void replaceCategories(int id, List<ContentValues> categories) {
+        Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+        synchronized (this) {
+            db.beginTransaction();
+            try {
+                clearCategories(id);
+                for (ContentValues values : categories) {
+                    values.put("blog_id", id);
+                    SQLiteStatement stmtInsert = getUpsertStatement(statements, CATEGORIES_TABLE, values, null);
+                    SqlUtils.bindContentValues(stmtInsert, values);
+                    stmtInsert.executeInsert();
+                    stmtInsert.clearBindings();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                for (SQLiteStatement stmt : statements.values()) {
+                    SqlUtils.closeStatement(stmt);
+                }
+            }
+        }
+    }
+
     public List<String> loadCategories(int id) {
 
         Cursor c = db.query(CATEGORIES_TABLE, new String[] { "id", "wp_id",
@@ -1292,7 +1805,35 @@ public class WordPressDB {
     }
 
     public void saveMediaFile(MediaFile mf) {
+        ContentValues values = getMediaFileValues(mf);
+
+        synchronized (this) {
+            int result = 0;
+            boolean isMarkedForDelete = false;
+            if (mf.getMediaId() != null) {
+                Cursor cursor = db.rawQuery("SELECT uploadState FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId=?",
+                        new String[]{StringUtils.notNullStr(mf.getBlogId()), StringUtils.notNullStr(mf.getMediaId())});
+                if (cursor != null && cursor.moveToFirst()) {
+                    isMarkedForDelete = "delete".equals(cursor.getString(0));
+                    cursor.close();
+                }
 
+                if (!isMarkedForDelete)
+                    result = db.update(MEDIA_TABLE, values, "blogId=? AND mediaId=?",
+                            new String[]{StringUtils.notNullStr(mf.getBlogId()), StringUtils.notNullStr(mf.getMediaId())});
+            }
+
+            if (result == 0 && !isMarkedForDelete) {
+                result = db.update(MEDIA_TABLE, values, "postID=? AND filePath=?",
+                        new String[]{String.valueOf(mf.getPostID()), StringUtils.notNullStr(mf.getFilePath())});
+                if (result == 0)
+                    db.insert(MEDIA_TABLE, null, values);
+            }
+        }
+
+    }
+
+    private ContentValues getMediaFileValues(MediaFile mf) {
         ContentValues values = new ContentValues();
         values.put("postID", mf.getPostID());
         values.put("filePath", mf.getFilePath());
@@ -1317,31 +1858,75 @@ public class WordPressDB {
             values.put("uploadState", mf.getUploadState());
         else
             values.putNull("uploadState");
+        return values;
+    }
 
+    /**
+     * Saves a list of media files in a single transaction, same as saveMediaFile() but with statements
+     * compiled once for the whole list
+     */
+    public void saveMediaFiles(List<MediaFile> mediaFiles) {
+        if (mediaFiles == null || mediaFiles.size() == 0) {
+            return;
+        }
         synchronized (this) {
-            int result = 0;
-            boolean isMarkedForDelete = false;
-            if (mf.getMediaId() != null) {
-                Cursor cursor = db.rawQuery("SELECT uploadState FROM " + MEDIA_TABLE + " WHERE mediaId=?",
-                        new String[]{StringUtils.notNullStr(mf.getMediaId())});
-                if (cursor != null && cursor.moveToFirst()) {
-                    isMarkedForDelete = "delete".equals(cursor.getString(0));
-                    cursor.close();
-                }
-
-                if (!isMarkedForDelete)
-                    result = db.update(MEDIA_TABLE, values, "blogId=? AND mediaId=?",
-                            new String[]{StringUtils.notNullStr(mf.getBlogId()), StringUtils.notNullStr(mf.getMediaId())});
-            }
+            SQLiteStatement stmtIsMarkedForDelete = db.compileStatement("SELECT uploadState='delete' FROM "
+                    + MEDIA_TABLE + " WHERE blogId=?1 AND mediaId=?2 LIMIT 1");
+            // rows changed by the last update, SQLiteStatement.executeUpdateDelete() requires API 11
+            SQLiteStatement stmtChanges = db.compileStatement("SELECT changes()");
+            Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+            db.beginTransaction();
+            try {
+                for (MediaFile mf : mediaFiles) {
+                    ContentValues values = getMediaFileValues(mf);
+                    long result = 0;
+                    if (mf.getMediaId() != null) {
+                        String blogId = StringUtils.notNullStr(mf.getBlogId());
+                        String mediaId = StringUtils.notNullStr(mf.getMediaId());
+                        stmtIsMarkedForDelete.bindString(1, blogId);
+                        stmtIsMarkedForDelete.bindString(2, mediaId);
+                        boolean isMarkedForDelete = (SqlUtils.longForStatement(stmtIsMarkedForDelete) == 1);
+                        stmtIsMarkedForDelete.clearBindings();
+                        if (isMarkedForDelete) {
+                            continue;
+                        }
+                        SQLiteStatement stmtUpdate = getUpsertStatement(statements, MEDIA_TABLE, values,
+                                "blogId=? AND mediaId=?");
+                        int index = SqlUtils.bindContentValues(stmtUpdate, values);
+                        stmtUpdate.bindString(index, blogId);
+                        stmtUpdate.bindString(index + 1, mediaId);
+                        stmtUpdate.execute();
+                        stmtUpdate.clearBindings();
+                        result = SqlUtils.longForStatement(stmtChanges);
+                    }
 
-            if (result == 0 && !isMarkedForDelete) {
-                result = db.update(MEDIA_TABLE, values, "postID=? AND filePath=?",
-                        new String[]{String.valueOf(mf.getPostID()), StringUtils.notNullStr(mf.getFilePath())});
-                if (result == 0)
-                    db.insert(MEDIA_TABLE, null, values);
+                    if (result == 0) {
+                        SQLiteStatement stmtUpdate = getUpsertStatement(statements, MEDIA_TABLE, values,
+                                "postID=? AND filePath=?");
+                        int index = SqlUtils.bindContentValues(stmtUpdate, values);
+                        stmtUpdate.bindString(index, String.valueOf(mf.getPostID()));
+                        stmtUpdate.bindString(index + 1, StringUtils.notNullStr(mf.getFilePath()));
+                        stmtUpdate.execute();
+                        stmtUpdate.clearBindings();
+                        if (SqlUtils.longForStatement(stmtChanges) == 0) {
+                            SQLiteStatement stmtInsert = getUpsertStatement(statements, MEDIA_TABLE, values, null);
+                            SqlUtils.bindContentValues(stmtInsert, values);
+                            stmtInsert.executeInsert();
+                            stmtInsert.clearBindings();
+                        }
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                SqlUtils.closeStatement(stmtIsMarkedForDelete);
+                SqlUtils.closeStatement(stmtChanges);
+                for (SQLiteStatement stmt : statements.values()) {
+                    SqlUtils.closeStatement(stmt);
+                }
             }
         }
-
+        SearchIndexTable.updateIndex(db, SearchIndexTable.MEDIA_SEARCH_TABLE);
     }
 
     /** For a given blogId, get the first media files **/
@@ -1357,13 +1942,21 @@ public class WordPressDB {
                 + "(uploadState IS NULL OR uploadState IN ('uploaded', 'queued', 'failed', 'uploading')) ORDER BY (uploadState=?) DESC, date_created_gmt DESC", new String[] { blogId, "uploading" });
     }
 
-    /** For a given blogId, get all the media files with searchTerm **/
+    /** For a given blogId, get all the media files with searchTerm in their title, caption or description,
+     * title matches first **/
     public Cursor getMediaFilesForBlog(String blogId, String searchTerm) {
-        // Currently on WordPress.com, the media search engine only searches the title.
-        // We'll match this.
-
-        String term = searchTerm.toLowerCase(Locale.getDefault());
-        return db.rawQuery("SELECT id as _id, * FROM " + MEDIA_TABLE + " WHERE blogId=? AND mediaId <> '' AND title LIKE ? AND (uploadState IS NULL OR uploadState ='uploaded') ORDER BY (uploadState=?) DESC, date_created_gmt DESC", new String[] { blogId, "%" + term + "%", "uploading" });
+        String matchQuery = SearchIndexTable.getMatchQuery(searchTerm);
+        if (matchQuery == null) {
+            return getMediaFilesForBlog(blogId);
+        }
+        SearchIndexTable.updateIndex(db, SearchIndexTable.MEDIA_SEARCH_TABLE);
+        String searchTable = SearchIndexTable.MEDIA_SEARCH_TABLE;
+        return db.rawQuery("SELECT " + MEDIA_TABLE + ".id as _id, " + MEDIA_TABLE + ".* FROM " + MEDIA_TABLE
+                + " JOIN " + searchTable + " ON " + searchTable + ".docid=" + MEDIA_TABLE + ".id"
+                + " WHERE " + searchTable + " MATCH ? AND blogId=? AND mediaId <> '' AND (uploadState IS NULL OR uploadState ='uploaded')"
+                + " ORDER BY (" + MEDIA_TABLE + ".id IN (SELECT docid FROM " + searchTable + " WHERE title MATCH ?)) DESC,"
+                + " length(offsets(" + searchTable + ")) DESC, date_created_gmt DESC",
+                new String[] { matchQuery, blogId, matchQuery });
     }
 
     /** For a given blogId, get the media file with the given media_id **/
@@ -1475,9 +2068,58 @@ public class WordPressDB {
         db.delete(MEDIA_TABLE, "blogId='" + post.getLocalTableBlogId() + "' AND postID=" + post.getLocalTablePostId(), null);
     }
 
-    /** Get the queued media files for upload for a given blogId **/
-    public Cursor getMediaUploadQueue(String blogId) {
-        return db.rawQuery("SELECT * FROM " + MEDIA_TABLE + " WHERE uploadState=? AND blogId=?", new String[] {"queued", blogId});
+    /** Get the queued media files for upload of all the blogs, the first ones to retry first **/
+    public Cursor getMediaUploadQueue() {
+        return db.rawQuery("SELECT * FROM " + MEDIA_TABLE + " WHERE uploadState=? ORDER BY uploadRetryAt, id",
+                new String[] {"queued"});
+    }
+
+    /** Queue a media file whose upload failed again, to be retried after retryAt (ms) **/
+    public void setMediaUploadRetry(String blogId, String mediaId, int attempts, long retryAt) {
+        ContentValues values = new ContentValues();
+        values.put("uploadState", "queued");
+        values.put("uploadAttempts", attempts);
+        values.put("uploadRetryAt", retryAt);
+        db.update(MEDIA_TABLE, values, "blogId=? AND mediaId=?", new String[] { blogId, mediaId });
+    }
+
+    /** Queue the full size image linked from a resized one in a post, to be uploaded later **/
+    public void addDeferredMediaUpload(int blogId, String remotePostId, String filePath, String fileName,
+                                       String mimeType, String resizedURL) {
+        ContentValues values = new ContentValues();
+        values.put("blogId", blogId);
+        values.put("remotePostId", remotePostId);
+        values.put("filePath", filePath);
+        values.put("fileName", fileName);
+        values.put("mimeType", mimeType);
+        values.put("resizedURL", resizedURL);
+        db.insert(DEFERRED_MEDIA_UPLOADS_TABLE, null, values);
+    }
+
+    /** Get the full size images waiting to be uploaded, of all the blogs **/
+    public Cursor getDeferredMediaUploads() {
+        return db.rawQuery("SELECT * FROM " + DEFERRED_MEDIA_UPLOADS_TABLE + " ORDER BY id", null);
+    }
+
+    public boolean hasDeferredMediaUploads() {
+        return SqlUtils.boolForQuery(db, "SELECT 1 FROM " + DEFERRED_MEDIA_UPLOADS_TABLE + " LIMIT 1", null);
+    }
+
+    public void setDeferredMediaUploadAttempts(long id, int attempts) {
+        ContentValues values = new ContentValues();
+        values.put("uploadAttempts", attempts);
+        db.update(DEFERRED_MEDIA_UPLOADS_TABLE, values, "id=?", new String[] { Long.toString(id) });
+    }
+
+    /** Set the url of a full size image once uploaded, the post still has to link to it **/
+    public void setDeferredMediaUploadURL(long id, String fullSizeURL) {
+        ContentValues values = new ContentValues();
+        values.put("fullSizeURL", fullSizeURL);
+        db.update(DEFERRED_MEDIA_UPLOADS_TABLE, values, "id=?", new String[] { Long.toString(id) });
+    }
+
+    public void deleteDeferredMediaUpload(long id) {
+        db.delete(DEFERRED_MEDIA_UPLOADS_TABLE, "id=?", new String[] { Long.toString(id) });
     }
 
     /** Update a media file to a new upload state **/
@@ -1488,6 +2130,11 @@ public class WordPressDB {
         ContentValues values = new ContentValues();
         if (uploadState == null) values.putNull("uploadState");
         else values.put("uploadState", uploadState);
+        if ("queued".equals(uploadState)) {
+            // queued by the user, so the upload starts over
+            values.put("uploadAttempts", 0);
+            values.put("uploadRetryAt", 0);
+        }
 
         if (mediaId == null) {
             db.update(MEDIA_TABLE, values, "blogId=? AND (uploadState IS NULL OR uploadState ='uploaded')", new String[] { blogId });
@@ -1525,16 +2172,13 @@ public class WordPressDB {
     }
 
     /**
-     * For a given blogId, set all uploading states to failed.
-     * Useful for cleaning up files stuck in the "uploading" state.
+     * For all the blogs, queue again the media files in the "uploading" state.
+     * Useful for resuming the uploads interrupted when the upload service was stopped.
      **/
-    public void setMediaUploadingToFailed(String blogId) {
-        if (blogId == null || blogId.equals(""))
-            return;
-
+    public void setMediaUploadingToQueued() {
         ContentValues values = new ContentValues();
-        values.put("uploadState", "failed");
-        db.update(MEDIA_TABLE, values, "blogId=? AND uploadState=?", new String[] { blogId, "uploading" });
+        values.put("uploadState", "queued");
+        db.update(MEDIA_TABLE, values, "uploadState=?", new String[] { "uploading" });
     }
 
     /** For a given blogId, clear the upload states in the upload queue **/
@@ -1550,6 +2194,52 @@ public class WordPressDB {
     /** Delete a media item from a blog locally **/
     public void deleteMediaFile(String blogId, String mediaId) {
         db.delete(MEDIA_TABLE, "blogId=? AND mediaId=?", new String[] { blogId, mediaId });
+        deleteUploadedMedia(blogId, mediaId);
+    }
+
+    /**
+     * Get the id of the media item a local file was already uploaded as on the blog, from the
+     * content hash of the file
+     * @param sourceKey identifies the local file, see MediaUtils.getMediaSourceKey
+     * @return the remote media id, or null if the file wasn't uploaded to the blog
+     */
+    public String getUploadedMediaId(int blogId, String sourceKey) {
+        if (sourceKey == null)
+            return null;
+        String[] args = { Integer.toString(blogId), sourceKey };
+        String mediaId = SqlUtils.stringForQuery(db, "SELECT u.mediaId FROM " + UPLOADED_MEDIA_TABLE + " u"
+                + " INNER JOIN " + MEDIA_CONTENT_HASHES_TABLE + " h ON h.contentHash = u.contentHash"
+                + " WHERE u.blogId=? AND h.sourceKey=?", args);
+        return (mediaId.length() > 0 ? mediaId : null);
+    }
+
+    /** Add a file uploaded as a media item of the blog to the content hash index **/
+    public void saveUploadedMedia(int blogId, String sourceKey, String contentHash, String mediaId, String url) {
+        if (sourceKey == null || contentHash == null || mediaId == null)
+            return;
+
+        db.beginTransaction();
+        try {
+            ContentValues hashValues = new ContentValues();
+            hashValues.put("sourceKey", sourceKey);
+            hashValues.put("contentHash", contentHash);
+            db.insertWithOnConflict(MEDIA_CONTENT_HASHES_TABLE, null, hashValues, SQLiteDatabase.CONFLICT_REPLACE);
+
+            ContentValues mediaValues = new ContentValues();
+            mediaValues.put("blogId", blogId);
+            mediaValues.put("contentHash", contentHash);
+            mediaValues.put("mediaId", mediaId);
+            mediaValues.put("url", url);
+            db.insertWithOnConflict(UPLOADED_MEDIA_TABLE, null, mediaValues, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Remove a media item of the blog from the content hash index, it can't be reused **/
+    public void deleteUploadedMedia(String blogId, String mediaId) {
+        db.delete(UPLOADED_MEDIA_TABLE, "blogId=? AND mediaId=?", new String[] { blogId, mediaId });
     }
 
     /** Mark media files for deletion without actually deleting them. **/
@@ -1609,6 +2299,62 @@ public class WordPressDB {
     public boolean saveTheme(Theme theme) {
         boolean returnValue = false;
 
+        ContentValues values = getThemeValues(theme);
+
+        synchronized (this) {
+            int result = db.update(
+                    THEMES_TABLE,
+                    values,
+                    "blogId=? AND themeId=?",
+                    new String[]{ StringUtils.notNullStr(theme.getBlogId()), StringUtils.notNullStr(theme.getThemeId()) });
+            if (result == 0)
+                returnValue = db.insert(THEMES_TABLE, null, values) > 0;
+        }
+
+        return (returnValue);
+    }
+
+    /**
+     * Saves a list of themes in a single transaction, with statements compiled once for the whole list
+     */
+    public void saveThemes(List<Theme> themes) {
+        if (themes == null || themes.size() == 0) {
+            return;
+        }
+        synchronized (this) {
+            SQLiteStatement stmtChanges = db.compileStatement("SELECT changes()");
+            Map<String, SQLiteStatement> statements = new HashMap<String, SQLiteStatement>();
+            db.beginTransaction();
+            try {
+                for (Theme theme : themes) {
+                    ContentValues values = getThemeValues(theme);
+                    SQLiteStatement stmtUpdate = getUpsertStatement(statements, THEMES_TABLE, values,
+                            "blogId=? AND themeId=?");
+                    int index = SqlUtils.bindContentValues(stmtUpdate, values);
+                    stmtUpdate.bindString(index, StringUtils.notNullStr(theme.getBlogId()));
+                    stmtUpdate.bindString(index + 1, StringUtils.notNullStr(theme.getThemeId()));
+                    stmtUpdate.execute();
+                    stmtUpdate.clearBindings();
+                    if (SqlUtils.longForStatement(stmtChanges) == 0) {
+                        SQLiteStatement stmtInsert = getUpsertStatement(statements, THEMES_TABLE, values, null);
+                        SqlUtils.bindContentValues(stmtInsert, values);
+                        stmtInsert.executeInsert();
+                        stmtInsert.clearBindings();
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                SqlUtils.closeStatement(stmtChanges);
+                for (SQLiteStatement stmt : statements.values()) {
+                    SqlUtils.closeStatement(stmt);
+                }
+            }
+        }
+        SearchIndexTable.updateIndex(db, SearchIndexTable.THEMES_SEARCH_TABLE);
+    }
+
+    private ContentValues getThemeValues(Theme theme) {
         ContentValues values = new ContentValues();
         values.put("themeId", theme.getThemeId());
         values.put("name", theme.getName());
@@ -1622,18 +2368,7 @@ public class WordPressDB {
         values.put("isCurrent", theme.isCurrent());
         values.put("isPremium", theme.isPremium());
         values.put("features", theme.getFeatures());
-
-        synchronized (this) {
-            int result = db.update(
-                    THEMES_TABLE,
-                    values,
-                    "themeId=?",
-                    new String[]{ theme.getThemeId() });
-            if (result == 0)
-                returnValue = db.insert(THEMES_TABLE, null, values) > 0;
-        }
-
-        return (returnValue);
+        return values;
     }
 
     public Cursor getThemesAtoZ(String blogId) {
@@ -1684,9 +2419,22 @@ public class WordPressDB {
         return getThemesAtoZ(blogId).getCount();
     }
 
+    /*
+     * themes with searchTerm in their name or description, name matches first
+     */
     public Cursor getThemes(String blogId, String searchTerm) {
-        return db.rawQuery("SELECT _id,  themeId, name, screenshotURL, isCurrent, isPremium FROM " + THEMES_TABLE + " WHERE blogId=? AND (name LIKE ? OR description LIKE ?) ORDER BY name ASC", new String[] {blogId, "%" + searchTerm + "%", "%" + searchTerm + "%"});
-
+        String matchQuery = SearchIndexTable.getMatchQuery(searchTerm);
+        if (matchQuery == null) {
+            return getThemesAtoZ(blogId);
+        }
+        SearchIndexTable.updateIndex(db, SearchIndexTable.THEMES_SEARCH_TABLE);
+        String searchTable = SearchIndexTable.THEMES_SEARCH_TABLE;
+        return db.rawQuery("SELECT _id, themeId, " + THEMES_TABLE + ".name, screenshotURL, isCurrent, isPremium FROM " + THEMES_TABLE
+                + " JOIN " + searchTable + " ON " + searchTable + ".docid=" + THEMES_TABLE + "._id"
+                + " WHERE " + searchTable + " MATCH ? AND blogId=?"
+                + " ORDER BY (_id IN (SELECT docid FROM " + searchTable + " WHERE name MATCH ?)) DESC,"
+                + " length(offsets(" + searchTable + ")) DESC, " + THEMES_TABLE + ".name ASC",
+                new String[] { matchQuery, blogId, matchQuery });
     }
 
     public Theme getTheme(String blogId, String themeId) {
@@ -1724,22 +2472,35 @@ public class WordPressDB {
     }
 
     public ArrayList<Note> getLatestNotes(int limit) {
-        Cursor cursor = db.query(NOTES_TABLE, new String[] {"note_id", "raw_note_data", "placeholder"},
-                null, null, null, null, "timestamp DESC", "" + limit);
+        return getNotesBefore(null, limit);
+    }
+
+    /*
+     * returns the notes older than the passed note, newest first, or the latest notes if it's null.
+     * Keyset pagination on (timestamp, id), so paging doesn't skip or repeat notes sharing a timestamp.
+     * The returned notes are built from the list columns, their JSON is only read when needed
+     */
+    public ArrayList<Note> getNotesBefore(Note lastNote, int limit) {
+        String where = null;
+        String[] args = null;
+        if (lastNote != null) {
+            where = "timestamp<? OR (timestamp=? AND id<?)";
+            args = new String[] {lastNote.getTimestamp(), lastNote.getTimestamp(), getLocalTableIdFor(lastNote)};
+        }
+        Cursor cursor = db.query(NOTES_TABLE, new String[] {"id", "note_id", "type", "subject", "icon_url",
+                        "unread", "timestamp", "comment_preview", "placeholder"},
+                where, args, null, null, "timestamp DESC, id DESC", "" + limit);
         ArrayList<Note> notes = new ArrayList<Note>();
-        while (cursor.moveToNext()) {
-            String note_id = cursor.getString(0);
-            String raw_note_data = cursor.getString(1);
-            boolean placeholder = cursor.getInt(2) == 1;
-            try {
-                Note note = new Note(new JSONObject(raw_note_data));
-                note.setPlaceholder(placeholder);
+        try {
+            while (cursor.moveToNext()) {
+                Note note = new Note(cursor.getInt(0), cursor.getString(1), cursor.getString(2), cursor.getString(3),
+                        cursor.getString(4), cursor.getString(5), cursor.getString(6), cursor.getString(7));
+                note.setPlaceholder(cursor.getInt(8) == 1);
                 notes.add(note);
-            } catch (JSONException e) {
-                AppLog.e(T.DB, "Can't parse notification with note_id:" + note_id + ", exception:" + e);
             }
+        } finally {
+            SqlUtils.closeCursor(cursor);
         }
-        cursor.close();
         return notes;
     }
 
@@ -1753,18 +2514,39 @@ public class WordPressDB {
         values.put("timestamp", note.getTimestamp());
         values.put("placeholder", placeholder);
         values.put("raw_note_data", note.toJSONObject().toString()); // easiest way to store schema-less data
+        putNoteListValues(values, note);
 
-        if (note.getId().equals("0") || note.getId().equals("")) {
-            values.put("id", generateIdFor(note));
-            values.put("note_id", "0");
-        } else {
-            values.put("id", note.getId());
+        values.put("id", getLocalTableIdFor(note));
+        if (hasRemoteNoteId(note)) {
             values.put("note_id", note.getId());
+        } else {
+            values.put("note_id", "0");
         }
 
         db.insertWithOnConflict(NOTES_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
     }
 
+    private static boolean hasRemoteNoteId(Note note) {
+        return !note.getId().equals("0") && !note.getId().equals("");
+    }
+
+    /*
+     * notes table id of the note: its id, or a hash of its content for placeholders without an id
+     */
+    private static String getLocalTableIdFor(Note note) {
+        return (hasRemoteNoteId(note) ? note.getId() : Integer.toString(generateIdFor(note)));
+    }
+
+    /*
+     * fields shown by the notes list, stored in their own columns so loading the list doesn't parse the JSON
+     */
+    private static void putNoteListValues(ContentValues values, Note note) {
+        values.put("subject", note.getSubject());
+        values.put("icon_url", note.getIconURL());
+        values.put("unread", note.getUnreadCount());
+        values.put("comment_preview", note.isCommentType() ? note.getCommentPreview() : "");
+    }
+
     public static int generateIdFor(Note note) {
         if (note == null) {
             return 0;
@@ -1785,6 +2567,52 @@ public class WordPressDB {
         }
     }
 
+    /*
+     * merges the latest notes fetched from the server: the notes are upserted, the local notes in the
+     * same time range missing from them were deleted on the server (or are placeholders replaced by
+     * them) and are removed. Older notes are kept, they back the list when scrolling, unless the
+     * fetched notes don't reach them: the notes between them weren't fetched, and paging through the
+     * local notes would skip them, so the older notes are dropped and fetched again when scrolling
+     */
+    private static final int MAX_STORED_NOTES = 500;
+    public void mergeNotes(List<Note> notes) {
+        db.beginTransaction();
+        try {
+            if (notes.size() > 0) {
+                long newestStoredTimestamp = SqlUtils.longForQuery(db,
+                        "SELECT MAX(timestamp) FROM " + NOTES_TABLE + " WHERE placeholder=0", null);
+                long oldestTimestamp = Long.MAX_VALUE;
+                long newestTimestamp = Long.MIN_VALUE;
+                List<String> args = new ArrayList<String>();
+                StringBuilder ids = new StringBuilder();
+                for (Note note : notes) {
+                    addNote(note, false);
+                    long timestamp = StringUtils.stringToLong(note.getTimestamp());
+                    oldestTimestamp = Math.min(oldestTimestamp, timestamp);
+                    newestTimestamp = Math.max(newestTimestamp, timestamp);
+                    ids.append(ids.length() > 0 ? ",?" : "?");
+                    args.add(getLocalTableIdFor(note));
+                }
+                args.add(0, Long.toString(oldestTimestamp));
+                args.add(1, Long.toString(newestTimestamp));
+                db.delete(NOTES_TABLE, "timestamp>=? AND timestamp<=? AND id NOT IN (" + ids + ")",
+                        args.toArray(new String[args.size()]));
+
+                if (newestStoredTimestamp < oldestTimestamp) {
+                    // no overlap with the stored notes, there may be a gap between them
+                    db.delete(NOTES_TABLE, "timestamp<?", new String[] {Long.toString(oldestTimestamp)});
+                }
+            }
+
+            // keep the table bounded now that it isn't cleared on refresh
+            db.execSQL("DELETE FROM " + NOTES_TABLE + " WHERE id IN (SELECT id FROM " + NOTES_TABLE
+                    + " ORDER BY timestamp DESC, id DESC LIMIT -1 OFFSET " + MAX_STORED_NOTES + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     public Note getNoteById(int id) {
         Cursor cursor = db.query(NOTES_TABLE, new String[] {"raw_note_data"},  "id=" + id, null, null, null, null);
         cursor.moveToFirst();
@@ -1801,6 +2629,47 @@ public class WordPressDB {
         }
     }
 
+    /*
+     * returns the JSON of the note with this notes table id, null if there's no such note
+     */
+    public JSONObject getNoteJSON(int id) {
+        String rawNoteData = SqlUtils.stringForQuery(db, "SELECT raw_note_data FROM " + NOTES_TABLE + " WHERE id=?",
+                new String[]{Integer.toString(id)});
+        if (TextUtils.isEmpty(rawNoteData)) {
+            return null;
+        }
+        try {
+            return new JSONObject(rawNoteData);
+        } catch (JSONException e) {
+            AppLog.e(T.DB, "Can't parse JSON Note: " + e);
+            return null;
+        }
+    }
+
+    /*
+     * fill the list columns of the notes saved before they existed
+     */
+    private void migrateNotesListColumns() {
+        Cursor cursor = db.query(NOTES_TABLE, new String[] {"id", "raw_note_data"}, null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                String rawNoteData = cursor.getString(1);
+                if (TextUtils.isEmpty(rawNoteData)) {
+                    continue;
+                }
+                try {
+                    ContentValues values = new ContentValues();
+                    putNoteListValues(values, new Note(new JSONObject(rawNoteData)));
+                    db.update(NOTES_TABLE, values, "id=?", new String[]{Integer.toString(cursor.getInt(0))});
+                } catch (JSONException e) {
+                    AppLog.e(T.DB, "Can't parse JSON Note: " + e);
+                }
+            }
+        } finally {
+            SqlUtils.closeCursor(cursor);
+        }
+    }
+
     protected void clearNotes() {
         db.delete(NOTES_TABLE, null, null);
     }
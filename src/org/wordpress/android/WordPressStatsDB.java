@@ -57,6 +57,13 @@ public class WordPressStatsDB extends SQLiteOpenHelper{
         db.execSQL(StatsBarChartDataTable.getInstance().toCreateQuery());
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // with write-ahead logging, the batch writes of StatsService don't block the content provider's queries
+        SqlUtils.applyJournalMode(db);
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         
@@ -128,7 +128,8 @@ public class ReaderCommentTable {
      * purge comments attached to posts that no longer exist
      */
     protected static int purge(SQLiteDatabase db) {
-        return db.delete("tbl_comments", "post_id NOT IN (SELECT DISTINCT post_id FROM tbl_posts)", null);
+        return db.delete("tbl_comments", "NOT EXISTS (SELECT 1 FROM tbl_posts WHERE tbl_posts.post_id = tbl_comments.post_id"
+                + " AND tbl_posts.blog_id = tbl_comments.blog_id)", null);
     }
 
     public static void deleteComment(ReaderPost post, long commentId) {
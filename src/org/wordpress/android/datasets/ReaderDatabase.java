@@ -2,6 +2,7 @@ package org.wordpress.android.datasets;
 
 import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
@@ -9,13 +10,20 @@ import android.os.Build;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.SqlUtils;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
+
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * database for all reader information
  */
 public class ReaderDatabase extends SQLiteOpenHelper {
     protected static final String DB_NAME = "wpreader.db";
-    private static final int DB_VERSION = 66;
+    private static final int DB_VERSION = 67;
+    // oldest version migrate() can upgrade from, older databases are reset
+    private static final int MIN_MIGRATABLE_VERSION = 66;
 
     /*
 	 *  database singleton
@@ -61,12 +69,20 @@ public class ReaderDatabase extends SQLiteOpenHelper {
         createAllTables(db);
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // with write-ahead logging, a sync writing posts doesn't block the reads of the reader's lists
+        SqlUtils.applyJournalMode(db);
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // for now just reset the db when upgrading, future versions may want to avoid this
-        // and modify table structures, etc., on upgrade while preserving data
         AppLog.i(T.READER, "Upgrading database from version " + oldVersion + " to version " + newVersion);
-        reset(db);
+        if (oldVersion < MIN_MIGRATABLE_VERSION || !migrate(db, oldVersion, newVersion)) {
+            AppLog.w(T.READER, "Unable to migrate database from version " + oldVersion + ", resetting it");
+            reset(db);
+        }
     }
 
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
@@ -97,6 +113,42 @@ public class ReaderDatabase extends SQLiteOpenHelper {
         ReaderBlogTable.dropTables(db);
     }
 
+    /*
+     * upgrades the schema one version at a time while keeping the existing data, returns false
+     * if a step is missing or fails. onUpgrade() runs in a transaction, so the steps are committed
+     * along the new version, and reset() can still clear a partially migrated db
+     */
+    private boolean migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        int version = oldVersion;
+        try {
+            while (version < newVersion) {
+                if (!migrateFrom(db, version)) {
+                    AppLog.w(T.READER, "No migration from database version " + version);
+                    return false;
+                }
+                version++;
+            }
+            return true;
+        } catch (SQLException e) {
+            AppLog.e(T.READER, "Failed migrating database from version " + version, e);
+            return false;
+        }
+    }
+
+    /*
+     * upgrades the schema from version to version + 1, each DB_VERSION bump adds its step here,
+     * and the matching change to createAllTables() for new installs
+     */
+    private static boolean migrateFrom(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 66:
+                ReaderPostTable.createIndexes(db);
+                return true;
+            default:
+                return false;
+        }
+    }
+
     /*
      * drop & recreate all tables (essentially clears the db of all data)
      */
@@ -111,56 +163,144 @@ public class ReaderDatabase extends SQLiteOpenHelper {
         }
     }
 
+    /*
+     * retention policy of the cached posts: the newest MAX_POSTS_PER_TAG of each tag are kept
+     * as long as they're not older than MAX_POST_AGE_DAYS, and the oldest posts are deleted
+     * while the database uses more than MAX_USED_BYTES, down to MIN_POSTS
+     */
+    private static final int MAX_POSTS_PER_TAG = 200;
+    private static final int MAX_POST_AGE_DAYS = 60;
+    private static final long MAX_USED_BYTES = 20 * 1024 * 1024;
+    private static final int MIN_POSTS = 100;
+    // posts are deleted in batches, each in its own transaction, so readers aren't held up
+    private static final int PURGE_BATCH_SIZE = 50;
+
+    private static final AtomicBoolean mIsPurging = new AtomicBoolean(false);
+
+    /*
+     * what a purge deleted, and the bytes it freed in the database file
+     */
+    static class PurgeResult {
+        int numPosts;
+        int numComments;
+        int numLikes;
+        int numThumbnails;
+        int numTags;
+        long bytesReclaimed;
+
+        @Override
+        public String toString() {
+            return String.format("%d posts, %d comments, %d likes, %d thumbnails, %d tags purged, %d bytes reclaimed",
+                    numPosts, numComments, numLikes, numThumbnails, numTags, bytesReclaimed);
+        }
+    }
+
     /*
      * purge older/unattached data - use purgeAsync() to do this in the background
      */
-    private static void purge() {
-        SQLiteDatabase db = getWritableDb();
+    private static PurgeResult purge() {
+        long minTimestamp = (System.currentTimeMillis() / 1000) - (MAX_POST_AGE_DAYS * 24L * 60 * 60);
+        return purge(getWritableDb(), MAX_POSTS_PER_TAG, minTimestamp, MAX_USED_BYTES, MIN_POSTS);
+    }
+
+    /*
+     * purge the posts beyond maxPostsPerTag, the posts older than minTimestamp (seconds) and the
+     * oldest posts while the db uses more than maxUsedBytes (keeping at least minPosts), then the
+     * data attached to them
+     */
+    static PurgeResult purge(SQLiteDatabase db, int maxPostsPerTag, long minTimestamp, long maxUsedBytes,
+                             int minPosts) {
+        PurgeResult result = new PurgeResult();
+        long usedBytesBefore = SqlUtils.getUsedBytes(db);
+        long numPostsBefore = SqlUtils.getRowCount(db, "tbl_posts");
+
+        // posts attached to tags that no longer exist, and the posts beyond the max per tag
         db.beginTransaction();
         try {
-            int numPostsDeleted = ReaderPostTable.purge(db);
-
-            // don't bother purging other data unless posts were purged
-            if (numPostsDeleted > 0) {
-                AppLog.i(T.READER, String.format("%d total posts purged", numPostsDeleted));
-
-                // purge unattached comments
-                int numCommentsDeleted = ReaderCommentTable.purge(db);
-                if (numCommentsDeleted > 0)
-                    AppLog.i(T.READER, String.format("%d comments purged", numCommentsDeleted));
-
-                // purge unattached likes
-                int numLikesDeleted = ReaderLikeTable.purge(db);
-                if (numLikesDeleted > 0)
-                    AppLog.i(T.READER, String.format("%d likes purged", numLikesDeleted));
-
-                // purge unattached thumbnails
-                int numThumbsPurged = ReaderThumbnailTable.purge(db);
-                if (numThumbsPurged > 0)
-                    AppLog.i(T.READER, String.format("%d thumbnails purged", numThumbsPurged));
-
-                // purge unattached tags
-                int numTagsPurged = ReaderTagTable.purge(db);
-                if (numTagsPurged > 0)
-                    AppLog.i(T.READER, String.format("%d tags purged", numTagsPurged));
+            ReaderPostTable.purgeTagOverflow(db, maxPostsPerTag);
+            ReaderPostTable.purge(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // posts that are too old
+        while (deleteOldestPosts(db, minTimestamp, PURGE_BATCH_SIZE) == PURGE_BATCH_SIZE) {
+            // next batch
+        }
+
+        // don't bother purging other data unless posts were purged
+        if (SqlUtils.getRowCount(db, "tbl_posts") < numPostsBefore) {
+            purgeUnattached(db, result);
+        }
+
+        // oldest posts while over the size budget, with the data attached to each batch so the
+        // used size reflects it. The newest minPosts are kept even if the other tables alone are
+        // over the budget
+        while (SqlUtils.getUsedBytes(db) > maxUsedBytes) {
+            long numOverMin = SqlUtils.getRowCount(db, "tbl_posts") - minPosts;
+            int batchSize = (int) Math.min(numOverMin, PURGE_BATCH_SIZE);
+            if (batchSize <= 0 || deleteOldestPosts(db, Long.MAX_VALUE, batchSize) == 0) {
+                break;
             }
+            purgeUnattached(db, result);
+        }
+
+        result.numPosts = (int) (numPostsBefore - SqlUtils.getRowCount(db, "tbl_posts"));
+        result.bytesReclaimed = Math.max(0, usedBytesBefore - SqlUtils.getUsedBytes(db));
+        return result;
+    }
+
+    /*
+     * purge the comments, likes, thumbnails and tags no longer attached to a post, adds the
+     * deleted rows to the result
+     */
+    private static void purgeUnattached(SQLiteDatabase db, PurgeResult result) {
+        db.beginTransaction();
+        try {
+            result.numComments += ReaderCommentTable.purge(db);
+            result.numLikes += ReaderLikeTable.purge(db);
+            result.numThumbnails += ReaderThumbnailTable.purge(db);
+            result.numTags += ReaderTagTable.purge(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /*
+     * deletes a batch of the oldest posts before maxTimestamp in its own transaction
+     */
+    private static int deleteOldestPosts(SQLiteDatabase db, long maxTimestamp, int batchSize) {
+        db.beginTransaction();
+        try {
+            int numDeleted = ReaderPostTable.deleteOldestPosts(db, maxTimestamp, batchSize);
             db.setTransactionSuccessful();
+            return numDeleted;
         } finally {
             db.endTransaction();
         }
     }
 
     /*
-     * async purge
+     * async purge, runs on the background tasks pool, a purge already running isn't repeated
      */
     public static void purgeAsync() {
-        new Thread() {
+        if (!mIsPurging.compareAndSet(false, true)) {
+            return;
+        }
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
-                purge();
+                try {
+                    PurgeResult result = purge();
+                    if (result.numPosts > 0) {
+                        AppLog.i(T.READER, result.toString());
+                    }
+                } finally {
+                    mIsPurging.set(false);
+                }
             }
-        }.start();
+        });
     }
-
-
 }
@@ -35,7 +35,8 @@ public class ReaderLikeTable {
      * purge likes attached to posts that no longer exist
      */
     protected static int purge(SQLiteDatabase db) {
-        return db.delete("tbl_post_likes", "post_id NOT IN (SELECT DISTINCT post_id FROM tbl_posts)", null);
+        return db.delete("tbl_post_likes", "NOT EXISTS (SELECT 1 FROM tbl_posts WHERE tbl_posts.post_id = tbl_post_likes.post_id"
+                + " AND tbl_posts.blog_id = tbl_post_likes.blog_id)", null);
     }
 
     /*
@@ -10,6 +10,9 @@ import org.wordpress.android.models.ReaderPostList;
 import org.wordpress.android.models.ReaderTag;
 import org.wordpress.android.util.SqlUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * tbl_posts contains all reader posts
  * tbl_post_tags stores the association between posts and tags (posts can exist in more than one tag)
@@ -43,6 +46,15 @@ public class ReaderPostTable {
           + "is_videopress,"        // 24
           + "tag_list";             // 25
 
+    // columns shown by the post list, the text of each post is only loaded by getPost() for
+    // the post detail, so a list doesn't hold the full HTML of all its posts
+    private static final String LIST_COLUMN_NAMES =
+            "tbl_posts.post_id, tbl_posts.blog_id, tbl_posts.pseudo_id, tbl_posts.author_name, tbl_posts.title,"
+          + " tbl_posts.excerpt, tbl_posts.url, tbl_posts.blog_url, tbl_posts.blog_name, tbl_posts.featured_image,"
+          + " tbl_posts.featured_video, tbl_posts.post_avatar, tbl_posts.timestamp, tbl_posts.published,"
+          + " tbl_posts.num_replies, tbl_posts.num_likes, tbl_posts.is_liked, tbl_posts.is_followed,"
+          + " tbl_posts.is_comments_open, tbl_posts.is_reblogged, tbl_posts.is_external, tbl_posts.is_private,"
+          + " tbl_posts.is_videopress, tbl_posts.tag_list";
 
     protected static void createTables(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE tbl_posts ("
@@ -81,6 +93,16 @@ public class ReaderPostTable {
                 + "   tag_name    TEXT NOT NULL COLLATE NOCASE,"
                 + "   PRIMARY KEY (post_id, blog_id, tag_name)"
                 + ")");
+
+        createIndexes(db);
+    }
+
+    /*
+     * the posts of a tag are looked up by tag name and listed newest first, added in version 67
+     */
+    protected static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_post_tags_tag_name ON tbl_post_tags(tag_name)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_posts_timestamp ON tbl_posts(timestamp)");
     }
 
     protected static void dropTables(SQLiteDatabase db) {
@@ -95,18 +117,78 @@ public class ReaderPostTable {
 
     /*
      * purge table of unattached posts - no need to wrap this in a transaction since this
-     * is only called from ReaderDatabase.purge() which already creates a transaction
+     * is only called from ReaderDatabase.purge() which already creates a transaction. The
+     * NOT EXISTS lookups use the primary keys of tbl_tags and tbl_post_tags
      */
     protected static int purge(SQLiteDatabase db) {
         // delete posts in tbl_post_tags attached to tags that no longer exist
-        int numDeleted = db.delete("tbl_post_tags", "tag_name NOT IN (SELECT DISTINCT tag_name FROM tbl_tags)", null);
+        int numDeleted = db.delete("tbl_post_tags",
+                "NOT EXISTS (SELECT 1 FROM tbl_tags WHERE tbl_tags.tag_name = tbl_post_tags.tag_name)", null);
 
         // delete posts in tbl_posts that no longer exist in tbl_post_tags
-        numDeleted += db.delete("tbl_posts", "pseudo_id NOT IN (SELECT DISTINCT pseudo_id FROM tbl_post_tags)", null);
+        numDeleted += db.delete("tbl_posts",
+                "NOT EXISTS (SELECT 1 FROM tbl_post_tags WHERE tbl_post_tags.post_id = tbl_posts.post_id"
+                + " AND tbl_post_tags.blog_id = tbl_posts.blog_id)", null);
+
+        return numDeleted;
+    }
+
+    /*
+     * detach each tag from its posts beyond the newest maxPostsPerTag, the posts left without
+     * a tag are then deleted by purge()
+     */
+    protected static int purgeTagOverflow(SQLiteDatabase db, int maxPostsPerTag) {
+        List<String> tagNames = new ArrayList<String>();
+        Cursor cursor = db.rawQuery("SELECT DISTINCT tag_name FROM tbl_post_tags", null);
+        try {
+            while (cursor.moveToNext()) {
+                tagNames.add(cursor.getString(0));
+            }
+        } finally {
+            SqlUtils.closeCursor(cursor);
+        }
 
+        int numDeleted = 0;
+        String where = "tag_name=? AND pseudo_id IN (SELECT tbl_post_tags.pseudo_id FROM tbl_post_tags, tbl_posts"
+                     + " WHERE tbl_post_tags.tag_name=?"
+                     + " AND tbl_posts.post_id = tbl_post_tags.post_id AND tbl_posts.blog_id = tbl_post_tags.blog_id"
+                     + " ORDER BY tbl_posts.timestamp DESC LIMIT -1 OFFSET " + Integer.toString(maxPostsPerTag) + ")";
+        for (String tagName : tagNames) {
+            numDeleted += db.delete("tbl_post_tags", where, new String[]{tagName, tagName});
+        }
         return numDeleted;
     }
 
+    /*
+     * deletes up to maxPosts of the oldest posts whose timestamp is before maxTimestamp, along
+     * with their tag associations, returns the number of posts deleted. Their comments, likes
+     * and thumbnails are deleted by the purge() of those tables
+     */
+    protected static int deleteOldestPosts(SQLiteDatabase db, long maxTimestamp, int maxPosts) {
+        Cursor cursor = db.rawQuery(
+                "SELECT post_id, blog_id FROM tbl_posts WHERE timestamp < ? ORDER BY timestamp LIMIT "
+                + Integer.toString(maxPosts), new String[]{Long.toString(maxTimestamp)});
+        SQLiteStatement stmtPosts = db.compileStatement("DELETE FROM tbl_posts WHERE post_id=?1 AND blog_id=?2");
+        SQLiteStatement stmtTags = db.compileStatement("DELETE FROM tbl_post_tags WHERE post_id=?1 AND blog_id=?2");
+        try {
+            int numDeleted = 0;
+            while (cursor.moveToNext()) {
+                stmtPosts.bindLong(1, cursor.getLong(0));
+                stmtPosts.bindLong(2, cursor.getLong(1));
+                stmtPosts.execute();
+                stmtTags.bindLong(1, cursor.getLong(0));
+                stmtTags.bindLong(2, cursor.getLong(1));
+                stmtTags.execute();
+                numDeleted++;
+            }
+            return numDeleted;
+        } finally {
+            SqlUtils.closeCursor(cursor);
+            SqlUtils.closeStatement(stmtPosts);
+            SqlUtils.closeStatement(stmtTags);
+        }
+    }
+
     public static boolean isEmpty() {
         return (getNumPosts() == 0);
     }
@@ -141,8 +223,17 @@ public class ReaderPostTable {
     }
 
     public static ReaderPost getPost(long blogId, long postId) {
+        return getPost(blogId, postId, false);
+    }
+
+    /*
+     * excludeText = true returns the post as shown by the post list, without its text
+     */
+    public static ReaderPost getPost(long blogId, long postId, boolean excludeText) {
         String[] args = new String[] {Long.toString(blogId), Long.toString(postId)};
-        Cursor c = ReaderDatabase.getReadableDb().rawQuery("SELECT * FROM tbl_posts WHERE blog_id=? AND post_id=? LIMIT 1", args);
+        String columns = (excludeText ? LIST_COLUMN_NAMES : "*");
+        Cursor c = ReaderDatabase.getReadableDb().rawQuery(
+                "SELECT " + columns + " FROM tbl_posts WHERE blog_id=? AND post_id=? LIMIT 1", args);
         try {
             if (!c.moveToFirst())
                 return null;
@@ -359,11 +450,14 @@ public class ReaderPostTable {
         }
     }
 
+    /*
+     * returns the posts with this tag as shown by the post list, without their text
+     */
     public static ReaderPostList getPostsWithTag(String tagName, int maxPosts) {
         if (TextUtils.isEmpty(tagName))
             return new ReaderPostList();
 
-        String sql = "SELECT tbl_posts.* FROM tbl_posts, tbl_post_tags"
+        String sql = "SELECT " + LIST_COLUMN_NAMES + " FROM tbl_posts, tbl_post_tags"
                    + " WHERE tbl_posts.post_id = tbl_post_tags.post_id"
                    + " AND tbl_posts.blog_id = tbl_post_tags.blog_id"
                    + " AND tbl_post_tags.tag_name=?";
@@ -408,6 +502,21 @@ public class ReaderPostTable {
         ReaderDatabase.getWritableDb().execSQL(sql, args);
     }
 
+    /*
+     * updates the like status of the post without rewriting the rest of it, since the passed
+     * post may come from the post list which doesn't load the text
+     */
+    public static void setPostLiked(ReaderPost post, boolean isLiked) {
+        if (post == null)
+            return;
+
+        String sql = "UPDATE tbl_posts SET is_liked=" + SqlUtils.boolToSql(isLiked)
+                  + ", num_likes=" + Integer.toString(post.numLikes)
+                  + " WHERE blog_id=? AND post_id=?";
+        String[] args = {Long.toString(post.blogId), Long.toString(post.postId)};
+        ReaderDatabase.getWritableDb().execSQL(sql, args);
+    }
+
     /*
      * stores column indexes for a specific cursor - used when loading multiple posts from
      * a cursor to avoid having to call getColumnIndex() for every row
@@ -505,7 +614,9 @@ public class ReaderPostTable {
         post.setFeaturedVideo(c.getString(cols.idx_featured_video));
 
         post.setTitle(c.getString(cols.idx_title));
-        post.setText(c.getString(cols.idx_text));
+        if (cols.idx_text != -1) {
+            post.setText(c.getString(cols.idx_text));
+        }
         post.setUrl(c.getString(cols.idx_url));
         post.setPostAvatar(c.getString(cols.idx_post_avatar));
 
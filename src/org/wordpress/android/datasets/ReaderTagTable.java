@@ -54,7 +54,7 @@ public class ReaderTagTable {
     }
 
     protected static int purge(SQLiteDatabase db) {
-        return db.delete("tbl_tag_updates", "tag_name NOT IN (SELECT DISTINCT tag_name FROM tbl_tags)", null);
+        return db.delete("tbl_tag_updates", "NOT EXISTS (SELECT 1 FROM tbl_tags WHERE tbl_tags.tag_name = tbl_tag_updates.tag_name)", null);
     }
 
     /*
@@ -26,7 +26,7 @@ public class ReaderThumbnailTable {
      * purge table of thumbnails attached to posts that no longer exist
      */
     protected static int purge(SQLiteDatabase db) {
-        return db.delete("tbl_thumbnails", "post_id NOT IN (SELECT DISTINCT post_id FROM tbl_posts)", null);
+        return db.delete("tbl_thumbnails", "NOT EXISTS (SELECT 1 FROM tbl_posts WHERE tbl_posts.post_id = tbl_thumbnails.post_id)", null);
     }
 
     public static void addThumbnail(long postId, String fullUrl, String thumbnailUrl) {
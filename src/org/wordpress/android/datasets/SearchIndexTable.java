@@ -0,0 +1,196 @@
+package org.wordpress.android.datasets;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.HtmlUtils;
+import org.wordpress.android.util.SqlUtils;
+import org.wordpress.android.util.StringUtils;
+
+import java.util.Locale;
+
+/**
+ * full-text search indexes over the local posts, media and themes, each index is an FTS3 table
+ * whose docid is the id of the indexed row. Triggers on the indexed tables drop the changed rows
+ * from the index and queue them in the pending table, updateIndex() indexes the queued rows before
+ * searching. The rows are indexed from Java so the HTML of the post content can be stripped, SQLite
+ * can't do that in a trigger. FTS3 rather than FTS4 since FTS4 isn't available before API 11.
+ */
+public class SearchIndexTable {
+    public static final String POSTS_SEARCH_TABLE = "posts_search";
+    public static final String MEDIA_SEARCH_TABLE = "media_search";
+    public static final String THEMES_SEARCH_TABLE = "themes_search";
+
+    // rows written since they were last indexed: name of the index, docid of the row
+    private static final String PENDING_TABLE = "search_pending";
+
+    private static final String[] TRIGGER_NAMES = {
+            "posts_search_insert", "posts_search_update", "posts_search_delete",
+            "media_search_insert", "media_search_update", "media_search_delete",
+            "themes_search_insert", "themes_search_update", "themes_search_delete"};
+
+    public static void createTables(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + POSTS_SEARCH_TABLE + " USING fts3 (title, content)");
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + MEDIA_SEARCH_TABLE + " USING fts3 (title, caption, description)");
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + THEMES_SEARCH_TABLE + " USING fts3 (name, description)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + PENDING_TABLE + " ("
+                 + " index_name TEXT NOT NULL,"
+                 + " docid      INTEGER NOT NULL,"
+                 + " PRIMARY KEY (index_name, docid))");
+
+        createTriggers(db, "posts", "id", POSTS_SEARCH_TABLE, "title, description, mt_text_more");
+        createTriggers(db, "media", "id", MEDIA_SEARCH_TABLE, "title, caption, description");
+        createTriggers(db, "themes", "_id", THEMES_SEARCH_TABLE, "name, description");
+    }
+
+    private static void createTriggers(SQLiteDatabase db, String table, String idColumn, String searchTable,
+                                       String indexedColumns) {
+        String queueRow = " INSERT OR IGNORE INTO " + PENDING_TABLE + " (index_name, docid)"
+                        + " VALUES ('" + searchTable + "', new." + idColumn + ");";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_insert AFTER INSERT ON " + table + " BEGIN"
+                 + queueRow
+                 + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_update AFTER UPDATE OF " + indexedColumns
+                 + " ON " + table + " BEGIN"
+                 + " DELETE FROM " + searchTable + " WHERE docid=old." + idColumn + ";"
+                 + queueRow
+                 + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_delete AFTER DELETE ON " + table + " BEGIN"
+                 + " DELETE FROM " + searchTable + " WHERE docid=old." + idColumn + ";"
+                 + " DELETE FROM " + PENDING_TABLE + " WHERE index_name='" + searchTable + "' AND docid=old." + idColumn + ";"
+                 + " END;");
+    }
+
+    private static void dropTables(SQLiteDatabase db) {
+        for (String triggerName : TRIGGER_NAMES) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + triggerName);
+        }
+        db.execSQL("DROP TABLE IF EXISTS " + POSTS_SEARCH_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + MEDIA_SEARCH_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + THEMES_SEARCH_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + PENDING_TABLE);
+    }
+
+    /*
+     * recreate the indexes and queue all the existing rows, they're indexed by the next
+     * updateIndex() rather than here so the database upgrade stays quick
+     */
+    public static void reset(SQLiteDatabase db) {
+        AppLog.i(AppLog.T.DB, "resetting search indexes");
+        db.beginTransaction();
+        try {
+            dropTables(db);
+            createTables(db);
+            db.execSQL("INSERT INTO " + PENDING_TABLE + " (index_name, docid)"
+                     + " SELECT '" + POSTS_SEARCH_TABLE + "', id FROM posts");
+            db.execSQL("INSERT INTO " + PENDING_TABLE + " (index_name, docid)"
+                     + " SELECT '" + MEDIA_SEARCH_TABLE + "', id FROM media");
+            db.execSQL("INSERT INTO " + PENDING_TABLE + " (index_name, docid)"
+                     + " SELECT '" + THEMES_SEARCH_TABLE + "', _id FROM themes");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public static boolean hasPendingRows(SQLiteDatabase db) {
+        return SqlUtils.boolForQuery(db, "SELECT EXISTS (SELECT 1 FROM " + PENDING_TABLE + ")", null);
+    }
+
+    public static void updateIndexes(SQLiteDatabase db) {
+        updateIndex(db, POSTS_SEARCH_TABLE);
+        updateIndex(db, MEDIA_SEARCH_TABLE);
+        updateIndex(db, THEMES_SEARCH_TABLE);
+    }
+
+    /*
+     * index the rows queued for the passed index, call before searching it
+     */
+    public static void updateIndex(SQLiteDatabase db, String searchTable) {
+        String query;
+        if (POSTS_SEARCH_TABLE.equals(searchTable)) {
+            query = "SELECT id, title, description, mt_text_more FROM posts";
+        } else if (MEDIA_SEARCH_TABLE.equals(searchTable)) {
+            query = "SELECT id, title, caption, description FROM media";
+        } else if (THEMES_SEARCH_TABLE.equals(searchTable)) {
+            query = "SELECT _id, name, description FROM themes";
+        } else {
+            throw new IllegalArgumentException("unknown search index " + searchTable);
+        }
+        String pendingIds = " WHERE " + (searchTable.equals(THEMES_SEARCH_TABLE) ? "_id" : "id")
+                + " IN (SELECT docid FROM " + PENDING_TABLE + " WHERE index_name=?)";
+        String[] args = {searchTable};
+
+        // the transaction keeps the triggers from queueing rows between the query and the cleanup
+        db.beginTransaction();
+        SQLiteStatement stmt = null;
+        Cursor c = null;
+        try {
+            c = db.rawQuery(query + pendingIds, args);
+            if (c.getCount() > 0) {
+                AppLog.d(AppLog.T.DB, "indexing " + c.getCount() + " rows in " + searchTable);
+                stmt = db.compileStatement(getInsertSql(searchTable));
+            }
+            while (c.moveToNext()) {
+                stmt.bindLong(1, c.getLong(0));
+                if (POSTS_SEARCH_TABLE.equals(searchTable)) {
+                    // the content is HTML, only its text is indexed
+                    stmt.bindString(2, StringUtils.notNullStr(c.getString(1)));
+                    stmt.bindString(3, stripHtml(c.getString(2)) + " " + stripHtml(c.getString(3)));
+                } else {
+                    for (int i = 1; i < c.getColumnCount(); i++) {
+                        stmt.bindString(i + 1, StringUtils.notNullStr(c.getString(i)));
+                    }
+                }
+                stmt.executeInsert();
+                stmt.clearBindings();
+            }
+            db.delete(PENDING_TABLE, "index_name=?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            SqlUtils.closeCursor(c);
+            SqlUtils.closeStatement(stmt);
+        }
+    }
+
+    private static String getInsertSql(String searchTable) {
+        if (POSTS_SEARCH_TABLE.equals(searchTable)) {
+            return "INSERT INTO " + POSTS_SEARCH_TABLE + " (docid, title, content) VALUES (?1, ?2, ?3)";
+        } else if (MEDIA_SEARCH_TABLE.equals(searchTable)) {
+            return "INSERT INTO " + MEDIA_SEARCH_TABLE + " (docid, title, caption, description) VALUES (?1, ?2, ?3, ?4)";
+        } else {
+            return "INSERT INTO " + THEMES_SEARCH_TABLE + " (docid, name, description) VALUES (?1, ?2, ?3)";
+        }
+    }
+
+    private static String stripHtml(String html) {
+        return StringUtils.notNullStr(HtmlUtils.fastStripHtml(html));
+    }
+
+    /*
+     * returns the MATCH expression for what the user typed: every word must match, as a prefix
+     * so results show up while typing. The FTS query syntax characters are dropped, returns null
+     * if nothing is left to search for
+     */
+    public static String getMatchQuery(String searchTerm) {
+        if (searchTerm == null) {
+            return null;
+        }
+        String cleaned = searchTerm.toLowerCase(Locale.getDefault()).replaceAll("[\"*():^\\-]", " ").trim();
+        if (cleaned.length() == 0) {
+            return null;
+        }
+        // lower case, so the words can't be read as the AND/OR/NOT/NEAR operators
+        StringBuilder query = new StringBuilder();
+        for (String word : cleaned.split("\\s+")) {
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(word).append('*');
+        }
+        return query.toString();
+    }
+}
@@ -26,6 +26,7 @@ public class Blog {
     private String imagePlacement;
     private boolean featuredImageCapable;
     private boolean fullSizeImage;
+    private boolean deferFullSizeImage;
     private boolean scaledImage;
     private int scaledImageWidth;
     private String maxImageWidth;
@@ -180,6 +181,18 @@ public class Blog {
         this.fullSizeImage = fullSizeImage;
     }
 
+    /*
+     * when true, the full size images linked from resized ones are uploaded later on Wi-Fi or
+     * while charging, see DeferredMediaUploadService
+     */
+    public boolean isDeferFullSizeImage() {
+        return deferFullSizeImage;
+    }
+
+    public void setDeferFullSizeImage(boolean deferFullSizeImage) {
+        this.deferFullSizeImage = deferFullSizeImage;
+    }
+
     public String getMaxImageWidth() {
         return StringUtils.notNullStr(maxImageWidth);
     }
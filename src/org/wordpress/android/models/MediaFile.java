@@ -1,14 +1,8 @@
 package org.wordpress.android.models;
 
-import android.webkit.MimeTypeMap;
-
 import org.wordpress.android.WordPress;
-import org.wordpress.android.util.MapUtils;
 import org.wordpress.android.util.StringUtils;
 
-import java.util.Date;
-import java.util.Map;
-
 public class MediaFile {
 
     protected int id;
@@ -32,51 +26,7 @@ public class MediaFile {
     private long dateCreatedGmt;
     private String uploadState = null;
     private String mediaId;
-
-    public MediaFile(String blogId, Map<?, ?> resultMap) {
-        boolean isDotCom = (WordPress.getCurrentBlog() != null && WordPress.getCurrentBlog().isDotcomFlag());
-
-        setBlogId(blogId);
-        setMediaId(MapUtils.getMapStr(resultMap, "attachment_id"));
-        setPostID(MapUtils.getMapLong(resultMap, "parent"));
-        setTitle(MapUtils.getMapStr(resultMap, "title"));
-        setCaption(MapUtils.getMapStr(resultMap, "caption"));
-        setDescription(MapUtils.getMapStr(resultMap, "description"));
-        setVideoPressShortCode(MapUtils.getMapStr(resultMap, "videopress_shortcode"));
-
-        // get the file name from the link
-        String link = MapUtils.getMapStr(resultMap, "link");
-        setFileName(new String(link).replaceAll("^.*/([A-Za-z0-9_-]+)\\.\\w+$", "$1"));
-
-        String fileType = new String(link).replaceAll(".*\\.(\\w+)$", "$1").toLowerCase();
-        String fileMimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(fileType);
-        setMimeType(fileMimeType);
-
-        // make the file urls be https://... so that we can get these images with oauth when the blogs are private
-        // assume no https for images in self-hosted blogs
-        String fileUrl = MapUtils.getMapStr(resultMap, "link");
-        if (isDotCom)
-            fileUrl = fileUrl.replace("http:", "https:");
-        setFileURL(fileUrl);
-
-        String thumbnailURL = MapUtils.getMapStr(resultMap, "thumbnail");
-        if (thumbnailURL.startsWith("http")) {
-            if (isDotCom)
-                thumbnailURL = thumbnailURL.replace("http:", "https:");
-            setThumbnailURL(thumbnailURL);
-        }
-
-        Date date = MapUtils.getMapDate(resultMap, "date_created_gmt");
-        if (date != null)
-            setDateCreatedGMT(date.getTime());
-
-        Object meta = resultMap.get("metadata");
-        if(meta != null && meta instanceof Map) {
-            Map<?, ?> metadata = (Map<?, ?>) meta;
-            setWidth(MapUtils.getMapInt(metadata, "width"));
-            setHeight(MapUtils.getMapInt(metadata, "height"));
-        }
-    }
+    private String contentHash; // SHA-1 of the file, set when its content is serialized for upload
 
     public MediaFile() {
         // default constructor
@@ -116,6 +66,14 @@ public class MediaFile {
         this.id = id;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public String getMediaId() {
         return mediaId;
     }
@@ -12,6 +12,7 @@ import android.text.TextUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.wordpress.android.WordPress;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.DateTimeUtils;
@@ -49,15 +50,21 @@ public class Note {
                                        ACTION_SPAM}
 
     private Map<String,JSONObject> mActions;
-    private final JSONObject mNoteJSON;
-    private SpannableStringBuilder mComment = new SpannableStringBuilder();
+    private JSONObject mNoteJSON;
+    private SpannableStringBuilder mComment;
     private boolean mPlaceholder = false;
+    // notes table id of a note loaded from the list columns, its JSON is read from the db when needed
+    private int mLocalTableId;
 
     private int mBlogId;
     private int mPostId;
     private long mCommentId;
     private long mCommentParentId;
+    private boolean mHasMetaIds;
 
+    private transient String mId;
+    private transient String mType;
+    private transient String mUnreadCount;
     private transient String mCommentPreview;
     private transient String mSubject;
     private transient String mIconUrl;
@@ -77,6 +84,23 @@ public class Note {
         preloadContent();
     }
 
+    /**
+     * Create a note from the columns stored by WordPressDB.addNote(), used by the notes list so it
+     * doesn't parse the JSON of every note. The JSON is only read from the db once a field that
+     * isn't stored in a column is needed, ie: once the note is opened
+     */
+    public Note(int localTableId, String id, String type, String subject, String iconUrl, String unreadCount,
+                String timestamp, String commentPreview) {
+        mLocalTableId = localTableId;
+        mId = id;
+        mType = type;
+        mSubject = subject;
+        mIconUrl = iconUrl;
+        mUnreadCount = unreadCount;
+        mTimestamp = timestamp;
+        mCommentPreview = commentPreview;
+    }
+
     /**
      * Create a placeholder note from a Push Notification payload
      */
@@ -133,13 +157,24 @@ public class Note {
     }
 
     public JSONObject toJSONObject(){
+        if (mNoteJSON == null) {
+            mNoteJSON = WordPress.wpDB.getNoteJSON(mLocalTableId);
+            if (mNoteJSON == null) {
+                AppLog.w(T.NOTIFS, "missing JSON for note " + mId);
+                mNoteJSON = new JSONObject();
+            }
+        }
         return mNoteJSON;
     }
     public String getId(){
-        return queryJSON("id", "0");
+        if (mId == null)
+            mId = queryJSON("id", "0");
+        return mId;
     }
     public String getType(){
-        return queryJSON("type", NOTE_UNKNOWN_TYPE);
+        if (mType == null)
+            mType = queryJSON("type", NOTE_UNKNOWN_TYPE);
+        return mType;
     }
     private Boolean isType(String type){
         return getType().equals(type);
@@ -182,6 +217,10 @@ public class Note {
      * Gets the comment's text with getCommentText() and sends it through HTML.fromHTML
      */
     Spanned getCommentBody(){
+        if (mComment == null) {
+            // Cleans up emoticons
+            mComment = (isCommentType() ? HtmlUtils.fromHtml(getCommentText()) : new SpannableStringBuilder());
+        }
         return mComment;
     }
 
@@ -214,7 +253,9 @@ public class Note {
      * by an Integer. We can handle a simple string.
      */
     public String getUnreadCount(){
-        return queryJSON("unread", "0");
+        if (mUnreadCount == null)
+            mUnreadCount = queryJSON("unread", "0");
+        return mUnreadCount;
     }
 
     /**
@@ -222,7 +263,8 @@ public class Note {
      */
     public void setUnreadCount(String count){
         try {
-            mNoteJSON.putOpt("unread", count);
+            toJSONObject().putOpt("unread", count);
+            mUnreadCount = null;
         } catch (JSONException e){
             AppLog.e(T.NOTIFS, "Failed to set unread property", e);
         }
@@ -331,9 +373,8 @@ public class Note {
      **/
     void preloadContent(){
         if (isCommentType()) {
-            // pre-load the comment HTML for being displayed. Cleans up emoticons.
-            mComment = HtmlUtils.fromHtml(getCommentText());
-            // pre-load the preview text
+            // pre-load the comment HTML for being displayed and the preview text
+            getCommentBody();
             getCommentPreview();
         }
 
@@ -350,6 +391,7 @@ public class Note {
      * ids={"site":61509427,"self":993925505,"post":161,"comment":178,"comment_parent":0}
      */
     private void preloadMetaIds() {
+        mHasMetaIds = true;
         JSONObject jsonMeta = getJSONMeta();
         if (jsonMeta == null)
             return;
@@ -363,15 +405,23 @@ public class Note {
     }
 
     public int getBlogId() {
+        if (!mHasMetaIds)
+            preloadMetaIds();
         return mBlogId;
     }
     public int getPostId() {
+        if (!mHasMetaIds)
+            preloadMetaIds();
         return mPostId;
     }
     public long getCommentId() {
+        if (!mHasMetaIds)
+            preloadMetaIds();
         return mCommentId;
     }
     public long getCommentParentId() {
+        if (!mHasMetaIds)
+            preloadMetaIds();
         return mCommentParentId;
     }
 
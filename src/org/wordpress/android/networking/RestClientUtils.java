@@ -214,21 +214,32 @@ public class RestClientUtils {
     }
 
     /**
-     * Make GET request with params
+     * Make GET request with params, an identical GET already in flight is reused instead of sending a new one
      */
     public Request<JSONObject> get(String path, Map<String, String> params, RetryPolicy retryPolicy, Listener listener,
                     ErrorListener errorListener) {
         // turn params into querystring
+        String url = RestClient.getAbsoluteURL(path, params);
+        return RestRequestCoalescer.get(url, listener, errorListener, newGetSender(url, retryPolicy));
+    }
 
-        RestRequest request = mRestClient.makeRequest(Method.GET, RestClient.getAbsoluteURL(path, params), null,
-                                                      listener, errorListener);
-        if (retryPolicy == null) {
-            retryPolicy = new DefaultRetryPolicy(REST_TIMEOUT_MS, REST_MAX_RETRIES_GET, REST_BACKOFF_MULT);
-        }
-        request.setRetryPolicy(retryPolicy);
-        AuthenticatorRequest authCheck = new AuthenticatorRequest(request, errorListener, mRestClient, mAuthenticator);
-        authCheck.send();
-        return request;
+    private RestRequestCoalescer.RequestSender newGetSender(final String url, final RetryPolicy retryPolicy) {
+        return new RestRequestCoalescer.RequestSender() {
+            @Override
+            public Request<JSONObject> send(Listener listener, ErrorListener errorListener) {
+                RestRequest request = mRestClient.makeRequest(Method.GET, url, null, listener, errorListener);
+                if (retryPolicy != null) {
+                    request.setRetryPolicy(retryPolicy);
+                } else {
+                    request.setRetryPolicy(new DefaultRetryPolicy(REST_TIMEOUT_MS, REST_MAX_RETRIES_GET,
+                            REST_BACKOFF_MULT));
+                }
+                AuthenticatorRequest authCheck = new AuthenticatorRequest(request, errorListener, mRestClient,
+                        mAuthenticator);
+                authCheck.send();
+                return request;
+            }
+        };
     }
 
     /**
@@ -253,15 +264,9 @@ public class RestClientUtils {
             throws InterruptedException, ExecutionException, TimeoutException {
 
         RequestFuture<JSONObject> future = RequestFuture.newFuture();
-        RestRequest request = mRestClient.makeRequest(Method.GET, RestClient.getAbsoluteURL(path, params), null, future, future);
-
-        if (retryPolicy == null) {
-            retryPolicy = new DefaultRetryPolicy(REST_TIMEOUT_MS, REST_MAX_RETRIES_GET, REST_BACKOFF_MULT);
-        }
-        request.setRetryPolicy(retryPolicy);
-
-        AuthenticatorRequest authCheck = new AuthenticatorRequest(request, null, mRestClient, mAuthenticator);
-        authCheck.send(); //this insert the request into the queue. //TODO: Verify that everything is OK on REST calls without a valid token
+        String url = RestClient.getAbsoluteURL(path, params);
+        //this insert the request into the queue. //TODO: Verify that everything is OK on REST calls without a valid token
+        RestRequestCoalescer.get(url, future, future, newGetSender(url, retryPolicy));
         JSONObject response = future.get();
         return response;
     }
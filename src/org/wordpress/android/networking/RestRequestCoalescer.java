@@ -0,0 +1,189 @@
+package org.wordpress.android.networking;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.wordpress.rest.RestRequest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical REST GET requests: while a GET is in flight, a GET for the same url doesn't
+ * go over the wire again, its listeners are attached to the pending request.
+ * Each caller gets its own request handle and its own copy of the response. Cancelling a handle only
+ * detaches that caller, the pending request is cancelled once none of its callers waits for it.
+ */
+class RestRequestCoalescer {
+    interface RequestSender {
+        Request<JSONObject> send(RestRequest.Listener listener, RestRequest.ErrorListener errorListener);
+    }
+
+    private static final Map<String, PendingGet> sPendingGets = new HashMap<String, PendingGet>();
+
+    private RestRequestCoalescer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Attach the listeners to the pending GET for this url, or send it with sender
+     *
+     * @return the request handle of this caller
+     */
+    static Request<JSONObject> get(String url, Response.Listener<JSONObject> listener,
+                                   Response.ErrorListener errorListener, RequestSender sender) {
+        synchronized (sPendingGets) {
+            PendingGet pendingGet = sPendingGets.get(url);
+            if (pendingGet != null && pendingGet.mRequest != null && !pendingGet.mRequest.isCanceled()) {
+                AppLog.d(T.API, "coalescing duplicate GET " + url);
+                return pendingGet.addCaller(listener, errorListener);
+            }
+            pendingGet = new PendingGet(url);
+            CallerRequest caller = pendingGet.addCaller(listener, errorListener);
+            sPendingGets.put(url, pendingGet);
+            pendingGet.mRequest = sender.send(pendingGet, pendingGet);
+            return caller;
+        }
+    }
+
+    /*
+     * the caller gets its own copy of the response, null if it can't be copied
+     */
+    private static JSONObject copyOf(JSONObject response) {
+        try {
+            return new JSONObject(response.toString());
+        } catch (JSONException e) {
+            AppLog.e(T.API, e);
+            return null;
+        }
+    }
+
+    /**
+     * Request handle given to one caller of a coalesced GET, it's never queued: the pending request
+     * delivers its response (or error) to the handles of the callers still waiting for it
+     */
+    private static class CallerRequest extends Request<JSONObject> {
+        private final PendingGet mPendingGet;
+        private final Response.Listener<JSONObject> mListener;
+
+        CallerRequest(PendingGet pendingGet, Response.Listener<JSONObject> listener,
+                      Response.ErrorListener errorListener) {
+            super(Method.GET, pendingGet.mUrl, errorListener);
+            mPendingGet = pendingGet;
+            mListener = listener;
+        }
+
+        @Override
+        public void cancel() {
+            super.cancel();
+            mPendingGet.removeCaller(this);
+        }
+
+        @Override
+        protected Response<JSONObject> parseNetworkResponse(NetworkResponse response) {
+            // not reached, the pending request parses the response
+            return Response.error(new ParseError(response));
+        }
+
+        @Override
+        protected void deliverResponse(JSONObject response) {
+            if (mListener != null) {
+                mListener.onResponse(response);
+            }
+        }
+    }
+
+    private static class PendingGet implements RestRequest.Listener, RestRequest.ErrorListener {
+        private final String mUrl;
+        private final List<CallerRequest> mCallers = new ArrayList<CallerRequest>();
+        private Request<JSONObject> mRequest;
+
+        PendingGet(String url) {
+            mUrl = url;
+        }
+
+        private CallerRequest addCaller(Response.Listener<JSONObject> listener, Response.ErrorListener errorListener) {
+            CallerRequest caller = new CallerRequest(this, listener, errorListener);
+            mCallers.add(caller);
+            return caller;
+        }
+
+        /*
+         * the request is only cancelled when its last caller is removed
+         */
+        private void removeCaller(CallerRequest caller) {
+            Request<JSONObject> request;
+            synchronized (sPendingGets) {
+                if (!mCallers.remove(caller) || !mCallers.isEmpty()) {
+                    return;
+                }
+                detach();
+                request = mRequest;
+            }
+            if (request != null) {
+                request.cancel();
+            }
+        }
+
+        /*
+         * the request is done, later GETs for the same url go over the wire again
+         */
+        private void detach() {
+            synchronized (sPendingGets) {
+                if (sPendingGets.get(mUrl) == this) {
+                    sPendingGets.remove(mUrl);
+                }
+            }
+        }
+
+        private List<CallerRequest> detachCallers() {
+            synchronized (sPendingGets) {
+                detach();
+                List<CallerRequest> callers = new ArrayList<CallerRequest>(mCallers);
+                mCallers.clear();
+                return callers;
+            }
+        }
+
+        @Override
+        public void onResponse(JSONObject response) {
+            List<CallerRequest> callers = detachCallers();
+            for (int i = 0; i < callers.size(); i++) {
+                CallerRequest caller = callers.get(i);
+                if (caller.isCanceled()) {
+                    continue;
+                }
+                caller.markDelivered();
+                // the last caller gets the response itself, the others get a copy made before it's handed out
+                JSONObject callerResponse = response;
+                if (response != null && i < callers.size() - 1) {
+                    callerResponse = copyOf(response);
+                    if (callerResponse == null) {
+                        caller.deliverError(new ParseError());
+                        continue;
+                    }
+                }
+                caller.deliverResponse(callerResponse);
+            }
+        }
+
+        @Override
+        public void onErrorResponse(VolleyError error) {
+            for (CallerRequest caller : detachCallers()) {
+                if (!caller.isCanceled()) {
+                    caller.markDelivered();
+                    caller.deliverError(error);
+                }
+            }
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.xmlrpc.android.XMLRPCConnectionManager;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
@@ -105,6 +106,8 @@ public class SelfSignedSSLCertsManager {
         saveTrustStore();
         // reset the Volley queue Otherwise new certs are not used
         WordPress.setupVolleyQueue();
+        // same for the pooled XML-RPC connections
+        XMLRPCConnectionManager.reset();
     }
 
     public void addCertificate(X509Certificate cert) throws IOException, GeneralSecurityException {
@@ -14,6 +14,7 @@ import com.actionbarsherlock.view.MenuItem;
 import org.wordpress.android.R;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.ToastUtils;
+import org.xmlrpc.android.XMLRPCStats;
 
 /**
  * views the activity log (see utils/AppLog.java)
@@ -42,7 +43,7 @@ public class AppLogViewerActivity extends SherlockFragmentActivity {
     private void shareAppLog() {
         Intent intent = new Intent(Intent.ACTION_SEND);
         intent.setType("text/plain");
-        intent.putExtra(Intent.EXTRA_TEXT, AppLog.toPlainText(this));
+        intent.putExtra(Intent.EXTRA_TEXT, AppLog.toPlainText(this) + "\n" + XMLRPCStats.toPlainText());
         intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.app_name) + " " + getTitle());
         try {
             startActivity(Intent.createChooser(intent, getString(R.string.reader_btn_share)));
@@ -0,0 +1,94 @@
+package org.wordpress.android.ui;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.text.method.ScrollingMovementMethod;
+import android.widget.TextView;
+
+import com.actionbarsherlock.app.ActionBar;
+import com.actionbarsherlock.app.SherlockFragmentActivity;
+import com.actionbarsherlock.view.Menu;
+import com.actionbarsherlock.view.MenuItem;
+
+import org.wordpress.android.R;
+import org.wordpress.android.util.ToastUtils;
+import org.xmlrpc.android.XMLRPCStats;
+
+/**
+ * views the XML-RPC call stats (see org.xmlrpc.android.XMLRPCStats)
+ */
+public class DiagnosticsActivity extends SherlockFragmentActivity {
+    private TextView mTxtStats;
+    private static final int ID_REFRESH = 1;
+    private static final int ID_RESET = 2;
+    private static final int ID_SHARE = 3;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.logviewer_activity);
+
+        ActionBar actionBar = getSupportActionBar();
+        actionBar.setNavigationMode(ActionBar.NAVIGATION_MODE_STANDARD);
+        actionBar.setDisplayShowTitleEnabled(true);
+        actionBar.setDisplayHomeAsUpEnabled(true);
+
+        mTxtStats = (TextView) findViewById(R.id.text_log);
+        // this is necessary to enable the textView to scroll vertically
+        mTxtStats.setMovementMethod(ScrollingMovementMethod.getInstance());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showStats();
+    }
+
+    private void showStats() {
+        mTxtStats.setText(XMLRPCStats.toPlainText());
+    }
+
+    private void shareStats() {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_TEXT, XMLRPCStats.toPlainText());
+        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.app_name) + " " + getTitle());
+        try {
+            startActivity(Intent.createChooser(intent, getString(R.string.reader_btn_share)));
+        } catch (android.content.ActivityNotFoundException ex) {
+            ToastUtils.showToast(this, R.string.reader_toast_err_share_intent);
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        super.onCreateOptionsMenu(menu);
+        menu.add(Menu.NONE, ID_REFRESH, Menu.NONE, R.string.diagnostics_refresh);
+        menu.add(Menu.NONE, ID_RESET, Menu.NONE, R.string.diagnostics_reset);
+        MenuItem item = menu.add(Menu.NONE, ID_SHARE, Menu.NONE, R.string.reader_btn_share);
+        item.setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+        item.setIcon(R.drawable.ab_icon_share);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(final MenuItem item) {
+        switch (item.getItemId()) {
+            case android.R.id.home:
+                finish();
+                return true;
+            case ID_REFRESH:
+                showStats();
+                return true;
+            case ID_RESET:
+                XMLRPCStats.reset();
+                showStats();
+                return true;
+            case ID_SHARE:
+                shareStats();
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+}
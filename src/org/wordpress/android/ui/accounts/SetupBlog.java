@@ -19,6 +19,7 @@ import org.xmlrpc.android.XMLRPCClientInterface;
 import org.xmlrpc.android.XMLRPCException;
 import org.xmlrpc.android.XMLRPCFactory;
 import org.xmlrpc.android.XMLRPCFault;
+import org.xmlrpc.android.XMLRPCResponseCache;
 
 import java.io.IOException;
 import java.net.URI;
@@ -354,6 +355,7 @@ public class SetupBlog {
         for (Map<String, Object> blog : allBlogs) {
             if (!newBlogURLs.contains(blog.get("url").toString() + blog.get("blogId"))) {
                 WordPress.wpDB.deleteAccount(context, Integer.parseInt(blog.get("id").toString()));
+                XMLRPCResponseCache.clear();
             }
         }
     }
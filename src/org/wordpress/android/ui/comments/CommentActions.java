@@ -16,10 +16,13 @@ import org.wordpress.android.models.CommentStatus;
 import org.wordpress.android.models.Note;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.TaskDispatcher;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlrpc.android.XMLRPCClientInterface;
 import org.xmlrpc.android.XMLRPCException;
 import org.xmlrpc.android.XMLRPCFactory;
+import org.xmlrpc.android.XMLRPCFault;
+import org.xmlrpc.android.XMLRPCMulticall;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -78,7 +81,7 @@ public class CommentActions {
 
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(new Runnable() {
             @Override
             public void run() {
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
@@ -122,7 +125,7 @@ public class CommentActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /**
@@ -142,7 +145,7 @@ public class CommentActions {
 
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(new Runnable() {
             @Override
             public void run() {
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
@@ -196,7 +199,7 @@ public class CommentActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /**
@@ -258,7 +261,7 @@ public class CommentActions {
 
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(new Runnable() {
             @Override
             public void run() {
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
@@ -304,12 +307,36 @@ public class CommentActions {
                     });
                 }
             }
-        }.start();
+        });
+    }
+
+    /*
+     * sends the batched comment calls, returns an empty result for each call if the request failed
+     */
+    private static Object[] callMulticall(XMLRPCClientInterface client, XMLRPCMulticall multicall, String errorMessage) {
+        try {
+            return client.callMulticall(multicall);
+        } catch (XMLRPCException e) {
+            AppLog.e(T.COMMENTS, errorMessage, e);
+        } catch (IOException e) {
+            AppLog.e(T.COMMENTS, errorMessage, e);
+        } catch (XmlPullParserException e) {
+            AppLog.e(T.COMMENTS, errorMessage, e);
+        }
+        return new Object[multicall.size()];
+    }
+
+    private static boolean isSuccessfulResult(Object result, String errorMessage) {
+        if (result instanceof XMLRPCFault) {
+            AppLog.e(T.COMMENTS, errorMessage, (XMLRPCFault) result);
+            return false;
+        }
+        return (result != null && Boolean.parseBoolean(result.toString()));
     }
 
     /**
-     * change the status of multiple comments
-     * TODO: investigate using system.multiCall to perform a single call to moderate the list
+     * change the status of multiple comments, the comments are moderated with a single
+     * system.multicall request
      */
     static void moderateComments(final int accountId,
                                  final CommentList comments,
@@ -336,11 +363,12 @@ public class CommentActions {
         final int remoteBlogId = blog.getRemoteBlogId();
 
         final Handler handler = new Handler();
-        new Thread() {
+        TaskDispatcher.execute(new Runnable() {
             @Override
             public void run() {
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                         blog.getHttppassword());
+                XMLRPCMulticall multicall = new XMLRPCMulticall();
                 for (Comment comment: comments) {
                     Map<String, String> postHash = new HashMap<String, String>();
                     postHash.put("status", newStatusStr);
@@ -355,21 +383,15 @@ public class CommentActions {
                             blog.getPassword(),
                             Long.toString(comment.commentID),
                             postHash};
+                    multicall.add("wp.editComment", params);
+                }
 
-                    Object result;
-                    try {
-                        result = client.call("wp.editComment", params);
-                        boolean success = (result != null && Boolean.parseBoolean(result.toString()));
-                        if (success) {
-                            comment.setStatus(newStatusStr);
-                            moderatedComments.add(comment);
-                        }
-                    } catch (XMLRPCException e) {
-                        AppLog.e(T.COMMENTS, "Error while editing comment", e);
-                    } catch (IOException e) {
-                        AppLog.e(T.COMMENTS, "Error while editing comment", e);
-                    } catch (XmlPullParserException e) {
-                        AppLog.e(T.COMMENTS, "Error while editing comment", e);
+                Object[] results = callMulticall(client, multicall, "Error while editing comments");
+                for (int i = 0; i < results.length; i++) {
+                    if (isSuccessfulResult(results[i], "Error while editing comment")) {
+                        Comment comment = comments.get(i);
+                        comment.setStatus(newStatusStr);
+                        moderatedComments.add(comment);
                     }
                 }
 
@@ -385,7 +407,7 @@ public class CommentActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /**
@@ -403,7 +425,7 @@ public class CommentActions {
 
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(new Runnable() {
             @Override
             public void run() {
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
@@ -442,11 +464,11 @@ public class CommentActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /**
-     * delete multiple comments
+     * delete multiple comments with a single system.multicall request
      */
     private static void deleteComments(final int accountId,
                                        final CommentList comments,
@@ -465,31 +487,26 @@ public class CommentActions {
         final int remoteBlogId = blog.getRemoteBlogId();
 
         final Handler handler = new Handler();
-        new Thread() {
+        TaskDispatcher.execute(new Runnable() {
             @Override
             public void run() {
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                         blog.getHttppassword());
 
+                XMLRPCMulticall multicall = new XMLRPCMulticall();
                 for (Comment comment: comments) {
                     Object[] params = {
                             remoteBlogId,
                             blog.getUsername(),
                             blog.getPassword(),
                             comment.commentID};
+                    multicall.add("wp.deleteComment", params);
+                }
 
-                    Object result;
-                    try {
-                        result = client.call("wp.deleteComment", params);
-                        boolean success = (result != null && Boolean.parseBoolean(result.toString()));
-                        if (success)
-                            deletedComments.add(comment);
-                    } catch (XMLRPCException e) {
-                        AppLog.e(T.COMMENTS, "Error while deleting comment", e);
-                    } catch (IOException e) {
-                        AppLog.e(T.COMMENTS, "Error while deleting comment", e);
-                    } catch (XmlPullParserException e) {
-                        AppLog.e(T.COMMENTS, "Error while deleting comment", e);
+                Object[] results = callMulticall(client, multicall, "Error while deleting comments");
+                for (int i = 0; i < results.length; i++) {
+                    if (isSuccessfulResult(results[i], "Error while deleting comment")) {
+                        deletedComments.add(comments.get(i));
                     }
                 }
 
@@ -505,6 +522,6 @@ public class CommentActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 }
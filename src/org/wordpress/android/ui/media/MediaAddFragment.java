@@ -104,6 +104,12 @@ public class MediaAddFragment extends Fragment implements LaunchCameraCallback {
                 if (errorMessage != null) {
                     ToastUtils.showToast(context, errorMessage, ToastUtils.Duration.SHORT);
                 }
+                // the uploads of the other blogs don't change the media of the current blog
+                String blogId = intent.getStringExtra(MediaUploadService.MEDIA_UPLOAD_INTENT_NOTIFICATION_BLOG_ID);
+                if (blogId != null && WordPress.getCurrentBlog() != null
+                        && !blogId.equals(String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId()))) {
+                    return;
+                }
                 mCallback.onMediaAdded(mediaId);
             }
         }
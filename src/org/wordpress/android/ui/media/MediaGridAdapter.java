@@ -56,6 +56,8 @@ public class MediaGridAdapter extends CursorAdapter {
     private final LayoutInflater mInflater;
     private boolean mIsCurrentBlogPhotonCapable;
     private ImageLoader mImageLoader;
+    // percentage sent of the files being uploaded, by media id
+    private final Map<String, Integer> mUploadProgress = new HashMap<String, Integer>();
     
     public interface MediaGridAdapterCallback {
         public void fetchMoreData(int offset);
@@ -250,8 +252,13 @@ public class MediaGridAdapter extends CursorAdapter {
                 // show the progressbar only when the state is uploading
                 if (state.equals("uploading")) {
                     holder.progressUpload.setVisibility(View.VISIBLE);
+                    Integer percent = mUploadProgress.get(mediaId);
+                    if (percent != null) {
+                        state = state + " " + percent + "%";
+                    }
                 } else {
                     holder.progressUpload.setVisibility(View.GONE);
+                    mUploadProgress.remove(mediaId);
                 }
 
                 // add onclick to retry failed uploads 
@@ -523,6 +530,11 @@ public class MediaGridAdapter extends CursorAdapter {
         mIsRefreshing = refreshing;
         notifyDataSetChanged();
     }
+
+    public void setUploadProgress(String mediaId, int percent) {
+        mUploadProgress.put(mediaId, percent);
+        notifyDataSetChanged();
+    }
     
     public int getDataCount() {
         return mCursorDataCount;
@@ -2,11 +2,15 @@ package org.wordpress.android.ui.media;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.DialogInterface;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.database.Cursor;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
+import android.support.v4.content.LocalBroadcastManager;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -36,6 +40,7 @@ import org.wordpress.android.ui.PullToRefreshHelper;
 import org.wordpress.android.ui.PullToRefreshHelper.RefreshListener;
 import org.wordpress.android.ui.WPActionBarActivity;
 import org.wordpress.android.ui.media.MediaGridAdapter.MediaGridAdapterCallback;
+import org.wordpress.android.util.MediaUploadService;
 import org.wordpress.android.util.NetworkUtils;
 import org.wordpress.android.util.ToastUtils;
 import org.wordpress.android.util.ToastUtils.Duration;
@@ -319,8 +324,34 @@ public class MediaGridFragment extends Fragment implements OnItemClickListener,
 
         refreshSpinnerAdapter();
         refreshMediaFromDB();
+
+        LocalBroadcastManager lbm = LocalBroadcastManager.getInstance(getActivity());
+        lbm.registerReceiver(mUploadProgressReceiver, new IntentFilter(MediaUploadService.MEDIA_UPLOAD_PROGRESS_INTENT));
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+
+        LocalBroadcastManager lbm = LocalBroadcastManager.getInstance(getActivity());
+        lbm.unregisterReceiver(mUploadProgressReceiver);
     }
 
+    private BroadcastReceiver mUploadProgressReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // only the uploads of the current blog are in the grid
+            String blogId = intent.getStringExtra(MediaUploadService.MEDIA_UPLOAD_PROGRESS_BLOG_ID);
+            if (WordPress.getCurrentBlog() == null
+                    || !String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId()).equals(blogId)) {
+                return;
+            }
+            String mediaId = intent.getStringExtra(MediaUploadService.MEDIA_UPLOAD_PROGRESS_MEDIA_ID);
+            int percent = intent.getIntExtra(MediaUploadService.MEDIA_UPLOAD_PROGRESS_PERCENT, 0);
+            mGridAdapter.setUploadProgress(mediaId, percent);
+        }
+    };
+
     public void refreshMediaFromDB() {
         setFilter(mFilter);
         if (mGridAdapter.getDataCount() == 0 && !mHasRetrievedAllMedia) {
@@ -34,7 +34,7 @@ import java.util.zip.InflaterInputStream;
 
 public class NotificationUtils {
 
-    static interface NoteUpdatedListener {
+    public static interface NoteUpdatedListener {
         void onNoteUpdated(int noteId);
     }
 
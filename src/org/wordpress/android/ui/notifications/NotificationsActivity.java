@@ -55,6 +55,7 @@ public class NotificationsActivity extends WPActionBarActivity
     public static final String NOTE_INSTANT_REPLY_EXTRA = "instantReply";
 
     private static final String KEY_INITIAL_UPDATE = "initial_update";
+    private static final int NOTES_PAGE_SIZE = 20;
 
     private NotificationsListFragment mNotesList;
     private boolean mLoadingMore = false;
@@ -103,7 +104,7 @@ public class NotificationsActivity extends WPActionBarActivity
         new Thread() {
             @Override
             public void run() {
-                final List<Note> notes = WordPress.wpDB.getLatestNotes();
+                final List<Note> notes = WordPress.wpDB.getLatestNotes(NOTES_PAGE_SIZE);
                 NotificationsActivity.this.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
@@ -375,11 +376,13 @@ public class NotificationsActivity extends WPActionBarActivity
                 new Thread() {
                     @Override
                     public void run() {
-                        WordPress.wpDB.saveNotes(notes, true);
+                        WordPress.wpDB.mergeNotes(notes);
+                        // the list shows the merged notes, which include the placeholders added meanwhile
+                        final List<Note> mergedNotes = WordPress.wpDB.getLatestNotes(NOTES_PAGE_SIZE);
                         NotificationsActivity.this.runOnUiThread(new Runnable() {
                             @Override
                             public void run() {
-                                refreshNotificationsListFragment(notes);
+                                refreshNotificationsListFragment(mergedNotes);
                                 mNotesList.animateRefresh(false);
                             }
                         });
@@ -413,18 +416,51 @@ public class NotificationsActivity extends WPActionBarActivity
         );
     }
 
+    /*
+     * show the notes older than the passed one, from the local table if it has them, from the server otherwise
+     */
+    private void loadNotesBefore(final Note note) {
+        mLoadingMore = true;
+        new Thread() {
+            @Override
+            public void run() {
+                final List<Note> notes = WordPress.wpDB.getNotesBefore(note, NOTES_PAGE_SIZE);
+                NotificationsActivity.this.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mLoadingMore = false;
+                        if (isFinishing())
+                            return;
+                        if (notes.size() > 0) {
+                            mNotesList.getNotesAdapter().addAll(notes, false);
+                        } else {
+                            requestNotesBefore(note);
+                        }
+                    }
+                });
+            }
+        }.start();
+    }
+
     private void requestNotesBefore(final Note note){
         Map<String, String> params = new HashMap<String, String>();
-        AppLog.d(T.NOTIFS, String.format("Requesting more notes before %s", note.queryJSON("timestamp", "")));
-        params.put("before", note.queryJSON("timestamp", ""));
+        AppLog.d(T.NOTIFS, String.format("Requesting more notes before %s", note.getTimestamp()));
+        params.put("before", note.getTimestamp());
         NotesResponseHandler notesHandler = new NotesResponseHandler(){
             @Override
-            public void onNotes(List<Note> notes){
+            public void onNotes(final List<Note> notes){
                 // API returns 'on or before' timestamp, so remove first item
                 if (notes.size() >= 1)
                     notes.remove(0);
                 mNotesList.setAllNotesLoaded(notes.size() == 0);
                 mNotesList.getNotesAdapter().addAll(notes, false);
+                // store the older notes so the next time they're paged from the local table
+                new Thread() {
+                    @Override
+                    public void run() {
+                        WordPress.wpDB.saveNotes(notes, false);
+                    }
+                }.start();
             }
         };
         getRestClientUtils().getNotifications(params, notesHandler, notesHandler);
@@ -442,7 +478,7 @@ public class NotificationsActivity extends WPActionBarActivity
                 NotesAdapter adapter = mNotesList.getNotesAdapter();
                 if (adapter.getCount() > 0) {
                     Note lastNote = adapter.getItem(adapter.getCount()-1);
-                    requestNotesBefore(lastNote);
+                    loadNotesBefore(lastNote);
                 }
             }
         }
@@ -19,6 +19,7 @@ import com.actionbarsherlock.app.ActionBar;
 import com.actionbarsherlock.view.Menu;
 import com.actionbarsherlock.view.MenuInflater;
 import com.actionbarsherlock.view.MenuItem;
+import com.actionbarsherlock.widget.SearchView;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
@@ -63,6 +64,7 @@ public class PostsActivity extends WPActionBarActivity
     public boolean mIsPage = false;
     public String mErrorMsg = "";
     private PostsListFragment mPostList;
+    private MenuItem mSearchMenuItem;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -298,6 +300,36 @@ public class PostsActivity extends WPActionBarActivity
         if (mIsPage) {
             menu.findItem(R.id.menu_new_post).setTitle(R.string.new_page);
         }
+
+        // search the local posts while typing
+        mSearchMenuItem = menu.findItem(R.id.menu_search);
+        final SearchView searchView = (SearchView) mSearchMenuItem.getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                mPostList.getPostListAdapter().setSearchTerm(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                mPostList.getPostListAdapter().setSearchTerm(newText);
+                return true;
+            }
+        });
+        mSearchMenuItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                mPostList.getPostListAdapter().setSearchTerm(null);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -643,6 +675,9 @@ public class PostsActivity extends WPActionBarActivity
         super.onBlogChanged();
         popPostDetail();
         attemptToSelectPost();
+        if (mSearchMenuItem != null) {
+            mSearchMenuItem.collapseActionView();
+        }
         mPostList.clear();
         mPostList.getPostListAdapter().loadPosts();
         refreshBlogContent();
@@ -265,15 +265,16 @@ public class PostsListFragment extends ListFragment implements WordPress.OnPostU
         if (!NetworkUtils.checkConnection(getActivity()))
             return;
 
-        int postCount = getPostListAdapter().getRemotePostCount() + POSTS_REQUEST_COUNT;
+        // only the next page is fetched when loading more
+        int offset = getPostListAdapter().getRemotePostCount();
         if (!loadMore) {
             mCanLoadMorePosts = true;
-            postCount = POSTS_REQUEST_COUNT;
+            offset = 0;
         }
         List<Object> apiArgs = new Vector<Object>();
         apiArgs.add(WordPress.getCurrentBlog());
         apiArgs.add(mIsPage);
-        apiArgs.add(postCount);
+        apiArgs.add(offset);
         apiArgs.add(loadMore);
         if (mProgressFooterView != null && loadMore) {
             mProgressFooterView.setVisibility(View.VISIBLE);
@@ -291,9 +292,8 @@ public class PostsListFragment extends ListFragment implements WordPress.OnPostU
                     mProgressFooterView.setVisibility(View.GONE);
                 }
 
-                if (postCount == 0) {
-                    mCanLoadMorePosts = false;
-                } else if (postCount == getPostListAdapter().getRemotePostCount() && postCount != POSTS_REQUEST_COUNT) {
+                // a partial page means there's nothing more to load
+                if (postCount < POSTS_REQUEST_COUNT) {
                     mCanLoadMorePosts = false;
                 }
 
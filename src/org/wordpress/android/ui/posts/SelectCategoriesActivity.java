@@ -1,6 +1,7 @@
 package org.wordpress.android.ui.posts;
 
 import android.app.Activity;
+import android.content.ContentValues;
 import android.content.Intent;
 import android.content.res.Configuration;
 import android.os.Build;
@@ -38,6 +39,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import uk.co.senab.actionbarpulltorefresh.extras.actionbarsherlock.PullToRefreshLayout;
@@ -113,7 +115,7 @@ public class SelectCategoriesActivity extends SherlockListActivity {
                             mPullToRefreshHelper.setRefreshing(false);
                             return;
                         }
-                        refreshCategories();
+                        refreshCategories(true);
                     }
                 });
 
@@ -146,7 +148,7 @@ public class SelectCategoriesActivity extends SherlockListActivity {
             populateCategoryList();
         } else {
             mPullToRefreshHelper.setRefreshing(true);
-            refreshCategories();
+            refreshCategories(false);
         }
     }
 
@@ -174,13 +176,15 @@ public class SelectCategoriesActivity extends SherlockListActivity {
 
     /**
      * Gets the categories via a xmlrpc call
+     * @param forceRefresh true to skip the cached categories
      * @return result message
      */
-    public String fetchCategories() {
+    public String fetchCategories(boolean forceRefresh) {
         String returnMessage;
         Object result[] = null;
         Object[] params = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(),};
         mClient = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(), blog.getHttppassword());
+        mClient.setForceRefresh(forceRefresh);
         boolean success = false;
         try {
             result = (Object[]) mClient.call("wp.getCategories", params);
@@ -194,18 +198,20 @@ public class SelectCategoriesActivity extends SherlockListActivity {
         }
 
         if (success) {
-            // wipe out the categories table
-            WordPress.wpDB.clearCategories(blog.getLocalTableBlogId());
-
+            List<ContentValues> categories = new ArrayList<ContentValues>();
             for (Object aResult : result) {
                 Map<?, ?> curHash = (Map<?, ?>) aResult;
                 String categoryName = curHash.get("categoryName").toString();
                 String categoryID = curHash.get("categoryId").toString();
                 String categoryParentID = curHash.get("parentId").toString();
-                int convertedCategoryID = Integer.parseInt(categoryID);
-                int convertedCategoryParentID = Integer.parseInt(categoryParentID);
-                WordPress.wpDB.insertCategory(blog.getLocalTableBlogId(), convertedCategoryID, convertedCategoryParentID, categoryName);
+                ContentValues values = new ContentValues();
+                values.put("wp_id", Integer.parseInt(categoryID));
+                values.put("parent_id", Integer.parseInt(categoryParentID));
+                values.put("category_name", categoryName);
+                categories.add(values);
             }
+            // replace the categories of the blog
+            WordPress.wpDB.replaceCategories(blog.getLocalTableBlogId(), categories);
             returnMessage = "gotCategories";
         } else {
             returnMessage = "FAIL";
@@ -364,12 +370,12 @@ public class SelectCategoriesActivity extends SherlockListActivity {
         return new_category_name;
     }
 
-    private void refreshCategories() {
+    private void refreshCategories(final boolean forceRefresh) {
         mListScrollPositionManager.saveScrollOffset();
         updateSelectedCategoryList();
         Thread th = new Thread() {
             public void run() {
-                finalResult = fetchCategories();
+                finalResult = fetchCategories(forceRefresh);
                 mHandler.post(mUpdateResults);
             }
         };
@@ -2,6 +2,7 @@ package org.wordpress.android.ui.posts.adapters;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,6 +14,7 @@ import org.wordpress.android.WordPress;
 import org.wordpress.android.models.PostStatus;
 import org.wordpress.android.models.PostsListPost;
 import org.wordpress.android.ui.posts.PostsListFragment;
+import org.wordpress.android.util.StringUtils;
 import org.wordpress.android.util.SysUtils;
 
 import java.util.ArrayList;
@@ -20,7 +22,8 @@ import java.util.List;
 import java.util.Locale;
 
 /**
- * Adapter for Posts/Pages list
+ * Adapter for Posts/Pages list, the posts are read from the db in windows of POSTS_WINDOW_SIZE rows
+ * as the list scrolls, the network is only asked for more once all the local rows are shown
  */
 public class PostsListAdapter extends BaseAdapter {
     public static interface OnLoadMoreListener {
@@ -37,7 +40,16 @@ public class PostsListAdapter extends BaseAdapter {
     private boolean mIsPage;
     private LayoutInflater mLayoutInflater;
 
+    private static final int POSTS_WINDOW_SIZE = 50;
+    private static final int SEARCH_MAX_POSTS = 200;
+
     private List<PostsListPost> mPosts = new ArrayList<PostsListPost>();
+    private boolean mHasMoreLocalPosts;
+    private boolean mIsLoadingWindow;
+    // incremented when the list is reloaded from the top, so a window loaded before is dropped
+    private int mLoadGeneration;
+    // the list shows the local posts matching this term when set
+    private String mSearchTerm;
 
 
     public PostsListAdapter(Context context, boolean isPage, OnLoadMoreListener onLoadMoreListener, OnPostsLoadedListener onPostsLoadedListener) {
@@ -48,6 +60,23 @@ public class PostsListAdapter extends BaseAdapter {
         mLayoutInflater = LayoutInflater.from(mContext);
     }
 
+    public boolean isSearching() {
+        return !TextUtils.isEmpty(mSearchTerm);
+    }
+
+    /*
+     * show the local posts matching the term, or all the posts when it's empty
+     */
+    public void setSearchTerm(String searchTerm) {
+        if (StringUtils.equals(StringUtils.notNullStr(searchTerm), StringUtils.notNullStr(mSearchTerm)))
+            return;
+
+        mSearchTerm = searchTerm;
+        mPosts.clear();
+        notifyDataSetChanged();
+        loadPosts();
+    }
+
     public List<PostsListPost> getPosts() {
         return mPosts;
     }
@@ -72,6 +101,11 @@ public class PostsListAdapter extends BaseAdapter {
         return mPosts.get(position).getPostId();
     }
 
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
     @Override
     public View getView(int position, View view, ViewGroup parent) {
         PostsListPost post = mPosts.get(position);
@@ -138,8 +172,16 @@ public class PostsListAdapter extends BaseAdapter {
             wrapper.getStatus().setText(formattedStatus);
         }
 
-        // load more posts when we near the end
-        if (mOnLoadMoreListener != null && position >= getCount() - 1
+        // load the next window from the db when we near the end, then more posts from the network,
+        // search results are only local
+        if (isSearching()) {
+            return view;
+        }
+        if (mHasMoreLocalPosts) {
+            if (position >= getCount() - 10) {
+                loadNextWindow();
+            }
+        } else if (mOnLoadMoreListener != null && position >= getCount() - 1
                 && position >= PostsListFragment.POSTS_REQUEST_COUNT - 1) {
             mOnLoadMoreListener.onLoadMore();
         }
@@ -147,19 +189,43 @@ public class PostsListAdapter extends BaseAdapter {
         return view;
     }
 
+    /*
+     * (re)load the posts from the top, as many rows as already shown so the scroll position is kept
+     */
     public void loadPosts() {
         if (WordPress.getCurrentBlog() == null)
             return;
 
+        mLoadGeneration++;
+        mIsLoadingWindow = false;
+        if (isSearching()) {
+            executeLoadPostsTask(new LoadPostsTask(null, mSearchTerm, SEARCH_MAX_POSTS));
+        } else {
+            executeLoadPostsTask(new LoadPostsTask(null, null, Math.max(POSTS_WINDOW_SIZE, mPosts.size())));
+        }
+    }
+
+    private void loadNextWindow() {
+        if (mIsLoadingWindow || mPosts.size() == 0 || WordPress.getCurrentBlog() == null)
+            return;
+
+        mIsLoadingWindow = true;
+        executeLoadPostsTask(new LoadPostsTask(mPosts.get(mPosts.size() - 1), null, POSTS_WINDOW_SIZE));
+    }
+
+    private void executeLoadPostsTask(LoadPostsTask task) {
         // load posts from db
         if (SysUtils.canUseExecuteOnExecutor()) {
-            new LoadPostsTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
         } else {
-            new LoadPostsTask().execute();
+            task.execute();
         }
     }
 
     public void clear() {
+        mLoadGeneration++;
+        mIsLoadingWindow = false;
+        mHasMoreLocalPosts = false;
         if (mPosts.size() > 0) {
             mPosts.clear();
             notifyDataSetChanged();
@@ -199,25 +265,60 @@ public class PostsListAdapter extends BaseAdapter {
     }
 
     private class LoadPostsTask extends AsyncTask <Void, Void, Boolean> {
+        private final PostsListPost mAfterPost;
+        private final String mSearchTerm;
+        private final int mMaxPosts;
+        private final int mGeneration;
         List<PostsListPost> loadedPosts;
 
+        /*
+         * afterPost is the last post shown when loading the next window, null when reloading from the top.
+         * When searchTerm isn't null the posts matching it are loaded instead, afterPost is then null
+         */
+        LoadPostsTask(PostsListPost afterPost, String searchTerm, int maxPosts) {
+            mAfterPost = afterPost;
+            mSearchTerm = searchTerm;
+            mMaxPosts = maxPosts;
+            mGeneration = mLoadGeneration;
+        }
+
         @Override
         protected Boolean doInBackground(Void... nada) {
-            loadedPosts = WordPress.wpDB.getPostsListPosts(WordPress.getCurrentLocalTableBlogId(), mIsPage);
-            if (postsListMatch(loadedPosts)) {
-                return false;
+            if (mSearchTerm != null) {
+                loadedPosts = WordPress.wpDB.searchPostsListPosts(WordPress.getCurrentLocalTableBlogId(), mIsPage,
+                        mSearchTerm, mMaxPosts);
+            } else {
+                loadedPosts = WordPress.wpDB.getPostsListPosts(WordPress.getCurrentLocalTableBlogId(), mIsPage,
+                        mAfterPost, mMaxPosts);
             }
-
             return true;
         }
 
         @Override
         protected void onPostExecute(Boolean result) {
-            if (result) {
+            if (mGeneration != mLoadGeneration) {
+                // the list was reloaded or cleared meanwhile
+                return;
+            }
+            boolean hasMoreLocalPosts = (loadedPosts.size() >= mMaxPosts);
+            if (mAfterPost != null) {
+                mIsLoadingWindow = false;
+                mHasMoreLocalPosts = hasMoreLocalPosts;
+                if (loadedPosts.size() > 0) {
+                    mPosts.addAll(loadedPosts);
+                    notifyDataSetChanged();
+                }
+                return;
+            }
+
+            mHasMoreLocalPosts = (hasMoreLocalPosts && mSearchTerm == null);
+            // the sync usually changes a few rows at most, the list is only redrawn if a row changed
+            if (!postsListMatch(loadedPosts)) {
                 setPosts(loadedPosts);
                 notifyDataSetChanged();
 
-                if (mOnPostsLoadedListener != null && mPosts != null) {
+                // an empty search result doesn't mean the blog has no posts
+                if (mOnPostsLoadedListener != null && mPosts != null && mSearchTerm == null) {
                     mOnPostsLoadedListener.onPostsLoaded(mPosts.size());
                 }
             }
@@ -30,6 +30,7 @@ import org.wordpress.android.WordPress;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.ui.DashboardActivity;
 import org.wordpress.android.util.StringUtils;
+import org.xmlrpc.android.XMLRPCResponseCache;
 
 /**
  * Activity for configuring blog specific settings.
@@ -45,6 +46,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
     private EditText mHttpUsernameET;
     private EditText mHttpPasswordET;
     private CheckBox mFullSizeCB;
+    private CheckBox mDeferFullSizeCB;
     private CheckBox mScaledCB;
     private CheckBox mLocationCB;
     private Spinner mImageWidthSpinner;
@@ -74,6 +76,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
         mHttpPasswordET = (EditText) findViewById(R.id.httppassword);
         mScaledImageWidthET = (EditText) findViewById(R.id.scaledImageWidth);
         mFullSizeCB = (CheckBox) findViewById(R.id.fullSizeImage);
+        mDeferFullSizeCB = (CheckBox) findViewById(R.id.deferFullSizeImage);
         mScaledCB = (CheckBox) findViewById(R.id.scaledImage);
         mLocationCB = (CheckBox) findViewById(R.id.location);
         mImageWidthSpinner = (Spinner) findViewById(R.id.maxImageWidth);
@@ -107,6 +110,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
         blog.setHttppassword(mHttpPasswordET.getText().toString());
 
         blog.setFullSizeImage(mFullSizeCB.isChecked());
+        blog.setDeferFullSizeImage(mDeferFullSizeCB.isChecked());
         blog.setScaledImage(mScaledCB.isChecked());
         if (blog.isScaledImage()) {
             EditText scaledImgWidth = (EditText) findViewById(R.id.scaledImageWidth);
@@ -194,6 +198,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
                    fullSizeImageCheckBox.setVisibility(View.GONE);
                else
                    fullSizeImageCheckBox.setVisibility(View.VISIBLE);
+               showDeferFullSizeSetting();
             }
 
             @Override
@@ -218,6 +223,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
         }
 
         mFullSizeCB.setChecked(blog.isFullSizeImage());
+        mDeferFullSizeCB.setChecked(blog.isDeferFullSizeImage());
         mScaledCB.setChecked(blog.isScaledImage());
         
         this.mScaledImageWidthET.setText("" + blog.getScaledImageWidth());
@@ -245,6 +251,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
             @Override
             public void onClick(View v) {
                 CheckBox fullSize = (CheckBox) findViewById(R.id.fullSizeImage);
+                showDeferFullSizeSetting();
                 if (fullSize.isChecked()) {
                     CheckBox scaledImage = (CheckBox) findViewById(R.id.scaledImage);
                     if (scaledImage.isChecked()) {
@@ -278,6 +285,15 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
             fullSizeImageCheckBox.setVisibility(View.GONE);
         else
             fullSizeImageCheckBox.setVisibility(View.VISIBLE);
+        showDeferFullSizeSetting();
+    }
+
+    /**
+     * Shows the deferred upload setting only when the full image is uploaded and linked
+     */
+    private void showDeferFullSizeSetting() {
+        boolean show = mFullSizeCB.getVisibility() == View.VISIBLE && mFullSizeCB.isChecked();
+        mDeferFullSizeCB.setVisibility(show ? View.VISIBLE : View.GONE);
     }
 
     /**
@@ -310,6 +326,7 @@ public class BlogPreferencesActivity extends SherlockFragmentActivity {
             public void onClick(DialogInterface dialog, int whichButton) {
                 boolean deleteSuccess = WordPress.wpDB.deleteAccount(BlogPreferencesActivity.this, blog.getLocalTableBlogId());
                 if (deleteSuccess) {
+                    XMLRPCResponseCache.clear();
                     Toast.makeText(activity, getResources().getText(R.string.blog_removed_successfully), Toast.LENGTH_SHORT)
                             .show();
                     WordPress.wpDB.deleteLastBlogId();
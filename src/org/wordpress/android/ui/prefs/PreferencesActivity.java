@@ -49,9 +49,11 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.MapUtils;
 import org.wordpress.android.util.StringUtils;
+import org.wordpress.android.util.SysUtils;
 import org.wordpress.android.util.ToastUtils;
 import org.wordpress.android.util.WPEditTextPreference;
 import org.wordpress.passcodelock.AppLockManager;
+import org.xmlrpc.android.XMLRPCCompression;
 
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -111,6 +113,22 @@ public class PreferencesActivity extends SherlockPreferenceActivity {
         Preference resetAutoShare = findPreference("wp_reset_share_pref");
         resetAutoShare.setOnPreferenceClickListener(resetAUtoSharePreferenceClickListener);
 
+        Preference compressRequests = findPreference(WordPress.COMPRESS_REQUESTS_PREFERENCE);
+        compressRequests.setOnPreferenceChangeListener(new OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                XMLRPCCompression.setRequestCompressionEnabled(Boolean.TRUE.equals(newValue));
+                return true;
+            }
+        });
+
+        // write-ahead logging isn't available before API 11
+        if (!SysUtils.canUseWriteAheadLogging()) {
+            PreferenceScreen rootScreen = (PreferenceScreen) findPreference("wp_pref_root");
+            PreferenceCategory performanceCategory = (PreferenceCategory) findPreference("wp_pref_performance_category");
+            rootScreen.removePreference(performanceCategory);
+        }
+
         mSettings = PreferenceManager.getDefaultSharedPreferences(this);
 
         // AuthenticatorRequest notification settings if needed
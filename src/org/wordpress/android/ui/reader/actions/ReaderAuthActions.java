@@ -24,6 +24,8 @@ import org.wordpress.android.WordPress;
 import org.wordpress.android.WordPressDB;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -54,7 +56,7 @@ public class ReaderAuthActions {
         final String username = settings.getString(WordPress.WPCOM_USERNAME_PREFERENCE, "");
         final String password = WordPressDB.decryptPassword(settings.getString(WordPress.WPCOM_PASSWORD_PREFERENCE, ""));
 
-        new Thread() {
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
                 try {
@@ -98,7 +100,7 @@ public class ReaderAuthActions {
                     AppLog.e(T.READER, e);
                 }
             }
-        }.start();
+        });
      }
 
     private static DefaultHttpClient getHttpClient(UsernamePasswordCredentials creds) {
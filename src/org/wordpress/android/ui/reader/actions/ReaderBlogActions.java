@@ -13,6 +13,8 @@ import org.wordpress.android.models.ReaderUrlList;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.JSONUtil;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.wordpress.android.util.UrlUtils;
 
 public class ReaderBlogActions {
@@ -90,7 +92,7 @@ public class ReaderBlogActions {
         if (jsonObject==null)
             return;
 
-        new Thread() {
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
                 ReaderUrlList urls = new ReaderUrlList();
@@ -101,6 +103,6 @@ public class ReaderBlogActions {
                 }
                 ReaderBlogTable.setFollowedBlogUrls(urls);
             }
-        }.start();
+        });
     }
 }
@@ -18,6 +18,8 @@ import org.wordpress.android.models.ReaderUser;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.DateTimeUtils;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -65,7 +67,7 @@ public class ReaderCommentActions {
 
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
                 // request asks for only newer comments, so if it returns any comments then they are all new
@@ -84,7 +86,7 @@ public class ReaderCommentActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /*
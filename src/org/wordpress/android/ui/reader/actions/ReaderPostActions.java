@@ -22,6 +22,8 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.JSONUtil;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.wordpress.android.util.UrlUtils;
 import org.wordpress.android.util.VolleyUtils;
 
@@ -60,7 +62,7 @@ public class ReaderPostActions {
                 } else if (!isLiking && post.numLikes > 0) {
                     post.numLikes--;
                 }
-                ReaderPostTable.addOrUpdatePost(post);
+                ReaderPostTable.setPostLiked(post, isLiking);
                 ReaderLikeTable.setCurrentUserLikesPost(post, isLiking);
                 path = "sites/" + post.blogId + "/posts/" + post.postId + "/likes/";
                 if (isLiking) {
@@ -73,7 +75,6 @@ public class ReaderPostActions {
             case TOGGLE_FOLLOW :
                 boolean isAskingToFollow = !post.isFollowedByCurrentUser;
                 post.isFollowedByCurrentUser = isAskingToFollow;
-                ReaderPostTable.addOrUpdatePost(post);
                 ReaderPostTable.setBlogPostsFollowStatus(post.blogId, isAskingToFollow);
                 path = "sites/" + post.blogId + "/follows/";
                 if (isAskingToFollow) {
@@ -219,7 +220,7 @@ public class ReaderPostActions {
 
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
                 ReaderPost updatedPost = ReaderPost.fromJson(jsonObject);
@@ -259,7 +260,7 @@ public class ReaderPostActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /*
@@ -392,7 +393,7 @@ public class ReaderPostActions {
         }
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
                 ReaderPostList serverPosts = ReaderPostList.fromJson(jsonObject);
@@ -455,6 +456,6 @@ public class ReaderPostActions {
                 }
 //Debug.stopMethodTracing();
             }
-        }.start();
+        });
     }
 }
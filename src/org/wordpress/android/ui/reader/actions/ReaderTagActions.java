@@ -17,6 +17,8 @@ import org.wordpress.android.models.ReaderTagList;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.JSONUtil;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.wordpress.android.util.VolleyUtils;
 
 import java.util.Iterator;
@@ -171,7 +173,7 @@ public class ReaderTagActions {
         // create handler on main thread, process & store response in separate thread
         final Handler handler = new Handler();
 
-        new Thread() {
+        TaskDispatcher.execute(Priority.BACKGROUND, new Runnable() {
             @Override
             public void run() {
                 // get server topics, both default & subscribed
@@ -210,7 +212,7 @@ public class ReaderTagActions {
                     });
                 }
             }
-        }.start();
+        });
     }
 
     /*
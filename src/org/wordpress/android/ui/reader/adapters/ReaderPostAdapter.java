@@ -149,7 +149,7 @@ public class ReaderPostAdapter extends BaseAdapter {
         if (index == -1)
             return;
 
-        final ReaderPost updatedPost = ReaderPostTable.getPost(post.blogId, post.postId);
+        final ReaderPost updatedPost = ReaderPostTable.getPost(post.blogId, post.postId, true);
         if (updatedPost==null)
             return;
 
@@ -417,7 +417,7 @@ public class ReaderPostAdapter extends BaseAdapter {
             return;
 
         // update post in array and on screen
-        ReaderPost updatedPost = ReaderPostTable.getPost(post.blogId, post.postId);
+        ReaderPost updatedPost = ReaderPostTable.getPost(post.blogId, post.postId, true);
         mPosts.set(position, updatedPost);
         showLikeStatus(holder.imgBtnLike, updatedPost.isLikedByCurrentUser);
         showCounts(holder, post);
@@ -441,7 +441,7 @@ public class ReaderPostAdapter extends BaseAdapter {
         if (!ReaderPostActions.performPostAction(ReaderPostActions.PostAction.TOGGLE_FOLLOW, post, null))
             return;
 
-        ReaderPost updatedPost = ReaderPostTable.getPost(post.blogId, post.postId);
+        ReaderPost updatedPost = ReaderPostTable.getPost(post.blogId, post.postId, true);
         mPosts.set(position, updatedPost);
         showFollowStatus(holder.txtFollow, updatedPost.isFollowedByCurrentUser);
         
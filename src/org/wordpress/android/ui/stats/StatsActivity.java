@@ -517,7 +517,7 @@ public class StatsActivity extends WPActionBarActivity {
             if (blogId == null) {
                 //Refresh Jetpack Settings
                 new ApiHelper.RefreshBlogContentTask(this, WordPress.getCurrentBlog(),
-                        new VerifyJetpackSettingsCallback(StatsActivity.this)).execute(false);
+                        new VerifyJetpackSettingsCallback(StatsActivity.this), true).execute(false);
                 return;
             }
         }
@@ -319,7 +319,6 @@ public class ThemeBrowserActivity extends WPActionBarActivity implements
                             JSONObject object = array.getJSONObject(i);
                             Theme theme = Theme.fromJSON(object);
                             if (theme != null) {
-                                theme.save();
                                 themes.add(theme);
                             }
                         }
@@ -327,6 +326,7 @@ public class ThemeBrowserActivity extends WPActionBarActivity implements
                 } catch (JSONException e) {
                     AppLog.e(T.THEMES, e);
                 }
+                WordPress.wpDB.saveThemes(themes);
             }
 
             fetchCurrentTheme();
@@ -0,0 +1,19 @@
+package org.wordpress.android.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Starts DeferredMediaUploadService when Wi-Fi or power is connected. Disabled in the manifest,
+ * the service enables it only while full size images are waiting to be uploaded, so the app isn't
+ * woken up by every connectivity change.
+ */
+public class DeferredMediaUploadReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (DeferredMediaUploadService.canUploadNow(context)) {
+            context.startService(new Intent(context, DeferredMediaUploadService.class));
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package org.wordpress.android.util;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import org.wordpress.android.WordPress;
+import org.wordpress.android.models.Blog;
+import org.wordpress.android.models.MediaFile;
+import org.wordpress.android.util.AppLog.T;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlrpc.android.ApiHelper;
+import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCFault;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A service for uploading the full size images deferred by PostUploadService: when a blog defers
+ * them, posts link their resized images to the resized image itself, and the full size image is
+ * uploaded here on Wi-Fi or while charging, then the link of the post is edited to point to it.
+ * While images are waiting, DeferredMediaUploadReceiver is enabled to start this service when
+ * Wi-Fi or power is connected. Uploads failing on a network error are retried by an alarm, with
+ * a backoff.
+ */
+public class DeferredMediaUploadService extends Service {
+    // failed attempts after which an image is dropped, the post then keeps linking to the resized image
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_RETRY_DELAY_MS = 60 * 1000;
+
+    private Handler mHandler = new Handler();
+    private boolean mIsUploading;
+    private boolean mIsRestartNeeded;
+    // delay before the service runs again to retry the failed uploads, 0 when none failed
+    private volatile long mRetryDelay;
+
+    private static class DeferredUpload {
+        long id;
+        int blogId;
+        String remotePostId;
+        String filePath;
+        String fileName;
+        String mimeType;
+        String resizedURL;
+        String fullSizeURL;
+        int attempts;
+    }
+
+    /**
+     * Upload the waiting full size images now if allowed, or once Wi-Fi or power is connected
+     */
+    public static void scheduleUploads(Context context) {
+        if (canUploadNow(context)) {
+            context.startService(new Intent(context, DeferredMediaUploadService.class));
+        } else {
+            setReceiverEnabled(context, true);
+        }
+    }
+
+    /*
+     * full size images are uploaded on Wi-Fi, or on any network while charging
+     */
+    static boolean canUploadNow(Context context) {
+        if (NetworkUtils.isWiFiConnected(context)) {
+            return true;
+        }
+        if (!NetworkUtils.isNetworkAvailable(context)) {
+            return false;
+        }
+        // sticky broadcast, no receiver is registered
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return (battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0);
+    }
+
+    private static void setReceiverEnabled(Context context, boolean enabled) {
+        ComponentName receiver = new ComponentName(context, DeferredMediaUploadReceiver.class);
+        int state = (enabled ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
+                : PackageManager.COMPONENT_ENABLED_STATE_DEFAULT);
+        context.getPackageManager().setComponentEnabledSetting(receiver, state, PackageManager.DONT_KILL_APP);
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (mIsUploading) {
+            // images may have been queued after the queue was read
+            mIsRestartNeeded = true;
+        } else {
+            startUploads();
+        }
+        return START_NOT_STICKY;
+    }
+
+    private void startUploads() {
+        mIsUploading = true;
+        mIsRestartNeeded = false;
+        mRetryDelay = 0;
+        final Context context = getApplicationContext();
+        UploadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                uploadQueue(context);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onUploadsFinished(context);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onUploadsFinished(Context context) {
+        mIsUploading = false;
+        if (mIsRestartNeeded && canUploadNow(context)) {
+            startUploads();
+            return;
+        }
+        // the images left wait for Wi-Fi or power, or for the retry of those which failed
+        boolean hasUploads = WordPress.wpDB.hasDeferredMediaUploads();
+        setReceiverEnabled(context, hasUploads);
+        if (hasUploads && mRetryDelay > 0) {
+            scheduleRetry(context, mRetryDelay);
+        }
+        stopSelf();
+    }
+
+    /*
+     * starts the service again once the delay has elapsed, unless it runs before then. The retry
+     * doesn't wake the device, and is skipped if Wi-Fi or power are gone by then
+     */
+    private static void scheduleRetry(Context context, long delay) {
+        Intent intent = new Intent(context, DeferredMediaUploadService.class);
+        PendingIntent pendingIntent = PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + delay, pendingIntent);
+    }
+
+    /*
+     * the delay doubles with each failed attempt
+     */
+    static long getRetryDelay(int attempts) {
+        return BASE_RETRY_DELAY_MS << (Math.max(attempts, 1) - 1);
+    }
+
+    private void uploadQueue(Context context) {
+        for (DeferredUpload upload : getQueue()) {
+            if (!canUploadNow(context)) {
+                return;
+            }
+            uploadFullSizeImage(upload);
+        }
+    }
+
+    private List<DeferredUpload> getQueue() {
+        List<DeferredUpload> queue = new ArrayList<DeferredUpload>();
+        Cursor cursor = WordPress.wpDB.getDeferredMediaUploads();
+        try {
+            while (cursor.moveToNext()) {
+                DeferredUpload upload = new DeferredUpload();
+                upload.id = cursor.getLong(cursor.getColumnIndex("id"));
+                upload.blogId = cursor.getInt(cursor.getColumnIndex("blogId"));
+                upload.remotePostId = cursor.getString(cursor.getColumnIndex("remotePostId"));
+                upload.filePath = cursor.getString(cursor.getColumnIndex("filePath"));
+                upload.fileName = cursor.getString(cursor.getColumnIndex("fileName"));
+                upload.mimeType = cursor.getString(cursor.getColumnIndex("mimeType"));
+                upload.resizedURL = cursor.getString(cursor.getColumnIndex("resizedURL"));
+                upload.fullSizeURL = cursor.getString(cursor.getColumnIndex("fullSizeURL"));
+                upload.attempts = cursor.getInt(cursor.getColumnIndex("uploadAttempts"));
+                queue.add(upload);
+            }
+        } finally {
+            SqlUtils.closeCursor(cursor);
+        }
+        return queue;
+    }
+
+    /*
+     * uploads the full size image unless a previous attempt did, then links the post to it.
+     * Nothing is uploaded once the post no longer links to the resized image. Network errors are
+     * retried the next time the service runs
+     */
+    private void uploadFullSizeImage(DeferredUpload upload) {
+        Blog blog = WordPress.wpDB.instantiateBlogByLocalId(upload.blogId);
+        if (blog == null || upload.filePath == null || !new File(upload.filePath).exists()) {
+            AppLog.w(T.POSTS, "deferred full size image no longer available");
+            WordPress.wpDB.deleteDeferredMediaUpload(upload.id);
+            return;
+        }
+
+        try {
+            // the link may have been removed, or the post deleted, since the image was deferred
+            String content = ApiHelper.getPostContent(blog, upload.remotePostId);
+            if (content == null || !content.contains(getLink(upload.resizedURL))) {
+                AppLog.w(T.POSTS, "resized image link no longer in post " + upload.remotePostId);
+                WordPress.wpDB.deleteDeferredMediaUpload(upload.id);
+                return;
+            }
+
+            if (TextUtils.isEmpty(upload.fullSizeURL)) {
+                // the full size image may have been uploaded since, for another post
+                MediaFile uploaded = ApiHelper.getUploadedMediaItem(blog,
+                        MediaUtils.getMediaSourceKey(upload.filePath, 0, 0));
+                if (uploaded != null) {
+                    upload.fullSizeURL = uploaded.getFileURL();
+                    WordPress.wpDB.setDeferredMediaUploadURL(upload.id, upload.fullSizeURL);
+                }
+            }
+            if (TextUtils.isEmpty(upload.fullSizeURL)) {
+                MediaFile mediaFile = new MediaFile();
+                mediaFile.setFilePath(upload.filePath);
+                mediaFile.setFileName(upload.fileName);
+                mediaFile.setMimeType(upload.mimeType);
+                upload.fullSizeURL = ApiHelper.uploadMediaFileForUrl(blog, mediaFile);
+                if (TextUtils.isEmpty(upload.fullSizeURL)) {
+                    AppLog.w(T.POSTS, "invalid result uploading deferred full size image");
+                    WordPress.wpDB.deleteDeferredMediaUpload(upload.id);
+                    return;
+                }
+                WordPress.wpDB.setDeferredMediaUploadURL(upload.id, upload.fullSizeURL);
+            }
+
+            if (!ApiHelper.replaceInPostContent(blog, upload.remotePostId, getLink(upload.resizedURL),
+                    getLink(upload.fullSizeURL))) {
+                AppLog.w(T.POSTS, "resized image link no longer in post " + upload.remotePostId);
+            }
+            WordPress.wpDB.deleteDeferredMediaUpload(upload.id);
+        } catch (XMLRPCFault e) {
+            // rejected by the blog, retrying won't help
+            AppLog.e(T.POSTS, e);
+            WordPress.wpDB.deleteDeferredMediaUpload(upload.id);
+        } catch (XMLRPCException e) {
+            onUploadFailed(upload, e);
+        } catch (IOException e) {
+            onUploadFailed(upload, e);
+        } catch (XmlPullParserException e) {
+            onUploadFailed(upload, e);
+        }
+    }
+
+    private void onUploadFailed(DeferredUpload upload, Exception e) {
+        AppLog.e(T.POSTS, e);
+        int attempts = upload.attempts + 1;
+        if (attempts >= MAX_ATTEMPTS) {
+            WordPress.wpDB.deleteDeferredMediaUpload(upload.id);
+            return;
+        }
+        WordPress.wpDB.setDeferredMediaUploadAttempts(upload.id, attempts);
+        // retry at the shortest delay of the failed uploads
+        long retryDelay = getRetryDelay(attempts);
+        if (mRetryDelay == 0 || retryDelay < mRetryDelay) {
+            mRetryDelay = retryDelay;
+        }
+    }
+
+    /*
+     * the opening link tag PostUploadService writes around a resized image
+     */
+    static String getLink(String url) {
+        return "<a href=\"" + url + "\">";
+    }
+}
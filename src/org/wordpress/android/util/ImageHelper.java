@@ -24,11 +24,13 @@ import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
 import org.wordpress.android.util.CrashlyticsUtils.ExtraKey;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
 
 public class ImageHelper {
@@ -368,14 +370,7 @@ public class ImageHelper {
 
             // create resized picture
             int rotation = getImageOrientation(context, filePath);
-            byte[] bytes = createThumbnailFromUri(context, curUri, resizedWidth, null, rotation);
-
-            // upload resized picture
-            if (bytes != null && bytes.length > 0) {
-                return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-            } else {
-                return null;
-            }
+            return ImageResizer.resizeToBitmap(getFilePathFromUri(context, curUri), resizedWidth, rotation);
         }
     }
 
@@ -391,19 +386,10 @@ public class ImageHelper {
         return Bitmap.createScaledBitmap(largeBitmap, resizeWidth, resizeHeight, true);
     }
 
-    /**
-     * nbradbury - 21-Feb-2014 - similar to createThumbnail but more efficient since it doesn't
-     * require passing the full-size image as an array of bytes[]
+    /*
+     * returns the path of a local image, from the media store for content uris
      */
-    public byte[] createThumbnailFromUri(Context context,
-            Uri imageUri,
-            int maxWidth,
-            String fileExtension,
-            int rotation) {
-
-        if (context == null || imageUri == null)
-            return null;
-
+    private String getFilePathFromUri(Context context, Uri imageUri) {
         String filePath = null;
         if (imageUri.toString().contains("content:")) {
             String[] projection = new String[] { Images.Media.DATA };
@@ -422,62 +408,24 @@ public class ImageHelper {
             filePath = imageUri.toString().replace("content://media", "");
             filePath = filePath.replace("file://", "");
         }
+        return filePath;
+    }
 
-        // get just the image bounds
-        BitmapFactory.Options optBounds = new BitmapFactory.Options();
-        optBounds.inJustDecodeBounds = true;
-
-        try {
-            BitmapFactory.decodeFile(filePath, optBounds);
-        } catch (OutOfMemoryError e) {
-            CrashlyticsUtils.logException(e, ExceptionType.SPECIFIC, T.UTILS);
-            return null;
-        }
-
-        // determine correct scale value (should be power of 2)
-        // http://stackoverflow.com/questions/477572/android-strange-out-of-memory-issue/3549021#3549021
-        int scale = 1;
-        if (maxWidth > 0 && optBounds.outWidth > maxWidth) {
-            double d = Math.pow(2, (int) Math.round(Math.log(maxWidth / (double) optBounds.outWidth) / Math.log(0.5)));
-            scale = (int) d;
-        }
-
-        BitmapFactory.Options optActual = new BitmapFactory.Options();
-        optActual.inSampleSize = scale;
-
-        // Get the roughly resized bitmap
-        Bitmap bmpResized;
-        try {
-            bmpResized = BitmapFactory.decodeFile(filePath, optActual);
-        } catch (OutOfMemoryError e) {
-            CrashlyticsUtils.setFloat(ExtraKey.IMAGE_RESIZE_SCALE, scale);
-            CrashlyticsUtils.logException(e, ExceptionType.SPECIFIC, T.UTILS);
-            return null;
-        }
-
-        if (bmpResized == null)
-            return null;
-
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-
-        // Now calculate exact scale in order to resize accurately
-        float percentage = (float) maxWidth / bmpResized.getWidth();
-        float proportionateHeight = bmpResized.getHeight() * percentage;
-        int finalHeight = (int) Math.rint(proportionateHeight);
-
-        float scaleWidth = ((float) maxWidth) / bmpResized.getWidth();
-        float scaleHeight = ((float) finalHeight) / bmpResized.getHeight();
-
-        float scaleBy = Math.min(scaleWidth, scaleHeight);
-
-        // Resize the bitmap to exact size
-        Matrix matrix = new Matrix();
-        matrix.postScale(scaleBy, scaleBy);
+    /**
+     * Writes a resized and rotated copy of an image to destFile, the image is encoded straight
+     * to the file rather than through an in-memory copy, see ImageResizer
+     *
+     * @return false if the image couldn't be resized or written
+     */
+    public boolean createResizedImageFile(Context context,
+            Uri imageUri,
+            int maxWidth,
+            String fileExtension,
+            int rotation,
+            File destFile) {
 
-        // apply rotation
-        if (rotation != 0) {
-            matrix.setRotate(rotation);
-        }
+        if (context == null || imageUri == null || destFile == null)
+            return false;
 
         Bitmap.CompressFormat fmt;
         if (fileExtension != null && fileExtension.equalsIgnoreCase("png")) {
@@ -486,22 +434,25 @@ public class ImageHelper {
             fmt = Bitmap.CompressFormat.JPEG;
         }
 
-        final Bitmap bmpRotated;
+        String filePath = getFilePathFromUri(context, imageUri);
+        OutputStream out = null;
         try {
-            bmpRotated = Bitmap.createBitmap(bmpResized, 0, 0, bmpResized.getWidth(), bmpResized.getHeight(), matrix,
-                    true);
-        } catch (OutOfMemoryError e) {
-            CrashlyticsUtils.setInt(ExtraKey.IMAGE_ANGLE, rotation);
-            CrashlyticsUtils.setInt(ExtraKey.IMAGE_WIDTH, bmpResized.getWidth());
-            CrashlyticsUtils.setInt(ExtraKey.IMAGE_HEIGHT, bmpResized.getHeight());
-            CrashlyticsUtils.setFloat(ExtraKey.IMAGE_RESIZE_SCALE, scaleBy);
-            CrashlyticsUtils.logException(e, ExceptionType.SPECIFIC, T.UTILS);
-            return null;
+            out = new BufferedOutputStream(new FileOutputStream(destFile));
+            boolean isResized = ImageResizer.resizeToStream(filePath, maxWidth, rotation, fmt, out);
+            out.close();
+            out = null;
+            return isResized;
+        } catch (IOException e) {
+            AppLog.e(T.UTILS, e);
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nop
+                }
+            }
         }
-        bmpRotated.compress(fmt, 100, stream);
-        bmpResized.recycle();
-        bmpRotated.recycle();
-
-        return stream.toByteArray();
     }
 }
@@ -0,0 +1,241 @@
+package org.wordpress.android.util;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.Build;
+
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
+import org.wordpress.android.util.CrashlyticsUtils.ExtraKey;
+
+import java.io.OutputStream;
+
+/**
+ * Resizes local images with bounded memory: the image is decoded straight to the power-of-two
+ * sample size closest above the target width, then scaled and rotated in a single pass and, for
+ * uploads, encoded directly to the destination stream. The decoded and resized bitmaps together
+ * must fit in a budget based on the app heap, a larger sample size is used otherwise. Resizes are
+ * serialized so the media of a post uploaded in parallel don't add up, and on KitKat the decode
+ * buffer is reused from one resize to the next.
+ */
+public class ImageResizer {
+    // part of the heap a resize may use
+    private static final int HEAP_BUDGET_DIVISOR = 4;
+    private static final int BYTES_PER_PIXEL = 4; // ARGB_8888
+    private static final int JPEG_QUALITY = 100;
+
+    private static final Object sLock = new Object();
+    // decode buffer kept for the next resize, guarded by sLock
+    private static Bitmap sReusableBitmap;
+
+    private ImageResizer() {
+        throw new AssertionError();
+    }
+
+    /*
+     * max bytes the decoded and resized bitmaps of a resize may use on this device
+     */
+    public static long getMemoryBudget() {
+        return Runtime.getRuntime().maxMemory() / HEAP_BUDGET_DIVISOR;
+    }
+
+    /*
+     * returns the largest power of two sample size which doesn't decode the image below
+     * targetWidth, increased until the decoded and resized bitmaps fit in budgetBytes
+     */
+    static int getSampleSize(int srcWidth, int srcHeight, int targetWidth, long budgetBytes) {
+        int sampleSize = 1;
+        if (targetWidth > 0) {
+            while (srcWidth / (sampleSize * 2) >= targetWidth) {
+                sampleSize *= 2;
+            }
+        }
+        while (getPeakBytes(srcWidth, srcHeight, targetWidth, sampleSize) > budgetBytes
+                && srcWidth / (sampleSize * 2) > 0 && srcHeight / (sampleSize * 2) > 0) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /*
+     * bytes used by the decoded bitmap and the resized one when decoding with this sample size
+     */
+    static long getPeakBytes(int srcWidth, int srcHeight, int targetWidth, int sampleSize) {
+        int decodedWidth = divideRoundingUp(srcWidth, sampleSize);
+        int decodedHeight = divideRoundingUp(srcHeight, sampleSize);
+        long decodedBytes = (long) decodedWidth * decodedHeight * BYTES_PER_PIXEL;
+        if (targetWidth <= 0 || targetWidth >= decodedWidth) {
+            return decodedBytes;
+        }
+        long resizedHeight = Math.round((double) decodedHeight * targetWidth / decodedWidth);
+        return decodedBytes + targetWidth * resizedHeight * BYTES_PER_PIXEL;
+    }
+
+    private static int divideRoundingUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * Resizes the image to targetWidth (images aren't enlarged), rotates it and encodes it to
+     * the passed stream, which is left open
+     *
+     * @return false if the image couldn't be decoded, resized or written
+     */
+    public static boolean resizeToStream(String filePath, int targetWidth, int rotation,
+                                         Bitmap.CompressFormat format, OutputStream out) {
+        synchronized (sLock) {
+            Bitmap decoded = decode(filePath, targetWidth);
+            if (decoded == null) {
+                return false;
+            }
+            Bitmap resized = transform(decoded, targetWidth, rotation);
+            try {
+                if (resized == null) {
+                    return false;
+                }
+                int quality = (format == Bitmap.CompressFormat.JPEG ? JPEG_QUALITY : 100);
+                return resized.compress(format, quality, out);
+            } finally {
+                if (resized != null && resized != decoded) {
+                    resized.recycle();
+                }
+                releaseDecoded(decoded);
+            }
+        }
+    }
+
+    /**
+     * Resizes the image to targetWidth (images aren't enlarged) and rotates it
+     *
+     * @return the resized bitmap, or null if the image couldn't be decoded or resized
+     */
+    public static Bitmap resizeToBitmap(String filePath, int targetWidth, int rotation) {
+        synchronized (sLock) {
+            Bitmap decoded = decode(filePath, targetWidth);
+            if (decoded == null) {
+                return null;
+            }
+            Bitmap resized = transform(decoded, targetWidth, rotation);
+            if (resized != decoded) {
+                releaseDecoded(decoded);
+            }
+            return resized;
+        }
+    }
+
+    /*
+     * drops the decode buffer kept for the next resize, called when memory is low
+     */
+    public static void clearReusableBitmap() {
+        synchronized (sLock) {
+            if (sReusableBitmap != null) {
+                sReusableBitmap.recycle();
+                sReusableBitmap = null;
+            }
+        }
+    }
+
+    private static Bitmap decode(String filePath, int targetWidth) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(filePath, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            AppLog.w(T.UTILS, "can't read image bounds: " + filePath);
+            return null;
+        }
+
+        int sampleSize = getSampleSize(options.outWidth, options.outHeight, targetWidth, getMemoryBudget());
+        long decodedBytes = (long) divideRoundingUp(options.outWidth, sampleSize)
+                          * divideRoundingUp(options.outHeight, sampleSize) * BYTES_PER_PIXEL;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                Bitmap decoded = decodeReusingBitmap(filePath, options, decodedBytes);
+                if (decoded != null) {
+                    return decoded;
+                }
+            }
+            return BitmapFactory.decodeFile(filePath, options);
+        } catch (OutOfMemoryError e) {
+            CrashlyticsUtils.setInt(ExtraKey.IMAGE_WIDTH, options.outWidth);
+            CrashlyticsUtils.setInt(ExtraKey.IMAGE_HEIGHT, options.outHeight);
+            CrashlyticsUtils.setFloat(ExtraKey.IMAGE_RESIZE_SCALE, sampleSize);
+            CrashlyticsUtils.logException(e, ExceptionType.SPECIFIC, T.UTILS);
+            return null;
+        }
+    }
+
+    /*
+     * decodes into the kept decode buffer if it's large enough, returns null if it can't be used
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static Bitmap decodeReusingBitmap(String filePath, BitmapFactory.Options options, long decodedBytes) {
+        options.inMutable = true;
+        if (sReusableBitmap == null || sReusableBitmap.getAllocationByteCount() < decodedBytes) {
+            return null;
+        }
+        // the buffer is taken until it's released
+        options.inBitmap = sReusableBitmap;
+        sReusableBitmap = null;
+        Bitmap decoded = null;
+        try {
+            decoded = BitmapFactory.decodeFile(filePath, options);
+        } catch (IllegalArgumentException e) {
+            // the image can't be decoded into this buffer
+            options.inBitmap.recycle();
+        }
+        options.inBitmap = null;
+        return decoded;
+    }
+
+    /*
+     * keeps the decoded bitmap for the next resize on KitKat, where bitmaps of any size can be
+     * decoded into a large enough one, recycles it otherwise
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void releaseDecoded(Bitmap decoded) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && decoded.isMutable()
+                && decoded.getByteCount() <= getMemoryBudget() / 2) {
+            if (sReusableBitmap != null) {
+                sReusableBitmap.recycle();
+            }
+            sReusableBitmap = decoded;
+        } else {
+            decoded.recycle();
+        }
+    }
+
+    /*
+     * scales the decoded bitmap down to targetWidth and rotates it in a single pass, returns the
+     * decoded bitmap itself if there's nothing to do
+     */
+    private static Bitmap transform(Bitmap decoded, int targetWidth, int rotation) {
+        Matrix matrix = new Matrix();
+        float scale = 1f;
+        if (targetWidth > 0 && decoded.getWidth() > targetWidth) {
+            scale = (float) targetWidth / decoded.getWidth();
+            matrix.postScale(scale, scale);
+        }
+        if (rotation != 0) {
+            matrix.postRotate(rotation);
+        }
+        if (matrix.isIdentity()) {
+            return decoded;
+        }
+
+        try {
+            return Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+        } catch (OutOfMemoryError e) {
+            CrashlyticsUtils.setInt(ExtraKey.IMAGE_ANGLE, rotation);
+            CrashlyticsUtils.setInt(ExtraKey.IMAGE_WIDTH, decoded.getWidth());
+            CrashlyticsUtils.setInt(ExtraKey.IMAGE_HEIGHT, decoded.getHeight());
+            CrashlyticsUtils.setFloat(ExtraKey.IMAGE_RESIZE_SCALE, scale);
+            CrashlyticsUtils.logException(e, ExceptionType.SPECIFIC, T.UTILS);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.wordpress.android.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Picks the queued media files MediaUploadService uploads next, across all the blogs: at most
+ * maxUploads run at the same time, and at most maxUploadsPerHost to the same host. Failed uploads
+ * are retried after an exponential backoff. Not thread-safe, used from the main thread.
+ */
+class MediaUploadScheduler {
+    static final int MAX_ATTEMPTS = 5;
+    static final long BASE_RETRY_DELAY_MS = 5000;
+    static final long MAX_RETRY_DELAY_MS = 10 * 60 * 1000;
+
+    static class QueuedUpload {
+        final String blogId;
+        final String mediaId;
+        final String host;
+        final int attempts;
+        final long retryAt;
+
+        QueuedUpload(String blogId, String mediaId, String host, int attempts, long retryAt) {
+            this.blogId = blogId;
+            this.mediaId = mediaId;
+            this.host = host;
+            this.attempts = attempts;
+            this.retryAt = retryAt;
+        }
+
+        private String getKey() {
+            return blogId + "/" + mediaId;
+        }
+    }
+
+    private final int mMaxUploads;
+    private final int mMaxUploadsPerHost;
+    private final Set<String> mRunningUploads = new HashSet<String>();
+    private final Map<String, Integer> mRunningUploadsPerHost = new HashMap<String, Integer>();
+
+    MediaUploadScheduler(int maxUploads, int maxUploadsPerHost) {
+        mMaxUploads = maxUploads;
+        mMaxUploadsPerHost = maxUploadsPerHost;
+    }
+
+    /*
+     * returns the uploads of the queue to start now, in the queue order, they're then running
+     * until onUploadFinished() is called
+     */
+    List<QueuedUpload> startUploads(List<QueuedUpload> queue, long now) {
+        List<QueuedUpload> uploads = new ArrayList<QueuedUpload>();
+        for (QueuedUpload upload : queue) {
+            if (mRunningUploads.size() >= mMaxUploads) {
+                break;
+            }
+            if (upload.retryAt > now || mRunningUploads.contains(upload.getKey())
+                    || getRunningUploadsCount(upload.host) >= mMaxUploadsPerHost) {
+                continue;
+            }
+            mRunningUploads.add(upload.getKey());
+            mRunningUploadsPerHost.put(upload.host, getRunningUploadsCount(upload.host) + 1);
+            uploads.add(upload);
+        }
+        return uploads;
+    }
+
+    void onUploadFinished(QueuedUpload upload) {
+        if (!mRunningUploads.remove(upload.getKey())) {
+            return;
+        }
+        int count = getRunningUploadsCount(upload.host) - 1;
+        if (count > 0) {
+            mRunningUploadsPerHost.put(upload.host, count);
+        } else {
+            mRunningUploadsPerHost.remove(upload.host);
+        }
+    }
+
+    boolean hasRunningUploads() {
+        return !mRunningUploads.isEmpty();
+    }
+
+    private int getRunningUploadsCount(String host) {
+        Integer count = mRunningUploadsPerHost.get(host);
+        return (count != null ? count : 0);
+    }
+
+    /*
+     * returns the earliest time (ms) a queued upload waiting for its retry can start, or -1 if
+     * none is waiting
+     */
+    long getNextRetryTime(List<QueuedUpload> queue, long now) {
+        long nextRetryTime = -1;
+        for (QueuedUpload upload : queue) {
+            if (upload.retryAt > now && !mRunningUploads.contains(upload.getKey())
+                    && (nextRetryTime == -1 || upload.retryAt < nextRetryTime)) {
+                nextRetryTime = upload.retryAt;
+            }
+        }
+        return nextRetryTime;
+    }
+
+    /*
+     * delay before retrying an upload which failed for the passed number of attempts, doubled
+     * after each attempt
+     */
+    static long getRetryDelay(int attempts) {
+        long delay = BASE_RETRY_DELAY_MS;
+        for (int i = 1; i < attempts && delay < MAX_RETRY_DELAY_MS; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, MAX_RETRY_DELAY_MS);
+    }
+}
@@ -10,32 +10,49 @@ import android.support.v4.content.LocalBroadcastManager;
 
 import org.wordpress.android.R;
 import org.wordpress.android.WordPress;
+import org.wordpress.android.models.Blog;
 import org.wordpress.android.models.MediaFile;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.CrashlyticsUtils.ExceptionType;
+import org.wordpress.android.util.MediaUploadScheduler.QueuedUpload;
+import org.xmlpull.v1.XmlPullParserException;
 import org.xmlrpc.android.ApiHelper;
-import org.xmlrpc.android.ApiHelper.ErrorType;
-import org.xmlrpc.android.ApiHelper.GetMediaItemTask;
+import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCFault;
+import org.xmlrpc.android.XMLRPCUploadProgressListener;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A service for uploading media files from the media browser.
- * Only one file is uploaded at a time.
+ * The queued files of all the blogs are uploaded concurrently, as allowed by MediaUploadScheduler,
+ * and the queue is scheduled again each time a file is queued or an upload ends.
+ * Uploads run on UploadExecutor, those failing on a network error are retried with a backoff.
  */
 public class MediaUploadService extends Service {
-    // time to wait before trying to upload the next file
-    private static final int UPLOAD_WAIT_TIME = 1000;
+    private static final int MAX_UPLOADS = 3;
+    private static final int MAX_UPLOADS_PER_HOST = 2;
 
     /** Listen to this Intent for when there are updates to the upload queue **/
     public static final String MEDIA_UPLOAD_INTENT_NOTIFICATION = "MEDIA_UPLOAD_INTENT_NOTIFICATION";
     public static final String MEDIA_UPLOAD_INTENT_NOTIFICATION_EXTRA = "MEDIA_UPLOAD_INTENT_NOTIFICATION_EXTRA";
+    public static final String MEDIA_UPLOAD_INTENT_NOTIFICATION_BLOG_ID = "MEDIA_UPLOAD_INTENT_NOTIFICATION_BLOG_ID";
     public static final String MEDIA_UPLOAD_INTENT_NOTIFICATION_ERROR = "MEDIA_UPLOAD_INTENT_NOTIFICATION_ERROR";
 
+    /** Listen to this Intent for the progress of each upload **/
+    public static final String MEDIA_UPLOAD_PROGRESS_INTENT = "MEDIA_UPLOAD_PROGRESS_INTENT";
+    public static final String MEDIA_UPLOAD_PROGRESS_BLOG_ID = "MEDIA_UPLOAD_PROGRESS_BLOG_ID";
+    public static final String MEDIA_UPLOAD_PROGRESS_MEDIA_ID = "MEDIA_UPLOAD_PROGRESS_MEDIA_ID";
+    public static final String MEDIA_UPLOAD_PROGRESS_PERCENT = "MEDIA_UPLOAD_PROGRESS_PERCENT";
+
     private Context mContext;
     private Handler mHandler = new Handler();
-    private boolean mUploadInProgress;
+    private final MediaUploadScheduler mScheduler = new MediaUploadScheduler(MAX_UPLOADS, MAX_UPLOADS_PER_HOST);
 
     @Override
     public IBinder onBind(Intent intent) {
@@ -47,141 +64,227 @@ public class MediaUploadService extends Service {
         super.onCreate();
 
         mContext = this.getApplicationContext();
-        mUploadInProgress = false;
 
-        cancelOldUploads();
+        resumeOldUploads();
     }
 
     @Override
     public void onStart(Intent intent, int startId) {
-        mHandler.post(mFetchQueueTask);
+        scheduleUploads();
     }
 
-    private Runnable mFetchQueueTask = new Runnable() {
+    @Override
+    public void onDestroy() {
+        mHandler.removeCallbacks(mScheduleUploadsTask);
+        super.onDestroy();
+    }
 
+    private Runnable mScheduleUploadsTask = new Runnable() {
         @Override
         public void run() {
-            Cursor cursor = getQueue();
-            try {
-                if ((cursor == null || cursor.getCount() == 0 || mContext == null) && !mUploadInProgress) {
-                    MediaUploadService.this.stopSelf();
-                    return;
-                } else {
-                    if (mUploadInProgress) {
-                        mHandler.postDelayed(this, UPLOAD_WAIT_TIME);
-                    } else {
-                        uploadMediaFile(cursor);
-                    }
-                }
-            } finally {
-                if (cursor != null)
-                    cursor.close();
-            }
-
+            scheduleUploads();
         }
     };
 
-    private void cancelOldUploads() {
-        // There should be no media files with an upload state of 'uploading' at the start of this service.
-        // Since we won't be able to receive notifications for these, set them to 'failed'.
+    private void resumeOldUploads() {
+        // Media files with an upload state of 'uploading' at the start of this service were interrupted
+        // when it was stopped, queue them again so they're uploaded.
+        WordPress.wpDB.setMediaUploadingToQueued();
+        sendUpdateBroadcast(null, null, null);
+    }
 
-        if(WordPress.getCurrentBlog() != null){
-            String blogId = String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId());
-            WordPress.wpDB.setMediaUploadingToFailed(blogId);
-            sendUpdateBroadcast(null, null);
+    /*
+     * start the queued uploads the scheduler allows, and stop the service once nothing is left
+     * to upload. When the other uploads wait for their retry, schedule again at the first retry
+     */
+    private void scheduleUploads() {
+        mHandler.removeCallbacks(mScheduleUploadsTask);
+        if (mContext == null) {
+            stopSelf();
+            return;
         }
-    }
 
-    private Cursor getQueue() {
-        if (WordPress.getCurrentBlog() == null)
-            return null;
+        Map<QueuedUpload, MediaFile> mediaFiles = new IdentityHashMap<QueuedUpload, MediaFile>();
+        Map<String, Blog> blogs = new HashMap<String, Blog>();
+        List<QueuedUpload> queue = getQueue(mediaFiles, blogs);
 
-        String blogId = String.valueOf(WordPress.getCurrentBlog().getLocalTableBlogId());
-        return WordPress.wpDB.getMediaUploadQueue(blogId);
-    }
+        long now = System.currentTimeMillis();
+        for (QueuedUpload upload : mScheduler.startUploads(queue, now)) {
+            startUpload(upload, blogs.get(upload.blogId), mediaFiles.get(upload));
+        }
 
-    private void uploadMediaFile(Cursor cursor) {
-        if (!cursor.moveToFirst())
-            return;
+        long nextRetryTime = mScheduler.getNextRetryTime(queue, now);
+        if (nextRetryTime != -1) {
+            mHandler.postDelayed(mScheduleUploadsTask, nextRetryTime - now);
+        } else if (!mScheduler.hasRunningUploads()) {
+            stopSelf();
+        }
+    }
 
-        mUploadInProgress = true;
+    /*
+     * returns the queued uploads of all the blogs, the media files to upload and their blogs are
+     * added to the passed maps. Files queued for a blog which no longer exists are set to failed
+     */
+    private List<QueuedUpload> getQueue(Map<QueuedUpload, MediaFile> mediaFiles, Map<String, Blog> blogs) {
+        List<QueuedUpload> queue = new ArrayList<QueuedUpload>();
+        Cursor cursor = WordPress.wpDB.getMediaUploadQueue();
+        try {
+            while (cursor.moveToNext()) {
+                String blogIdStr = cursor.getString(cursor.getColumnIndex("blogId"));
+                String mediaId = cursor.getString(cursor.getColumnIndex("mediaId"));
 
-        final String blogIdStr = cursor.getString((cursor.getColumnIndex("blogId")));
-        final String mediaId = cursor.getString(cursor.getColumnIndex("mediaId"));
-        String fileName = cursor.getString(cursor.getColumnIndex("fileName"));
-        String filePath = cursor.getString(cursor.getColumnIndex("filePath"));
-        String mimeType = cursor.getString(cursor.getColumnIndex("mimeType"));
+                Blog blog = blogs.get(blogIdStr);
+                if (blog == null) {
+                    blog = WordPress.wpDB.instantiateBlogByLocalId(StringUtils.stringToInt(blogIdStr));
+                    if (blog == null) {
+                        WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "failed");
+                        continue;
+                    }
+                    blogs.put(blogIdStr, blog);
+                }
 
-        MediaFile mediaFile = new MediaFile();
-        mediaFile.setBlogId(blogIdStr);
-        mediaFile.setFileName(fileName);
-        mediaFile.setFilePath(filePath);
-        mediaFile.setMimeType(mimeType);
+                MediaFile mediaFile = new MediaFile();
+                mediaFile.setBlogId(blogIdStr);
+                mediaFile.setMediaId(mediaId);
+                mediaFile.setFileName(cursor.getString(cursor.getColumnIndex("fileName")));
+                mediaFile.setFilePath(cursor.getString(cursor.getColumnIndex("filePath")));
+                mediaFile.setMimeType(cursor.getString(cursor.getColumnIndex("mimeType")));
 
-        ApiHelper.UploadMediaTask task = new ApiHelper.UploadMediaTask(mContext, mediaFile,
-                new ApiHelper.UploadMediaTask.Callback() {
-            @Override
-            public void onSuccess(String id) {
-                // once the file has been uploaded, delete the local database entry and
-                // download the new one so that we are up-to-date and so that users can edit it.
-                WordPress.wpDB.deleteMediaFile(blogIdStr, mediaId);
-                sendUpdateBroadcast(mediaId, null);
-                fetchMediaFile(id);
+                QueuedUpload upload = new QueuedUpload(blogIdStr, mediaId, getHost(blog),
+                        cursor.getInt(cursor.getColumnIndex("uploadAttempts")),
+                        cursor.getLong(cursor.getColumnIndex("uploadRetryAt")));
+                queue.add(upload);
+                mediaFiles.put(upload, mediaFile);
             }
+        } finally {
+            SqlUtils.closeCursor(cursor);
+        }
+        return queue;
+    }
+
+    private static String getHost(Blog blog) {
+        if (blog.getUri() != null && blog.getUri().getHost() != null) {
+            return blog.getUri().getHost();
+        }
+        return StringUtils.notNullStr(blog.getUrl());
+    }
 
+    private void startUpload(final QueuedUpload upload, final Blog blog, final MediaFile mediaFile) {
+        WordPress.wpDB.updateMediaUploadState(upload.blogId, upload.mediaId, "uploading");
+        sendUpdateBroadcast(upload.blogId, upload.mediaId, null);
+        UploadExecutor.execute(new Runnable() {
             @Override
-            public void onFailure(ApiHelper.ErrorType errorType, String errorMessage, Throwable throwable) {
-                WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "failed");
-                mUploadInProgress = false;
-                sendUpdateBroadcast(mediaId, getString(R.string.upload_failed));
-                mHandler.post(mFetchQueueTask);
-                // Only log the error if it's not caused by the network (internal inconsistency)
-                if (errorType != ErrorType.NETWORK_XMLRPC) {
-                    CrashlyticsUtils.logException(throwable, ExceptionType.SPECIFIC, T.MEDIA, errorMessage);
+            public void run() {
+                try {
+                    uploadMediaFile(upload, blog, mediaFile);
+                } finally {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mScheduler.onUploadFinished(upload);
+                            scheduleUploads();
+                        }
+                    });
                 }
             }
         });
+    }
+
+    /*
+     * runs in the background: uploads the file unless it was already uploaded, then replaces the
+     * local media file with the uploaded one
+     */
+    private void uploadMediaFile(QueuedUpload upload, Blog blog, MediaFile mediaFile) {
+        // the same file may already be on the blog, added from the media library or a post
+        MediaFile uploaded = ApiHelper.getUploadedMediaItem(blog,
+                MediaUtils.getMediaSourceKey(mediaFile.getFilePath(), 0, 0));
+        if (uploaded != null) {
+            WordPress.wpDB.deleteMediaFile(upload.blogId, upload.mediaId);
+            sendUpdateBroadcast(upload.blogId, upload.mediaId, null);
+            WordPress.wpDB.updateMediaUploadState(uploaded.getBlogId(), uploaded.getMediaId(), "uploaded");
+            sendUpdateBroadcast(uploaded.getBlogId(), uploaded.getMediaId(), null);
+            return;
+        }
+
+        String id;
+        try {
+            id = ApiHelper.uploadMediaFile(blog, mediaFile, new UploadProgressBroadcaster(upload));
+        } catch (XMLRPCFault fault) {
+            // rejected by the server, retrying won't help
+            onUploadFailed(upload, false, fault);
+            return;
+        } catch (XMLRPCException e) {
+            onUploadFailed(upload, true, e);
+            return;
+        } catch (IOException e) {
+            onUploadFailed(upload, true, e);
+            return;
+        } catch (XmlPullParserException e) {
+            onUploadFailed(upload, true, e);
+            return;
+        } catch (ClassCastException cce) {
+            // unexpected result, retrying won't help
+            CrashlyticsUtils.logException(cce, ExceptionType.SPECIFIC, T.MEDIA, cce.getMessage());
+            onUploadFailed(upload, false, cce);
+            return;
+        }
+        if (id == null) {
+            onUploadFailed(upload, false, null);
+            return;
+        }
 
-        WordPress.wpDB.updateMediaUploadState(blogIdStr, mediaId, "uploading");
-        sendUpdateBroadcast(mediaId, null);
-        List<Object> apiArgs = new ArrayList<Object>();
-        apiArgs.add(WordPress.getCurrentBlog());
-        task.execute(apiArgs);
-        mHandler.post(mFetchQueueTask);
+        // once the file has been uploaded, delete the local database entry and
+        // download the new one so that we are up-to-date and so that users can edit it.
+        WordPress.wpDB.deleteMediaFile(upload.blogId, upload.mediaId);
+        sendUpdateBroadcast(upload.blogId, upload.mediaId, null);
+        fetchMediaFile(blog, id);
     }
 
-    private void fetchMediaFile(final String id) {
-        List<Object> apiArgs = new ArrayList<Object>();
-        apiArgs.add(WordPress.getCurrentBlog());
-        GetMediaItemTask task = new GetMediaItemTask(Integer.valueOf(id),
-                new ApiHelper.GetMediaItemTask.Callback() {
-            @Override
-            public void onSuccess(MediaFile mediaFile) {
-                String blogId = mediaFile.getBlogId();
-                String mediaId = mediaFile.getMediaId();
-                WordPress.wpDB.updateMediaUploadState(blogId, mediaId, "uploaded");
-                mUploadInProgress = false;
-                sendUpdateBroadcast(id, null);
-                mHandler.post(mFetchQueueTask);
-            }
+    private void onUploadFailed(QueuedUpload upload, boolean canRetry, Throwable throwable) {
+        if (throwable != null) {
+            AppLog.e(T.MEDIA, "media upload failed", throwable);
+        } else {
+            AppLog.e(T.MEDIA, "media upload failed, invalid result");
+        }
+        int attempts = upload.attempts + 1;
+        if (canRetry && attempts < MediaUploadScheduler.MAX_ATTEMPTS) {
+            long retryAt = System.currentTimeMillis() + MediaUploadScheduler.getRetryDelay(attempts);
+            WordPress.wpDB.setMediaUploadRetry(upload.blogId, upload.mediaId, attempts, retryAt);
+            sendUpdateBroadcast(upload.blogId, upload.mediaId, null);
+        } else {
+            WordPress.wpDB.updateMediaUploadState(upload.blogId, upload.mediaId, "failed");
+            sendUpdateBroadcast(upload.blogId, upload.mediaId, getString(R.string.upload_failed));
+        }
+    }
 
-            @Override
-            public void onFailure(ApiHelper.ErrorType errorType, String errorMessage, Throwable throwable) {
-                mUploadInProgress = false;
-                sendUpdateBroadcast(id, getString(R.string.error_refresh_media));
-                mHandler.post(mFetchQueueTask);
-                // Only log the error if it's not caused by the network (internal inconsistency)
-                if (errorType != ErrorType.NETWORK_XMLRPC) {
-                    CrashlyticsUtils.logException(throwable, ExceptionType.SPECIFIC, T.MEDIA, errorMessage);
-                }
-            }
-        });
-        task.execute(apiArgs);
+    private void fetchMediaFile(Blog blog, String id) {
+        MediaFile mediaFile = null;
+        try {
+            mediaFile = ApiHelper.getMediaItem(blog, id);
+        } catch (XMLRPCException e) {
+            AppLog.e(T.MEDIA, e);
+        } catch (IOException e) {
+            AppLog.e(T.MEDIA, e);
+        } catch (XmlPullParserException e) {
+            AppLog.e(T.MEDIA, e);
+        } catch (ClassCastException cce) {
+            AppLog.e(T.MEDIA, cce);
+            CrashlyticsUtils.logException(cce, ExceptionType.SPECIFIC, T.MEDIA, cce.getMessage());
+        }
+        if (mediaFile == null) {
+            sendUpdateBroadcast(String.valueOf(blog.getLocalTableBlogId()), id, getString(R.string.error_refresh_media));
+            return;
+        }
+        WordPress.wpDB.updateMediaUploadState(mediaFile.getBlogId(), mediaFile.getMediaId(), "uploaded");
+        sendUpdateBroadcast(mediaFile.getBlogId(), id, null);
     }
 
-    private void sendUpdateBroadcast(String mediaId, String errorMessage) {
+    private void sendUpdateBroadcast(String blogId, String mediaId, String errorMessage) {
         LocalBroadcastManager lbm = LocalBroadcastManager.getInstance(mContext);
         Intent intent = new Intent(MEDIA_UPLOAD_INTENT_NOTIFICATION);
+        if (blogId != null) {
+            intent.putExtra(MEDIA_UPLOAD_INTENT_NOTIFICATION_BLOG_ID, blogId);
+        }
         if (mediaId != null) {
             intent.putExtra(MEDIA_UPLOAD_INTENT_NOTIFICATION_EXTRA, mediaId);
         }
@@ -190,4 +293,33 @@ public class MediaUploadService extends Service {
         }
         lbm.sendBroadcast(intent);
     }
+
+    /*
+     * broadcasts the progress of an upload each time its percentage changes
+     */
+    private class UploadProgressBroadcaster implements XMLRPCUploadProgressListener {
+        private final QueuedUpload mUpload;
+        private int mLastPercent = -1;
+
+        UploadProgressBroadcaster(QueuedUpload upload) {
+            mUpload = upload;
+        }
+
+        @Override
+        public void onProgress(long bytesSent, long totalBytes) {
+            if (totalBytes <= 0) {
+                return;
+            }
+            int percent = (int) (bytesSent * 100 / totalBytes);
+            if (percent == mLastPercent) {
+                return;
+            }
+            mLastPercent = percent;
+            Intent intent = new Intent(MEDIA_UPLOAD_PROGRESS_INTENT);
+            intent.putExtra(MEDIA_UPLOAD_PROGRESS_BLOG_ID, mUpload.blogId);
+            intent.putExtra(MEDIA_UPLOAD_PROGRESS_MEDIA_ID, mUpload.mediaId);
+            intent.putExtra(MEDIA_UPLOAD_PROGRESS_PERCENT, percent);
+            LocalBroadcastManager.getInstance(mContext).sendBroadcast(intent);
+        }
+    }
 }
@@ -475,6 +475,23 @@ public class MediaUtils {
         return originalFileName;
     }
 
+    /**
+     * Returns the key identifying the content of a local file in the content hash index of the
+     * uploaded media: its path, size and modification date, plus the width and rotation it's
+     * resized to, if any. Returns null if the file doesn't exist
+     */
+    public static String getMediaSourceKey(String filePath, int resizeWidth, int rotation) {
+        if (filePath == null)
+            return null;
+        File file = new File(filePath);
+        if (!file.exists())
+            return null;
+        String key = file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+        if (resizeWidth > 0)
+            key += ":" + resizeWidth + ":" + rotation;
+        return key;
+    }
+
     public static String getExtensionForMimeType(String mimeType) {
         if (TextUtils.isEmpty(mimeType))
             return "";
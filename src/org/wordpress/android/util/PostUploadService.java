@@ -36,21 +36,30 @@ import org.xmlrpc.android.ApiHelper;
 import org.xmlrpc.android.XMLRPCClientInterface;
 import org.xmlrpc.android.XMLRPCException;
 import org.xmlrpc.android.XMLRPCFactory;
+import org.xmlrpc.android.XMLRPCFault;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PostUploadService extends Service {
+    // media of a post uploaded at the same time
+    private static final int MAX_PARALLEL_MEDIA_UPLOADS = 3;
+    private static final int MAX_MEDIA_UPLOAD_ATTEMPTS = 3;
+    private static final long MEDIA_UPLOAD_RETRY_DELAY_MS = 2000;
+    private static final Pattern IMG_TAG_PATTERN = Pattern.compile("<img[^>]+android-uri\\s*=\\s*['\"]([^'\"]+)['\"][^>]*>");
+    private static final Pattern ANDROID_URI_PATTERN = Pattern.compile("android-uri=\"([^\"]+)\"");
+
     private static Context context;
     private static final ArrayList<Post> listOfPosts = new ArrayList<Post>();
     private static NotificationManager nm;
@@ -127,12 +136,47 @@ public class PostUploadService extends Service {
         return false;
     }
 
+    /*
+     * an image or video of the post being uploaded, html is its replacement once uploaded
+     */
+    private static class PostMedia {
+        private final String tag;
+        private final boolean isInMoreText;
+        private final MediaFile mediaFile;
+        private String html;
+
+        PostMedia(String tag, boolean isInMoreText, MediaFile mediaFile) {
+            this.tag = tag;
+            this.isInMoreText = isInMoreText;
+            this.mediaFile = mediaFile;
+        }
+    }
+
+    /*
+     * a full size image to upload once the post is uploaded, see DeferredMediaUploadService
+     */
+    private static class DeferredImage {
+        private final String filePath;
+        private final String fileName;
+        private final String mimeType;
+        private final String resizedURL;
+
+        DeferredImage(String filePath, String fileName, String mimeType, String resizedURL) {
+            this.filePath = filePath;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            this.resizedURL = resizedURL;
+        }
+    }
+
     private class UploadPostTask extends AsyncTask<Post, Boolean, Boolean> {
         private Post post;
-        private String mErrorMessage = "";
-        private boolean mIsMediaError = false;
-        private boolean mErrorUnavailableVideoPress = false;
-        private int featuredImageID = -1;
+        // the media of a post are uploaded in parallel, so these can be set by several threads
+        private volatile String mErrorMessage = "";
+        private volatile boolean mIsMediaError = false;
+        private volatile boolean mErrorUnavailableVideoPress = false;
+        private volatile int featuredImageID = -1;
+        private final List<DeferredImage> mDeferredImages = Collections.synchronizedList(new ArrayList<DeferredImage>());
         private int notificationID;
         private Notification n;
 
@@ -214,60 +258,22 @@ public class PostUploadService extends Service {
             }
             Boolean publishThis = false;
 
-            String descriptionContent = "", moreContent = "";
-            int moreCount = 1;
+            String descriptionContent = post.getDescription(), moreContent = "";
             if (!TextUtils.isEmpty(post.getMoreText()))
-                moreCount++;
-            String imgTags = "<img[^>]+android-uri\\s*=\\s*['\"]([^'\"]+)['\"][^>]*>";
-            Pattern pattern = Pattern.compile(imgTags);
-
-            for (int x = 0; x < moreCount; x++) {
-
-                if (x == 0)
-                    descriptionContent = post.getDescription();
-                else
-                    moreContent = post.getMoreText();
-
-                Matcher matcher;
-
-                if (x == 0) {
-                    matcher = pattern.matcher(descriptionContent);
+                moreContent = post.getMoreText();
+
+            // upload the media of the post, then replace their tags in the order they appear
+            List<PostMedia> postMedia = new ArrayList<PostMedia>();
+            findPostMedia(descriptionContent, false, postMedia);
+            findPostMedia(moreContent, true, postMedia);
+            uploadPostMedia(postMedia, blog);
+            for (PostMedia media : postMedia) {
+                // media which failed to upload are removed from the content
+                String imgHTML = (media.html != null ? media.html : "");
+                if (media.isInMoreText) {
+                    moreContent = moreContent.replace(media.tag, imgHTML);
                 } else {
-                    matcher = pattern.matcher(moreContent);
-                }
-
-                List<String> imageTags = new ArrayList<String>();
-                while (matcher.find()) {
-                    imageTags.add(matcher.group());
-                }
-
-                for (String tag : imageTags) {
-
-                    Pattern p = Pattern.compile("android-uri=\"([^\"]+)\"");
-                    Matcher m = p.matcher(tag);
-                    if (m.find()) {
-                        String imgPath = m.group(1);
-                        if (!imgPath.equals("")) {
-                            MediaFile mf = WordPress.wpDB.getMediaFile(imgPath, post);
-
-                            if (mf != null) {
-                                String imgHTML = uploadMediaFile(mf, blog);
-                                if (imgHTML != null) {
-                                    if (x == 0) {
-                                        descriptionContent = descriptionContent.replace(tag, imgHTML);
-                                    } else {
-                                        moreContent = moreContent.replace(tag, imgHTML);
-                                    }
-                                } else {
-                                    if (x == 0)
-                                        descriptionContent = descriptionContent.replace(tag, "");
-                                    else
-                                        moreContent = moreContent.replace(tag, "");
-                                    mIsMediaError = true;
-                                }
-                            }
-                        }
-                    }
+                    descriptionContent = descriptionContent.replace(media.tag, imgHTML);
                 }
             }
 
@@ -402,6 +408,7 @@ public class PostUploadService extends Service {
                 post.setUploaded(true);
                 post.setLocalChange(false);
                 WordPress.wpDB.updatePost(post);
+                queueDeferredImages(blog);
                 return true;
             } catch (final XMLRPCException e) {
                 setUploadPostErrorMessage(e);
@@ -415,6 +422,99 @@ public class PostUploadService extends Service {
         }
 
 
+        /*
+         * queue the full size images which weren't uploaded with the post, they need its remote id
+         */
+        private void queueDeferredImages(Blog blog) {
+            if (mDeferredImages.isEmpty() || TextUtils.isEmpty(post.getRemotePostId()))
+                return;
+            for (DeferredImage image : mDeferredImages) {
+                WordPress.wpDB.addDeferredMediaUpload(blog.getLocalTableBlogId(), post.getRemotePostId(),
+                        image.filePath, image.fileName, image.mimeType, image.resizedURL);
+            }
+            DeferredMediaUploadService.scheduleUploads(context);
+        }
+
+        /*
+         * adds the media files of the content, in the order their tags appear
+         */
+        private void findPostMedia(String content, boolean isInMoreText, List<PostMedia> postMedia) {
+            Matcher matcher = IMG_TAG_PATTERN.matcher(content);
+            while (matcher.find()) {
+                String tag = matcher.group();
+                Matcher m = ANDROID_URI_PATTERN.matcher(tag);
+                if (m.find()) {
+                    String imgPath = m.group(1);
+                    if (!imgPath.equals("")) {
+                        MediaFile mf = WordPress.wpDB.getMediaFile(imgPath, post);
+                        if (mf != null) {
+                            postMedia.add(new PostMedia(tag, isInMoreText, mf));
+                        }
+                    }
+                }
+            }
+        }
+
+        /*
+         * uploads the media of the post, at most MAX_PARALLEL_MEDIA_UPLOADS at a time, and waits
+         * for them. This thread runs one of the workers and the others run on UploadExecutor, so
+         * the media are still uploaded while that pool is busy. The wait is over the media rather
+         * than the workers: a worker still queued when this thread has taken the last media
+         * doesn't hold the post. Once a media fails the post won't be sent, so the media not
+         * started yet are skipped
+         */
+        private void uploadPostMedia(final List<PostMedia> postMedia, final Blog blog) {
+            if (postMedia.isEmpty())
+                return;
+
+            final AtomicInteger nextIndex = new AtomicInteger();
+            final CountDownLatch mediaDone = new CountDownLatch(postMedia.size());
+            int numWorkers = Math.min(postMedia.size(), MAX_PARALLEL_MEDIA_UPLOADS);
+            for (int i = 1; i < numWorkers; i++) {
+                UploadExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        uploadNextMedia(postMedia, nextIndex, mediaDone, blog);
+                    }
+                });
+            }
+            uploadNextMedia(postMedia, nextIndex, mediaDone, blog);
+
+            try {
+                mediaDone.await();
+            } catch (InterruptedException e) {
+                AppLog.e(T.POSTS, e);
+                mErrorMessage = context.getString(R.string.error_media_upload);
+                mIsMediaError = true;
+            }
+        }
+
+        /*
+         * takes the media not taken by another worker yet, one at a time, and uploads them unless a
+         * media failed. Each media taken is counted down once uploaded or skipped
+         */
+        private void uploadNextMedia(List<PostMedia> postMedia, AtomicInteger nextIndex, CountDownLatch mediaDone,
+                                     Blog blog) {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < postMedia.size()) {
+                try {
+                    if (mIsMediaError)
+                        continue;
+                    PostMedia media = postMedia.get(index);
+                    String imgHTML = null;
+                    try {
+                        imgHTML = uploadMediaFile(media.mediaFile, blog);
+                    } finally {
+                        media.html = imgHTML;
+                        if (imgHTML == null)
+                            mIsMediaError = true;
+                    }
+                } finally {
+                    mediaDone.countDown();
+                }
+            }
+        }
+
         private void setUploadPostErrorMessage(Exception e) {
             mErrorMessage = String.format(context.getResources().getText(R.string.error_upload).toString(), post.isPage() ? context
                     .getResources().getText(R.string.page).toString() : context.getResources().getText(R.string.post).toString())
@@ -435,16 +535,6 @@ public class PostUploadService extends Service {
                 // Upload the video
                 XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                         blog.getHttppassword());
-                // create temp file for media upload
-                String tempFileName = "wp-" + System.currentTimeMillis();
-                try {
-                    context.openFileOutput(tempFileName, Context.MODE_PRIVATE);
-                } catch (FileNotFoundException e) {
-                    mErrorMessage = getResources().getString(R.string.file_error_create);
-                    mIsMediaError = true;
-                    return null;
-                }
-
                 Uri videoUri = Uri.parse(curImagePath);
                 File videoFile = null;
                 String mimeType = "", xRes = "", yRes = "";
@@ -512,19 +602,9 @@ public class PostUploadService extends Service {
 
                 FeatureSet featureSet = synchronousGetFeatureSet();
                 boolean selfHosted = WordPress.currentBlog != null && !WordPress.currentBlog.isDotcomFlag();
-                boolean isVideoEnabled = selfHosted || (featureSet != null && mFeatureSet.isVideopressEnabled());
+                boolean isVideoEnabled = selfHosted || (featureSet != null && featureSet.isVideopressEnabled());
                 if (isVideoEnabled) {
-                    File tempFile;
-                    try {
-                        String fileExtension = MimeTypeMap.getFileExtensionFromUrl(videoName);
-                        tempFile = createTempUploadFile(fileExtension);
-                    } catch (IOException e) {
-                        mErrorMessage = getResources().getString(R.string.file_error_create);
-                        mIsMediaError = true;
-                        return null;
-                    }
-
-                    Object result = uploadFileHelper(client, params, tempFile);
+                    Object result = uploadFileHelper(client, params);
                     Map<?, ?> resultMap = (HashMap<?, ?>) result;
                     if (resultMap != null && resultMap.containsKey("url")) {
                         String resultURL = resultMap.get("url").toString();
@@ -618,32 +698,35 @@ public class PostUploadService extends Service {
 
                 boolean shouldAddImageWidthCSS = false;
 
+                // the pictures already uploaded to the blog (shared in another post, or uploaded by an
+                // earlier attempt of this one) are reused
+                String resizedSourceKey = null;
                 if (shouldUploadResizedVersion) {
-                    MediaFile resizedMediaFile = new MediaFile(mediaFile);
-                    // Create resized image
-                    byte[] bytes = ih.createThumbnailFromUri(context, imageUri, resizedMediaFile.getWidth(),
-                            fileExtension, orientation);
+                    resizedSourceKey = MediaUtils.getMediaSourceKey(path, mediaFile.getWidth(), orientation);
+                    resizedPictureURL = getUploadedPictureURL(mediaFile, blog, resizedSourceKey);
+                }
 
-                    if (bytes == null) {
+                if (shouldUploadResizedVersion && resizedPictureURL == null) {
+                    MediaFile resizedMediaFile = new MediaFile(mediaFile);
+                    // Create resized image, written straight to a temp file
+                    String tempFilePath;
+                    File resizedImageFile;
+                    try {
+                        resizedImageFile = File.createTempFile("wp-image-", fileExtension);
+                    } catch (IOException e) {
+                        AppLog.w(T.POSTS, "failed to create image temp file");
+                        mErrorMessage = context.getString(R.string.error_media_upload);
+                        mIsMediaError = true;
+                        return null;
+                    }
+                    if (!ih.createResizedImageFile(context, imageUri, resizedMediaFile.getWidth(), fileExtension,
+                            orientation, resizedImageFile)) {
                         // We weren't able to resize the image, so we will upload the full size image with css to resize it
+                        resizedImageFile.delete();
                         shouldUploadResizedVersion = false;
                         shouldAddImageWidthCSS = true;
                     } else {
-                        // Save temp image
-                        String tempFilePath;
-                        File resizedImageFile;
-                        try {
-                            resizedImageFile = File.createTempFile("wp-image-", fileExtension);
-                            FileOutputStream out = new FileOutputStream(resizedImageFile);
-                            out.write(bytes);
-                            out.close();
-                            tempFilePath = resizedImageFile.getPath();
-                        } catch (IOException e) {
-                            AppLog.w(T.POSTS, "failed to create image temp file");
-                            mErrorMessage = context.getString(R.string.error_media_upload);
-                            mIsMediaError = true;
-                            return null;
-                        }
+                        tempFilePath = resizedImageFile.getPath();
 
                         // upload resized picture
                         if (!TextUtils.isEmpty(tempFilePath)) {
@@ -654,7 +737,7 @@ public class PostUploadService extends Service {
                             parameters.put("type", mimeType);
                             parameters.put("bits", resizedMediaFile);
                             parameters.put("overwrite", true);
-                            resizedPictureURL = uploadPicture(parameters, resizedMediaFile, blog);
+                            resizedPictureURL = uploadPicture(parameters, resizedMediaFile, blog, resizedSourceKey);
                             if (resizedPictureURL == null) {
                                 AppLog.w(T.POSTS, "failed to upload resized picture");
                                 return null;
@@ -671,8 +754,18 @@ public class PostUploadService extends Service {
                 }
 
                 String fullSizeUrl = null;
-                // Upload the full size picture if "Original Size" is selected in settings, or if 'link to full size' is checked.
-                if (!shouldUploadResizedVersion || blog.isFullSizeImage()) {
+                // When the blog defers them, the full size picture is uploaded later and linked from the
+                // post then, the resized picture links to itself until then
+                boolean isFullSizeDeferred = shouldUploadResizedVersion && blog.isFullSizeImage()
+                        && blog.isDeferFullSizeImage() && !mediaFile.isFeatured();
+                if (isFullSizeDeferred) {
+                    fullSizeUrl = getUploadedPictureURL(mediaFile, blog, MediaUtils.getMediaSourceKey(path, 0, 0));
+                    if (fullSizeUrl == null) {
+                        mDeferredImages.add(new DeferredImage(mediaFile.getFilePath(), fileName, mimeType,
+                                resizedPictureURL));
+                    }
+                } else if (!shouldUploadResizedVersion || blog.isFullSizeImage()) {
+                    // Upload the full size picture if "Original Size" is selected in settings, or if 'link to full size' is checked.
                     // try to upload the image
                     Map<String, Object> parameters = new HashMap<String, Object>();
                     parameters.put("name", fileName);
@@ -680,7 +773,10 @@ public class PostUploadService extends Service {
                     parameters.put("bits", mediaFile);
                     parameters.put("overwrite", true);
 
-                    fullSizeUrl = uploadPicture(parameters, mediaFile, blog);
+                    String sourceKey = MediaUtils.getMediaSourceKey(path, 0, 0);
+                    fullSizeUrl = getUploadedPictureURL(mediaFile, blog, sourceKey);
+                    if (fullSizeUrl == null)
+                        fullSizeUrl = uploadPicture(parameters, mediaFile, blog, sourceKey);
                     if (fullSizeUrl == null)
                         return null;
                 }
@@ -732,23 +828,12 @@ public class PostUploadService extends Service {
             return content;
         }
 
-        private String uploadPicture(Map<String, Object> pictureParams, MediaFile mf, Blog blog) {
+        private String uploadPicture(Map<String, Object> pictureParams, MediaFile mf, Blog blog, String sourceKey) {
             XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                     blog.getHttppassword());
 
-            // create temporary upload file
-            File tempFile;
-            try {
-                String fileExtension = MimeTypeMap.getFileExtensionFromUrl(mf.getFileName());
-                tempFile = createTempUploadFile(fileExtension);
-            } catch (IOException e) {
-                mIsMediaError = true;
-                mErrorMessage = context.getString(R.string.file_not_found);
-                return null;
-            }
-
             Object[] params = { 1, blog.getUsername(), blog.getPassword(), pictureParams };
-            Object result = uploadFileHelper(client, params, tempFile);
+            Object result = uploadFileHelper(client, params);
             if (result == null) {
                 mIsMediaError = true;
                 return null;
@@ -756,11 +841,35 @@ public class PostUploadService extends Service {
 
             Map<?, ?> contentHash = (HashMap<?, ?>) result;
             String pictureURL = contentHash.get("url").toString();
+            String mediaId = (contentHash.get("id") != null ? contentHash.get("id").toString() : null);
+
+            // the hash of the picture was computed while it was sent
+            WordPress.wpDB.saveUploadedMedia(blog.getLocalTableBlogId(), sourceKey, mf.getContentHash(), mediaId,
+                    pictureURL);
+
+            return getPictureURL(mf, mediaId, pictureURL);
+        }
+
+        /*
+         * returns the url of the media item the picture was already uploaded as, or null if it has
+         * to be uploaded
+         */
+        private String getUploadedPictureURL(MediaFile mf, Blog blog, String sourceKey) {
+            MediaFile uploaded = ApiHelper.getUploadedMediaItem(blog, sourceKey);
+            if (uploaded == null)
+                return null;
+            return getPictureURL(mf, uploaded.getMediaId(), uploaded.getFileURL());
+        }
 
+        /*
+         * returns the url to add to the post for an uploaded picture, or "" if it's a featured image
+         * not added to the content
+         */
+        private String getPictureURL(MediaFile mf, String mediaId, String pictureURL) {
             if (mf.isFeatured()) {
                 try {
-                    if (contentHash.get("id") != null) {
-                        featuredImageID = Integer.parseInt(contentHash.get("id").toString());
+                    if (mediaId != null) {
+                        featuredImageID = Integer.parseInt(mediaId);
                         if (!mf.isFeaturedInPost())
                             return "";
                     }
@@ -772,30 +881,44 @@ public class PostUploadService extends Service {
             return pictureURL;
         }
 
-        private Object uploadFileHelper(XMLRPCClientInterface client, Object[] params, File tempFile) {
-            try {
-                return client.call("wp.uploadFile", params, tempFile);
-            } catch (XMLRPCException e) {
-                AppLog.e(T.API, e);
-                mErrorMessage = context.getResources().getString(R.string.error_media_upload) + ": " + e.getMessage();
-                return null;
-            } catch (IOException e) {
-                AppLog.e(T.API, e);
-                mErrorMessage = context.getResources().getString(R.string.error_media_upload) + ": " + e.getMessage();
-                return null;
-            } catch (XmlPullParserException e) {
-                AppLog.e(T.API, e);
-                mErrorMessage = context.getResources().getString(R.string.error_media_upload) + ": " + e.getMessage();
-                return null;
-            } finally {
-                // remove the temporary upload file now that we're done with it
-                if (tempFile != null && tempFile.exists())
-                    tempFile.delete();
+        /*
+         * network errors are retried, since a single failed media fails the whole post
+         */
+        private Object uploadFileHelper(XMLRPCClientInterface client, Object[] params) {
+            for (int attempt = 1; ; attempt++) {
+                Exception error;
+                try {
+                    return client.call("wp.uploadFile", params);
+                } catch (XMLRPCFault e) {
+                    // rejected by the server, retrying won't help
+                    setMediaUploadErrorMessage(e);
+                    return null;
+                } catch (XMLRPCException e) {
+                    error = e;
+                } catch (IOException e) {
+                    error = e;
+                } catch (XmlPullParserException e) {
+                    setMediaUploadErrorMessage(e);
+                    return null;
+                }
+
+                if (attempt >= MAX_MEDIA_UPLOAD_ATTEMPTS || mIsMediaError) {
+                    setMediaUploadErrorMessage(error);
+                    return null;
+                }
+                AppLog.w(T.API, "media upload failed, retrying - " + error.getMessage());
+                try {
+                    Thread.sleep(MEDIA_UPLOAD_RETRY_DELAY_MS * attempt);
+                } catch (InterruptedException e) {
+                    setMediaUploadErrorMessage(error);
+                    return null;
+                }
             }
         }
-    }
 
-    private File createTempUploadFile(String fileExtension) throws IOException {
-        return File.createTempFile("wp-", fileExtension, context.getCacheDir());
+        private void setMediaUploadErrorMessage(Exception e) {
+            AppLog.e(T.API, e);
+            mErrorMessage = context.getResources().getString(R.string.error_media_upload) + ": " + e.getMessage();
+        }
     }
 }
@@ -1,11 +1,14 @@
 package org.wordpress.android.util;
 
+import android.annotation.TargetApi;
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -26,6 +29,72 @@ public class SqlUtils {
         return (value != 0);
     }
 
+    // set from the app setting, databases only switch to write-ahead logging when it's on
+    private static volatile boolean sUseWriteAheadLogging;
+
+    public static void setWriteAheadLoggingEnabled(boolean enabled) {
+        sUseWriteAheadLogging = enabled;
+    }
+
+    /*
+     * called by the databases once opened, outside of a transaction: switches the database to
+     * write-ahead logging if the user opted in, otherwise back to the rollback journal. The setting
+     * takes effect the next time the databases are opened
+     */
+    public static void applyJournalMode(SQLiteDatabase db) {
+        if (sUseWriteAheadLogging) {
+            enableWriteAheadLogging(db);
+        } else {
+            disableWriteAheadLogging(db);
+        }
+    }
+
+    /*
+     * switch the passed database to write-ahead logging, so reads no longer wait for a write
+     * transaction (a Reader or stats sync) to finish: the reads from other threads run on their own
+     * connections. Older devices (before API 11) keep the rollback journal, where reads wait for the writer.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public static boolean enableWriteAheadLogging(SQLiteDatabase db) {
+        if (db == null || !SysUtils.canUseWriteAheadLogging()) {
+            return false;
+        }
+        try {
+            boolean isEnabled = db.enableWriteAheadLogging();
+            if (!isEnabled) {
+                AppLog.w(AppLog.T.DB, "write-ahead logging unavailable for " + db.getPath());
+            }
+            return isEnabled;
+        } catch (IllegalStateException e) {
+            // thrown when a transaction is in progress
+            AppLog.e(AppLog.T.DB, e);
+            return false;
+        }
+    }
+
+    /*
+     * switch the passed database back to the rollback journal, the journal mode is stored in the
+     * database file so it stays in write-ahead logging after the user opted out otherwise
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void disableWriteAheadLogging(SQLiteDatabase db) {
+        if (db == null || !SysUtils.canUseWriteAheadLogging()) {
+            return;
+        }
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if (db.isWriteAheadLoggingEnabled()) {
+                    db.disableWriteAheadLogging();
+                }
+            } else {
+                stringForQuery(db, "PRAGMA journal_mode=DELETE", null);
+            }
+        } catch (IllegalStateException e) {
+            // thrown when a transaction is in progress
+            AppLog.e(AppLog.T.DB, e);
+        }
+    }
+
     public static void closeStatement(SQLiteStatement stmt) {
         if (stmt!=null)
             stmt.close();
@@ -47,6 +116,30 @@ public class SqlUtils {
         }
     }
 
+    /*
+     * runs a compiled query returning a single long, returns 0 if the query returns no rows
+     */
+    public static long longForStatement(SQLiteStatement stmt) {
+        try {
+            return stmt.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            return 0;
+        }
+    }
+
+    /*
+     * binds the values to the statement parameters in the ContentValues iteration order, returns
+     * the index of the next parameter
+     */
+    public static int bindContentValues(SQLiteStatement stmt, ContentValues values) {
+        int index = 1;
+        for (String column : values.keySet()) {
+            DatabaseUtils.bindObjectToProgram(stmt, index, values.get(column));
+            index++;
+        }
+        return index;
+    }
+
     public static int intForQuery(SQLiteDatabase db, String query, String[] selectionArgs) {
         long value = longForQuery(db, query, selectionArgs);
         return (int)value;
@@ -75,6 +168,15 @@ public class SqlUtils {
         return DatabaseUtils.queryNumEntries(db, tableName);
     }
 
+    /*
+     * returns the size of the pages in use by the passed database, excluding the free pages
+     * left by deleted rows which are reused by later inserts
+     */
+    public static long getUsedBytes(SQLiteDatabase db) {
+        long usedPages = longForQuery(db, "PRAGMA page_count", null) - longForQuery(db, "PRAGMA freelist_count", null);
+        return usedPages * db.getPageSize();
+    }
+
     /*
      * drop all tables from the passed SQLiteDatabase
      */
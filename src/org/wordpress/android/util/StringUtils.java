@@ -277,4 +277,20 @@ public class StringUtils {
             return defaultValue;
         }
     }
-}
\ No newline at end of file
+
+    /*
+     * simple wrapper for Long.valueOf(string) so caller doesn't need to catch NumberFormatException
+     */
+    public static long stringToLong(String s) {
+        return stringToLong(s, 0L);
+    }
+    public static long stringToLong(String s, long defaultValue) {
+        if (s == null)
+            return defaultValue;
+        try {
+            return Long.valueOf(s);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -22,4 +22,12 @@ public class SysUtils {
         return (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB);
     }
 
+    /*
+     * returns true on API 11 and above - called to determine whether SQLite write-ahead
+     * logging can be enabled
+     */
+    public static boolean canUseWriteAheadLogging() {
+        return (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB);
+    }
+
 }
@@ -0,0 +1,161 @@
+package org.wordpress.android.util;
+
+import android.os.Process;
+
+import org.wordpress.android.util.AppLog.T;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared, bounded thread pool for network calls and the processing of their responses, used
+ * instead of starting a new Thread for each operation.
+ * Tasks started by the user run before background tasks, tasks with the same priority run in
+ * the order they were submitted.
+ */
+public class TaskDispatcher {
+    public enum Priority {USER_INITIATED, BACKGROUND}
+
+    private static final int MAX_THREADS = 4;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static final AtomicLong sNextTaskId = new AtomicLong(1);
+    private static final Map<Long, DispatchedTask> sTasks = new ConcurrentHashMap<Long, DispatchedTask>();
+    private static final ThreadPoolExecutor sExecutor;
+
+    static {
+        sExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new DispatcherThreadFactory());
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private TaskDispatcher() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Run a task started by the user
+     * @return id of the task, which can be passed to cancel()
+     */
+    public static long execute(Runnable runnable) {
+        return execute(Priority.USER_INITIATED, runnable);
+    }
+
+    /**
+     * @return id of the task, which can be passed to cancel()
+     */
+    public static long execute(Priority priority, Runnable runnable) {
+        return execute(newTaskId(), priority, runnable);
+    }
+
+    /**
+     * Run a task with an id reserved by newTaskId(), for tasks that need to know their own id
+     */
+    public static long execute(long taskId, Priority priority, Runnable runnable) {
+        DispatchedTask task = new DispatchedTask(taskId, priority, runnable);
+        sTasks.put(taskId, task);
+        sExecutor.execute(task);
+        return taskId;
+    }
+
+    public static long newTaskId() {
+        return sNextTaskId.getAndIncrement();
+    }
+
+    /**
+     * Cancel a task: a queued task won't run, a running task is flagged so it can check
+     * isCancelled() before delivering its result.
+     * @return true if the task was still queued or running
+     */
+    public static boolean cancel(long taskId) {
+        DispatchedTask task = sTasks.get(taskId);
+        if (task == null) {
+            return false;
+        }
+        task.mIsCancelled = true;
+        if (sExecutor.remove(task)) {
+            // the task never ran, so it won't remove itself
+            sTasks.remove(taskId);
+        }
+        return true;
+    }
+
+    /*
+     * returns true if the passed task is running and has been cancelled
+     */
+    public static boolean isCancelled(long taskId) {
+        DispatchedTask task = sTasks.get(taskId);
+        return (task != null && task.mIsCancelled);
+    }
+
+    /*
+     * number of tasks waiting for a thread
+     */
+    public static int getQueueDepth() {
+        return sExecutor.getQueue().size();
+    }
+
+    public static int getActiveCount() {
+        return sExecutor.getActiveCount();
+    }
+
+    private static class DispatchedTask implements Runnable, Comparable<DispatchedTask> {
+        private final long mTaskId;
+        private final Priority mPriority;
+        private final Runnable mRunnable;
+        private volatile boolean mIsCancelled;
+
+        DispatchedTask(long taskId, Priority priority, Runnable runnable) {
+            mTaskId = taskId;
+            mPriority = priority;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            if (mIsCancelled) {
+                sTasks.remove(mTaskId);
+                return;
+            }
+            int queueDepth = getQueueDepth();
+            if (queueDepth >= MAX_THREADS) {
+                AppLog.d(T.UTILS, "task dispatcher queue depth " + queueDepth);
+            }
+            try {
+                mRunnable.run();
+            } finally {
+                sTasks.remove(mTaskId);
+            }
+        }
+
+        @Override
+        public int compareTo(DispatchedTask another) {
+            if (mPriority != another.mPriority) {
+                return mPriority.ordinal() - another.mPriority.ordinal();
+            }
+            return (mTaskId < another.mTaskId ? -1 : (mTaskId == another.mTaskId ? 0 : 1));
+        }
+    }
+
+    private static class DispatcherThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "TaskDispatcher #" + mThreadCount.getAndIncrement());
+            return thread;
+        }
+    }
+}
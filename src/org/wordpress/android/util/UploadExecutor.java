@@ -0,0 +1,59 @@
+package org.wordpress.android.util;
+
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded thread pool for media uploads, kept apart from TaskDispatcher so that long uploads and
+ * their retry delays don't hold the threads used by short network calls.
+ * Tasks run in the order they were submitted. A task must never wait for another task of this
+ * pool, since that task may be queued behind it.
+ */
+public class UploadExecutor {
+    private static final int MAX_THREADS = 3;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor sExecutor;
+
+    static {
+        sExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new UploadThreadFactory());
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private UploadExecutor() {
+        throw new AssertionError();
+    }
+
+    public static void execute(Runnable runnable) {
+        sExecutor.execute(runnable);
+    }
+
+    /*
+     * number of uploads waiting for a thread
+     */
+    public static int getQueueDepth() {
+        return sExecutor.getQueue().size();
+    }
+
+    private static class UploadThreadFactory implements ThreadFactory {
+        private final AtomicInteger mThreadCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "UploadExecutor #" + mThreadCount.getAndIncrement());
+            return thread;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package org.xmlrpc.android;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.os.AsyncTask;
+import android.text.TextUtils;
 import android.util.Xml;
+import android.webkit.MimeTypeMap;
 
 import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
@@ -12,6 +15,7 @@ import com.android.volley.toolbox.StringRequest;
 import com.google.gson.Gson;
 
 import org.wordpress.android.WordPress;
+import org.wordpress.android.WordPressDB;
 import org.wordpress.android.datasets.CommentTable;
 import org.wordpress.android.models.Blog;
 import org.wordpress.android.models.BlogIdentifier;
@@ -25,21 +29,22 @@ import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.DateTimeUtils;
 import org.wordpress.android.util.MapUtils;
+import org.wordpress.android.util.MediaUtils;
 import org.wordpress.android.util.NetworkUtils;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -120,15 +125,19 @@ public class ApiHelper {
         }
 
         protected void onPostExecute(Object result) {
-            if (result != null && result instanceof HashMap) {
-                Map<?, ?> postFormats = (HashMap<?, ?>) result;
-                if (postFormats.size() > 0) {
-                    Gson gson = new Gson();
-                    String postFormatsJson = gson.toJson(postFormats);
-                    if (postFormatsJson != null) {
-                        if (mBlog.bsetPostFormats(postFormatsJson)) {
-                            WordPress.wpDB.saveBlog(mBlog);
-                        }
+            updatePostFormats(mBlog, result);
+        }
+    }
+
+    public static void updatePostFormats(Blog blog, Object result) {
+        if (result != null && result instanceof HashMap) {
+            Map<?, ?> postFormats = (HashMap<?, ?>) result;
+            if (postFormats.size() > 0) {
+                Gson gson = new Gson();
+                String postFormatsJson = gson.toJson(postFormats);
+                if (postFormatsJson != null) {
+                    if (blog.bsetPostFormats(postFormatsJson)) {
+                        WordPress.wpDB.saveBlog(blog);
                     }
                 }
             }
@@ -183,11 +192,19 @@ public class ApiHelper {
     public static class RefreshBlogContentTask extends HelperAsyncTask<Boolean, Void, Boolean> {
         private static HashSet<BlogIdentifier> refreshedBlogs = new HashSet<BlogIdentifier>();
         private Blog mBlog;
-        private Context mContext;
         private BlogIdentifier mBlogIdentifier;
         private GenericCallback mCallback;
+        private boolean mForceRefresh;
 
         public RefreshBlogContentTask(Context context, Blog blog, GenericCallback callback) {
+            this(context, blog, callback, false);
+        }
+
+        /**
+         * @param forceRefresh true when the user asked for a refresh: the blog is refreshed again even
+         *                     if it already was, and cached responses aren't used
+         */
+        public RefreshBlogContentTask(Context context, Blog blog, GenericCallback callback, boolean forceRefresh) {
             if (context == null || blog == null) {
                 cancel(true);
                 return;
@@ -199,15 +216,15 @@ public class ApiHelper {
             }
 
             mBlogIdentifier = new BlogIdentifier(blog.getUrl(), blog.getRemoteBlogId());
-            if (refreshedBlogs.contains(mBlogIdentifier)) {
+            if (refreshedBlogs.contains(mBlogIdentifier) && !forceRefresh) {
                 cancel(true);
             } else {
                 refreshedBlogs.add(mBlogIdentifier);
             }
 
             mBlog = blog;
-            mContext = context;
             mCallback = callback;
+            mForceRefresh = forceRefresh;
         }
 
         private void updateBlogAdmin(Map<String, Object> userInfos) {
@@ -231,66 +248,86 @@ public class ApiHelper {
             boolean commentsOnly = params[0];
             XMLRPCClientInterface client = XMLRPCFactory.instantiate(mBlog.getUri(), mBlog.getHttpuser(),
                     mBlog.getHttppassword());
+            client.setForceRefresh(mForceRefresh);
 
+            // all the calls below are sent in a single system.multicall request
+            XMLRPCMulticall multicall = new XMLRPCMulticall();
+            int optionsIndex = -1;
+            int postFormatsIndex = -1;
             if (!commentsOnly) {
                 // check the WP number if self-hosted
-                Map<String, String> hPost = ApiHelper.blogOptionsXMLRPCParameters;
-
                 Object[] vParams = {mBlog.getRemoteBlogId(),
                                     mBlog.getUsername(),
                                     mBlog.getPassword(),
-                                    hPost};
-                Object versionResult = null;
-                try {
-                    versionResult = client.call("wp.getOptions", vParams);
-                } catch (ClassCastException cce) {
-                    setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
-                    return false;
-                } catch (Exception e) {
-                    setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-                    return false;
-                }
-
-                if (versionResult != null) {
-                    Map<?, ?> blogOptions = (HashMap<?, ?>) versionResult;
-                    ApiHelper.updateBlogOptions(mBlog, blogOptions);
-                }
+                                    ApiHelper.blogOptionsXMLRPCParameters};
+                optionsIndex = multicall.add("wp.getOptions", vParams);
 
                 // get theme post formats
-                List<Object> args = new Vector<Object>();
-                args.add(mBlog);
-                args.add(mContext);
-                new GetPostFormatsTask().execute(args);
+                Object[] postFormatsParams = {mBlog.getRemoteBlogId(), mBlog.getUsername(),
+                        mBlog.getPassword(), "show-supported"};
+                postFormatsIndex = multicall.add("wp.getPostFormats", postFormatsParams);
             }
 
             // Check if user is an admin
             Object[] userParams = {mBlog.getRemoteBlogId(), mBlog.getUsername(), mBlog.getPassword()};
-            try {
-                Map<String, Object> userInfos = (HashMap<String, Object>) client.call("wp.getProfile", userParams);
-                updateBlogAdmin(userInfos);
-            } catch (ClassCastException cce) {
-                setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
-                return false;
-            } catch (XMLRPCException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            } catch (IOException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            } catch (XmlPullParserException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            }
+            int profileIndex = multicall.add("wp.getProfile", userParams);
 
             // refresh the comments
             Map<String, Object> hPost = new HashMap<String, Object>();
             hPost.put("number", 30);
             Object[] commentParams = {mBlog.getRemoteBlogId(), mBlog.getUsername(),
                     mBlog.getPassword(), hPost};
+            int commentsIndex = multicall.add("wp.getComments", commentParams);
+
+            Object[] results;
             try {
-                ApiHelper.refreshComments(mContext, mBlog, commentParams);
+                results = client.callMulticall(multicall);
             } catch (Exception e) {
                 setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
                 return false;
             }
 
+            try {
+                if (!commentsOnly) {
+                    Object versionResult = results[optionsIndex];
+                    if (versionResult instanceof XMLRPCFault) {
+                        XMLRPCFault fault = (XMLRPCFault) versionResult;
+                        setError(ErrorType.NETWORK_XMLRPC, fault.getMessage(), fault);
+                        return false;
+                    }
+                    if (versionResult != null) {
+                        Map<?, ?> blogOptions = (HashMap<?, ?>) versionResult;
+                        ApiHelper.updateBlogOptions(mBlog, blogOptions);
+                    }
+
+                    // post formats are optional, faults are ignored
+                    updatePostFormats(mBlog, results[postFormatsIndex]);
+                }
+
+                Object profileResult = results[profileIndex];
+                if (profileResult instanceof XMLRPCFault) {
+                    XMLRPCFault fault = (XMLRPCFault) profileResult;
+                    setError(ErrorType.NETWORK_XMLRPC, fault.getMessage(), fault);
+                } else if (profileResult != null) {
+                    updateBlogAdmin((HashMap<String, Object>) profileResult);
+                }
+
+                Object commentsResult = results[commentsIndex];
+                if (commentsResult instanceof XMLRPCFault) {
+                    XMLRPCFault fault = (XMLRPCFault) commentsResult;
+                    setError(ErrorType.NETWORK_XMLRPC, fault.getMessage(), fault);
+                    return false;
+                }
+                if (commentsResult == null) {
+                    setError(ErrorType.INVALID_RESULT, "wp.getComments returned no result");
+                    return false;
+                }
+                ApiHelper.saveCommentsResult(mBlog, (Object[]) commentsResult);
+            } catch (ClassCastException cce) {
+                setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
+                return false;
+            }
+
             return true;
         }
 
@@ -364,46 +401,25 @@ public class ApiHelper {
         }
         XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                 blog.getHttppassword());
-        Object[] result;
-        result = (Object[]) client.call("wp.getComments", commentParams);
+        List<Comment> comments = client.call("wp.getComments", commentParams, new CommentBinder());
+        return saveComments(blog, comments);
+    }
 
-        if (result.length == 0) {
+    /**
+     * Save the comments returned by wp.getComments for the passed blog
+     * @return the saved comments, or null if there were none
+     */
+    public static CommentList saveCommentsResult(Blog blog, Object[] result) {
+        return saveComments(blog, new CommentBinder().bind(result));
+    }
+
+    private static CommentList saveComments(Blog blog, List<Comment> result) {
+        if (result == null || result.size() == 0) {
             return null;
         }
 
-        Map<?, ?> contentHash;
-        long commentID, postID;
-        String authorName, content, status, authorEmail, authorURL, postTitle, pubDate;
-        java.util.Date date;
         CommentList comments = new CommentList();
-
-        for (int ctr = 0; ctr < result.length; ctr++) {
-            contentHash = (Map<?, ?>) result[ctr];
-            content = contentHash.get("content").toString();
-            status = contentHash.get("status").toString();
-            postID = Long.parseLong(contentHash.get("post_id").toString());
-            commentID = Long.parseLong(contentHash.get("comment_id").toString());
-            authorName = contentHash.get("author").toString();
-            authorURL = contentHash.get("author_url").toString();
-            authorEmail = contentHash.get("author_email").toString();
-            postTitle = contentHash.get("post_title").toString();
-            date = (java.util.Date) contentHash.get("date_created_gmt");
-            pubDate = DateTimeUtils.javaDateToIso8601(date);
-
-            Comment comment = new Comment(
-                    postID,
-                    commentID,
-                    authorName,
-                    pubDate,
-                    content,
-                    status,
-                    postTitle,
-                    authorURL,
-                    authorEmail,
-                    null);
-
-            comments.add(comment);
-        }
+        comments.addAll(result);
 
         int localBlogId = blog.getLocalTableBlogId();
         CommentTable.saveComments(localBlogId, comments);
@@ -411,11 +427,79 @@ public class ApiHelper {
         return comments;
     }
 
+    /**
+     * Binds the wp.getComments structs into Comment objects
+     */
+    static class CommentBinder extends XMLRPCStructBinder<Comment> {
+        CommentBinder() {
+            super("content", "status", "post_id", "comment_id", "author", "author_url", "author_email",
+                    "post_title", "date_created_gmt");
+        }
+
+        @Override
+        public Comment newTarget() {
+            return new Comment(0, 0, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public Comment copyTarget(Comment comment) {
+            return new Comment(comment.postID, comment.commentID, comment.getAuthorName(), comment.getPublished(),
+                    comment.getCommentText(), comment.getStatus(), comment.getPostTitle(), comment.getAuthorUrl(),
+                    comment.getAuthorEmail(), comment.getProfileImageUrl());
+        }
+
+        @Override
+        public void bindMember(Comment comment, String name, Object value) {
+            if (name.equals("content")) {
+                comment.setCommentText(toStr(value));
+            } else if (name.equals("status")) {
+                comment.setStatus(toStr(value));
+            } else if (name.equals("post_id")) {
+                comment.postID = toLong(value, 0);
+            } else if (name.equals("comment_id")) {
+                comment.commentID = toLong(value, 0);
+            } else if (name.equals("author")) {
+                comment.setAuthorName(toStr(value));
+            } else if (name.equals("author_url")) {
+                comment.setAuthorUrl(toStr(value));
+            } else if (name.equals("author_email")) {
+                comment.setAuthorEmail(toStr(value));
+            } else if (name.equals("post_title")) {
+                comment.setPostTitle(toStr(value));
+            } else if (name.equals("date_created_gmt")) {
+                comment.setPublished(DateTimeUtils.javaDateToIso8601(toDate(value)));
+            }
+        }
+
+        @Override
+        public Comment onStructEnd(Comment comment) {
+            // skip comments without an id, they can't be saved
+            return (comment.commentID != 0 ? comment : null);
+        }
+    }
+
+    /**
+     * Syncs a page of posts (or pages) with wp.getPosts, using offset/number paging.
+     * <p>load more: fetches the next page at the passed offset.</p>
+     * <p>refresh: fetches the first page, deletes the posts of that date range deleted on the server,
+     * then updates the older synced posts modified since the last sync (the most recent modification
+     * date of the synced posts is the high-water mark).</p>
+     * Servers without wp.getPosts (WordPress < 3.4) are synced with metaWeblog.getRecentPosts/wp.getPages.
+     */
     public static class FetchPostsTask extends HelperAsyncTask<java.util.List<?>, Boolean, Boolean> {
         public interface Callback extends GenericErrorCallback {
             public void onSuccess(int postCount);
         }
 
+        private static final int FAULT_CODE_METHOD_NOT_FOUND = -32601;
+        // number of (id, modification date) pairs requested at once when looking for modified posts
+        private static final int MODIFIED_SCAN_PAGE_SIZE = 100;
+        private static final int MODIFIED_SCAN_MAX_PAGES = 5;
+
+        // endpoints without wp.getPosts
+        private static final Set<String> sGetPostsUnsupportedEndpoints =
+                Collections.synchronizedSet(new HashSet<String>());
+
         private Callback mCallback;
         private String mErrorMessage;
         private int mPostCount;
@@ -424,6 +508,9 @@ public class ApiHelper {
             mCallback = callback;
         }
 
+        /**
+         * params: the blog, true to fetch pages, the offset of the page to fetch, true when loading more
+         */
         @Override
         protected Boolean doInBackground(List<?>... params) {
             List<?> arguments = params[0];
@@ -433,43 +520,25 @@ public class ApiHelper {
                 return false;
 
             boolean isPage = (Boolean) arguments.get(1);
-            int recordCount = (Integer) arguments.get(2);
+            int offset = (Integer) arguments.get(2);
             boolean loadMore = (Boolean) arguments.get(3);
-            XMLRPCClient client = new XMLRPCClient(blog.getUrl(),
-                    blog.getHttpuser(),
+            XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
                     blog.getHttppassword());
 
-            Object[] result;
-            Object[] xmlrpcParams = { blog.getRemoteBlogId(),
-                    blog.getUsername(),
-                    blog.getPassword(), recordCount };
             try {
-                result = (Object[]) client.call((isPage) ? "wp.getPages"
-                        : "metaWeblog.getRecentPosts", xmlrpcParams);
-                if (result != null && result.length > 0) {
-                    mPostCount = result.length;
-                    List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
-
-                    if (!loadMore) {
-                        WordPress.wpDB.deleteUploadedPosts(
-                                blog.getLocalTableBlogId(), isPage);
-                    }
-
-                    // If we're loading more posts, only save the posts at the end of the array.
-                    // NOTE: Switching to wp.getPosts wouldn't require janky solutions like this
-                    // since it allows for an offset parameter.
-                    int startPosition = 0;
-                    if (loadMore && result.length > PostsListFragment.POSTS_REQUEST_COUNT) {
-                        startPosition = result.length - PostsListFragment.POSTS_REQUEST_COUNT;
-                    }
-
-                    for (int ctr = startPosition; ctr < result.length; ctr++) {
-                        Map<?, ?> postMap = (Map<?, ?>) result[ctr];
-                        postsList.add(postMap);
+                if (!sGetPostsUnsupportedEndpoints.contains(blog.getUrl())) {
+                    try {
+                        syncPosts(client, blog, isPage, offset, loadMore);
+                        return true;
+                    } catch (XMLRPCFault e) {
+                        if (e.getFaultCode() != FAULT_CODE_METHOD_NOT_FOUND) {
+                            throw e;
+                        }
+                        AppLog.w(T.POSTS, "wp.getPosts not available, using the legacy post sync");
+                        sGetPostsUnsupportedEndpoints.add(blog.getUrl());
                     }
-
-                    WordPress.wpDB.savePosts(postsList, blog.getLocalTableBlogId(), isPage, !loadMore);
                 }
+                syncPostsLegacy(client, blog, isPage, offset, loadMore);
                 return true;
             } catch (XMLRPCException e) {
                 mErrorMessage = e.getMessage();
@@ -482,6 +551,142 @@ public class ApiHelper {
             return false;
         }
 
+        private void syncPosts(XMLRPCClientInterface client, Blog blog, boolean isPage, int offset, boolean loadMore)
+                throws XMLRPCException, IOException, XmlPullParserException {
+            int blogId = blog.getLocalTableBlogId();
+            long highWaterMark = WordPress.wpDB.getPostsModifiedHighWaterMark(blogId, isPage);
+
+            Map<String, Object> filter = newPostsFilter(isPage, PostsListFragment.POSTS_REQUEST_COUNT, offset, "date");
+            Object[] xmlrpcParams = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(), filter};
+            List<ContentValues> posts = client.call("wp.getPosts", xmlrpcParams,
+                    new WordPressDB.WpPostValuesBinder(isPage));
+            mPostCount = posts.size();
+            WordPress.wpDB.savePosts(posts, blogId, isPage, !loadMore);
+            if (loadMore) {
+                return;
+            }
+
+            deletePostsMissingFromFirstPage(blogId, isPage, posts);
+            if (highWaterMark > 0) {
+                updateModifiedPosts(client, blog, isPage, highWaterMark, getPostIds(posts));
+            }
+        }
+
+        /*
+         * legacy servers only return the most recent posts, the whole list up to the requested page is
+         * downloaded and only the requested page is saved
+         */
+        private void syncPostsLegacy(XMLRPCClientInterface client, Blog blog, boolean isPage, int offset,
+                                     boolean loadMore) throws XMLRPCException, IOException, XmlPullParserException {
+            int recordCount = offset + PostsListFragment.POSTS_REQUEST_COUNT;
+            Object[] xmlrpcParams = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(), recordCount};
+            List<ContentValues> result = client.call((isPage) ? "wp.getPages" : "metaWeblog.getRecentPosts",
+                    xmlrpcParams, new WordPressDB.PostValuesBinder(isPage));
+            if (result == null) {
+                return;
+            }
+            List<ContentValues> postsList = result.subList(Math.min(offset, result.size()), result.size());
+            mPostCount = postsList.size();
+            WordPress.wpDB.savePosts(postsList, blog.getLocalTableBlogId(), isPage, !loadMore);
+            if (!loadMore) {
+                deletePostsMissingFromFirstPage(blog.getLocalTableBlogId(), isPage, postsList);
+            }
+        }
+
+        private static Map<String, Object> newPostsFilter(boolean isPage, int number, int offset, String orderBy) {
+            Map<String, Object> filter = new HashMap<String, Object>();
+            filter.put("post_type", isPage ? "page" : "post");
+            filter.put("number", number);
+            filter.put("offset", offset);
+            filter.put("orderby", orderBy);
+            filter.put("order", "DESC");
+            return filter;
+        }
+
+        private static List<String> getPostIds(List<ContentValues> posts) {
+            List<String> postIds = new ArrayList<String>();
+            for (ContentValues values : posts) {
+                postIds.add(values.getAsString("postid"));
+            }
+            return postIds;
+        }
+
+        /*
+         * the first page covers every post created since its oldest post (all the posts when it isn't
+         * full), the synced posts of that range missing from the page were deleted on the server
+         */
+        private void deletePostsMissingFromFirstPage(int blogId, boolean isPage, List<ContentValues> firstPage) {
+            long sinceDateGmt = 0;
+            if (firstPage.size() >= PostsListFragment.POSTS_REQUEST_COUNT) {
+                sinceDateGmt = Long.MAX_VALUE;
+                for (ContentValues values : firstPage) {
+                    Long dateCreatedGmt = values.getAsLong("date_created_gmt");
+                    if (dateCreatedGmt != null) {
+                        sinceDateGmt = Math.min(sinceDateGmt, dateCreatedGmt);
+                    }
+                }
+            }
+            WordPress.wpDB.deleteUploadedPostsNotIn(blogId, isPage, getPostIds(firstPage), sinceDateGmt);
+        }
+
+        /*
+         * lists the (id, modification date) of the posts modified since highWaterMark, then fetches and
+         * updates the ones already synced that are not in the first page
+         */
+        private void updateModifiedPosts(XMLRPCClientInterface client, Blog blog, boolean isPage, long highWaterMark,
+                                         List<String> firstPageIds)
+                throws XMLRPCException, IOException, XmlPullParserException {
+            Set<String> syncedIds = new HashSet<String>(WordPress.wpDB.getUploadedPostIds(blog.getLocalTableBlogId(),
+                    isPage));
+            syncedIds.removeAll(firstPageIds);
+            if (syncedIds.isEmpty()) {
+                return;
+            }
+
+            List<String> modifiedIds = new ArrayList<String>();
+            Object[] fields = {"post_modified_gmt"};
+            for (int page = 0; page < MODIFIED_SCAN_MAX_PAGES; page++) {
+                Map<String, Object> filter = newPostsFilter(isPage, MODIFIED_SCAN_PAGE_SIZE,
+                        page * MODIFIED_SCAN_PAGE_SIZE, "modified");
+                Object[] xmlrpcParams = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(), filter,
+                        fields};
+                Object[] result = (Object[]) client.call("wp.getPosts", xmlrpcParams);
+                boolean reachedHighWaterMark = (result.length < MODIFIED_SCAN_PAGE_SIZE);
+                for (Object post : result) {
+                    Map<?, ?> postMap = (Map<?, ?>) post;
+                    Object modified = postMap.get("post_modified_gmt");
+                    if (!(modified instanceof Date) || ((Date) modified).getTime() <= highWaterMark) {
+                        reachedHighWaterMark = true;
+                        break;
+                    }
+                    String postId = MapUtils.getMapStr(postMap, "post_id");
+                    if (syncedIds.contains(postId)) {
+                        modifiedIds.add(postId);
+                    }
+                }
+                if (reachedHighWaterMark) {
+                    break;
+                }
+            }
+            if (modifiedIds.isEmpty()) {
+                return;
+            }
+
+            XMLRPCMulticall multicall = new XMLRPCMulticall();
+            for (String postId : modifiedIds) {
+                multicall.add("wp.getPost", new Object[]{blog.getRemoteBlogId(), blog.getUsername(),
+                        blog.getPassword(), postId});
+            }
+            WordPressDB.WpPostValuesBinder binder = new WordPressDB.WpPostValuesBinder(isPage);
+            List<ContentValues> modifiedPosts = new ArrayList<ContentValues>();
+            for (Object result : client.callMulticall(multicall)) {
+                if (!XMLRPCMulticall.isFault(result)) {
+                    modifiedPosts.addAll(binder.bind(result));
+                }
+            }
+            WordPress.wpDB.updateExistingPosts(modifiedPosts, blog.getLocalTableBlogId(), isPage);
+        }
+
         @Override
         protected void onCancelled() {
             super.onCancelled();
@@ -546,14 +751,9 @@ public class ApiHelper {
             }
 
             try {
-                Object result = client.call((isPage) ? "wp.getPage" : "metaWeblog.getPost", apiParams);
-                if (result != null && result instanceof Map) {
-                    Map postMap = (HashMap) result;
-                    List<Map<?, ?>> postsList = new ArrayList<Map<?, ?>>();
-                    postsList.add(postMap);
-
-                    WordPress.wpDB.savePosts(postsList, blog.getLocalTableBlogId(), isPage, true);
-                }
+                List<ContentValues> postsList = client.call((isPage) ? "wp.getPage" : "metaWeblog.getPost",
+                        apiParams, new WordPressDB.PostValuesBinder(isPage));
+                WordPress.wpDB.savePosts(postsList, blog.getLocalTableBlogId(), isPage, true);
 
                 return true;
             } catch (XMLRPCException e) {
@@ -620,9 +820,9 @@ public class ApiHelper {
             Object[] apiParams = {blog.getRemoteBlogId(), blog.getUsername(), blog.getPassword(),
                     filter};
 
-            Object[] results = null;
+            List<MediaFile> results = null;
             try {
-                results = (Object[]) client.call("wp.getMediaLibrary", apiParams);
+                results = client.call("wp.getMediaLibrary", apiParams, new MediaFileBinder(blog));
             } catch (ClassCastException cce) {
                 setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
                 return 0;
@@ -647,19 +847,14 @@ public class ApiHelper {
                 return 0;
             }
 
-            Map<?, ?> resultMap;
             // results returned, so mark everything existing to deleted
             // since offset is 0, we are doing a full refresh
             if (mOffset == 0) {
                 WordPress.wpDB.setMediaFilesMarkedForDeleted(blogId);
             }
-            for (Object result : results) {
-                resultMap = (Map<?, ?>) result;
-                MediaFile mediaFile = new MediaFile(blogId, resultMap);
-                WordPress.wpDB.saveMediaFile(mediaFile);
-            }
+            WordPress.wpDB.saveMediaFiles(results);
             WordPress.wpDB.deleteFilesMarkedForDeleted(blogId);
-            return results.length;
+            return results.size();
         }
 
         private void prepareErrorMessage(Exception e) {
@@ -683,6 +878,93 @@ public class ApiHelper {
         }
     }
 
+    /**
+     * Binds the wp.getMediaLibrary and wp.getMediaItem structs into MediaFile objects
+     */
+    static class MediaFileBinder extends XMLRPCStructBinder<MediaFile> {
+        private final String mBlogId;
+        private final boolean mIsDotCom;
+
+        /*
+         * binds the media items of the passed blog, which needn't be the current blog
+         */
+        MediaFileBinder(Blog blog) {
+            super("attachment_id", "parent", "title", "caption", "description", "videopress_shortcode", "link",
+                    "thumbnail", "date_created_gmt", "metadata");
+            mBlogId = String.valueOf(blog.getLocalTableBlogId());
+            mIsDotCom = blog.isDotcomFlag();
+        }
+
+        @Override
+        public MediaFile newTarget() {
+            MediaFile mediaFile = new MediaFile();
+            mediaFile.setBlogId(mBlogId);
+            mediaFile.setMediaId("");
+            mediaFile.setTitle("");
+            mediaFile.setCaption("");
+            mediaFile.setDescription("");
+            mediaFile.setVideoPressShortCode("");
+            mediaFile.setFileURL("");
+            return mediaFile;
+        }
+
+        @Override
+        public MediaFile copyTarget(MediaFile mediaFile) {
+            return new MediaFile(mediaFile);
+        }
+
+        @Override
+        public void bindMember(MediaFile mediaFile, String name, Object value) {
+            if (name.equals("attachment_id")) {
+                mediaFile.setMediaId(toStr(value));
+            } else if (name.equals("parent")) {
+                mediaFile.setPostID(toLong(value, 0));
+            } else if (name.equals("title")) {
+                mediaFile.setTitle(toStr(value));
+            } else if (name.equals("caption")) {
+                mediaFile.setCaption(toStr(value));
+            } else if (name.equals("description")) {
+                mediaFile.setDescription(toStr(value));
+            } else if (name.equals("videopress_shortcode")) {
+                mediaFile.setVideoPressShortCode(toStr(value));
+            } else if (name.equals("link")) {
+                // the file name, mime type and url are set from the link in onStructEnd()
+                mediaFile.setFileURL(toStr(value));
+            } else if (name.equals("thumbnail")) {
+                String thumbnailURL = toStr(value);
+                if (thumbnailURL.startsWith("http")) {
+                    if (mIsDotCom)
+                        thumbnailURL = thumbnailURL.replace("http:", "https:");
+                    mediaFile.setThumbnailURL(thumbnailURL);
+                }
+            } else if (name.equals("date_created_gmt")) {
+                java.util.Date date = toDate(value);
+                if (date != null)
+                    mediaFile.setDateCreatedGMT(date.getTime());
+            } else if (name.equals("metadata") && value instanceof Map) {
+                Map<?, ?> metadata = (Map<?, ?>) value;
+                mediaFile.setWidth(MapUtils.getMapInt(metadata, "width"));
+                mediaFile.setHeight(MapUtils.getMapInt(metadata, "height"));
+            }
+        }
+
+        @Override
+        public MediaFile onStructEnd(MediaFile mediaFile) {
+            // get the file name from the link
+            String link = mediaFile.getFileURL();
+            mediaFile.setFileName(link.replaceAll("^.*/([A-Za-z0-9_-]+)\\.\\w+$", "$1"));
+
+            String fileType = link.replaceAll(".*\\.(\\w+)$", "$1").toLowerCase();
+            mediaFile.setMimeType(MimeTypeMap.getSingleton().getMimeTypeFromExtension(fileType));
+
+            // make the file urls be https://... so that we can get these images with oauth when the blogs are private
+            // assume no https for images in self-hosted blogs
+            if (mIsDotCom)
+                mediaFile.setFileURL(link.replace("http:", "https:"));
+            return mediaFile;
+        }
+    }
+
     public static class EditMediaItemTask extends HelperAsyncTask<List<?>, Void, Boolean> {
         private GenericCallback mCallback;
         private String mMediaId;
@@ -751,165 +1033,168 @@ public class ApiHelper {
         }
     }
 
-    public static class GetMediaItemTask extends HelperAsyncTask<List<?>, Void, MediaFile> {
-        public interface Callback extends GenericErrorCallback {
-            public void onSuccess(MediaFile results);
+    /**
+     * Get a media item of the blog with wp.getMediaItem and save it, synchronously.
+     * WordPress.currentBlog isn't changed, so it can be called for any blog
+     * @return the saved media file, or null if the result is invalid
+     */
+    public static MediaFile getMediaItem(Blog blog, String mediaId)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
+                blog.getHttppassword());
+        Object[] apiParams = {
+                blog.getRemoteBlogId(),
+                blog.getUsername(),
+                blog.getPassword(),
+                Integer.valueOf(mediaId)
+        };
+        List<MediaFile> results = client.call("wp.getMediaItem", apiParams, new MediaFileBinder(blog));
+        if (results == null || results.size() == 0) {
+            return null;
         }
-        private Callback mCallback;
-        private int mMediaId;
+        MediaFile mediaFile = results.get(0);
+        mediaFile.save();
+        return mediaFile;
+    }
 
-        public GetMediaItemTask(int mediaId, Callback callback) {
-            mMediaId = mediaId;
-            mCallback = callback;
+    /**
+     * Get the media item a local file was already uploaded as on the blog, found from its content
+     * hash, so it's reused rather than uploaded again. The item is fetched with wp.getMediaItem
+     * and saved, synchronously. Items deleted from the blog are dropped from the index
+     * @param sourceKey identifies the local file, see MediaUtils.getMediaSourceKey
+     * @return the media item, or null if the file has to be uploaded
+     */
+    public static MediaFile getUploadedMediaItem(Blog blog, String sourceKey) {
+        String mediaId = WordPress.wpDB.getUploadedMediaId(blog.getLocalTableBlogId(), sourceKey);
+        if (mediaId == null) {
+            return null;
         }
-
-        @Override
-        protected MediaFile doInBackground(List<?>... params) {
-            List<?> arguments = params[0];
-            WordPress.currentBlog = (Blog) arguments.get(0);
-            Blog blog = WordPress.currentBlog;
-            if (blog == null) {
-                setError(ErrorType.INVALID_CURRENT_BLOG, "ApiHelper - current blog is null");
-                return null;
-            }
-
-            String blogId = String.valueOf(blog.getLocalTableBlogId());
-
-            XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
-                    blog.getHttppassword());
-            Object[] apiParams = {
-                    blog.getRemoteBlogId(),
-                    blog.getUsername(),
-                    blog.getPassword(),
-                    mMediaId
-            };
-            Map<?, ?> results = null;
-            try {
-                results = (Map<?, ?>) client.call("wp.getMediaItem", apiParams);
-            } catch (ClassCastException cce) {
-                setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
-            } catch (XMLRPCException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            } catch (IOException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            } catch (XmlPullParserException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-            }
-
-            if (results != null && blogId != null) {
-                MediaFile mediaFile = new MediaFile(blogId, results);
-                mediaFile.save();
+        try {
+            MediaFile mediaFile = getMediaItem(blog, mediaId);
+            if (mediaFile != null && !TextUtils.isEmpty(mediaFile.getFileURL())) {
                 return mediaFile;
-            } else {
-                return null;
-            }
-        }
-
-        @Override
-        protected void onPostExecute(MediaFile result) {
-            if (mCallback != null) {
-                if (result != null) {
-                    mCallback.onSuccess(result);
-                } else {
-                    mCallback.onFailure(mErrorType, mErrorMessage, mThrowable);
-                }
             }
+        } catch (XMLRPCFault e) {
+            AppLog.w(T.API, "uploaded media item no longer available - " + e.getMessage());
+        } catch (XMLRPCException e) {
+            AppLog.e(T.API, e);
+            return null;
+        } catch (IOException e) {
+            AppLog.e(T.API, e);
+            return null;
+        } catch (XmlPullParserException e) {
+            AppLog.e(T.API, e);
+            return null;
+        } catch (ClassCastException cce) {
+            AppLog.e(T.API, cce);
+            return null;
         }
+        WordPress.wpDB.deleteUploadedMedia(String.valueOf(blog.getLocalTableBlogId()), mediaId);
+        return null;
     }
 
-    public static class UploadMediaTask extends HelperAsyncTask<List<?>, Void, String> {
-        public interface Callback extends GenericErrorCallback {
-            public void onSuccess(String id);
-        }
-        private Callback mCallback;
-        private Context mContext;
-        private MediaFile mMediaFile;
-
-        public UploadMediaTask(Context applicationContext, MediaFile mediaFile,
-                               Callback callback) {
-            mContext = applicationContext;
-            mMediaFile = mediaFile;
-            mCallback = callback;
-        }
-
-        @Override
-        protected String doInBackground(List<?>... params) {
-            List<?> arguments = params[0];
-            WordPress.currentBlog = (Blog) arguments.get(0);
-            Blog blog = WordPress.currentBlog;
-
-            if (blog == null) {
-                setError(ErrorType.INVALID_CURRENT_BLOG, "current blog is null");
-                return null;
-            }
-
-            XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
-                    blog.getHttppassword());
+    /**
+     * Upload a media file to the blog with wp.uploadFile, synchronously
+     * @param progressListener notified while the file is sent, may be null
+     * @return id of the uploaded media item, or null if the result is invalid
+     */
+    public static String uploadMediaFile(Blog blog, MediaFile mediaFile, XMLRPCUploadProgressListener progressListener)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        Object id = uploadFile(blog, mediaFile, progressListener).get("id");
+        return (id != null ? String.valueOf(id) : null);
+    }
 
-            Map<String, Object> data = new HashMap<String, Object>();
-            data.put("name", mMediaFile.getFileName());
-            data.put("type", mMediaFile.getMimeType());
-            data.put("bits", mMediaFile);
-            data.put("overwrite", true);
+    /**
+     * Upload a media file to the blog with wp.uploadFile, synchronously
+     * @return url of the uploaded media item, or null if the result is invalid
+     */
+    public static String uploadMediaFileForUrl(Blog blog, MediaFile mediaFile)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        Object url = uploadFile(blog, mediaFile, null).get("url");
+        return (url != null ? url.toString() : null);
+    }
 
-            Object[] apiParams = {
-                    blog.getRemoteBlogId(),
-                    blog.getUsername(),
-                    blog.getPassword(),
-                    data
-            };
+    private static Map<?, ?> uploadFile(Blog blog, MediaFile mediaFile, XMLRPCUploadProgressListener progressListener)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
+                blog.getHttppassword());
+        client.setUploadProgressListener(progressListener);
 
-            if (mContext == null) {
-                return null;
-            }
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("name", mediaFile.getFileName());
+        data.put("type", mediaFile.getMimeType());
+        data.put("bits", mediaFile);
+        data.put("overwrite", true);
 
-            Map<?, ?> resultMap;
-            try {
-                resultMap = (HashMap<?, ?>) client.call("wp.uploadFile", apiParams, getTempFile(mContext));
-            } catch (ClassCastException cce) {
-                setError(ErrorType.INVALID_RESULT, cce.getMessage(), cce);
-                return null;
-            } catch (XMLRPCException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-                return null;
-            } catch (IOException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-                return null;
-            } catch (XmlPullParserException e) {
-                setError(ErrorType.NETWORK_XMLRPC, e.getMessage(), e);
-                return null;
-            }
-
-            if (resultMap != null && resultMap.containsKey("id")) {
-                return (String) resultMap.get("id");
-            } else {
-                setError(ErrorType.INVALID_RESULT, "Invalid result");
-            }
+        Object[] apiParams = {
+                blog.getRemoteBlogId(),
+                blog.getUsername(),
+                blog.getPassword(),
+                data
+        };
+
+        // identifies the file as it is before the upload
+        String sourceKey = MediaUtils.getMediaSourceKey(mediaFile.getFilePath(), 0, 0);
+        Object result = client.call("wp.uploadFile", apiParams);
+        if (!(result instanceof Map)) {
+            return new HashMap<String, Object>();
+        }
+        Map<?, ?> resultMap = (Map<?, ?>) result;
+        if (resultMap.get("id") != null && resultMap.get("url") != null) {
+            // the content hash was computed while the file was sent
+            WordPress.wpDB.saveUploadedMedia(blog.getLocalTableBlogId(), sourceKey, mediaFile.getContentHash(),
+                    resultMap.get("id").toString(), resultMap.get("url").toString());
+        }
+        return resultMap;
+    }
 
+    /**
+     * Get the content of a post with wp.getPost, synchronously
+     * @return the content, or null if the result is invalid
+     */
+    public static String getPostContent(Blog blog, String remotePostId)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
+                blog.getHttppassword());
+        Object[] getParams = {
+                blog.getRemoteBlogId(),
+                blog.getUsername(),
+                blog.getPassword(),
+                remotePostId,
+                new Object[] {"post_content"}
+        };
+        Object result = client.call("wp.getPost", getParams);
+        if (!(result instanceof Map) || ((Map<?, ?>) result).get("post_content") == null) {
             return null;
         }
+        return ((Map<?, ?>) result).get("post_content").toString();
+    }
 
-        // Create a temp file for media upload
-        private File getTempFile(Context context) {
-            String tempFileName = "wp-" + System.currentTimeMillis();
-            try {
-                context.openFileOutput(tempFileName, Context.MODE_PRIVATE);
-            } catch (FileNotFoundException e) {
-                return null;
-            }
-            return context.getFileStreamPath(tempFileName);
+    /**
+     * Replace text in the content of a post with wp.getPost and wp.editPost, synchronously.
+     * The content is read from the blog, so the edits made since the post was uploaded are kept
+     * @return false if the text wasn't found in the post
+     */
+    public static boolean replaceInPostContent(Blog blog, String remotePostId, String oldText, String newText)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        String content = getPostContent(blog, remotePostId);
+        if (content == null || !content.contains(oldText)) {
+            return false;
         }
 
-        @Override
-        protected void onPostExecute(String result) {
-            if (mCallback != null) {
-                if (result != null) {
-                    mCallback.onSuccess(result);
-                } else {
-                    mCallback.onFailure(mErrorType, mErrorMessage, mThrowable);
-                }
-            }
-        }
+        XMLRPCClientInterface client = XMLRPCFactory.instantiate(blog.getUri(), blog.getHttpuser(),
+                blog.getHttppassword());
+        Map<String, Object> contentStruct = new HashMap<String, Object>();
+        contentStruct.put("post_content", content.replace(oldText, newText));
+        Object[] editParams = {
+                blog.getRemoteBlogId(),
+                blog.getUsername(),
+                blog.getPassword(),
+                remotePostId,
+                contentStruct
+        };
+        client.call("wp.editPost", editParams);
+        return true;
     }
 
     public static class DeleteMediaTask extends HelperAsyncTask<List<?>, Void, Void> {
@@ -29,6 +29,7 @@ public final class LoggedInputStream extends InputStream {
     private final static int MAX_LOG_SIZE = 1000;
     private final byte[] loggedString = new byte[MAX_LOG_SIZE]; 
     private int loggedStringSize = 0;
+    private long bytesRead = 0;
     
     public LoggedInputStream(InputStream input) {
         this.inputStream = input;
@@ -95,6 +96,7 @@ public final class LoggedInputStream extends InputStream {
     }
     
     private void log(byte[] inputArray, int byteOffset, int byteCount) {
+        bytesRead += byteCount;
         int availableSpace = MAX_LOG_SIZE-loggedStringSize;
         if (availableSpace <= 0)
             return;
@@ -109,6 +111,13 @@ public final class LoggedInputStream extends InputStream {
         log(logThis, 0, 1);
     }
     
+    /**
+     * @return number of bytes read from the underlying stream, skipped bytes excluded
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
     public String getResponseDocument() {
         if (loggedStringSize==0) {
             return "";
@@ -0,0 +1,181 @@
+package org.xmlrpc.android;
+
+import org.wordpress.android.util.TaskDispatcher.Priority;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XMLRPCClientInterface decorator serving the idempotent read methods listed in XMLRPCResponseCache
+ * from the response cache, and invalidating the cached responses of the blog after write calls.
+ * Asynchronous calls are never served from the cache, nor are the calls of a client set to force
+ * refresh (their responses are still cached).
+ * Identical read calls already in flight are coalesced by XMLRPCCallCoalescer.
+ */
+public class XMLRPCCachingClient implements XMLRPCClientInterface {
+    private final XMLRPCClientInterface mClient;
+    private final URI mUri;
+    private boolean mForceRefresh;
+
+    public XMLRPCCachingClient(XMLRPCClientInterface client, URI uri) {
+        mClient = client;
+        mUri = uri;
+    }
+
+    public void addQuickPostHeader(String type) {
+        mClient.addQuickPostHeader(type);
+    }
+
+    public void setAuthorizationHeader(String authToken) {
+        mClient.setAuthorizationHeader(authToken);
+    }
+
+    public void setUploadProgressListener(XMLRPCUploadProgressListener listener) {
+        mClient.setUploadProgressListener(listener);
+    }
+
+    public void setForceRefresh(boolean forceRefresh) {
+        mForceRefresh = forceRefresh;
+        mClient.setForceRefresh(forceRefresh);
+    }
+
+    public Object call(final String method, final Object[] params)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        Object cached = (mForceRefresh ? null : XMLRPCResponseCache.get(mUri, method, params));
+        if (cached != null) {
+            return cached;
+        }
+        if (XMLRPCCallCoalescer.isIdempotent(method)) {
+            String key = XMLRPCCallCoalescer.getCallKey(mUri, method, params, null);
+            return XMLRPCCallCoalescer.call(key, new XMLRPCCallCoalescer.Call<Object>() {
+                @Override
+                public Object run() throws XMLRPCException, IOException, XmlPullParserException {
+                    long generation = XMLRPCResponseCache.getGeneration();
+                    Object result = mClient.call(method, params);
+                    XMLRPCResponseCache.put(mUri, method, params, result, generation);
+                    return result;
+                }
+            });
+        }
+        try {
+            return mClient.call(method, params);
+        } finally {
+            invalidateAfterWrite(method);
+        }
+    }
+
+    public Object call(String method) throws XMLRPCException, IOException, XmlPullParserException {
+        return call(method, null);
+    }
+
+    public <T> List<T> call(final String method, final Object[] params, final XMLRPCStructBinder<T> binder)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        if (XMLRPCCallCoalescer.isIdempotent(method)) {
+            String key = XMLRPCCallCoalescer.getCallKey(mUri, method, params, binder.getClass().getName());
+            return XMLRPCCallCoalescer.call(key, new XMLRPCCallCoalescer.Call<List<T>>() {
+                @Override
+                public List<T> run() throws XMLRPCException, IOException, XmlPullParserException {
+                    return mClient.call(method, params, binder);
+                }
+
+                @Override
+                List<T> copy(List<T> result) {
+                    List<T> copy = new ArrayList<T>(result.size());
+                    for (T target : result) {
+                        copy.add(binder.copyTarget(target));
+                    }
+                    return copy;
+                }
+            });
+        }
+        try {
+            return mClient.call(method, params, binder);
+        } finally {
+            invalidateAfterWrite(method);
+        }
+    }
+
+    /*
+     * only the calls missing from the cache are sent to the server
+     */
+    public Object[] callMulticall(XMLRPCMulticall multicall) throws XMLRPCException, IOException,
+            XmlPullParserException {
+        Object[] results = new Object[multicall.size()];
+        XMLRPCMulticall uncachedCalls = new XMLRPCMulticall();
+        int[] uncachedIndexes = new int[multicall.size()];
+        for (int i = 0; i < multicall.size(); i++) {
+            if (!mForceRefresh) {
+                results[i] = XMLRPCResponseCache.get(mUri, multicall.getMethod(i), multicall.getParams(i));
+            }
+            if (results[i] == null) {
+                uncachedIndexes[uncachedCalls.add(multicall.getMethod(i), multicall.getParams(i))] = i;
+            }
+        }
+        if (uncachedCalls.size() == 0) {
+            return results;
+        }
+
+        try {
+            long generation = XMLRPCResponseCache.getGeneration();
+            Object[] uncachedResults = callUncached(uncachedCalls);
+            for (int i = 0; i < uncachedCalls.size(); i++) {
+                results[uncachedIndexes[i]] = uncachedResults[i];
+                if (!XMLRPCMulticall.isFault(uncachedResults[i])) {
+                    XMLRPCResponseCache.put(mUri, uncachedCalls.getMethod(i), uncachedCalls.getParams(i),
+                            uncachedResults[i], generation);
+                }
+            }
+            return results;
+        } finally {
+            for (int i = 0; i < uncachedCalls.size(); i++) {
+                invalidateAfterWrite(uncachedCalls.getMethod(i));
+            }
+        }
+    }
+
+    /*
+     * identical multicalls are coalesced when they only contain read calls
+     */
+    private Object[] callUncached(final XMLRPCMulticall multicall) throws XMLRPCException, IOException,
+            XmlPullParserException {
+        for (int i = 0; i < multicall.size(); i++) {
+            if (!XMLRPCCallCoalescer.isIdempotent(multicall.getMethod(i))) {
+                return mClient.callMulticall(multicall);
+            }
+        }
+        String key = XMLRPCCallCoalescer.getCallKey(mUri, XMLRPCMulticall.METHOD_MULTICALL,
+                multicall.getMulticallParams(), null);
+        return XMLRPCCallCoalescer.call(key, new XMLRPCCallCoalescer.Call<Object[]>() {
+            @Override
+            public Object[] run() throws XMLRPCException, IOException, XmlPullParserException {
+                return mClient.callMulticall(multicall);
+            }
+        });
+    }
+
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
+        return callAsync(listener, methodName, params, Priority.USER_INITIATED);
+    }
+
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, Priority priority) {
+        if (XMLRPCCallCoalescer.isIdempotent(methodName)) {
+            String key = XMLRPCCallCoalescer.getCallKey(mUri, methodName, params, null);
+            return XMLRPCCallCoalescer.callAsync(key, mClient, listener, methodName, params, priority);
+        }
+        invalidateAfterWrite(methodName);
+        return mClient.callAsync(listener, methodName, params, priority);
+    }
+
+    public boolean cancelAsync(long id) {
+        return XMLRPCCallCoalescer.cancelAsync(id) || mClient.cancelAsync(id);
+    }
+
+    private void invalidateAfterWrite(String method) {
+        if (XMLRPCResponseCache.isWriteMethod(method)) {
+            XMLRPCResponseCache.invalidate(mUri);
+        }
+    }
+}
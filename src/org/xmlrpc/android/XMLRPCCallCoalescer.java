@@ -0,0 +1,290 @@
+package org.xmlrpc.android;
+
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.TaskDispatcher;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Coalesces identical idempotent XML-RPC calls: while a call is in flight, the same call to the same
+ * endpoint with the same params doesn't go over the wire again, the duplicate callers wait for the
+ * pending call and get its result (or its exception). Each caller gets its own copy of the result, so
+ * a caller changing it doesn't affect the others. Used by XMLRPCCachingClient.
+ */
+public class XMLRPCCallCoalescer {
+    abstract static class Call<V> {
+        abstract V run() throws XMLRPCException, IOException, XmlPullParserException;
+
+        /**
+         * @return a copy of the result for a duplicate caller, decoded values are copied by default
+         */
+        @SuppressWarnings("unchecked")
+        V copy(V result) {
+            return (V) copyValue(result);
+        }
+    }
+
+    private static final Map<String, PendingCall> sPendingCalls = new HashMap<String, PendingCall>();
+    private static final Map<String, PendingAsyncCall> sPendingAsyncCalls = new HashMap<String, PendingAsyncCall>();
+    // async call id given to a caller -> pending call it's attached to
+    private static final Map<Long, PendingAsyncCall> sAsyncCallers = new HashMap<Long, PendingAsyncCall>();
+
+    private XMLRPCCallCoalescer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Only read calls can be coalesced, calls changing the blog must always reach the server
+     */
+    public static boolean isIdempotent(String method) {
+        if (method == null || XMLRPCResponseCache.isWriteMethod(method)) {
+            return false;
+        }
+        String name = method.substring(method.lastIndexOf('.') + 1);
+        return name.startsWith("get") || name.equals("listMethods");
+    }
+
+    /*
+     * variant distinguishes calls sharing the same method and params but decoded differently
+     */
+    static String getCallKey(URI uri, String method, Object[] params, String variant) {
+        StringBuilder key = new StringBuilder();
+        key.append(uri).append('|').append(method).append('|');
+        XMLRPCResponseCache.appendCanonical(key, params);
+        if (variant != null) {
+            key.append('|').append(variant);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Run the call, or wait for the identical call already in flight and return its result
+     */
+    static <V> V call(String key, Call<V> call) throws XMLRPCException, IOException, XmlPullParserException {
+        PendingCall pendingCall;
+        boolean isLeader = false;
+        synchronized (sPendingCalls) {
+            pendingCall = sPendingCalls.get(key);
+            if (pendingCall == null) {
+                pendingCall = new PendingCall();
+                sPendingCalls.put(key, pendingCall);
+                isLeader = true;
+            } else {
+                pendingCall.mFollowers++;
+            }
+        }
+
+        if (isLeader) {
+            V result = null;
+            try {
+                result = call.run();
+                return result;
+            } catch (XMLRPCException e) {
+                pendingCall.mError = e;
+                throw e;
+            } catch (IOException e) {
+                pendingCall.mError = e;
+                throw e;
+            } catch (XmlPullParserException e) {
+                pendingCall.mError = e;
+                throw e;
+            } catch (RuntimeException e) {
+                pendingCall.mError = e;
+                throw e;
+            } finally {
+                int followers;
+                synchronized (sPendingCalls) {
+                    sPendingCalls.remove(key);
+                    followers = pendingCall.mFollowers;
+                }
+                // the followers copy this snapshot rather than the result returned to the leader,
+                // which may change it while they copy it
+                if (followers > 0 && result != null) {
+                    pendingCall.mResult = call.copy(result);
+                }
+                pendingCall.mDone.countDown();
+            }
+        }
+
+        AppLog.d(T.API, "coalescing duplicate XML-RPC call");
+        try {
+            pendingCall.mDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLRPCException(e);
+        }
+        Exception error = pendingCall.mError;
+        if (error instanceof XMLRPCException) {
+            throw (XMLRPCException) error;
+        } else if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof XmlPullParserException) {
+            throw (XmlPullParserException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        @SuppressWarnings("unchecked")
+        V result = (V) pendingCall.mResult;
+        return (result != null ? call.copy(result) : null);
+    }
+
+    /**
+     * Attach the listener to the identical async call already in flight, or start it with client
+     *
+     * @return id of this caller, to pass to cancelAsync()
+     */
+    static long callAsync(String key, XMLRPCClientInterface client, XMLRPCCallback listener, String method,
+                          Object[] params, TaskDispatcher.Priority priority) {
+        long callerId = TaskDispatcher.newTaskId();
+        PendingAsyncCall pendingCall;
+        synchronized (sPendingAsyncCalls) {
+            pendingCall = sPendingAsyncCalls.get(key);
+            if (pendingCall != null) {
+                AppLog.d(T.API, "coalescing duplicate XML-RPC call " + method);
+                pendingCall.mListeners.put(callerId, listener);
+                sAsyncCallers.put(callerId, pendingCall);
+                return callerId;
+            }
+            pendingCall = new PendingAsyncCall(key, client);
+            pendingCall.mListeners.put(callerId, listener);
+            sPendingAsyncCalls.put(key, pendingCall);
+            sAsyncCallers.put(callerId, pendingCall);
+        }
+        long delegateId = client.callAsync(pendingCall, method, params, priority);
+        boolean cancelDelegate;
+        synchronized (sPendingAsyncCalls) {
+            pendingCall.mDelegateId = delegateId;
+            // the only caller may have cancelled before the call was started
+            cancelDelegate = (sPendingAsyncCalls.get(key) != pendingCall && pendingCall.mListeners.isEmpty());
+        }
+        if (cancelDelegate) {
+            client.cancelAsync(delegateId);
+        }
+        return callerId;
+    }
+
+    /**
+     * Detach a caller from its coalesced async call, the call is only cancelled once no caller waits for it
+     *
+     * @return false if the id isn't a pending coalesced call
+     */
+    static boolean cancelAsync(long callerId) {
+        PendingAsyncCall pendingCall;
+        boolean cancelDelegate;
+        synchronized (sPendingAsyncCalls) {
+            pendingCall = sAsyncCallers.remove(callerId);
+            if (pendingCall == null) {
+                return false;
+            }
+            pendingCall.mListeners.remove(callerId);
+            cancelDelegate = pendingCall.mListeners.isEmpty();
+            if (cancelDelegate) {
+                sPendingAsyncCalls.remove(pendingCall.mKey);
+                // not started yet, callAsync() cancels it once started
+                cancelDelegate = (pendingCall.mDelegateId != 0);
+            }
+        }
+        if (cancelDelegate) {
+            pendingCall.mClient.cancelAsync(pendingCall.mDelegateId);
+        }
+        return true;
+    }
+
+    /**
+     * Deep copy of a decoded XML-RPC value: structs, arrays, dates and base64 data are copied,
+     * strings, numbers and booleans are immutable and shared
+     */
+    static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = new HashMap<Object, Object>(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+            return copy;
+        } else if (value instanceof Object[]) {
+            Object[] copy = ((Object[]) value).clone();
+            for (int i = 0; i < copy.length; i++) {
+                copy[i] = copyValue(copy[i]);
+            }
+            return copy;
+        } else if (value instanceof List) {
+            List<Object> copy = new ArrayList<Object>(((List<?>) value).size());
+            for (Object item : (List<?>) value) {
+                copy.add(copyValue(item));
+            }
+            return copy;
+        } else if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        return value;
+    }
+
+    private static class PendingCall {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        // duplicate callers waiting for the call, guarded by sPendingCalls
+        private int mFollowers;
+        private volatile Object mResult;
+        private volatile Exception mError;
+    }
+
+    private static class PendingAsyncCall implements XMLRPCCallback {
+        private final String mKey;
+        private final XMLRPCClientInterface mClient;
+        private final Map<Long, XMLRPCCallback> mListeners = new LinkedHashMap<Long, XMLRPCCallback>();
+        private long mDelegateId;
+
+        PendingAsyncCall(String key, XMLRPCClientInterface client) {
+            mKey = key;
+            mClient = client;
+        }
+
+        private Map<Long, XMLRPCCallback> detachListeners() {
+            synchronized (sPendingAsyncCalls) {
+                if (sPendingAsyncCalls.get(mKey) == this) {
+                    sPendingAsyncCalls.remove(mKey);
+                }
+                Map<Long, XMLRPCCallback> listeners = new LinkedHashMap<Long, XMLRPCCallback>(mListeners);
+                for (Long callerId : listeners.keySet()) {
+                    sAsyncCallers.remove(callerId);
+                }
+                mListeners.clear();
+                return listeners;
+            }
+        }
+
+        @Override
+        public void onSuccess(long id, Object result) {
+            Map<Long, XMLRPCCallback> listeners = detachListeners();
+            int remaining = listeners.size();
+            for (Map.Entry<Long, XMLRPCCallback> entry : listeners.entrySet()) {
+                remaining--;
+                if (entry.getValue() != null) {
+                    // the last listener gets the result itself, the others get a copy made before it's handed out
+                    entry.getValue().onSuccess(entry.getKey(), (remaining > 0 ? copyValue(result) : result));
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(long id, Exception error) {
+            for (Map.Entry<Long, XMLRPCCallback> entry : detachListeners().entrySet()) {
+                if (entry.getValue() != null) {
+                    entry.getValue().onFailure(entry.getKey(), error);
+                }
+            }
+        }
+    }
+}
@@ -18,8 +18,7 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.ClientContext;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.entity.FileEntity;
+import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicCredentialsProvider;
@@ -28,37 +27,34 @@ import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
 import org.wordpress.android.util.StringUtils;
+import org.wordpress.android.util.TaskDispatcher;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 import org.xmlpull.v1.XmlSerializer;
 
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
 import java.io.StringWriter;
 import java.net.URI;
 import java.net.URL;
 import java.security.GeneralSecurityException;
-import java.security.KeyManagementException;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.UnrecoverableKeyException;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.net.ssl.SSLHandshakeException;
 
@@ -79,14 +75,25 @@ public class XMLRPCClient implements XMLRPCClientInterface {
     private static final String TAG_FAULT_STRING = "faultString";
     private static final int DEFAULT_CONNECTION_TIMEOUT = 30000;
     private static final int DEFAULT_SOCKET_TIMEOUT = 60000;
-
-    private Map<Long,Caller> backgroundCalls = new HashMap<Long, Caller>();
+    // junk (php warnings for example) is skipped if the xml declaration is found within this many bytes
+    private static final int MAX_PREAMBLE_LENGTH = 5000;
+    private static final byte[] XML_DECLARATION_START = {'<', '?', 'x', 'm', 'l'};
+    // XML-RPC "parse error. not well formed" fault
+    private static final int FAULT_CODE_NOT_WELL_FORMED = -32700;
+    // HttpContext attribute set when the connection is ready and the request is about to be sent
+    private static final String CONTEXT_CONNECTED_AT = "org.xmlrpc.android.connected_at";
+
+    // endpoints where system.multicall failed, calls to these are made one by one
+    private static final Set<String> sMulticallUnsupportedEndpoints =
+            Collections.synchronizedSet(new HashSet<String>());
 
     private DefaultHttpClient mClient;
     private HttpPost mPostMethod;
     private XmlSerializer mSerializer;
     private HttpParams mHttpParams;
     private boolean mIsWpcom;
+    private XMLRPCUploadProgressListener mUploadProgressListener;
+    private boolean mIsRequestCompressed;
 
     /**
      * XMLRPCClient constructor. Creates new instance based on server URI
@@ -97,6 +104,7 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         mPostMethod.addHeader("Content-Type", "text/xml");
         mPostMethod.addHeader("charset", "UTF-8");
         mPostMethod.addHeader("User-Agent", WordPress.getUserAgent());
+        mPostMethod.addHeader("Accept-Encoding", XMLRPCCompression.ACCEPT_ENCODING);
 
         mHttpParams = mPostMethod.getParams();
         HttpProtocolParams.setUseExpectContinue(mHttpParams, false);
@@ -110,49 +118,32 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         mSerializer = Xml.newSerializer();
     }
 
-    private class ConnectionClient extends DefaultHttpClient {
-        public ConnectionClient(int port) throws KeyManagementException, UnrecoverableKeyException, NoSuchAlgorithmException, KeyStoreException {
-            super();
-            TrustUserSSLCertsSocketFactory tasslf = new TrustUserSSLCertsSocketFactory();
-            Scheme scheme = new Scheme("https", tasslf, port);
-            getConnectionManager().getSchemeRegistry().register(scheme);
-        }
-    }
-
     private DefaultHttpClient instantiateClientForUri(URI uri, UsernamePasswordCredentials usernamePasswordCredentials) {
-        DefaultHttpClient client = null;
+        ClientConnectionManager connectionManager = null;
         if (uri != null && uri.getHost() != null && uri.getHost().endsWith("wordpress.com")) {
             mIsWpcom = true;
         }
         if (mIsWpcom || (uri == null || uri.getScheme() == null || uri.getScheme().equals("http"))) {
             //wpcom blog or self-hosted blog on plain HTTP
-            client = new DefaultHttpClient();
+            connectionManager = XMLRPCConnectionManager.getDefaultManager();
         } else {
-            int port = uri.getPort();
-            if (port == -1) {
-                port = 443;
-            }
-
             try {
-                client = new ConnectionClient(port);
-            } catch (NoSuchAlgorithmException e) {
-                AppLog.e(T.API, "Cannot create the DefaultHttpClient object with our TrustAllSSLSocketFactory", e);
-                client = null;
-            } catch (KeyStoreException e) {
-                AppLog.e(T.API, "Cannot create the DefaultHttpClient object with our TrustAllSSLSocketFactory", e);
-                client = null;
-            } catch (UnrecoverableKeyException e) {
-                AppLog.e(T.API, "Cannot create the DefaultHttpClient object with our TrustAllSSLSocketFactory", e);
-                client = null;
+                connectionManager = XMLRPCConnectionManager.getTrustUserCertsManager();
             } catch (GeneralSecurityException e) {
-                AppLog.e(T.API, "Cannot create the DefaultHttpClient object with our TrustAllSSLSocketFactory", e);
-                client = null;
+                AppLog.e(T.API, "Cannot create the connection manager with our TrustUserSSLCertsSocketFactory", e);
+                connectionManager = XMLRPCConnectionManager.getDefaultManager();
             }
+        }
 
-            if (client == null) {
-                client = new DefaultHttpClient();
+        // the connection manager is shared with other clients, this client must never shut it down
+        DefaultHttpClient client = new DefaultHttpClient(connectionManager, null);
+        client.setKeepAliveStrategy(XMLRPCConnectionManager.getKeepAliveStrategy());
+        client.addRequestInterceptor(new HttpRequestInterceptor() {
+            @Override
+            public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+                context.setAttribute(CONTEXT_CONNECTED_AT, System.nanoTime());
             }
-        }
+        });
 
         // This is probably superfluous, since we're setting the timeouts in the method parameters. See preparePostMethod
         HttpConnectionParams.setConnectionTimeout(client.getParams(), DEFAULT_CONNECTION_TIMEOUT);
@@ -185,6 +176,20 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         return client;
     }
 
+    /**
+     * Set a listener notified while the body of wp.uploadFile requests is sent
+     * @param listener progress listener, or null to remove it
+     */
+    public void setUploadProgressListener(XMLRPCUploadProgressListener listener) {
+        mUploadProgressListener = listener;
+    }
+
+    /**
+     * Responses are never cached by XMLRPCClient itself, see XMLRPCCachingClient
+     */
+    public void setForceRefresh(boolean forceRefresh) {
+    }
+
     public void addQuickPostHeader(String type) {
         mPostMethod.addHeader("WP-QUICK-POST", type);
     }
@@ -227,7 +232,7 @@ public class XMLRPCClient implements XMLRPCClientInterface {
      * @throws XMLRPCException
      */
     public Object call(String method, Object[] params) throws XMLRPCException, IOException, XmlPullParserException {
-        return call(method, params, null);
+        return new Caller().callXMLRPC(method, params, null);
     }
 
     /**
@@ -238,12 +243,61 @@ public class XMLRPCClient implements XMLRPCClientInterface {
      * @throws XMLRPCException
      */
     public Object call(String method) throws XMLRPCException, IOException, XmlPullParserException {
-        return call(method, null, null);
+        return call(method, null);
     }
 
+    /**
+     * Call a method returning an array of structs (or a single struct), the structs are decoded
+     * straight into the binder targets while the response is read
+     *
+     * @return the bound targets, in the order of the response
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> call(String method, Object[] params, XMLRPCStructBinder<T> binder)
+            throws XMLRPCException, IOException, XmlPullParserException {
+        return (List<T>) new Caller().callXMLRPC(method, params, binder);
+    }
+
+    /**
+     * Send all the calls of the multicall in a single system.multicall request. Falls back to
+     * sequential calls if the server doesn't support system.multicall.
+     *
+     * @return one entry per call, in order: the call result or an XMLRPCFault
+     * @throws XMLRPCException if the request itself failed
+     */
+    public Object[] callMulticall(XMLRPCMulticall multicall) throws XMLRPCException, IOException,
+            XmlPullParserException {
+        String endpoint = mPostMethod.getURI().toString();
+        if (multicall.size() > 1 && !sMulticallUnsupportedEndpoints.contains(endpoint)) {
+            Object response = null;
+            try {
+                response = call(XMLRPCMulticall.METHOD_MULTICALL, multicall.getMulticallParams());
+            } catch (XMLRPCFault e) {
+                // a fault for the whole request means system.multicall is missing or disabled
+                AppLog.w(T.API, XMLRPCMulticall.METHOD_MULTICALL + " not available, falling back to sequential calls - "
+                        + e.getMessage());
+                sMulticallUnsupportedEndpoints.add(endpoint);
+            }
+            if (response != null) {
+                Object[] results = multicall.parseMulticallResult(response);
+                for (Object result : results) {
+                    if (result instanceof XMLRPCFault) {
+                        broadcastFaultAction((XMLRPCFault) result);
+                    }
+                }
+                return results;
+            }
+        }
 
-    public Object call(String method, Object[] params, File tempFile) throws XMLRPCException, IOException, XmlPullParserException {
-        return new Caller().callXMLRPC(method, params, tempFile);
+        Object[] results = new Object[multicall.size()];
+        for (int i = 0; i < multicall.size(); i++) {
+            try {
+                results[i] = call(multicall.getMethod(i), multicall.getParams(i));
+            } catch (XMLRPCFault e) {
+                results[i] = e;
+            }
+        }
+        return results;
     }
 
     /**
@@ -254,54 +308,47 @@ public class XMLRPCClient implements XMLRPCClientInterface {
      * @throws XMLRPCException
      */
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
-        return callAsync(listener, methodName, params, null);
+        return callAsync(listener, methodName, params, Priority.USER_INITIATED);
     }
 
     /**
-     * Asynchronous XMLRPC call
+     * Asynchronous XMLRPC call, run on the shared TaskDispatcher pool
      *
-     * @param XMLRPCCallback listener, XMLRPC methodName, XMLRPC parameters, File for large uploads
-     * @return unique id of this async call
-     * @throws XMLRPCException
+     * @param priority USER_INITIATED calls run before queued BACKGROUND calls
+     * @return unique id of this async call, can be passed to cancelAsync()
      */
-    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, File tempFile) {
-        long id = System.currentTimeMillis();
-        new Caller(listener, id, methodName, params, tempFile).start();
-        return id;
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, Priority priority) {
+        long id = TaskDispatcher.newTaskId();
+        return TaskDispatcher.execute(id, priority, new Caller(listener, id, methodName, params));
+    }
+
+    /**
+     * Cancel an asynchronous call, the listener won't be notified of its result
+     *
+     * @param id id returned by callAsync()
+     * @return true if the call was still queued or running
+     */
+    public boolean cancelAsync(long id) {
+        return TaskDispatcher.cancel(id);
     }
 
-    @SuppressWarnings("unchecked")
     public static Object parseXMLRPCResponse(InputStream is, HttpEntity entity)
             throws XMLRPCException, IOException, XmlPullParserException, NumberFormatException {
+        return parseXMLRPCResponse(is, entity, null);
+    }
+
+    /**
+     * @param binder if not null, the result is decoded into a List of binder targets instead of
+     *               the usual Object[]/Map tree
+     */
+    @SuppressWarnings("unchecked")
+    public static Object parseXMLRPCResponse(InputStream is, HttpEntity entity, XMLRPCStructBinder<?> binder)
+            throws XMLRPCException, IOException, XmlPullParserException, NumberFormatException {
         // setup pull parser
         XmlPullParser pullParser = XmlPullParserFactory.newInstance().newPullParser();
 
         // Many WordPress configs can output junk before the xml response (php warnings for example), this cleans it.
-        int bomCheck = -1;
-        int stopper = 0;
-        while ((bomCheck = is.read()) != -1 && stopper <= 5000) {
-            stopper++;
-            String snippet = "";
-            // 60 == '<' character
-            if (bomCheck == 60) {
-                for (int i = 0; i < 4; i++) {
-                    byte[] chunk = new byte[1];
-                    is.read(chunk);
-                    snippet += new String(chunk, "UTF-8");
-                }
-                if (snippet.equals("?xml")) {
-                    // it's all good, add xml tag back and start parsing
-                    String start = "<" + snippet;
-                    List<InputStream> streams = Arrays.asList(new ByteArrayInputStream(start.getBytes()), is);
-                    is = new SequenceInputStream(Collections.enumeration(streams));
-                    break;
-                } else {
-                    // keep searching...
-                    List<InputStream> streams = Arrays.asList(new ByteArrayInputStream(snippet.getBytes()), is);
-                    is = new SequenceInputStream(Collections.enumeration(streams));
-                }
-            }
-        }
+        is = skipPreamble(is);
 
         pullParser.setInput(is, "UTF-8");
 
@@ -318,7 +365,12 @@ public class XMLRPCClient implements XMLRPCClientInterface {
             pullParser.nextTag(); // TAG_VALUE (<value>)
             // no parser.require() here since its called in XMLRPCSerializer.deserialize() below
             // deserialize result
-            Object obj = XMLRPCSerializer.deserialize(pullParser);
+            Object obj;
+            if (binder != null) {
+                obj = XMLRPCSerializer.deserialize(pullParser, binder);
+            } else {
+                obj = XMLRPCSerializer.deserialize(pullParser);
+            }
             if (entity != null) {
                 entity.consumeContent();
             }
@@ -343,68 +395,91 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         }
     }
 
-    public void preparePostMethod(String method, Object[] params, File tempFile) throws IOException, XMLRPCException, IllegalArgumentException, IllegalStateException {
-        // prepare POST body
-        if (method.equals("wp.uploadFile")) {
-
-            if (!tempFile.exists() && !tempFile.mkdirs()) {
-                throw new XMLRPCException("Path to file could not be created.");
+    /*
+     * returns a stream positioned on the "<?xml" declaration if it's found in the first
+     * MAX_PREAMBLE_LENGTH bytes, otherwise positioned at the start of the response
+     */
+    private static InputStream skipPreamble(InputStream is) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(is);
+        bufferedStream.mark(MAX_PREAMBLE_LENGTH + XML_DECLARATION_START.length);
+
+        int position = 0;
+        int matched = 0;
+        int b;
+        while (position < MAX_PREAMBLE_LENGTH + XML_DECLARATION_START.length && (b = bufferedStream.read()) != -1) {
+            position++;
+            if (b == XML_DECLARATION_START[matched]) {
+                matched++;
+                if (matched == XML_DECLARATION_START.length) {
+                    break;
+                }
+            } else {
+                // '<' doesn't appear again in "<?xml", so the match can only restart here
+                matched = (b == XML_DECLARATION_START[0] ? 1 : 0);
             }
+        }
 
-            FileWriter fileWriter = new FileWriter(tempFile);
-            mSerializer.setOutput(fileWriter);
-
-            mSerializer.startDocument(null, null);
-            mSerializer.startTag(null, TAG_METHOD_CALL);
-            // set method name
-            mSerializer.startTag(null, TAG_METHOD_NAME).text(method).endTag(null, TAG_METHOD_NAME);
-            if (params != null && params.length != 0) {
-                // set method params
-                mSerializer.startTag(null, TAG_PARAMS);
-                for (int i = 0; i < params.length; i++) {
-                    mSerializer.startTag(null, TAG_PARAM).startTag(null, XMLRPCSerializer.TAG_VALUE);
-                    XMLRPCSerializer.serialize(mSerializer, params[i]);
-                    mSerializer.endTag(null, XMLRPCSerializer.TAG_VALUE).endTag(null, TAG_PARAM);
+        bufferedStream.reset();
+        if (matched == XML_DECLARATION_START.length) {
+            long toSkip = position - XML_DECLARATION_START.length;
+            while (toSkip > 0) {
+                long skipped = bufferedStream.skip(toSkip);
+                if (skipped <= 0) {
+                    break;
                 }
-                mSerializer.endTag(null, TAG_PARAMS);
+                toSkip -= skipped;
             }
-            mSerializer.endTag(null, TAG_METHOD_CALL);
-            mSerializer.endDocument();
+        }
+        return bufferedStream;
+    }
 
-            fileWriter.flush();
-            fileWriter.close();
+    /**
+     * Write a complete methodCall document to the serializer
+     *
+     * @param skipMediaContent when true, MediaFile params are serialized without their content
+     */
+    static void serializeMethodCall(XmlSerializer serializer, String method, Object[] params,
+                                    boolean skipMediaContent) throws IOException {
+        serializer.startDocument(null, null);
+        serializer.startTag(null, TAG_METHOD_CALL);
+        // set method name
+        serializer.startTag(null, TAG_METHOD_NAME).text(method).endTag(null, TAG_METHOD_NAME);
+        if (params != null && params.length != 0) {
+            // set method params
+            serializer.startTag(null, TAG_PARAMS);
+            for (int i = 0; i < params.length; i++) {
+                serializer.startTag(null, TAG_PARAM).startTag(null, XMLRPCSerializer.TAG_VALUE);
+                XMLRPCSerializer.serialize(serializer, params[i], skipMediaContent);
+                serializer.endTag(null, XMLRPCSerializer.TAG_VALUE).endTag(null, TAG_PARAM);
+            }
+            serializer.endTag(null, TAG_PARAMS);
+        }
+        serializer.endTag(null, TAG_METHOD_CALL);
+        serializer.endDocument();
+    }
 
-            FileEntity fEntity = new FileEntity(tempFile, "text/xml; charset=\"UTF-8\"");
-            fEntity.setContentType("text/xml");
-            //fEntity.setChunked(true);
-            mPostMethod.setEntity(fEntity);
+    public void preparePostMethod(String method, Object[] params) throws IOException, XMLRPCException, IllegalArgumentException, IllegalStateException {
+        // prepare POST body
+        mIsRequestCompressed = false;
+        if (method.equals("wp.uploadFile")) {
+            // media files are encoded while the request is sent, no temporary file is needed
+            HttpEntity entity = new XMLRPCStreamingEntity(method, params, mUploadProgressListener);
+            XMLRPCCompression.countRequest(entity.getContentLength(), entity.getContentLength());
+            mPostMethod.setEntity(entity);
         } else {
             StringWriter bodyWriter = new StringWriter();
             mSerializer.setOutput(bodyWriter);
-
-            mSerializer.startDocument(null, null);
-            mSerializer.startTag(null, TAG_METHOD_CALL);
-            // set method name
-            mSerializer.startTag(null, TAG_METHOD_NAME).text(method).endTag(null, TAG_METHOD_NAME);
-            if (params != null && params.length != 0) {
-                // set method params
-                mSerializer.startTag(null, TAG_PARAMS);
-                for (int i = 0; i < params.length; i++) {
-                    mSerializer.startTag(null, TAG_PARAM).startTag(null, XMLRPCSerializer.TAG_VALUE);
-                    if (method.equals("metaWeblog.editPost") || method.equals("metaWeblog.newPost")) {
-                        XMLRPCSerializer.serialize(mSerializer, params[i]);
-                    } else {
-                        XMLRPCSerializer.serialize(mSerializer, params[i]);
-                    }
-                    mSerializer.endTag(null, XMLRPCSerializer.TAG_VALUE).endTag(null, TAG_PARAM);
-                }
-                mSerializer.endTag(null, TAG_PARAMS);
-            }
-            mSerializer.endTag(null, TAG_METHOD_CALL);
-            mSerializer.endDocument();
+            serializeMethodCall(mSerializer, method, params, false);
 
             HttpEntity entity = new StringEntity(bodyWriter.toString());
             //Log.i("WordPress", bodyWriter.toString());
+            long bodyLength = entity.getContentLength();
+            if (XMLRPCCompression.shouldCompressRequest(mPostMethod.getURI().toString(), (int) bodyLength)) {
+                // same charset as the StringEntity above
+                entity = XMLRPCCompression.compressRequestBody(bodyWriter.toString().getBytes(HTTP.DEFAULT_CONTENT_CHARSET));
+                mIsRequestCompressed = true;
+            }
+            XMLRPCCompression.countRequest(bodyLength, entity.getContentLength());
             mPostMethod.setEntity(entity);
         }
 
@@ -417,44 +492,42 @@ public class XMLRPCClient implements XMLRPCClientInterface {
 
     /**
      * The Caller class is used to make asynchronous calls to the server.
-     * For synchronous calls the Thread function of this class isn't used.
+     * For synchronous calls the Runnable function of this class isn't used.
      */
-    private class Caller extends Thread {
+    private class Caller implements Runnable {
 
         private XMLRPCCallback listener;
-        private long threadId;
+        private long callId;
         private String methodName;
         private Object[] params;
-        private File tempFile;
 
         /**
          * Create a new Caller for asynchronous use.
          *
          * @param listener The listener to notice about the response or an error.
-         * @param threadId An id that will be send to the listener.
+         * @param callId An id that will be send to the listener, the TaskDispatcher task id.
          * @param methodName The method name to call.
          * @param params The parameters of the call or null.
          */
-        public Caller(XMLRPCCallback listener, long threadId, String methodName, Object[] params, File tempFile) {
+        public Caller(XMLRPCCallback listener, long callId, String methodName, Object[] params) {
             this.listener = listener;
-            this.threadId = threadId;
+            this.callId = callId;
             this.methodName = methodName;
             this.params = params;
-            this.tempFile = tempFile;
         }
 
         /**
          * Create a new Caller for synchronous use.
-         * If the caller has been created with this constructor you cannot use the
-         * start method to start it as a thread. But you can call the call method
-         * on it for synchronous use.
+         * If the caller has been created with this constructor you cannot run it
+         * asynchronously. But you can call the call method on it for synchronous use.
          */
         public Caller() { }
 
         /**
-         * The run method is invoked when the thread gets started.
+         * The run method is invoked by the TaskDispatcher.
          * This will only work, if the Caller has been created with parameters.
-         * It execute the call method and notify the listener about the result.
+         * It execute the call method and notify the listener about the result, unless
+         * the call has been cancelled.
          */
         @Override
         public void run() {
@@ -462,18 +535,24 @@ public class XMLRPCClient implements XMLRPCClientInterface {
             if(listener == null)
                 return;
 
+            Object o;
             try {
-                backgroundCalls.put(threadId, this);
-                Object o = this.callXMLRPC(methodName, params, tempFile);
-                listener.onSuccess(threadId, o);
-            } catch(CancelException ex) {
-                // Don't notify the listener, if the call has been canceled.
+                o = this.callXMLRPC(methodName, params, null);
             } catch (Exception ex) {
-                listener.onFailure(threadId, ex);
-            } finally {
-                backgroundCalls.remove(threadId);
+                if (!TaskDispatcher.isCancelled(callId)) {
+                    listener.onFailure(callId, ex);
+                }
+                return;
             }
+            // Don't notify the listener, if the call has been canceled.
+            if (!TaskDispatcher.isCancelled(callId)) {
+                listener.onSuccess(callId, o);
+            }
+        }
 
+        private boolean isCompressedRequestRejected(int statusCode) {
+            return statusCode == HttpStatus.SC_BAD_REQUEST || statusCode == HttpStatus.SC_LENGTH_REQUIRED
+                    || statusCode == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE || statusCode == HttpStatus.SC_NOT_IMPLEMENTED;
         }
 
         /**
@@ -484,20 +563,78 @@ public class XMLRPCClient implements XMLRPCClientInterface {
          * @return deserialized method return value
          * @throws XMLRPCException
          */
-        private Object callXMLRPC(String method, Object[] params, File tempFile)
+        private Object callXMLRPC(String method, Object[] params, XMLRPCStructBinder<?> binder)
+                throws XMLRPCException, IOException, XmlPullParserException {
+            try {
+                return callXMLRPCOnce(method, params, binder);
+            } catch (CompressedRequestRejectedException e) {
+                // the server doesn't accept compressed request bodies: remember it and send the call again
+                AppLog.w(T.API, "Compressed request rejected, calling " + method + " again without compression");
+                XMLRPCCompression.setRequestCompressionUnsupported(mPostMethod.getURI().toString());
+                return callXMLRPCOnce(method, params, binder);
+            }
+        }
+
+        /*
+         * a single call to the server, recorded in XMLRPCStats
+         */
+        private Object callXMLRPCOnce(String method, Object[] params, XMLRPCStructBinder<?> binder)
+                throws XMLRPCException, IOException, XmlPullParserException {
+            XMLRPCStats.CallRecord stats = XMLRPCStats.startCall(mPostMethod.getURI(), method);
+            try {
+                return callXMLRPCOnce(method, params, binder, stats);
+            } catch (XMLRPCFault e) {
+                stats.setFault(e.getFaultCode());
+                throw e;
+            } catch (XMLRPCException e) {
+                stats.setError(e);
+                throw e;
+            } catch (IOException e) {
+                stats.setError(e);
+                throw e;
+            } catch (XmlPullParserException e) {
+                stats.setError(e);
+                throw e;
+            } catch (RuntimeException e) {
+                stats.setError(e);
+                throw e;
+            } finally {
+                stats.finish();
+            }
+        }
+
+        private Object callXMLRPCOnce(String method, Object[] params, XMLRPCStructBinder<?> binder,
+                                      XMLRPCStats.CallRecord stats)
                 throws XMLRPCException, IOException, XmlPullParserException {
             LoggedInputStream loggedInputStream = null;
+            HttpEntity entity = null;
             try {
-                preparePostMethod(method, params, tempFile);
+                // media files are encoded while they're sent, so their serialization counts as server wait
+                preparePostMethod(method, params);
+                stats.endPhase(XMLRPCStats.Phase.SERIALIZE);
+                stats.setRequestBytes(mPostMethod.getEntity().getContentLength());
+                XMLRPCConnectionManager.closeIdleConnections(mClient.getConnectionManager());
 
                 // execute HTTP POST request
-                HttpResponse response = mClient.execute(mPostMethod);
+                HttpContext httpContext = new BasicHttpContext();
+                HttpResponse response = mClient.execute(mPostMethod, httpContext);
+                long responseTime = System.nanoTime();
+                Long connectedTime = (Long) httpContext.getAttribute(CONTEXT_CONNECTED_AT);
+                if (connectedTime != null) {
+                    stats.endPhase(XMLRPCStats.Phase.CONNECT, connectedTime);
+                }
+                stats.endPhase(XMLRPCStats.Phase.SERVER_WAIT, responseTime);
 
                 if (response.getStatusLine() == null) // StatusLine is null. We can't read the response code.
                     throw new XMLRPCException( "HTTP Status code is missing!" );
 
                 int statusCode = response.getStatusLine().getStatusCode();
-                HttpEntity entity = response.getEntity();
+                stats.setStatusCode(statusCode);
+                entity = XMLRPCCompression.decodeResponseEntity(response.getEntity());
+
+                if (mIsRequestCompressed && isCompressedRequestRejected(statusCode)) {
+                    throw new CompressedRequestRejectedException();
+                }
 
                 if (entity == null) {
                     //This is an error since the parser will fail here.
@@ -506,7 +643,12 @@ public class XMLRPCClient implements XMLRPCClientInterface {
 
                 if (statusCode == HttpStatus.SC_OK) {
                     loggedInputStream = new LoggedInputStream(entity.getContent());
-                    return XMLRPCClient.parseXMLRPCResponse(loggedInputStream, entity);
+                    try {
+                        return XMLRPCClient.parseXMLRPCResponse(loggedInputStream, entity, binder);
+                    } finally {
+                        stats.endPhase(XMLRPCStats.Phase.PARSE);
+                        stats.setResponseBytes(loggedInputStream.getBytesRead());
+                    }
                 }
 
                 String statusLineReasonPhrase = StringUtils.notNullStr(response.getStatusLine().getReasonPhrase());
@@ -540,21 +682,14 @@ public class XMLRPCClient implements XMLRPCClientInterface {
                 }
                 throw new XMLRPCException( "HTTP status code: " + statusCode + " was returned. " + statusLineReasonPhrase);
             } catch (XMLRPCFault e) {
+                if (mIsRequestCompressed && e.getFaultCode() == FAULT_CODE_NOT_WELL_FORMED) {
+                    // the server couldn't read the compressed request body
+                    throw new CompressedRequestRejectedException();
+                }
                 if (loggedInputStream!=null) {
                     AppLog.w(T.API, "Response document received from the server: " + loggedInputStream.getResponseDocument());
                 }
-                // Detect login issues and broadcast a message if the error is known
-                switch (e.getFaultCode()) {
-                    case 403:
-                        broadcastAction(WordPress.BROADCAST_ACTION_XMLRPC_INVALID_CREDENTIALS);
-                        break;
-                    case 425:
-                        broadcastAction(WordPress.BROADCAST_ACTION_XMLRPC_TWO_FA_AUTH);
-                        break;
-                    //TODO: Check the login limit here
-                    default:
-                        break;
-                }
+                broadcastFaultAction(e);
                 throw e;
             } catch (XmlPullParserException e) {
                 AppLog.e(T.API, "Error while parsing the XML-RPC response document received from the server.", e);
@@ -586,13 +721,20 @@ public class XMLRPCClient implements XMLRPCClientInterface {
                 }
                 throw e;
             } finally {
-                deleteTempFile(method, tempFile);
                 try {
                     if (loggedInputStream!=null) {
                         loggedInputStream.close();
                     }
                 } catch (Exception e) {
                 }
+                // release the connection to the shared pool, even if the response wasn't fully read
+                if (entity != null) {
+                    try {
+                        entity.consumeContent();
+                    } catch (IOException e) {
+                        AppLog.w(T.API, "Cannot release the connection: " + e.getMessage());
+                    }
+                }
             }
         }
     }
@@ -615,22 +757,33 @@ public class XMLRPCClient implements XMLRPCClientInterface {
         return false;
     }
 
+    /**
+     * Detect login issues and broadcast a message if the error is known
+     */
+    private void broadcastFaultAction(XMLRPCFault fault) {
+        switch (fault.getFaultCode()) {
+            case 403:
+                broadcastAction(WordPress.BROADCAST_ACTION_XMLRPC_INVALID_CREDENTIALS);
+                break;
+            case 425:
+                broadcastAction(WordPress.BROADCAST_ACTION_XMLRPC_TWO_FA_AUTH);
+                break;
+            //TODO: Check the login limit here
+            default:
+                break;
+        }
+    }
+
     private void broadcastAction(String action) {
         Intent intent = new Intent();
         intent.setAction(action);
         WordPress.getContext().sendBroadcast(intent);
     }
 
-    private void deleteTempFile(String method, File tempFile) {
-        if (tempFile != null) {
-            if ((method.equals("wp.uploadFile"))){ //get rid of the temp file
-                tempFile.delete();
-            }
-        }
-
-    }
-
-    private class CancelException extends RuntimeException {
+    /*
+     * thrown when the server can't read a compressed request body
+     */
+    private static class CompressedRequestRejectedException extends IOException {
         private static final long serialVersionUID = 1L;
     }
-}
\ No newline at end of file
+}
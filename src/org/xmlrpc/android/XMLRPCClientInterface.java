@@ -1,16 +1,21 @@
 package org.xmlrpc.android;
 
-import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.xmlpull.v1.XmlPullParserException;
 
 public interface XMLRPCClientInterface {
     public void addQuickPostHeader(String type);
     public void setAuthorizationHeader(String authToken);
+    public void setUploadProgressListener(XMLRPCUploadProgressListener listener);
+    public void setForceRefresh(boolean forceRefresh);
     public Object call(String method, Object[] params) throws XMLRPCException, IOException, XmlPullParserException;
     public Object call(String method) throws XMLRPCException, IOException, XmlPullParserException;
-    public Object call(String method, Object[] params, File tempFile) throws XMLRPCException, IOException, XmlPullParserException;
+    public <T> List<T> call(String method, Object[] params, XMLRPCStructBinder<T> binder) throws XMLRPCException, IOException, XmlPullParserException;
+    public Object[] callMulticall(XMLRPCMulticall multicall) throws XMLRPCException, IOException, XmlPullParserException;
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params);
-    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, File tempFile);
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, Priority priority);
+    public boolean cancelAsync(long id);
 }
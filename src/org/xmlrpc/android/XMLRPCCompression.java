@@ -0,0 +1,217 @@
+package org.xmlrpc.android;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * gzip/deflate support for XML-RPC calls.
+ * <p>Responses: every request sends Accept-Encoding, compressed responses are decoded transparently
+ * before they reach the parser.</p>
+ * <p>Requests: servers are not required to accept compressed request bodies, so gzip request bodies
+ * are opt-in (setRequestCompressionEnabled, set from the "compress data sent" app setting). An
+ * endpoint rejecting a compressed body is remembered and called uncompressed from then on.</p>
+ * <p>Byte counters (since the app started) show the savings on metered connections.</p>
+ */
+public class XMLRPCCompression {
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+
+    // request bodies smaller than this are not worth compressing
+    private static final int MIN_COMPRESSED_REQUEST_SIZE = 1024;
+
+    private static volatile boolean sRequestCompressionEnabled;
+    private static final Set<String> sRequestCompressionUnsupportedEndpoints =
+            Collections.synchronizedSet(new HashSet<String>());
+
+    private static final AtomicLong sRequestBytes = new AtomicLong();
+    private static final AtomicLong sRequestWireBytes = new AtomicLong();
+    private static final AtomicLong sResponseBytes = new AtomicLong();
+    private static final AtomicLong sResponseWireBytes = new AtomicLong();
+
+    private XMLRPCCompression() {
+        throw new AssertionError();
+    }
+
+    public static void setRequestCompressionEnabled(boolean enabled) {
+        sRequestCompressionEnabled = enabled;
+    }
+
+    public static boolean isRequestCompressionEnabled() {
+        return sRequestCompressionEnabled;
+    }
+
+    static boolean shouldCompressRequest(String endpoint, int bodyLength) {
+        return sRequestCompressionEnabled && bodyLength >= MIN_COMPRESSED_REQUEST_SIZE
+                && !sRequestCompressionUnsupportedEndpoints.contains(endpoint);
+    }
+
+    static void setRequestCompressionUnsupported(String endpoint) {
+        sRequestCompressionUnsupportedEndpoints.add(endpoint);
+    }
+
+    /*
+     * returns a gzip-compressed entity for the passed request body
+     */
+    static HttpEntity compressRequestBody(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(compressed);
+        gzipStream.write(body);
+        gzipStream.close();
+        ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray());
+        entity.setContentEncoding(ENCODING_GZIP);
+        return entity;
+    }
+
+    static void countRequest(long bodyBytes, long wireBytes) {
+        sRequestBytes.addAndGet(bodyBytes);
+        sRequestWireBytes.addAndGet(wireBytes);
+    }
+
+    /**
+     * Wrap a response entity so its content is decompressed according to its Content-Encoding
+     */
+    static HttpEntity decodeResponseEntity(HttpEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+        return new DecodingEntity(entity, getEncoding(entity));
+    }
+
+    private static String getEncoding(HttpEntity entity) {
+        Header header = entity.getContentEncoding();
+        if (header != null) {
+            for (HeaderElement element : header.getElements()) {
+                String name = element.getName();
+                if (ENCODING_GZIP.equalsIgnoreCase(name) || ENCODING_DEFLATE.equalsIgnoreCase(name)) {
+                    return name.toLowerCase();
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * "deflate" should be a zlib stream but some servers send raw deflate data, check the zlib header
+     */
+    private static InputStream newInflaterStream(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
+        bufferedStream.mark(2);
+        int cmf = bufferedStream.read();
+        int flg = bufferedStream.read();
+        bufferedStream.reset();
+        boolean isZlib = (cmf != -1 && flg != -1 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0);
+        return new InflaterInputStream(bufferedStream, new Inflater(!isZlib));
+    }
+
+    /**
+     * @return uncompressed size of the request bodies sent
+     */
+    public static long getRequestBytes() {
+        return sRequestBytes.get();
+    }
+
+    /**
+     * @return size of the request bodies as sent over the network
+     */
+    public static long getRequestWireBytes() {
+        return sRequestWireBytes.get();
+    }
+
+    /**
+     * @return uncompressed size of the responses received
+     */
+    public static long getResponseBytes() {
+        return sResponseBytes.get();
+    }
+
+    /**
+     * @return size of the responses as received from the network
+     */
+    public static long getResponseWireBytes() {
+        return sResponseWireBytes.get();
+    }
+
+    private static class DecodingEntity extends HttpEntityWrapper {
+        private final String mEncoding;
+
+        DecodingEntity(HttpEntity wrapped, String encoding) {
+            super(wrapped);
+            mEncoding = encoding;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            InputStream content = new CountingInputStream(wrappedEntity.getContent(), sResponseWireBytes);
+            if (ENCODING_GZIP.equals(mEncoding)) {
+                content = new GZIPInputStream(content);
+            } else if (ENCODING_DEFLATE.equals(mEncoding)) {
+                content = newInflaterStream(content);
+            }
+            return new CountingInputStream(content, sResponseBytes);
+        }
+
+        @Override
+        public long getContentLength() {
+            return (mEncoding != null ? -1 : wrappedEntity.getContentLength());
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return (mEncoding != null ? null : wrappedEntity.getContentEncoding());
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong mCounter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            mCounter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                mCounter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = in.read(buffer, offset, count);
+            if (read > 0) {
+                mCounter.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long byteCount) throws IOException {
+            long skipped = in.skip(byteCount);
+            if (skipped > 0) {
+                mCounter.addAndGet(skipped);
+            }
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.xmlrpc.android;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled HTTP connection managers shared by all the XMLRPCClient instances, so keep-alive
+ * connections (and TLS sessions) to a blog are reused from one call to the next instead of
+ * opening a new connection for each client.
+ * <p>There are two pools: the default one (plain HTTP and wordpress.com) and one accepting the
+ * self-signed certificates trusted by the user. Call reset() when the trusted certificates change.</p>
+ */
+public class XMLRPCConnectionManager {
+    private static final int MAX_CONNECTIONS_PER_HOST = 4;
+    private static final int MAX_CONNECTIONS_TOTAL = 16;
+    // max time to wait for a free connection in the pool
+    private static final long POOL_TIMEOUT_MS = 30000;
+    // connections unused for this long are closed
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+    // keep-alive duration used when the server doesn't send a Keep-Alive timeout
+    private static final long DEFAULT_KEEP_ALIVE_MS = IDLE_TIMEOUT_SECONDS * 1000;
+
+    private static ClientConnectionManager sDefaultManager;
+    private static ClientConnectionManager sTrustUserCertsManager;
+
+    private static final ConnectionKeepAliveStrategy sKeepAliveStrategy = new ConnectionKeepAliveStrategy() {
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Math.min(Long.parseLong(element.getValue()) * 1000, DEFAULT_KEEP_ALIVE_MS);
+                    } catch (NumberFormatException e) {
+                        // use the default duration
+                    }
+                }
+            }
+            return DEFAULT_KEEP_ALIVE_MS;
+        }
+    };
+
+    private XMLRPCConnectionManager() {
+        throw new AssertionError();
+    }
+
+    /*
+     * connection manager for plain HTTP and for HTTPS with the system trusted certificates
+     */
+    static synchronized ClientConnectionManager getDefaultManager() {
+        if (sDefaultManager == null) {
+            sDefaultManager = createManager(SSLSocketFactory.getSocketFactory());
+        }
+        return sDefaultManager;
+    }
+
+    /*
+     * connection manager for HTTPS also accepting the self-signed certificates trusted by the user,
+     * all its connections share the same SSLContext and thus the same TLS session cache
+     */
+    static synchronized ClientConnectionManager getTrustUserCertsManager() throws GeneralSecurityException {
+        if (sTrustUserCertsManager == null) {
+            sTrustUserCertsManager = createManager(new TrustUserSSLCertsSocketFactory());
+        }
+        return sTrustUserCertsManager;
+    }
+
+    static ConnectionKeepAliveStrategy getKeepAliveStrategy() {
+        return sKeepAliveStrategy;
+    }
+
+    /**
+     * Shut down the pool of HTTPS connections accepting user trusted certificates, must be called
+     * when the list of trusted certificates changes. Calls in progress on the old pool fail, clients
+     * created afterwards use a new pool.
+     */
+    public static synchronized void reset() {
+        if (sTrustUserCertsManager != null) {
+            // releases the leased connections too, closing idle ones would leave them and the pool behind
+            sTrustUserCertsManager.shutdown();
+            sTrustUserCertsManager = null;
+        }
+    }
+
+    /*
+     * close expired and idle connections, called before each request instead of running a
+     * dedicated eviction thread
+     */
+    static void closeIdleConnections(ClientConnectionManager manager) {
+        manager.closeExpiredConnections();
+        manager.closeIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static ClientConnectionManager createManager(SSLSocketFactory sslSocketFactory) {
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        schemeRegistry.register(new Scheme("https", sslSocketFactory, 443));
+
+        HttpParams params = new BasicHttpParams();
+        ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS_TOTAL);
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+        ConnManagerParams.setTimeout(params, POOL_TIMEOUT_MS);
+
+        return new ThreadSafeClientConnManager(params, schemeRegistry);
+    }
+}
@@ -4,6 +4,6 @@ import java.net.URI;
 
 public class XMLRPCFactoryDefault implements XMLRPCFactoryAbstract {
     public XMLRPCClientInterface make(URI uri, String httpUser, String httpPassword) {
-        return new XMLRPCClient(uri, httpUser, httpPassword);
+        return new XMLRPCCachingClient(new XMLRPCClient(uri, httpUser, httpPassword), uri);
     }
 }
@@ -0,0 +1,95 @@
+package org.xmlrpc.android;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of XML-RPC calls sent in a single system.multicall request, see
+ * {@link XMLRPCClientInterface#callMulticall(XMLRPCMulticall)}.
+ * Results are returned in the order the calls were added, a call that failed on the server
+ * is returned as an {@link XMLRPCFault} instead of its result.
+ */
+public class XMLRPCMulticall {
+    static final String METHOD_MULTICALL = "system.multicall";
+
+    private static final String KEY_METHOD_NAME = "methodName";
+    private static final String KEY_PARAMS = "params";
+    private static final String KEY_FAULT_CODE = "faultCode";
+    private static final String KEY_FAULT_STRING = "faultString";
+
+    private final List<String> mMethods = new ArrayList<String>();
+    private final List<Object[]> mParams = new ArrayList<Object[]>();
+
+    /**
+     * Add a call to this batch
+     *
+     * @return index of the call result in the array returned by callMulticall()
+     */
+    public int add(String method, Object[] params) {
+        mMethods.add(method);
+        mParams.add(params != null ? params : new Object[0]);
+        return mMethods.size() - 1;
+    }
+
+    public int size() {
+        return mMethods.size();
+    }
+
+    public String getMethod(int index) {
+        return mMethods.get(index);
+    }
+
+    public Object[] getParams(int index) {
+        return mParams.get(index);
+    }
+
+    public static boolean isFault(Object result) {
+        return (result instanceof XMLRPCFault);
+    }
+
+    /*
+     * builds the single parameter of a system.multicall request: an array of
+     * {methodName, params} structs
+     */
+    Object[] getMulticallParams() {
+        Object[] calls = new Object[size()];
+        for (int i = 0; i < size(); i++) {
+            Map<String, Object> call = new HashMap<String, Object>();
+            call.put(KEY_METHOD_NAME, mMethods.get(i));
+            call.put(KEY_PARAMS, mParams.get(i));
+            calls[i] = call;
+        }
+        return new Object[]{calls};
+    }
+
+    /*
+     * system.multicall returns an array with one entry per call: either a one-element array
+     * holding the result, or a fault struct
+     */
+    Object[] parseMulticallResult(Object response) throws XMLRPCException {
+        if (!(response instanceof Object[]) || ((Object[]) response).length != size()) {
+            throw new XMLRPCException("Invalid " + METHOD_MULTICALL + " response");
+        }
+        Object[] responses = (Object[]) response;
+        Object[] results = new Object[size()];
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i] instanceof Object[] && ((Object[]) responses[i]).length == 1) {
+                results[i] = ((Object[]) responses[i])[0];
+            } else if (responses[i] instanceof Map) {
+                Map<?, ?> fault = (Map<?, ?>) responses[i];
+                int faultCode = 0;
+                try {
+                    faultCode = Integer.parseInt(String.valueOf(fault.get(KEY_FAULT_CODE)));
+                } catch (NumberFormatException e) {
+                    // keep the default fault code
+                }
+                results[i] = new XMLRPCFault(String.valueOf(fault.get(KEY_FAULT_STRING)), faultCode);
+            } else {
+                throw new XMLRPCException("Invalid " + METHOD_MULTICALL + " response for " + mMethods.get(i));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,308 @@
+package org.xmlrpc.android;
+
+import org.wordpress.android.WordPress;
+import org.wordpress.android.util.AppLog;
+import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache for the responses of idempotent XML-RPC read methods, used by XMLRPCCachingClient.
+ * <p>Entries are keyed on the endpoint, the method and its canonicalized params, each cacheable method
+ * has its own TTL. All the entries of an endpoint are dropped after a write call to that endpoint.
+ * The cache directory is bounded to MAX_CACHE_SIZE bytes, least recently written entries are evicted
+ * first.</p>
+ * <p>There's no lock around the files: entries are written to a temporary file then renamed, so a
+ * reader always sees a complete entry. Each invalidation increments a generation, a response read
+ * before an invalidation is dropped by put() instead of being cached.</p>
+ */
+public class XMLRPCResponseCache {
+    private static final String CACHE_DIR_NAME = "xmlrpc-cache";
+    private static final long MAX_CACHE_SIZE = 512 * 1024;
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private static final Map<String, Long> sMethodTtls = new HashMap<String, Long>();
+    static {
+        sMethodTtls.put("wp.getOptions", 30 * MINUTE);
+        sMethodTtls.put("wp.getProfile", 30 * MINUTE);
+        sMethodTtls.put("wp.getCategories", 15 * MINUTE);
+        sMethodTtls.put("wp.getPostFormats", 24 * HOUR);
+        sMethodTtls.put("wpcom.getFeatures", 24 * HOUR);
+    }
+
+    // calls changing the blog content or settings, they invalidate all the cached entries of the blog
+    private static final Set<String> sWriteMethods = new HashSet<String>(Arrays.asList(
+            "wp.newPost", "wp.editPost", "wp.deletePost", "metaWeblog.newPost", "metaWeblog.editPost",
+            "blogger.deletePost", "wp.newPage", "wp.editPage", "wp.deletePage", "wp.newCategory",
+            "wp.deleteCategory", "wp.setOptions", "wp.editProfile", "wp.uploadFile"));
+
+    private static final String TEMP_FILE_PREFIX = "tmp-";
+
+    // incremented by invalidate() and clear()
+    private static final AtomicLong sGeneration = new AtomicLong();
+
+    private XMLRPCResponseCache() {
+        throw new AssertionError();
+    }
+
+    public static boolean isCacheable(String method) {
+        return sMethodTtls.containsKey(method);
+    }
+
+    public static boolean isWriteMethod(String method) {
+        return sWriteMethods.contains(method);
+    }
+
+    /**
+     * @return the current generation, to pass to put() with the response of a call sent now
+     */
+    public static long getGeneration() {
+        return sGeneration.get();
+    }
+
+    /**
+     * @return the cached response, or null if there's no fresh entry for this call
+     */
+    public static Object get(URI uri, String method, Object[] params) {
+        if (!isCacheable(method)) {
+            return null;
+        }
+        File file = getEntryFile(uri, method, params);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            long expiry = in.readLong();
+            if (expiry < System.currentTimeMillis()) {
+                file.delete();
+                return null;
+            }
+            return in.readObject();
+        } catch (IOException e) {
+            AppLog.w(T.API, "cannot read cached " + method + " response - " + e.getMessage());
+        } catch (ClassNotFoundException e) {
+            AppLog.w(T.API, "cannot read cached " + method + " response - " + e.getMessage());
+        } finally {
+            closeQuietly(in);
+        }
+        // unreadable entry
+        file.delete();
+        return null;
+    }
+
+    /**
+     * Cache the response of a call, unless the cache was invalidated since the call was sent
+     *
+     * @param generation value of getGeneration() when the call was sent
+     */
+    public static void put(URI uri, String method, Object[] params, Object response, long generation) {
+        if (!isCacheable(method) || !(response instanceof Serializable) || generation != getGeneration()) {
+            return;
+        }
+        File file = getEntryFile(uri, method, params);
+        if (file == null) {
+            return;
+        }
+        File tempFile = null;
+        ObjectOutputStream out = null;
+        boolean success = false;
+        try {
+            tempFile = File.createTempFile(TEMP_FILE_PREFIX, null, file.getParentFile());
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeLong(System.currentTimeMillis() + sMethodTtls.get(method));
+            out.writeObject(response);
+            out.close();
+            success = tempFile.renameTo(file);
+        } catch (IOException e) {
+            AppLog.w(T.API, "cannot cache " + method + " response - " + e.getMessage());
+        } finally {
+            closeQuietly(out);
+        }
+        if (!success) {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+            return;
+        }
+        // an invalidation which listed the files before the rename didn't see this entry
+        if (generation != getGeneration()) {
+            file.delete();
+            return;
+        }
+        trimToSize();
+    }
+
+    /**
+     * Drop all the cached responses for the passed endpoint
+     */
+    public static void invalidate(URI uri) {
+        sGeneration.incrementAndGet();
+        File cacheDir = getCacheDir();
+        if (cacheDir == null || uri == null) {
+            return;
+        }
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = getEndpointKey(uri) + "-";
+        for (File file : files) {
+            if (file.getName().startsWith(prefix)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Drop all the cached responses, called on sign out and when a blog is removed
+     */
+    public static void clear() {
+        sGeneration.incrementAndGet();
+        File cacheDir = getCacheDir();
+        File[] files = (cacheDir != null ? cacheDir.listFiles() : null);
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /*
+     * evict the oldest entries until the cache fits in MAX_CACHE_SIZE, concurrent calls may both
+     * delete the same entries
+     */
+    private static void trimToSize() {
+        File cacheDir = getCacheDir();
+        File[] files = (cacheDir != null ? cacheDir.listFiles() : null);
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= MAX_CACHE_SIZE) {
+            return;
+        }
+        List<File> entries = Arrays.asList(files);
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return (lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1));
+            }
+        });
+        for (File file : entries) {
+            if (size <= MAX_CACHE_SIZE) {
+                break;
+            }
+            size -= file.length();
+            file.delete();
+        }
+    }
+
+    private static File getCacheDir() {
+        if (WordPress.getContext() == null) {
+            return null;
+        }
+        File cacheDir = new File(WordPress.getContext().getCacheDir(), CACHE_DIR_NAME);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            return null;
+        }
+        return cacheDir;
+    }
+
+    private static String getEndpointKey(URI uri) {
+        return StringUtils.getMd5Hash(uri.toString());
+    }
+
+    /*
+     * entry file name: md5(endpoint)-md5(method + canonicalized params), the params usually contain
+     * the credentials, so they're never stored in clear
+     */
+    private static File getEntryFile(URI uri, String method, Object[] params) {
+        File cacheDir = getCacheDir();
+        if (cacheDir == null || uri == null) {
+            return null;
+        }
+        StringBuilder callKey = new StringBuilder(method);
+        appendCanonical(callKey, params);
+        return new File(cacheDir, getEndpointKey(uri) + "-" + StringUtils.getMd5Hash(callKey.toString()));
+    }
+
+    /*
+     * canonical representation of a param: the same params always give the same string, whatever
+     * the iteration order of the maps they contain
+     */
+    static void appendCanonical(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Object[]) {
+            sb.append('[');
+            for (Object item : (Object[]) value) {
+                appendCanonical(sb, item);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (value instanceof List) {
+            appendCanonical(sb, ((List<?>) value).toArray());
+        } else if (value instanceof Map) {
+            TreeMap<String, Object> sortedMap = new TreeMap<String, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sortedMap.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            sb.append('{');
+            for (Map.Entry<String, Object> entry : sortedMap.entrySet()) {
+                sb.append(entry.getKey()).append('=');
+                appendCanonical(sb, entry.getValue());
+                sb.append(',');
+            }
+            sb.append('}');
+        } else if (value instanceof Date) {
+            sb.append('d').append(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            sb.append('b').append(Arrays.toString((byte[]) value));
+        } else {
+            // the type is part of the key, so "1" and 1 give different keys
+            sb.append(value.getClass().getSimpleName()).append(':').append(value);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nop
+            }
+        }
+    }
+}
@@ -13,11 +13,15 @@ import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.BufferedReader;
-import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -47,6 +51,10 @@ class XMLRPCSerializer {
     static final String TYPE_ARRAY = "array";
     static final String TYPE_STRUCT = "struct";
 
+    // must be a multiple of 3 so base64 padding only shows up in the last chunk of a file
+    static final int MEDIA_CHUNK_SIZE = 3600;
+    private static final int BASE64_LINE_GROUPS = 19;
+
     static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'T'HH:mm:ss");
     static Calendar cal = Calendar.getInstance(new SimpleTimeZone(0, "GMT"));
 
@@ -65,8 +73,17 @@ class XMLRPCSerializer {
         }
     }
 
-    @SuppressWarnings("unchecked")
     static void serialize(XmlSerializer serializer, Object object) throws IOException {
+        serialize(serializer, object, false);
+    }
+
+    /**
+     * Serialize an object. When skipMediaContent is true, MediaFile values are written as empty
+     * base64 elements, which lets callers measure the envelope without reading the media files
+     * (see getMediaContentLength)
+     */
+    @SuppressWarnings("unchecked")
+    static void serialize(XmlSerializer serializer, Object object, boolean skipMediaContent) throws IOException {
         // check for scalar types:
         if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
             serializer.startTag(null, TYPE_I4).text(object.toString()).endTag(null, TYPE_I4);
@@ -105,19 +122,7 @@ class XMLRPCSerializer {
             }
         }
         else if( object instanceof MediaFile ) {
-            //convert media file binary to base64
-            serializer.startTag( null, "base64" );
-            MediaFile mediaFile = (MediaFile) object;
-            InputStream inStream = new DataInputStream(new FileInputStream(mediaFile.getFilePath()));
-            byte[] buffer = new byte[3600];//you must use a 24bit multiple
-            int length = -1;
-            String chunk = null;
-            while ((length = inStream.read(buffer)) > 0) {
-                chunk = Base64.encodeToString(buffer, 0, length, Base64.DEFAULT);
-                serializer.text(chunk);
-            }
-            inStream.close();
-            serializer.endTag(null, "base64");
+            serializeMediaFile(serializer, (MediaFile) object, skipMediaContent);
         }else
         if (object instanceof List<?>) {
             serializer.startTag(null, TYPE_ARRAY).startTag(null, TAG_DATA);
@@ -126,7 +131,7 @@ class XMLRPCSerializer {
             while (iter.hasNext()) {
                 Object o = iter.next();
                 serializer.startTag(null, TAG_VALUE);
-                serialize(serializer, o);
+                serialize(serializer, o, skipMediaContent);
                 serializer.endTag(null, TAG_VALUE);
             }
             serializer.endTag(null, TAG_DATA).endTag(null, TYPE_ARRAY);
@@ -137,7 +142,7 @@ class XMLRPCSerializer {
             for (int i=0; i<objects.length; i++) {
                 Object o = objects[i];
                 serializer.startTag(null, TAG_VALUE);
-                serialize(serializer, o);
+                serialize(serializer, o, skipMediaContent);
                 serializer.endTag(null, TAG_VALUE);
             }
             serializer.endTag(null, TAG_DATA).endTag(null, TYPE_ARRAY);
@@ -154,7 +159,7 @@ class XMLRPCSerializer {
                 serializer.startTag(null, TAG_MEMBER);
                 serializer.startTag(null, TAG_NAME).text(key).endTag(null, TAG_NAME);
                 serializer.startTag(null, TAG_VALUE);
-                serialize(serializer, value);
+                serialize(serializer, value, skipMediaContent);
                 serializer.endTag(null, TAG_VALUE);
                 serializer.endTag(null, TAG_MEMBER);
             }
@@ -164,6 +169,100 @@ class XMLRPCSerializer {
         }
     }
 
+    private static void serializeMediaFile(XmlSerializer serializer, MediaFile mediaFile, boolean skipContent)
+            throws IOException {
+        //convert media file binary to base64
+        serializer.startTag(null, TYPE_BASE64);
+        // always close the start tag, so an empty file has the same length as a skipped one
+        serializer.text("");
+        if (!skipContent) {
+            // hashed from the chunks read for the encoder, identifies the files already uploaded to a blog
+            MessageDigest digest = getContentDigest();
+            InputStream inStream = new FileInputStream(mediaFile.getFilePath());
+            try {
+                // fill every chunk so only the last one is padded, that keeps the encoded length predictable
+                byte[] buffer = new byte[MEDIA_CHUNK_SIZE];
+                int length;
+                while ((length = readChunk(inStream, buffer)) > 0) {
+                    if (digest != null) {
+                        digest.update(buffer, 0, length);
+                    }
+                    serializer.text(Base64.encodeToString(buffer, 0, length, Base64.DEFAULT));
+                }
+            } finally {
+                inStream.close();
+            }
+            if (digest != null) {
+                mediaFile.setContentHash(String.format("%040x", new BigInteger(1, digest.digest())));
+            }
+        }
+        serializer.endTag(null, TYPE_BASE64);
+    }
+
+    private static MessageDigest getContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            AppLog.e(T.API, e);
+            return null;
+        }
+    }
+
+    private static int readChunk(InputStream inStream, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = inStream.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of characters Base64.encodeToString(..., Base64.DEFAULT) produces for
+     * byteCount bytes: 4 chars per (padded) 3 byte group, plus a newline after every 19 groups
+     * and after the last partial line.
+     */
+    private static long getBase64Length(long byteCount) {
+        if (byteCount <= 0) {
+            return 0;
+        }
+        long groups = (byteCount + 2) / 3;
+        return groups * 4 + (groups + BASE64_LINE_GROUPS - 1) / BASE64_LINE_GROUPS;
+    }
+
+    /**
+     * Returns the number of bytes the base64 content of all MediaFile values found in object
+     * adds to a serialization made with skipMediaContent set to true
+     */
+    static long getMediaContentLength(Object object) throws IOException {
+        long length = 0;
+        if (object instanceof MediaFile) {
+            File file = new File(((MediaFile) object).getFilePath());
+            if (!file.exists()) {
+                throw new FileNotFoundException(file.getPath());
+            }
+            long fileLength = file.length();
+            length += (fileLength / MEDIA_CHUNK_SIZE) * getBase64Length(MEDIA_CHUNK_SIZE);
+            length += getBase64Length(fileLength % MEDIA_CHUNK_SIZE);
+        } else if (object instanceof List<?>) {
+            for (Object o : (List<?>) object) {
+                length += getMediaContentLength(o);
+            }
+        } else if (object instanceof Object[]) {
+            for (Object o : (Object[]) object) {
+                length += getMediaContentLength(o);
+            }
+        } else if (object instanceof Map) {
+            for (Object o : ((Map<?, ?>) object).values()) {
+                length += getMediaContentLength(o);
+            }
+        }
+        return length;
+    }
+
     private static final String makeValidInputString(final String input) throws IOException {
         if (TextUtils.isEmpty(input))
             return "";
@@ -196,6 +295,103 @@ class XMLRPCSerializer {
         }
     }
 
+    /**
+     * Decode a value holding an array of structs (or a single struct) straight into the binder targets.
+     * Members not used by the binder are skipped without being decoded, array items that are not
+     * structs are ignored.
+     */
+    static <T> List<T> deserialize(XmlPullParser parser, XMLRPCStructBinder<T> binder)
+            throws XmlPullParserException, IOException, NumberFormatException {
+        parser.require(XmlPullParser.START_TAG, null, TAG_VALUE);
+
+        parser.nextTag();
+        String typeNodeName = parser.getName();
+
+        List<T> targets = new ArrayList<T>();
+        if (typeNodeName.equals(TYPE_ARRAY)) {
+            parser.nextTag(); // TAG_DATA (<data>)
+            parser.require(XmlPullParser.START_TAG, null, TAG_DATA);
+
+            parser.nextTag();
+            while (parser.getName().equals(TAG_VALUE)) {
+                parser.nextTag();
+                if (parser.getName().equals(TYPE_STRUCT)) {
+                    addStruct(parser, binder, targets);
+                } else {
+                    skipElement(parser);
+                }
+                parser.nextTag(); // TAG_VALUE (</value>)
+                parser.require(XmlPullParser.END_TAG, null, TAG_VALUE);
+                parser.nextTag();
+            }
+            parser.require(XmlPullParser.END_TAG, null, TAG_DATA);
+            parser.nextTag(); // TAG_ARRAY (</array>)
+            parser.require(XmlPullParser.END_TAG, null, TYPE_ARRAY);
+        } else
+        if (typeNodeName.equals(TYPE_STRUCT)) {
+            addStruct(parser, binder, targets);
+        } else {
+            skipElement(parser);
+        }
+        parser.nextTag(); // TAG_VALUE (</value>)
+        parser.require(XmlPullParser.END_TAG, null, TAG_VALUE);
+        return targets;
+    }
+
+    private static <T> void addStruct(XmlPullParser parser, XMLRPCStructBinder<T> binder, List<T> targets)
+            throws XmlPullParserException, IOException, NumberFormatException {
+        parser.require(XmlPullParser.START_TAG, null, TYPE_STRUCT);
+        T target = binder.newTarget();
+        parser.nextTag();
+        while (parser.getName().equals(TAG_MEMBER)) {
+            String memberName = null;
+            while (true) {
+                parser.nextTag();
+                String name = parser.getName();
+                if (name.equals(TAG_NAME)) {
+                    memberName = parser.nextText();
+                } else
+                if (name.equals(TAG_VALUE)) {
+                    // <name> comes before <value> in every server we know of
+                    if (memberName != null && binder.isBound(memberName)) {
+                        binder.bindMember(target, memberName, deserialize(parser));
+                    } else {
+                        skipElement(parser);
+                    }
+                } else {
+                    break;
+                }
+            }
+            parser.require(XmlPullParser.END_TAG, null, TAG_MEMBER);
+            parser.nextTag();
+        }
+        parser.require(XmlPullParser.END_TAG, null, TYPE_STRUCT);
+        target = binder.onStructEnd(target);
+        if (target != null) {
+            targets.add(target);
+        }
+    }
+
+    /*
+     * skip the current element and its children, the parser is left on its end tag
+     */
+    private static void skipElement(XmlPullParser parser) throws XmlPullParserException, IOException {
+        parser.require(XmlPullParser.START_TAG, null, null);
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document");
+            }
+        }
+    }
+
     static Object deserialize(XmlPullParser parser) throws XmlPullParserException, IOException, NumberFormatException {
         parser.require(XmlPullParser.START_TAG, null, TAG_VALUE);
 
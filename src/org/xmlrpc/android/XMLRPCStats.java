@@ -0,0 +1,321 @@
+package org.xmlrpc.android;
+
+import org.wordpress.android.util.TaskDispatcher;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-method instrumentation of the XML-RPC calls made by XMLRPCClient, kept in memory since the app
+ * started: latency histograms for each phase of a call, request and response sizes, HTTP status,
+ * fault and error counts. Calls are grouped by endpoint host and method, so slow endpoints show up.
+ * Displayed by DiagnosticsActivity and shared along the app log.
+ */
+public class XMLRPCStats {
+    public enum Phase {
+        SERIALIZE,   // building the request body
+        CONNECT,     // getting a connection from the pool, or opening a new one
+        SERVER_WAIT, // sending the request and waiting for the response headers
+        PARSE        // reading and parsing the response
+    }
+
+    // upper bounds of the histogram buckets, the last bucket counts everything above
+    static final long[] BUCKET_LIMITS_MS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    // bounds memory use, calls to other endpoints/methods are not recorded once reached
+    private static final int MAX_ENTRIES = 200;
+
+    private static final Map<String, MethodStats> sStats = new TreeMap<String, MethodStats>();
+
+    private XMLRPCStats() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Start recording a call, the returned CallRecord must be finished once the call is done
+     */
+    static CallRecord startCall(URI uri, String method) {
+        String host = (uri != null && uri.getHost() != null ? uri.getHost() : "unknown");
+        return new CallRecord(host + " " + method);
+    }
+
+    public static void reset() {
+        synchronized (sStats) {
+            sStats.clear();
+        }
+    }
+
+    /*
+     * returns a copy of the stats for this endpoint host and method, or null if none was recorded
+     */
+    static MethodStats getStats(String host, String method) {
+        synchronized (sStats) {
+            MethodStats stats = sStats.get(host + " " + method);
+            return (stats != null ? stats.copy() : null);
+        }
+    }
+
+    private static void record(CallRecord call) {
+        synchronized (sStats) {
+            MethodStats stats = sStats.get(call.mKey);
+            if (stats == null) {
+                if (sStats.size() >= MAX_ENTRIES) {
+                    return;
+                }
+                stats = new MethodStats();
+                sStats.put(call.mKey, stats);
+            }
+            stats.add(call);
+        }
+    }
+
+    /**
+     * @return a readable dump of all the recorded stats, with the compression and dispatcher counters
+     */
+    public static String toPlainText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("XML-RPC calls (by host and method)\n");
+        synchronized (sStats) {
+            if (sStats.isEmpty()) {
+                sb.append("no call recorded\n");
+            }
+            for (Map.Entry<String, MethodStats> entry : sStats.entrySet()) {
+                sb.append('\n').append(entry.getKey()).append('\n');
+                entry.getValue().appendTo(sb);
+            }
+        }
+
+        sb.append("\nRequest bytes: ").append(XMLRPCCompression.getRequestBytes())
+          .append(" (").append(XMLRPCCompression.getRequestWireBytes()).append(" sent)\n")
+          .append("Response bytes: ").append(XMLRPCCompression.getResponseBytes())
+          .append(" (").append(XMLRPCCompression.getResponseWireBytes()).append(" received)\n")
+          .append("Queued async calls: ").append(TaskDispatcher.getQueueDepth())
+          .append(", running: ").append(TaskDispatcher.getActiveCount()).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Measures a single call, not thread-safe: a call is made by a single thread
+     */
+    static class CallRecord {
+        private final String mKey;
+        private final long[] mPhaseDurations = new long[Phase.values().length];
+        private long mPhaseStart = System.nanoTime();
+        private long mRequestBytes = -1;
+        private long mResponseBytes = -1;
+        private int mStatusCode;
+        private Integer mFaultCode;
+        private String mError;
+
+        private CallRecord(String key) {
+            mKey = key;
+            for (int i = 0; i < mPhaseDurations.length; i++) {
+                mPhaseDurations[i] = -1;
+            }
+        }
+
+        /*
+         * the passed phase ended now, the next one starts now
+         */
+        void endPhase(Phase phase) {
+            endPhase(phase, System.nanoTime());
+        }
+
+        /*
+         * the passed phase ended at nanoTime (System.nanoTime), the next one starts then
+         */
+        void endPhase(Phase phase, long nanoTime) {
+            mPhaseDurations[phase.ordinal()] = Math.max(0, (nanoTime - mPhaseStart) / 1000000);
+            mPhaseStart = nanoTime;
+        }
+
+        void setRequestBytes(long requestBytes) {
+            mRequestBytes = requestBytes;
+        }
+
+        void setResponseBytes(long responseBytes) {
+            mResponseBytes = responseBytes;
+        }
+
+        void setStatusCode(int statusCode) {
+            mStatusCode = statusCode;
+        }
+
+        void setFault(int faultCode) {
+            mFaultCode = faultCode;
+        }
+
+        void setError(Throwable error) {
+            mError = error.getClass().getSimpleName();
+        }
+
+        void finish() {
+            record(this);
+        }
+    }
+
+    static class Histogram {
+        private final long[] mBuckets = new long[BUCKET_LIMITS_MS.length + 1];
+        private long mCount;
+        private long mTotalMs;
+        private long mMaxMs;
+
+        void add(long durationMs) {
+            int bucket = 0;
+            while (bucket < BUCKET_LIMITS_MS.length && durationMs > BUCKET_LIMITS_MS[bucket]) {
+                bucket++;
+            }
+            mBuckets[bucket]++;
+            mCount++;
+            mTotalMs += durationMs;
+            mMaxMs = Math.max(mMaxMs, durationMs);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        long getAverageMs() {
+            return (mCount > 0 ? mTotalMs / mCount : 0);
+        }
+
+        /*
+         * upper bound of the bucket containing the percentile, the max duration for the last bucket
+         */
+        long getPercentileMs(int percentile) {
+            long rank = (long) Math.ceil(mCount * percentile / 100.0);
+            long cumulative = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                cumulative += mBuckets[i];
+                if (cumulative >= rank && cumulative > 0) {
+                    return (i < BUCKET_LIMITS_MS.length ? Math.min(BUCKET_LIMITS_MS[i], mMaxMs) : mMaxMs);
+                }
+            }
+            return 0;
+        }
+
+        private Histogram copy() {
+            Histogram copy = new Histogram();
+            System.arraycopy(mBuckets, 0, copy.mBuckets, 0, mBuckets.length);
+            copy.mCount = mCount;
+            copy.mTotalMs = mTotalMs;
+            copy.mMaxMs = mMaxMs;
+            return copy;
+        }
+
+        private void appendTo(StringBuilder sb) {
+            sb.append("avg ").append(getAverageMs()).append("ms, p50 ").append(getPercentileMs(50))
+              .append("ms, p90 ").append(getPercentileMs(90)).append("ms, max ").append(mMaxMs).append("ms [");
+            for (int i = 0; i < mBuckets.length; i++) {
+                if (i > 0) {
+                    sb.append(' ');
+                }
+                sb.append(i < BUCKET_LIMITS_MS.length ? "<=" + BUCKET_LIMITS_MS[i] : ">" + BUCKET_LIMITS_MS[i - 1])
+                  .append(':').append(mBuckets[i]);
+            }
+            sb.append("]\n");
+        }
+    }
+
+    static class MethodStats {
+        private final Histogram[] mPhases = new Histogram[Phase.values().length];
+        private long mCalls;
+        private long mRequestBytes;
+        private long mResponseBytes;
+        private long mResponses;
+        private final Map<Integer, Integer> mStatusCodes = new TreeMap<Integer, Integer>();
+        private final Map<Integer, Integer> mFaultCodes = new TreeMap<Integer, Integer>();
+        private final Map<String, Integer> mErrors = new TreeMap<String, Integer>();
+
+        MethodStats() {
+            for (int i = 0; i < mPhases.length; i++) {
+                mPhases[i] = new Histogram();
+            }
+        }
+
+        private void add(CallRecord call) {
+            mCalls++;
+            for (int i = 0; i < mPhases.length; i++) {
+                if (call.mPhaseDurations[i] >= 0) {
+                    mPhases[i].add(call.mPhaseDurations[i]);
+                }
+            }
+            if (call.mRequestBytes > 0) {
+                mRequestBytes += call.mRequestBytes;
+            }
+            if (call.mResponseBytes >= 0) {
+                mResponseBytes += call.mResponseBytes;
+                mResponses++;
+            }
+            if (call.mStatusCode != 0) {
+                increment(mStatusCodes, call.mStatusCode);
+            }
+            if (call.mFaultCode != null) {
+                increment(mFaultCodes, call.mFaultCode);
+            }
+            if (call.mError != null) {
+                increment(mErrors, call.mError);
+            }
+        }
+
+        private static <K> void increment(Map<K, Integer> counts, K key) {
+            Integer count = counts.get(key);
+            counts.put(key, (count != null ? count + 1 : 1));
+        }
+
+        long getCalls() {
+            return mCalls;
+        }
+
+        Histogram getHistogram(Phase phase) {
+            return mPhases[phase.ordinal()];
+        }
+
+        int getStatusCount(int statusCode) {
+            Integer count = mStatusCodes.get(statusCode);
+            return (count != null ? count : 0);
+        }
+
+        int getFaultCount(int faultCode) {
+            Integer count = mFaultCodes.get(faultCode);
+            return (count != null ? count : 0);
+        }
+
+        private MethodStats copy() {
+            MethodStats copy = new MethodStats();
+            for (int i = 0; i < mPhases.length; i++) {
+                copy.mPhases[i] = mPhases[i].copy();
+            }
+            copy.mCalls = mCalls;
+            copy.mRequestBytes = mRequestBytes;
+            copy.mResponseBytes = mResponseBytes;
+            copy.mResponses = mResponses;
+            copy.mStatusCodes.putAll(mStatusCodes);
+            copy.mFaultCodes.putAll(mFaultCodes);
+            copy.mErrors.putAll(mErrors);
+            return copy;
+        }
+
+        private void appendTo(StringBuilder sb) {
+            sb.append("  calls: ").append(mCalls)
+              .append(", avg request: ").append(mCalls > 0 ? mRequestBytes / mCalls : 0).append(" bytes")
+              .append(", avg response: ").append(mResponses > 0 ? mResponseBytes / mResponses : 0).append(" bytes\n");
+            for (Phase phase : Phase.values()) {
+                Histogram histogram = mPhases[phase.ordinal()];
+                if (histogram.getCount() > 0) {
+                    sb.append("  ").append(phase.name().toLowerCase()).append(": ");
+                    histogram.appendTo(sb);
+                }
+            }
+            if (!mStatusCodes.isEmpty()) {
+                sb.append("  HTTP status: ").append(mStatusCodes).append('\n');
+            }
+            if (!mFaultCodes.isEmpty()) {
+                sb.append("  faults: ").append(mFaultCodes).append('\n');
+            }
+            if (!mErrors.isEmpty()) {
+                sb.append("  errors: ").append(mErrors).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.xmlrpc.android;
+
+import android.util.Xml;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * An HttpEntity that serializes an XML-RPC method call directly to the connection output stream.
+ * <p>Used for wp.uploadFile: the media files are Base64 encoded chunk by chunk while they're sent,
+ * so we don't need to write the whole request document to a temporary file first.</p>
+ * <p>The content length is computed before sending, by serializing the document without the media
+ * content (nothing is read from disk) and adding the predictable length of the encoded media files.</p>
+ * <p>getContent() is only used by code reading the entity instead of writing it, the request is then
+ * serialized by a background thread into a pipe.</p>
+ */
+class XMLRPCStreamingEntity extends AbstractHttpEntity {
+    // minimum number of bytes between two progress callbacks
+    private static final long PROGRESS_STEP = 64 * 1024;
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    private final String mMethod;
+    private final Object[] mParams;
+    private final long mContentLength;
+    private final XMLRPCUploadProgressListener mProgressListener;
+
+    XMLRPCStreamingEntity(String method, Object[] params, XMLRPCUploadProgressListener progressListener)
+            throws IOException {
+        mMethod = method;
+        mParams = params;
+        mProgressListener = progressListener;
+        setContentType("text/xml");
+
+        CountingOutputStream countingStream = new CountingOutputStream(new NullOutputStream(), 0, null);
+        serialize(countingStream, true);
+        long mediaLength = 0;
+        if (params != null) {
+            for (Object param : params) {
+                mediaLength += XMLRPCSerializer.getMediaContentLength(param);
+            }
+        }
+        mContentLength = countingStream.getCount() + mediaLength;
+    }
+
+    private void serialize(OutputStream outputStream, boolean skipMediaContent) throws IOException {
+        XmlSerializer serializer = Xml.newSerializer();
+        serializer.setOutput(outputStream, "UTF-8");
+        XMLRPCClient.serializeMethodCall(serializer, mMethod, mParams, skipMediaContent);
+        // endDocument() flushes the serializer
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return mContentLength;
+    }
+
+    /**
+     * Returns a new stream over the serialized request, which must be closed once read: the request
+     * is written into it by a background thread, without progress callbacks
+     */
+    @Override
+    public InputStream getContent() throws IOException, IllegalStateException {
+        final PipedContentStream content = new PipedContentStream(new PipedInputStream(PIPE_BUFFER_SIZE));
+        final PipedOutputStream pipe = new PipedOutputStream(content.getPipe());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write(pipe, null);
+                } catch (IOException e) {
+                    // the reader gets it at the end of the stream, or has closed it
+                    content.setWriteError(e);
+                } finally {
+                    try {
+                        pipe.close();
+                    } catch (IOException e) {
+                        // the reader has closed the stream
+                    }
+                }
+            }
+        }, "XMLRPCStreamingEntity").start();
+        return content;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (outputStream == null) {
+            throw new IllegalArgumentException("Output stream may not be null");
+        }
+        write(outputStream, mProgressListener);
+    }
+
+    private void write(OutputStream outputStream, XMLRPCUploadProgressListener progressListener)
+            throws IOException {
+        CountingOutputStream countingStream = new CountingOutputStream(outputStream, mContentLength,
+                progressListener);
+        serialize(countingStream, false);
+        countingStream.flush();
+        if (countingStream.getCount() != mContentLength) {
+            // a media file was modified while we were sending it
+            throw new IOException("Request length mismatch, expected " + mContentLength + " bytes but wrote "
+                    + countingStream.getCount());
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /*
+     * the read end of the getContent() pipe, throws the error of the writing thread instead of
+     * ending the stream early
+     */
+    private static class PipedContentStream extends FilterInputStream {
+        private volatile IOException mWriteError;
+
+        PipedContentStream(PipedInputStream in) {
+            super(in);
+        }
+
+        PipedInputStream getPipe() {
+            return (PipedInputStream) in;
+        }
+
+        void setWriteError(IOException e) {
+            mWriteError = e;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                checkWriteError();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read == -1) {
+                checkWriteError();
+            }
+            return read;
+        }
+
+        private void checkWriteError() throws IOException {
+            if (mWriteError != null) {
+                throw mWriteError;
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private final long mTotal;
+        private final XMLRPCUploadProgressListener mListener;
+        private long mCount;
+        private long mLastReported;
+
+        CountingOutputStream(OutputStream out, long total, XMLRPCUploadProgressListener listener) {
+            super(out);
+            mTotal = total;
+            mListener = listener;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public void write(int oneByte) throws IOException {
+            out.write(oneByte);
+            onWritten(1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            onWritten(length);
+        }
+
+        private void onWritten(int length) {
+            mCount += length;
+            if (mListener != null && (mCount - mLastReported >= PROGRESS_STEP || mCount == mTotal)) {
+                mLastReported = mCount;
+                mListener.onProgress(mCount, mTotal);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.xmlrpc.android;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binds the structs of an XML-RPC response directly into model objects (or ContentValues), see
+ * {@link XMLRPCClientInterface#call(String, Object[], XMLRPCStructBinder)}.
+ * <p>The response is decoded while it's read: members the binder doesn't use are skipped by the parser
+ * without being decoded, and no intermediate HashMap is built for the structs. The value passed to
+ * bindMember() is decoded as usual (String, Integer, Date, Object[], Map...).</p>
+ */
+public abstract class XMLRPCStructBinder<T> {
+    private final Set<String> mMembers;
+
+    /**
+     * @param members names of the struct members passed to bindMember(), other members are skipped
+     */
+    protected XMLRPCStructBinder(String... members) {
+        mMembers = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(members)));
+    }
+
+    /**
+     * @return a new target for the next struct of the response
+     */
+    public abstract T newTarget();
+
+    public abstract void bindMember(T target, String name, Object value);
+
+    /**
+     * @return a copy of a bound target, the duplicate callers of a coalesced call each get their own targets
+     */
+    public abstract T copyTarget(T target);
+
+    /**
+     * Called once all the members of a struct have been bound
+     * @return the target to add to the result list, or null to drop this struct
+     */
+    public T onStructEnd(T target) {
+        return target;
+    }
+
+    public boolean isBound(String name) {
+        return mMembers.contains(name);
+    }
+
+    /**
+     * Bind a response that has already been decoded, for results that are not read from a stream
+     * (system.multicall results, cached responses).
+     * @param result an array of structs or a single struct
+     */
+    public List<T> bind(Object result) {
+        List<T> targets = new ArrayList<T>();
+        if (result instanceof Object[]) {
+            for (Object struct : (Object[]) result) {
+                addStruct(targets, struct);
+            }
+        } else {
+            addStruct(targets, result);
+        }
+        return targets;
+    }
+
+    private void addStruct(List<T> targets, Object struct) {
+        if (!(struct instanceof Map)) {
+            return;
+        }
+        T target = newTarget();
+        for (Map.Entry<?, ?> member : ((Map<?, ?>) struct).entrySet()) {
+            String name = String.valueOf(member.getKey());
+            if (member.getValue() != null && isBound(name)) {
+                bindMember(target, name, member.getValue());
+            }
+        }
+        target = onStructEnd(target);
+        if (target != null) {
+            targets.add(target);
+        }
+    }
+
+    /*
+     * value conversions, these follow the same rules as MapUtils
+     */
+    protected static String toStr(Object value) {
+        return (value != null ? value.toString() : "");
+    }
+
+    protected static int toInt(Object value, int defaultValue) {
+        try {
+            return Integer.parseInt(toStr(value));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    protected static long toLong(Object value, long defaultValue) {
+        try {
+            return Long.parseLong(toStr(value));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    protected static Date toDate(Object value) {
+        return (value instanceof Date ? (Date) value : null);
+    }
+}
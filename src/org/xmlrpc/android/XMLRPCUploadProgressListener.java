@@ -0,0 +1,13 @@
+package org.xmlrpc.android;
+
+/**
+ * Listener notified while the body of a wp.uploadFile request is sent to the server.
+ * Callbacks are made on the thread running the XML-RPC call.
+ */
+public interface XMLRPCUploadProgressListener {
+    /**
+     * @param bytesSent number of bytes of the request body written so far
+     * @param totalBytes total size of the request body
+     */
+    public void onProgress(long bytesSent, long totalBytes);
+}
@@ -0,0 +1,24 @@
+CREATE TABLE android_metadata (locale TEXT);
+INSERT INTO "android_metadata" VALUES('en_US');
+CREATE TABLE tbl_blog_urls ( blog_url TEXT COLLATE NOCASE PRIMARY KEY, is_followed INTEGER DEFAULT 0);
+INSERT INTO "tbl_blog_urls" VALUES('http://example.wordpress.com',1);
+CREATE TABLE tbl_comments ( blog_id INTEGER DEFAULT 0, post_id INTEGER DEFAULT 0, comment_id INTEGER DEFAULT 0, parent_id INTEGER DEFAULT 0, author_name TEXT, author_avatar TEXT, author_url TEXT, published TEXT, timestamp INTEGER DEFAULT 0, status TEXT, text TEXT, PRIMARY KEY (blog_id, post_id, comment_id));
+INSERT INTO "tbl_comments" VALUES(52451191,1001,1,0,'Bob','','','2014-05-01T19:00:00+0000',1398970800,'approved','<p>Nice!</p>');
+CREATE TABLE tbl_post_likes ( post_id INTEGER, blog_id INTEGER, user_id INTEGER, PRIMARY KEY (blog_id, post_id, user_id));
+INSERT INTO "tbl_post_likes" VALUES(1001,52451191,7);
+CREATE TABLE tbl_post_tags ( post_id INTEGER NOT NULL, blog_id INTEGER NOT NULL, pseudo_id TEXT NOT NULL, tag_name TEXT NOT NULL COLLATE NOCASE, PRIMARY KEY (post_id, blog_id, tag_name));
+INSERT INTO "tbl_post_tags" VALUES(1001,52451191,'p1001b52451191','android');
+INSERT INTO "tbl_post_tags" VALUES(1002,52451191,'p1002b52451191','android');
+INSERT INTO "tbl_post_tags" VALUES(1001,52451191,'p1001b52451191','Blogs I Follow');
+CREATE TABLE tbl_posts ( post_id INTEGER, blog_id INTEGER, pseudo_id TEXT NOT NULL, author_name TEXT, title TEXT, text TEXT, excerpt TEXT, url TEXT, blog_url TEXT, blog_name TEXT, featured_image TEXT, featured_video TEXT, post_avatar TEXT, timestamp INTEGER DEFAULT 0, published TEXT, num_replies INTEGER DEFAULT 0, num_likes INTEGER DEFAULT 0, is_liked INTEGER DEFAULT 0, is_followed INTEGER DEFAULT 0, is_comments_open INTEGER DEFAULT 0, is_reblogged INTEGER DEFAULT 0, is_external INTEGER DEFAULT 0, is_private INTEGER DEFAULT 0, is_videopress INTEGER DEFAULT 0, tag_list TEXT, PRIMARY KEY (post_id, blog_id));
+INSERT INTO "tbl_posts" VALUES(1001,52451191,'p1001b52451191','Ann Author','Hello Reader','<p>First post</p>','First post','http://example.wordpress.com/2014/05/01/hello-reader/','http://example.wordpress.com','Example Blog','','','',1398969000,'2014-05-01T18:30:00+0000',2,3,1,1,1,0,0,0,0,'android,testing');
+INSERT INTO "tbl_posts" VALUES(1002,52451191,'p1002b52451191','Ann Author','Second post','<p>Second post</p>','Second post','http://example.wordpress.com/2014/04/28/second-post/','http://example.wordpress.com','Example Blog','','','',1398676320,'2014-04-28T09:12:00+0000',0,1,0,1,1,0,0,0,0,'android');
+CREATE TABLE tbl_recommended_tags ( tag_name TEXT COLLATE NOCASE PRIMARY KEY, endpoint TEXT, topic_type INTEGER DEFAULT 0);
+CREATE TABLE tbl_tag_updates ( tag_name TEXT COLLATE NOCASE PRIMARY KEY, date_updated TEXT, date_oldest TEXT, date_newest TEXT);
+INSERT INTO "tbl_tag_updates" VALUES('android','2014-05-02T10:00:00+0000','2014-04-28T09:12:00+0000','2014-05-01T18:30:00+0000');
+CREATE TABLE tbl_tags ( tag_name TEXT COLLATE NOCASE PRIMARY KEY, endpoint TEXT, topic_type INTEGER DEFAULT 0);
+INSERT INTO "tbl_tags" VALUES('Blogs I Follow','read/following',1);
+INSERT INTO "tbl_tags" VALUES('android','read/tags/android/posts',0);
+CREATE TABLE tbl_thumbnails ( full_url TEXT COLLATE NOCASE PRIMARY KEY, thumbnail_url TEXT NOT NULL, post_id INTEGER);
+CREATE TABLE tbl_users ( user_id INTEGER PRIMARY KEY, user_name TEXT, display_name TEXT COLLATE NOCASE, url TEXT, profile_url TEXT, avatar_url TEXT);
+INSERT INTO "tbl_users" VALUES(7,'bob','Bob','','','');
@@ -67,6 +67,32 @@ public class TestUtils {
         return null;
     }
 
+    /*
+     * creates a database from a dump made with an earlier schema version, the database is closed
+     * so its SQLiteOpenHelper upgrades it from that version when opened
+     */
+    public static void createDBFromDump(Context targetContext, Context testContext, String dbName,
+                                        String filename, int version) {
+        SQLiteDatabase db = targetContext.openOrCreateDatabase(dbName, 0, null);
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(testContext.getAssets().open(filename)));
+            try {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (!TextUtils.isEmpty(line)) {
+                        db.execSQL(line);
+                    }
+                }
+                db.setVersion(version);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            assertTrue(e.toString(), false);
+        } finally {
+            db.close();
+        }
+    }
+
     public static void clearDefaultSharedPreferences(Context targetContext) {
         SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(targetContext);
         Editor editor = settings.edit();
@@ -0,0 +1,82 @@
+package org.wordpress.android.datasets;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import org.wordpress.android.TestUtils;
+import org.wordpress.android.util.SqlUtils;
+
+public class ReaderDatabaseMigrationTest extends InstrumentationTestCase {
+    protected Context targetContext;
+    protected Context testContext;
+
+    @Override
+    protected void setUp() {
+        targetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
+        testContext = getInstrumentation().getContext();
+        targetContext.deleteDatabase(ReaderDatabase.DB_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        targetContext.deleteDatabase(ReaderDatabase.DB_NAME);
+        targetContext = null;
+        testContext = null;
+        super.tearDown();
+    }
+
+    private static boolean indexExists(SQLiteDatabase db, String indexName) {
+        return SqlUtils.boolForQuery(db, "SELECT 1 FROM sqlite_master WHERE type='index' AND name=?",
+                new String[]{indexName});
+    }
+
+    public void testUpgradeKeepsData() {
+        TestUtils.createDBFromDump(targetContext, testContext, ReaderDatabase.DB_NAME, "reader_v66.sql", 66);
+
+        ReaderDatabase readerDb = new ReaderDatabase(targetContext);
+        try {
+            SQLiteDatabase db = readerDb.getWritableDatabase();
+            assertEquals(2, SqlUtils.getRowCount(db, "tbl_posts"));
+            assertEquals(3, SqlUtils.getRowCount(db, "tbl_post_tags"));
+            assertEquals(2, SqlUtils.getRowCount(db, "tbl_tags"));
+            assertEquals(1, SqlUtils.getRowCount(db, "tbl_comments"));
+            assertEquals(1, SqlUtils.getRowCount(db, "tbl_post_likes"));
+            assertEquals(1, SqlUtils.getRowCount(db, "tbl_users"));
+            assertEquals(1, SqlUtils.getRowCount(db, "tbl_blog_urls"));
+            assertEquals("Hello Reader", SqlUtils.stringForQuery(db,
+                    "SELECT title FROM tbl_posts WHERE blog_id=52451191 AND post_id=1001", null));
+
+            assertTrue(indexExists(db, "idx_post_tags_tag_name"));
+            assertTrue(indexExists(db, "idx_posts_timestamp"));
+        } finally {
+            readerDb.close();
+        }
+    }
+
+    public void testUpgradeFromUnknownVersionResets() {
+        TestUtils.createDBFromDump(targetContext, testContext, ReaderDatabase.DB_NAME, "reader_v66.sql", 60);
+
+        ReaderDatabase readerDb = new ReaderDatabase(targetContext);
+        try {
+            SQLiteDatabase db = readerDb.getWritableDatabase();
+            assertEquals(0, SqlUtils.getRowCount(db, "tbl_posts"));
+            assertEquals(0, SqlUtils.getRowCount(db, "tbl_tags"));
+            assertTrue(indexExists(db, "idx_post_tags_tag_name"));
+        } finally {
+            readerDb.close();
+        }
+    }
+
+    public void testNewInstallMatchesMigratedSchema() {
+        ReaderDatabase readerDb = new ReaderDatabase(targetContext);
+        try {
+            SQLiteDatabase db = readerDb.getWritableDatabase();
+            assertTrue(indexExists(db, "idx_post_tags_tag_name"));
+            assertTrue(indexExists(db, "idx_posts_timestamp"));
+        } finally {
+            readerDb.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.wordpress.android.datasets;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+import android.test.RenamingDelegatingContext;
+
+import org.wordpress.android.TestUtils;
+import org.wordpress.android.util.SqlUtils;
+
+public class ReaderDatabasePurgeTest extends InstrumentationTestCase {
+    protected Context targetContext;
+    protected Context testContext;
+    private ReaderDatabase mReaderDb;
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() {
+        targetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
+        testContext = getInstrumentation().getContext();
+        targetContext.deleteDatabase(ReaderDatabase.DB_NAME);
+        TestUtils.createDBFromDump(targetContext, testContext, ReaderDatabase.DB_NAME, "reader_v66.sql", 66);
+        mReaderDb = new ReaderDatabase(targetContext);
+        mDb = mReaderDb.getWritableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mReaderDb.close();
+        targetContext.deleteDatabase(ReaderDatabase.DB_NAME);
+        targetContext = null;
+        testContext = null;
+        super.tearDown();
+    }
+
+    public void testPurgeKeepsPostsWithinPolicy() {
+        ReaderDatabase.PurgeResult result = ReaderDatabase.purge(mDb, 200, 0, Long.MAX_VALUE, 0);
+        assertEquals(0, result.numPosts);
+        assertEquals(2, SqlUtils.getRowCount(mDb, "tbl_posts"));
+        assertEquals(1, SqlUtils.getRowCount(mDb, "tbl_comments"));
+    }
+
+    public void testPurgeMaxPostsPerTag() {
+        // the older post of the "android" tag isn't in any other tag
+        ReaderDatabase.PurgeResult result = ReaderDatabase.purge(mDb, 1, 0, Long.MAX_VALUE, 0);
+        assertEquals(1, result.numPosts);
+        assertFalse(SqlUtils.boolForQuery(mDb, "SELECT 1 FROM tbl_posts WHERE post_id=1002", null));
+        assertTrue(SqlUtils.boolForQuery(mDb, "SELECT 1 FROM tbl_posts WHERE post_id=1001", null));
+        assertEquals(2, SqlUtils.getRowCount(mDb, "tbl_post_tags"));
+        assertEquals(1, SqlUtils.getRowCount(mDb, "tbl_comments"));
+    }
+
+    public void testPurgeMaxAge() {
+        // only the newest post (timestamp 1398969000) is recent enough
+        ReaderDatabase.PurgeResult result = ReaderDatabase.purge(mDb, 200, 1398969000, Long.MAX_VALUE, 0);
+        assertEquals(1, result.numPosts);
+        assertTrue(SqlUtils.boolForQuery(mDb, "SELECT 1 FROM tbl_posts WHERE post_id=1001", null));
+
+        // every post is too old, their comments and likes go with them
+        result = ReaderDatabase.purge(mDb, 200, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+        assertEquals(1, result.numPosts);
+        assertEquals(1, result.numComments);
+        assertEquals(1, result.numLikes);
+        assertEquals(0, SqlUtils.getRowCount(mDb, "tbl_post_tags"));
+    }
+
+    public void testPurgeMaxUsedBytes() {
+        ReaderDatabase.PurgeResult result = ReaderDatabase.purge(mDb, 200, 0, 0, 0);
+        assertEquals(2, result.numPosts);
+        assertEquals(0, SqlUtils.getRowCount(mDb, "tbl_posts"));
+        assertTrue(result.bytesReclaimed >= 0);
+    }
+
+    public void testPurgeMaxUsedBytesKeepsMinPosts() {
+        // the size budget can't be met, the newest post is kept with its comment
+        ReaderDatabase.PurgeResult result = ReaderDatabase.purge(mDb, 200, 0, 0, 1);
+        assertEquals(1, result.numPosts);
+        assertTrue(SqlUtils.boolForQuery(mDb, "SELECT 1 FROM tbl_posts WHERE post_id=1001", null));
+        assertEquals(1, SqlUtils.getRowCount(mDb, "tbl_comments"));
+    }
+}
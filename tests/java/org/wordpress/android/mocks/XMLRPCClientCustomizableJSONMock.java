@@ -6,13 +6,18 @@ import com.google.gson.internal.StringMap;
 import org.wordpress.android.TestUtils;
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCFault;
+import org.xmlrpc.android.XMLRPCMulticall;
+import org.xmlrpc.android.XMLRPCStructBinder;
+import org.xmlrpc.android.XMLRPCUploadProgressListener;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.List;
 
 public class XMLRPCClientCustomizableJSONMock extends XMLRPCClientCustomizableMockAbstract {
     public XMLRPCClientCustomizableJSONMock(URI uri, String httpUser, String httpPassword) {
@@ -24,6 +29,12 @@ public class XMLRPCClientCustomizableJSONMock extends XMLRPCClientCustomizableMo
     public void setAuthorizationHeader(String authToken) {
     }
 
+    public void setUploadProgressListener(XMLRPCUploadProgressListener listener) {
+    }
+
+    public void setForceRefresh(boolean forceRefresh) {
+    }
+
     private Object readFile(String method, String prefix) {
         // method example: wp.getUsersBlogs
         // Filename: default-wp.getUsersBlogs.json
@@ -66,15 +77,32 @@ public class XMLRPCClientCustomizableJSONMock extends XMLRPCClientCustomizableMo
         return null;
     }
 
-    public Object call(String method, Object[] params, File tempFile) throws XMLRPCException {
-        return null;
+    public <T> List<T> call(String method, Object[] params, XMLRPCStructBinder<T> binder) throws XMLRPCException {
+        return binder.bind(call(method, params));
+    }
+
+    public Object[] callMulticall(XMLRPCMulticall multicall) throws XMLRPCException {
+        // behaves like a server without system.multicall support
+        Object[] results = new Object[multicall.size()];
+        for (int i = 0; i < multicall.size(); i++) {
+            try {
+                results[i] = call(multicall.getMethod(i), multicall.getParams(i));
+            } catch (XMLRPCFault e) {
+                results[i] = e;
+            }
+        }
+        return results;
     }
 
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
         return 0;
     }
 
-    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, File tempFile) {
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, Priority priority) {
         return 0;
     }
+
+    public boolean cancelAsync(long id) {
+        return false;
+    }
 }
@@ -2,15 +2,20 @@ package org.wordpress.android.mocks;
 
 import org.wordpress.android.util.AppLog;
 import org.wordpress.android.util.AppLog.T;
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCClient;
 import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCFault;
+import org.xmlrpc.android.XMLRPCMulticall;
+import org.xmlrpc.android.XMLRPCStructBinder;
+import org.xmlrpc.android.XMLRPCUploadProgressListener;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.List;
 
 public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMockAbstract {
     XMLRPCClient mXmlRpcClient;
@@ -26,13 +31,19 @@ public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMoc
     public void setAuthorizationHeader(String authToken) {
     }
 
-    private Object readFile(String method, String prefix) {
+    public void setUploadProgressListener(XMLRPCUploadProgressListener listener) {
+    }
+
+    public void setForceRefresh(boolean forceRefresh) {
+    }
+
+    private Object readFile(String method, String prefix, XMLRPCStructBinder<?> binder) {
         // method example: wp.getUsersBlogs
         // Filename: default-wp.getUsersBlogs.xml
         String filename = prefix + "-" + method + ".xml";
         try {
             InputStream is = mContext.getAssets().open(filename);
-            return XMLRPCClient.parseXMLRPCResponse(is, null);
+            return XMLRPCClient.parseXMLRPCResponse(is, null, binder);
         } catch (FileNotFoundException e) {
             AppLog.e(T.TESTS, "file not found: " + filename);
         } catch (Exception e) {
@@ -42,8 +53,17 @@ public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMoc
     }
 
     public Object call(String method, Object[] params) throws XMLRPCException {
+        return readResponse(method, params, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> List<T> call(String method, Object[] params, XMLRPCStructBinder<T> binder) throws XMLRPCException {
+        return (List<T>) readResponse(method, params, binder);
+    }
+
+    private Object readResponse(String method, Object[] params, XMLRPCStructBinder<?> binder) throws XMLRPCException {
         try {
-            mXmlRpcClient.preparePostMethod(method, params, null);
+            mXmlRpcClient.preparePostMethod(method, params);
         } catch (IOException e) {
             // unexpected error, test must fail
             throw new XMLRPCException("preparePostMethod failed");
@@ -54,11 +74,11 @@ public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMoc
             throw new XMLRPCException("code 403");
         }
 
-        Object retValue = readFile(method, mPrefix);
+        Object retValue = readFile(method, mPrefix, binder);
         if (retValue == null) {
             // failback to default
             AppLog.w(T.TESTS, "failback to default");
-            retValue = readFile(method, "default");
+            retValue = readFile(method, "default", binder);
         }
         return retValue;
     }
@@ -67,15 +87,28 @@ public class XMLRPCClientCustomizableXMLMock extends XMLRPCClientCustomizableMoc
         return null;
     }
 
-    public Object call(String method, Object[] params, File tempFile) throws XMLRPCException {
-        return null;
+    public Object[] callMulticall(XMLRPCMulticall multicall) throws XMLRPCException {
+        // behaves like a server without system.multicall support
+        Object[] results = new Object[multicall.size()];
+        for (int i = 0; i < multicall.size(); i++) {
+            try {
+                results[i] = call(multicall.getMethod(i), multicall.getParams(i));
+            } catch (XMLRPCFault e) {
+                results[i] = e;
+            }
+        }
+        return results;
     }
 
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
         return 0;
     }
 
-    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, File tempFile) {
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, Priority priority) {
         return 0;
     }
+
+    public boolean cancelAsync(long id) {
+        return false;
+    }
 }
@@ -1,11 +1,15 @@
 package org.wordpress.android.mocks;
 
+import org.wordpress.android.util.TaskDispatcher.Priority;
 import org.xmlrpc.android.XMLRPCCallback;
 import org.xmlrpc.android.XMLRPCClientInterface;
 import org.xmlrpc.android.XMLRPCException;
+import org.xmlrpc.android.XMLRPCMulticall;
+import org.xmlrpc.android.XMLRPCStructBinder;
+import org.xmlrpc.android.XMLRPCUploadProgressListener;
 
-import java.io.File;
 import java.net.URI;
+import java.util.List;
 
 public class XMLRPCClientEmptyMock implements XMLRPCClientInterface {
     public XMLRPCClientEmptyMock(URI uri, String httpUser, String httpPassword) {
@@ -20,6 +24,14 @@ public class XMLRPCClientEmptyMock implements XMLRPCClientInterface {
 
     }
 
+    public void setUploadProgressListener(XMLRPCUploadProgressListener listener) {
+
+    }
+
+    public void setForceRefresh(boolean forceRefresh) {
+
+    }
+
     public Object call(String method, Object[] params) throws XMLRPCException {
         return null;
     }
@@ -28,15 +40,23 @@ public class XMLRPCClientEmptyMock implements XMLRPCClientInterface {
         return null;
     }
 
-    public Object call(String method, Object[] params, File tempFile) throws XMLRPCException {
+    public <T> List<T> call(String method, Object[] params, XMLRPCStructBinder<T> binder) throws XMLRPCException {
         return null;
     }
 
+    public Object[] callMulticall(XMLRPCMulticall multicall) throws XMLRPCException {
+        return new Object[multicall.size()];
+    }
+
     public long callAsync(XMLRPCCallback listener, String methodName, Object[] params) {
         return 0;
     }
 
-    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, File tempFile) {
+    public long callAsync(XMLRPCCallback listener, String methodName, Object[] params, Priority priority) {
         return 0;
     }
+
+    public boolean cancelAsync(long id) {
+        return false;
+    }
 }
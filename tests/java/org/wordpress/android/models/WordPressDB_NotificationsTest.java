@@ -6,6 +6,8 @@ import android.os.Bundle;
 import android.test.InstrumentationTestCase;
 import android.test.RenamingDelegatingContext;
 
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.wordpress.android.TestUtils;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.WordPressDB;
@@ -13,6 +15,7 @@ import org.wordpress.android.WordPressDB;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class WordPressDB_NotificationsTest extends InstrumentationTestCase {
     protected Context testContext;
@@ -92,6 +95,76 @@ public class WordPressDB_NotificationsTest extends InstrumentationTestCase {
         assertTrue(notes.size() == 0);
     }
 
+    public void testGetLatestNotesListColumns() {
+        SQLiteDatabase db = TestUtils.loadDBFromDump(targetContext, testContext, "empty_tables.sql");
+        WordPressDB wpdb = WordPress.wpDB;
+
+        Note note = createEmptyNote();
+        wpdb.addNote(note, true);
+        ArrayList<Note> notes = wpdb.getLatestNotes();
+        assertEquals(1, notes.size());
+
+        // the list fields come from their columns, the JSON is read once needed
+        Note listNote = notes.get(0);
+        assertEquals(note.getSubject(), listNote.getSubject());
+        assertEquals(note.getType(), listNote.getType());
+        assertEquals(note.getTimestamp(), listNote.getTimestamp());
+        assertTrue(listNote.isUnread());
+        assertTrue(listNote.isPlaceholder());
+        assertEquals(note.toJSONObject().toString(), listNote.toJSONObject().toString());
+    }
+
+    private static Note createNote(String id, String timestamp) throws JSONException {
+        return new Note(new JSONObject("{\"id\":\"" + id + "\",\"timestamp\":\"" + timestamp
+                + "\",\"type\":\"like\",\"unread\":\"0\",\"subject\":{\"text\":\"note " + id + "\"}}"));
+    }
+
+    public void testGetNotesBefore() throws JSONException {
+        SQLiteDatabase db = TestUtils.loadDBFromDump(targetContext, testContext, "empty_tables.sql");
+        WordPressDB wpdb = WordPress.wpDB;
+
+        wpdb.saveNotes(Arrays.asList(createNote("1", "100"), createNote("2", "200"), createNote("3", "200"),
+                createNote("4", "300")), true);
+        ArrayList<Note> notes = wpdb.getLatestNotes(2);
+        assertEquals(2, notes.size());
+        assertEquals("4", notes.get(0).getId());
+        assertEquals("3", notes.get(1).getId());
+
+        // notes sharing a timestamp are neither skipped nor repeated
+        notes = wpdb.getNotesBefore(notes.get(1), 2);
+        assertEquals(2, notes.size());
+        assertEquals("2", notes.get(0).getId());
+        assertEquals("1", notes.get(1).getId());
+        assertEquals(0, wpdb.getNotesBefore(notes.get(1), 2).size());
+    }
+
+    public void testMergeNotes() throws JSONException {
+        SQLiteDatabase db = TestUtils.loadDBFromDump(targetContext, testContext, "empty_tables.sql");
+        WordPressDB wpdb = WordPress.wpDB;
+
+        wpdb.saveNotes(Arrays.asList(createNote("1", "100"), createNote("2", "200"), createNote("3", "300")), true);
+        // note 2 was deleted on the server, note 4 is new, note 1 is older than the fetched notes
+        wpdb.mergeNotes(Arrays.asList(createNote("3", "300"), createNote("4", "400")));
+        ArrayList<Note> notes = wpdb.getLatestNotes(10);
+        assertEquals(3, notes.size());
+        assertEquals("4", notes.get(0).getId());
+        assertEquals("3", notes.get(1).getId());
+        assertEquals("1", notes.get(2).getId());
+    }
+
+    public void testMergeNotesWithoutOverlapDropsOlderNotes() throws JSONException {
+        SQLiteDatabase db = TestUtils.loadDBFromDump(targetContext, testContext, "empty_tables.sql");
+        WordPressDB wpdb = WordPress.wpDB;
+
+        wpdb.saveNotes(Arrays.asList(createNote("1", "100"), createNote("2", "200")), true);
+        // the fetched notes don't reach the stored ones, the notes in between are missing
+        wpdb.mergeNotes(Arrays.asList(createNote("3", "300"), createNote("4", "400")));
+        ArrayList<Note> notes = wpdb.getLatestNotes(10);
+        assertEquals(2, notes.size());
+        assertEquals("4", notes.get(0).getId());
+        assertEquals("3", notes.get(1).getId());
+    }
+
     public void tearDown() throws Exception {
         targetContext = null;
         testContext = null;
@@ -1,5 +1,6 @@
 package org.wordpress.android.models;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -9,8 +10,13 @@ import android.util.Log;
 import org.wordpress.android.TestUtils;
 import org.wordpress.android.WordPress;
 import org.wordpress.android.WordPressDB;
+import org.wordpress.android.datasets.SearchIndexTable;
 import org.wordpress.android.models.CategoryNode;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class WordPressDB_Test extends InstrumentationTestCase {
     protected Context testContext;
     protected Context targetContext;
@@ -21,4 +27,94 @@ public class WordPressDB_Test extends InstrumentationTestCase {
         targetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
         testContext = getInstrumentation().getContext();
     }
+
+    public void testSearchMatchQuery() {
+        assertNull(SearchIndexTable.getMatchQuery(null));
+        assertNull(SearchIndexTable.getMatchQuery("  \"* "));
+        assertEquals("blue* theme*", SearchIndexTable.getMatchQuery(" Blue  theme"));
+        assertEquals("twenty* or* twelve*", SearchIndexTable.getMatchQuery("twenty OR -twelve"));
+    }
+
+    public void testThemeSearch() {
+        targetContext.deleteDatabase("wordpress");
+        WordPressDB wpDB = new WordPressDB(targetContext);
+        wpDB.saveTheme(new Theme("twentyten", "", "Twenty Ten", "A blue theme", 0, 0, "2014-01-01", "1", "", false, ""));
+        wpDB.saveTheme(new Theme("blueprint", "", "Blueprint", "A grid theme", 0, 0, "2014-01-01", "1", "", false, ""));
+        wpDB.saveTheme(new Theme("other", "", "Other", "A red theme", 0, 0, "2014-01-01", "2", "", false, ""));
+
+        Cursor cursor = wpDB.getThemes("1", "blu");
+        try {
+            // name matches come first
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals("blueprint", cursor.getString(cursor.getColumnIndex("themeId")));
+            assertTrue(cursor.moveToNext());
+            assertEquals("twentyten", cursor.getString(cursor.getColumnIndex("themeId")));
+        } finally {
+            cursor.close();
+        }
+
+        // the index follows the updates
+        wpDB.saveTheme(new Theme("twentyten", "", "Twenty Ten", "A green theme", 0, 0, "2014-01-01", "1", "", false, ""));
+        cursor = wpDB.getThemes("1", "blue");
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testPostSearchIgnoresHtml() {
+        targetContext.deleteDatabase("wordpress");
+        WordPressDB wpDB = new WordPressDB(targetContext);
+        ContentValues values = new ContentValues();
+        values.put("postid", "1");
+        values.put("title", "Holiday");
+        values.put("description", "<strong>Sunny</strong> beach");
+        wpDB.savePosts(Collections.singletonList(values), 1, false, true);
+
+        assertEquals(1, wpDB.searchPostsListPosts(1, false, "sunny", 10).size());
+        assertEquals(0, wpDB.searchPostsListPosts(1, false, "strong", 10).size());
+    }
+
+    public void testPostsListWindows() {
+        targetContext.deleteDatabase("wordpress");
+        WordPressDB wpDB = new WordPressDB(targetContext);
+        List<ContentValues> postsList = new ArrayList<ContentValues>();
+        postsList.add(getPostValues("1", 100, true));
+        postsList.add(getPostValues("2", 300, false));
+        postsList.add(getPostValues("3", 200, false));
+        postsList.add(getPostValues("4", 200, false));
+        wpDB.savePosts(postsList, 1, false, true);
+
+        // local drafts first, then newest first, posts with the same date by id
+        List<PostsListPost> firstWindow = wpDB.getPostsListPosts(1, false, null, 2);
+        assertEquals(2, firstWindow.size());
+        assertTrue(firstWindow.get(0).isLocalDraft());
+        assertEquals(300, firstWindow.get(1).getDateCreatedGmt());
+
+        // the window after a local draft continues with the other posts
+        List<PostsListPost> afterDraft = wpDB.getPostsListPosts(1, false, firstWindow.get(0), 2);
+        assertEquals(2, afterDraft.size());
+        assertEquals(300, afterDraft.get(0).getDateCreatedGmt());
+
+        List<PostsListPost> secondWindow = wpDB.getPostsListPosts(1, false, firstWindow.get(1), 2);
+        assertEquals(2, secondWindow.size());
+        assertEquals(200, secondWindow.get(0).getDateCreatedGmt());
+        assertEquals(200, secondWindow.get(1).getDateCreatedGmt());
+        assertTrue(secondWindow.get(0).getPostId() > secondWindow.get(1).getPostId());
+
+        assertEquals(0, wpDB.getPostsListPosts(1, false, secondWindow.get(1), 2).size());
+    }
+
+    private static ContentValues getPostValues(String postId, long dateCreatedGmt, boolean isLocalDraft) {
+        ContentValues values = new ContentValues();
+        values.put("postid", postId);
+        values.put("title", "Post " + postId);
+        values.put("date_created_gmt", dateCreatedGmt);
+        values.put("localDraft", isLocalDraft);
+        values.put("uploaded", false);
+        values.put("isPage", false);
+        return values;
+    }
 }
@@ -0,0 +1,136 @@
+package org.wordpress.android.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Environment;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * testResizeBenchmark resizes every image of the corpus directory (wp-image-corpus on the external
+ * storage, put camera photos there) or, if there's none, generated images. Results are logged with
+ * the "ImageResizeBenchmark" tag.
+ */
+public class ImageResizerTest extends InstrumentationTestCase {
+    private static final String TAG = "ImageResizeBenchmark";
+    private static final String CORPUS_DIR = "wp-image-corpus";
+    private static final int TARGET_WIDTH = 1024;
+    private static final long MB = 1024 * 1024;
+
+    protected Context targetContext;
+
+    @Override
+    protected void setUp() {
+        targetContext = getInstrumentation().getTargetContext();
+    }
+
+    public void testSampleSizeClosestAboveTarget() {
+        long noLimit = Long.MAX_VALUE;
+        assertEquals(2, ImageResizer.getSampleSize(4000, 3000, 1024, noLimit));
+        assertEquals(1, ImageResizer.getSampleSize(800, 600, 1024, noLimit));
+        assertEquals(1, ImageResizer.getSampleSize(4000, 3000, 0, noLimit));
+    }
+
+    public void testSampleSizeWithinBudget() {
+        // 2000x1500 decoded + 1024x768 resized don't fit in 8MB, 1000x750 does
+        assertEquals(4, ImageResizer.getSampleSize(4000, 3000, 1024, 8 * MB));
+        // 40MP photo
+        assertEquals(2, ImageResizer.getSampleSize(7728, 5152, 2048, 64 * MB));
+        assertEquals(4, ImageResizer.getSampleSize(7728, 5152, 2048, 16 * MB));
+        assertEquals(2, ImageResizer.getSampleSize(7000, 5000, 0, 40 * MB));
+        assertTrue(ImageResizer.getPeakBytes(7728, 5152, 2048, 4) <= 16 * MB);
+        // stops once the image can't be sampled further
+        assertEquals(64, ImageResizer.getSampleSize(100, 100, 0, 1));
+    }
+
+    public void testResizeBenchmark() throws IOException {
+        List<File> corpus = getCorpus();
+        assertFalse(corpus.isEmpty());
+        Log.i(TAG, "memory budget " + (ImageResizer.getMemoryBudget() / MB) + "MB");
+
+        File outFile = File.createTempFile("wp-resized-", ".jpg", targetContext.getCacheDir());
+        try {
+            for (File imageFile : corpus) {
+                long start = System.nanoTime();
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile));
+                boolean isResized;
+                try {
+                    isResized = ImageResizer.resizeToStream(imageFile.getPath(), TARGET_WIDTH, 0,
+                            Bitmap.CompressFormat.JPEG, out);
+                } finally {
+                    out.close();
+                }
+                long elapsedMs = (System.nanoTime() - start) / 1000000;
+                assertTrue(isResized);
+
+                BitmapFactory.Options source = getBounds(imageFile);
+                BitmapFactory.Options resized = getBounds(outFile);
+                assertEquals(Math.min(TARGET_WIDTH, source.outWidth), resized.outWidth);
+                Log.i(TAG, imageFile.getName() + " " + source.outWidth + "x" + source.outHeight
+                        + " -> " + resized.outWidth + "x" + resized.outHeight
+                        + " in " + elapsedMs + "ms, " + (outFile.length() / 1024) + "KB");
+            }
+        } finally {
+            outFile.delete();
+            ImageResizer.clearReusableBitmap();
+        }
+    }
+
+    private static BitmapFactory.Options getBounds(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        return options;
+    }
+
+    private List<File> getCorpus() throws IOException {
+        List<File> corpus = new ArrayList<File>();
+        File[] files = new File(Environment.getExternalStorageDirectory(), CORPUS_DIR).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (getBounds(file).outWidth > 0) {
+                    corpus.add(file);
+                }
+            }
+        }
+        if (corpus.isEmpty()) {
+            corpus.add(createImage(2048, 1536));
+            corpus.add(createImage(3264, 2448));
+        }
+        return corpus;
+    }
+
+    private File createImage(int width, int height) throws IOException {
+        File file = new File(targetContext.getCacheDir(), "wp-generated-" + width + "x" + height + ".jpg");
+        if (file.exists()) {
+            return file;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        for (int i = 0; i < 16; i++) {
+            paint.setColor(Color.rgb(i * 16, 255 - i * 16, (i * 64) % 256));
+            canvas.drawRect(i * width / 16, 0, (i + 1) * width / 16, height, paint);
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,66 @@
+package org.wordpress.android.util;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.util.MediaUploadScheduler.QueuedUpload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MediaUploadSchedulerTest extends InstrumentationTestCase {
+    private static final long NOW = 1000000;
+
+    private List<QueuedUpload> mQueue;
+
+    @Override
+    protected void setUp() {
+        mQueue = new ArrayList<QueuedUpload>();
+        mQueue.add(new QueuedUpload("1", "a", "blog1.example.com", 0, 0));
+        mQueue.add(new QueuedUpload("1", "b", "blog1.example.com", 0, 0));
+        mQueue.add(new QueuedUpload("1", "c", "blog1.example.com", 0, 0));
+        mQueue.add(new QueuedUpload("2", "d", "blog2.example.com", 0, 0));
+        mQueue.add(new QueuedUpload("3", "e", "blog3.example.com", 1, NOW + 5000));
+    }
+
+    public void testMaxUploadsPerHost() {
+        MediaUploadScheduler scheduler = new MediaUploadScheduler(10, 2);
+        List<QueuedUpload> started = scheduler.startUploads(mQueue, NOW);
+        assertEquals(3, started.size());
+        assertEquals("a", started.get(0).mediaId);
+        assertEquals("b", started.get(1).mediaId);
+        assertEquals("d", started.get(2).mediaId);
+
+        // running uploads aren't started again, the host is still busy
+        assertEquals(0, scheduler.startUploads(mQueue, NOW).size());
+
+        scheduler.onUploadFinished(started.get(0));
+        mQueue.remove(0);
+        started = scheduler.startUploads(mQueue, NOW);
+        assertEquals(1, started.size());
+        assertEquals("c", started.get(0).mediaId);
+    }
+
+    public void testMaxUploads() {
+        MediaUploadScheduler scheduler = new MediaUploadScheduler(1, 2);
+        assertEquals(1, scheduler.startUploads(mQueue, NOW).size());
+        assertEquals(0, scheduler.startUploads(mQueue, NOW).size());
+        assertTrue(scheduler.hasRunningUploads());
+    }
+
+    public void testRetryBackoff() {
+        MediaUploadScheduler scheduler = new MediaUploadScheduler(10, 10);
+        for (QueuedUpload upload : scheduler.startUploads(mQueue, NOW)) {
+            assertFalse("e".equals(upload.mediaId));
+        }
+        assertEquals(NOW + 5000, scheduler.getNextRetryTime(mQueue, NOW));
+
+        List<QueuedUpload> started = scheduler.startUploads(mQueue, NOW + 5000);
+        assertEquals(1, started.size());
+        assertEquals("e", started.get(0).mediaId);
+        assertEquals(-1, scheduler.getNextRetryTime(mQueue, NOW + 5000));
+
+        assertEquals(MediaUploadScheduler.BASE_RETRY_DELAY_MS, MediaUploadScheduler.getRetryDelay(1));
+        assertEquals(MediaUploadScheduler.BASE_RETRY_DELAY_MS * 4, MediaUploadScheduler.getRetryDelay(3));
+        assertEquals(MediaUploadScheduler.MAX_RETRY_DELAY_MS, MediaUploadScheduler.getRetryDelay(100));
+    }
+}
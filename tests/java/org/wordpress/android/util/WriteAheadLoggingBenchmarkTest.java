@@ -0,0 +1,114 @@
+package org.wordpress.android.util;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.InstrumentationTestCase;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a read made while another thread holds a bulk write transaction, with the
+ * rollback journal and with write-ahead logging: the read waits for the writer with the former, not
+ * with the latter. Latencies are logged with the "WALBenchmark" tag.
+ */
+public class WriteAheadLoggingBenchmarkTest extends InstrumentationTestCase {
+    private static final String TAG = "WALBenchmark";
+    private static final String DB_NAME = "wal_benchmark.db";
+    private static final int NUM_ROWS = 5000;
+    // how long the writer keeps its transaction open once the rows are written
+    private static final long WRITE_HOLD_MS = 1000;
+
+    protected Context targetContext;
+
+    @Override
+    protected void setUp() {
+        targetContext = new RenamingDelegatingContext(getInstrumentation().getTargetContext(), "test_");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        targetContext.deleteDatabase(DB_NAME);
+        targetContext = null;
+        super.tearDown();
+    }
+
+    public void testReadDuringWriteTransaction() throws InterruptedException {
+        // rollback journal: the read waits for the commit, then sees the written rows
+        ReadResult rollback = readDuringWriteTransaction(false);
+        Log.i(TAG, "rollback journal: read latency " + rollback.latencyMs + "ms");
+        assertTrue(rollback.latencyMs >= WRITE_HOLD_MS / 2);
+        assertEquals(NUM_ROWS + 1, rollback.rowCount);
+
+        if (!SysUtils.canUseWriteAheadLogging()) {
+            Log.i(TAG, "write-ahead logging unavailable on this device");
+            return;
+        }
+
+        // write-ahead logging: the read doesn't wait, and doesn't see the uncommitted rows
+        ReadResult wal = readDuringWriteTransaction(true);
+        Log.i(TAG, "write-ahead logging: read latency " + wal.latencyMs + "ms");
+        assertTrue(wal.latencyMs < WRITE_HOLD_MS / 2);
+        assertEquals(1, wal.rowCount);
+    }
+
+    private static class ReadResult {
+        long latencyMs;
+        long rowCount;
+    }
+
+    /*
+     * reads the row count while another thread holds a write transaction that inserted NUM_ROWS rows
+     */
+    private ReadResult readDuringWriteTransaction(boolean useWriteAheadLogging) throws InterruptedException {
+        targetContext.deleteDatabase(DB_NAME);
+        final SQLiteDatabase db = targetContext.openOrCreateDatabase(DB_NAME, 0, null);
+        try {
+            if (useWriteAheadLogging) {
+                assertTrue(SqlUtils.enableWriteAheadLogging(db));
+            }
+            db.execSQL("CREATE TABLE items (id INTEGER PRIMARY KEY, title TEXT, content TEXT)");
+            db.execSQL("INSERT INTO items (title, content) VALUES ('first', 'content')");
+
+            final CountDownLatch rowsWritten = new CountDownLatch(1);
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    SQLiteStatement stmt = db.compileStatement("INSERT INTO items (title, content) VALUES (?1, ?2)");
+                    db.beginTransaction();
+                    try {
+                        for (int i = 0; i < NUM_ROWS; i++) {
+                            stmt.bindString(1, "title " + i);
+                            stmt.bindString(2, "content of the item number " + i);
+                            stmt.execute();
+                        }
+                        rowsWritten.countDown();
+                        Thread.sleep(WRITE_HOLD_MS);
+                        db.setTransactionSuccessful();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        db.endTransaction();
+                        SqlUtils.closeStatement(stmt);
+                    }
+                }
+            };
+            writer.start();
+            assertTrue(rowsWritten.await(30, TimeUnit.SECONDS));
+
+            ReadResult result = new ReadResult();
+            long start = System.nanoTime();
+            result.rowCount = SqlUtils.getRowCount(db, "items");
+            result.latencyMs = (System.nanoTime() - start) / 1000000;
+
+            writer.join();
+            assertEquals(NUM_ROWS + 1, SqlUtils.getRowCount(db, "items"));
+            return result;
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class XMLRPCCallCoalescerTest extends InstrumentationTestCase {
+    public void testIdempotentMethods() {
+        assertTrue(XMLRPCCallCoalescer.isIdempotent("wp.getComments"));
+        assertTrue(XMLRPCCallCoalescer.isIdempotent("metaWeblog.getRecentPosts"));
+        assertTrue(XMLRPCCallCoalescer.isIdempotent("system.listMethods"));
+        assertFalse(XMLRPCCallCoalescer.isIdempotent("wp.editComment"));
+        assertFalse(XMLRPCCallCoalescer.isIdempotent("wp.uploadFile"));
+    }
+
+    public void testDuplicateCallsShareResult() throws Exception {
+        final String key = "http://example.com/xmlrpc.php|wp.getComments|[]";
+        final AtomicInteger runCount = new AtomicInteger();
+        final CountDownLatch leaderStarted = new CountDownLatch(1);
+        final CountDownLatch releaseLeader = new CountDownLatch(1);
+        final Object[] followerResult = new Object[1];
+
+        Thread leader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    XMLRPCCallCoalescer.call(key, new XMLRPCCallCoalescer.Call<Object>() {
+                        @Override
+                        public Object run() throws XMLRPCException, IOException, XmlPullParserException {
+                            runCount.incrementAndGet();
+                            leaderStarted.countDown();
+                            try {
+                                releaseLeader.await();
+                            } catch (InterruptedException e) {
+                                throw new XMLRPCException(e);
+                            }
+                            return "comments";
+                        }
+                    });
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        leader.start();
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        Thread follower = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    followerResult[0] = XMLRPCCallCoalescer.call(key, new XMLRPCCallCoalescer.Call<Object>() {
+                        @Override
+                        public Object run() {
+                            runCount.incrementAndGet();
+                            return "duplicate";
+                        }
+                    });
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        follower.start();
+        // give the follower time to attach to the pending call
+        Thread.sleep(200);
+        releaseLeader.countDown();
+        leader.join(5000);
+        follower.join(5000);
+
+        assertEquals(1, runCount.get());
+        assertEquals("comments", followerResult[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCopiedResultDoesNotShareStructs() {
+        Map<String, Object> struct = new HashMap<String, Object>();
+        struct.put("comment_id", "1");
+        Object[] result = new Object[]{struct};
+
+        Object[] copy = (Object[]) XMLRPCCallCoalescer.copyValue(result);
+        ((Map<String, Object>) copy[0]).put("comment_id", "2");
+
+        assertNotSame(result, copy);
+        assertEquals("1", struct.get("comment_id"));
+    }
+}
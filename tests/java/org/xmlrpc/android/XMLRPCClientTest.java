@@ -0,0 +1,42 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+public class XMLRPCClientTest extends InstrumentationTestCase {
+    private static final String RESPONSE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<methodResponse><params><param>"
+            + "<value><string>hello</string></value></param></params></methodResponse>";
+
+    private Object parse(String document) throws Exception {
+        InputStream is = new ByteArrayInputStream(document.getBytes("UTF-8"));
+        return XMLRPCClient.parseXMLRPCResponse(is, null);
+    }
+
+    public void testResponseWithoutPreamble() throws Exception {
+        assertEquals("hello", parse(RESPONSE));
+    }
+
+    public void testPhpNoticesBeforeResponse() throws Exception {
+        String notice = "<br />\n<b>Notice</b>:  Undefined index: foo in <b>/var/www/wp-content/plugins/bar.php</b>"
+                + " on line <b>12</b><br />\n";
+        assertEquals("hello", parse(notice + notice + RESPONSE));
+    }
+
+    public void testWhitespaceBeforeResponse() throws Exception {
+        assertEquals("hello", parse("\n\n   \n" + RESPONSE));
+    }
+
+    public void testPartialDeclarationInPreamble() throws Exception {
+        assertEquals("hello", parse("<?x<<?xm junk " + RESPONSE));
+    }
+
+    public void testLongPreamble() throws Exception {
+        StringBuilder junk = new StringBuilder();
+        while (junk.length() < 4990) {
+            junk.append("<junk/>");
+        }
+        assertEquals("hello", parse(junk.toString() + RESPONSE));
+    }
+}
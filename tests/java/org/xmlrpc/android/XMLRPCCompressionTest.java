@@ -0,0 +1,66 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class XMLRPCCompressionTest extends InstrumentationTestCase {
+    private static final String RESPONSE = "<?xml version=\"1.0\"?><methodResponse><params><param><value>"
+            + "<string>compressed response</string></value></param></params></methodResponse>";
+
+    private HttpEntity newEntity(byte[] content, String encoding) {
+        ByteArrayEntity entity = new ByteArrayEntity(content);
+        entity.setContentEncoding(encoding);
+        return entity;
+    }
+
+    private byte[] deflate(boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflaterStream = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+        deflaterStream.write(RESPONSE.getBytes("UTF-8"));
+        deflaterStream.close();
+        return out.toByteArray();
+    }
+
+    public void testGzipResponse() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzipStream = new GZIPOutputStream(out);
+        gzipStream.write(RESPONSE.getBytes("UTF-8"));
+        gzipStream.close();
+
+        HttpEntity entity = XMLRPCCompression.decodeResponseEntity(newEntity(out.toByteArray(), "gzip"));
+        assertEquals(RESPONSE, EntityUtils.toString(entity, "UTF-8"));
+    }
+
+    public void testDeflateResponse() throws IOException {
+        HttpEntity zlibEntity = XMLRPCCompression.decodeResponseEntity(newEntity(deflate(false), "deflate"));
+        assertEquals(RESPONSE, EntityUtils.toString(zlibEntity, "UTF-8"));
+
+        // some servers send raw deflate data without the zlib header
+        HttpEntity rawEntity = XMLRPCCompression.decodeResponseEntity(newEntity(deflate(true), "deflate"));
+        assertEquals(RESPONSE, EntityUtils.toString(rawEntity, "UTF-8"));
+    }
+
+    public void testUncompressedResponse() throws IOException {
+        HttpEntity entity = XMLRPCCompression.decodeResponseEntity(newEntity(RESPONSE.getBytes("UTF-8"), null));
+        assertEquals(RESPONSE, EntityUtils.toString(entity, "UTF-8"));
+    }
+
+    public void testResponseByteCounters() throws IOException {
+        byte[] compressed = deflate(false);
+        long wireBytes = XMLRPCCompression.getResponseWireBytes();
+        long responseBytes = XMLRPCCompression.getResponseBytes();
+
+        EntityUtils.toString(XMLRPCCompression.decodeResponseEntity(newEntity(compressed, "deflate")), "UTF-8");
+        assertEquals(compressed.length, XMLRPCCompression.getResponseWireBytes() - wireBytes);
+        assertEquals(RESPONSE.getBytes("UTF-8").length, XMLRPCCompression.getResponseBytes() - responseBytes);
+    }
+}
@@ -0,0 +1,53 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class XMLRPCResponseCacheTest extends InstrumentationTestCase {
+    private String canonical(Object value) {
+        StringBuilder sb = new StringBuilder();
+        XMLRPCResponseCache.appendCanonical(sb, value);
+        return sb.toString();
+    }
+
+    public void testMapOrderDoesNotChangeKey() {
+        Map<String, Object> first = new LinkedHashMap<String, Object>();
+        first.put("number", 10);
+        first.put("offset", 0);
+        Map<String, Object> second = new LinkedHashMap<String, Object>();
+        second.put("offset", 0);
+        second.put("number", 10);
+        assertEquals(canonical(new Object[]{1, first}), canonical(new Object[]{1, second}));
+    }
+
+    public void testParamTypeChangesKey() {
+        assertFalse(canonical(new Object[]{"1"}).equals(canonical(new Object[]{1})));
+        assertFalse(canonical(new Object[]{new HashMap<String, Object>()}).equals(canonical(new Object[]{null})));
+    }
+
+    public void testMethodClassification() {
+        assertTrue(XMLRPCResponseCache.isCacheable("wp.getOptions"));
+        assertFalse(XMLRPCResponseCache.isCacheable("wp.getComments"));
+        assertTrue(XMLRPCResponseCache.isWriteMethod("wp.editPost"));
+        assertFalse(XMLRPCResponseCache.isWriteMethod("wp.getOptions"));
+    }
+
+    public void testResponseSentBeforeInvalidateIsNotCached() {
+        URI uri = URI.create("http://example.com/xmlrpc.php");
+        Object[] params = {1, "username", "password"};
+        long generation = XMLRPCResponseCache.getGeneration();
+        XMLRPCResponseCache.invalidate(uri);
+        XMLRPCResponseCache.put(uri, "wp.getOptions", params, "stale", generation);
+        assertNull(XMLRPCResponseCache.get(uri, "wp.getOptions", params));
+
+        XMLRPCResponseCache.put(uri, "wp.getOptions", params, "fresh", XMLRPCResponseCache.getGeneration());
+        assertEquals("fresh", XMLRPCResponseCache.get(uri, "wp.getOptions", params));
+
+        XMLRPCResponseCache.clear();
+        assertNull(XMLRPCResponseCache.get(uri, "wp.getOptions", params));
+    }
+}
@@ -0,0 +1,55 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+
+import java.io.IOException;
+import java.net.URI;
+
+public class XMLRPCStatsTest extends InstrumentationTestCase {
+    private static final URI ENDPOINT = URI.create("http://example.com/xmlrpc.php");
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        XMLRPCStats.reset();
+    }
+
+    public void testHistogramPercentiles() {
+        XMLRPCStats.Histogram histogram = new XMLRPCStats.Histogram();
+        for (int i = 0; i < 9; i++) {
+            histogram.add(20);
+        }
+        histogram.add(3000);
+        assertEquals(10, histogram.getCount());
+        // percentiles are reported as the upper bound of their bucket
+        assertEquals(50, histogram.getPercentileMs(50));
+        assertEquals(50, histogram.getPercentileMs(90));
+        assertEquals(3000, histogram.getPercentileMs(100));
+        assertEquals(318, histogram.getAverageMs());
+    }
+
+    public void testCallsAreGroupedByHostAndMethod() {
+        XMLRPCStats.CallRecord call = XMLRPCStats.startCall(ENDPOINT, "wp.getComments");
+        call.endPhase(XMLRPCStats.Phase.SERIALIZE);
+        call.setStatusCode(200);
+        call.finish();
+
+        XMLRPCStats.CallRecord fault = XMLRPCStats.startCall(ENDPOINT, "wp.getComments");
+        fault.setStatusCode(200);
+        fault.setFault(403);
+        fault.finish();
+
+        XMLRPCStats.CallRecord error = XMLRPCStats.startCall(ENDPOINT, "wp.getOptions");
+        error.setError(new IOException());
+        error.finish();
+
+        XMLRPCStats.MethodStats stats = XMLRPCStats.getStats("example.com", "wp.getComments");
+        assertEquals(2, stats.getCalls());
+        assertEquals(2, stats.getStatusCount(200));
+        assertEquals(1, stats.getFaultCount(403));
+        assertEquals(1, stats.getHistogram(XMLRPCStats.Phase.SERIALIZE).getCount());
+        assertEquals(0, stats.getHistogram(XMLRPCStats.Phase.PARSE).getCount());
+        assertEquals(1, XMLRPCStats.getStats("example.com", "wp.getOptions").getCalls());
+        assertTrue(XMLRPCStats.toPlainText().contains("IOException"));
+    }
+}
@@ -0,0 +1,103 @@
+package org.xmlrpc.android;
+
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.models.MediaFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class XMLRPCStreamingEntityTest extends InstrumentationTestCase {
+    private File mMediaFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        mMediaFile = File.createTempFile("wp-test-", ".bin",
+                getInstrumentation().getTargetContext().getCacheDir());
+    }
+
+    @Override
+    protected void tearDown() {
+        mMediaFile.delete();
+    }
+
+    private void writeMediaFile(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        FileOutputStream out = new FileOutputStream(mMediaFile);
+        out.write(bytes);
+        out.close();
+    }
+
+    private Object[] getUploadParams() {
+        MediaFile mediaFile = new MediaFile();
+        mediaFile.setFilePath(mMediaFile.getPath());
+        Map<String, Object> data = new HashMap<String, Object>();
+        data.put("name", "test.bin");
+        data.put("type", "application/octet-stream");
+        data.put("bits", mediaFile);
+        data.put("overwrite", true);
+        return new Object[]{1, "username", "password", data};
+    }
+
+    private void checkContentLength(int mediaLength) throws IOException {
+        writeMediaFile(mediaLength);
+        XMLRPCStreamingEntity entity = new XMLRPCStreamingEntity("wp.uploadFile", getUploadParams(), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        assertEquals("media length: " + mediaLength, entity.getContentLength(), out.size());
+    }
+
+    public void testContentLengthMatchesBody() throws IOException {
+        int chunk = XMLRPCSerializer.MEDIA_CHUNK_SIZE;
+        int[] lengths = {0, 1, 2, 3, 56, 57, 58, chunk - 1, chunk, chunk + 1, chunk * 3 + 2, 100000};
+        for (int length : lengths) {
+            checkContentLength(length);
+        }
+    }
+
+    public void testContentMatchesWrittenBody() throws IOException {
+        writeMediaFile(300000);
+        XMLRPCStreamingEntity entity = new XMLRPCStreamingEntity("wp.uploadFile", getUploadParams(), null);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        entity.writeTo(written);
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        InputStream content = entity.getContent();
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = content.read(buffer)) != -1) {
+                read.write(buffer, 0, count);
+            }
+        } finally {
+            content.close();
+        }
+        assertTrue(Arrays.equals(written.toByteArray(), read.toByteArray()));
+    }
+
+    public void testProgressReachesTotal() throws IOException {
+        writeMediaFile(500000);
+        final long[] lastProgress = {0, -1};
+        XMLRPCStreamingEntity entity = new XMLRPCStreamingEntity("wp.uploadFile", getUploadParams(),
+                new XMLRPCUploadProgressListener() {
+                    @Override
+                    public void onProgress(long bytesSent, long totalBytes) {
+                        assertTrue(bytesSent > lastProgress[0]);
+                        lastProgress[0] = bytesSent;
+                        lastProgress[1] = totalBytes;
+                    }
+                });
+        entity.writeTo(new ByteArrayOutputStream());
+        assertEquals(entity.getContentLength(), lastProgress[0]);
+        assertEquals(entity.getContentLength(), lastProgress[1]);
+    }
+}
@@ -0,0 +1,92 @@
+package org.xmlrpc.android;
+
+import android.content.ContentValues;
+import android.test.InstrumentationTestCase;
+
+import org.wordpress.android.WordPressDB;
+import org.wordpress.android.models.Comment;
+import org.wordpress.android.util.MapUtils;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+public class XMLRPCStructBinderTest extends InstrumentationTestCase {
+    private Object parseAsset(String filename, XMLRPCStructBinder<?> binder) throws Exception {
+        InputStream is = getInstrumentation().getContext().getAssets().open(filename);
+        try {
+            return XMLRPCClient.parseXMLRPCResponse(is, null, binder);
+        } finally {
+            is.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCommentsMatchGenericDecoding() throws Exception {
+        Object[] decoded = (Object[]) parseAsset("default-wp.getComments.xml", null);
+        List<Comment> comments = (List<Comment>) parseAsset("default-wp.getComments.xml",
+                new ApiHelper.CommentBinder());
+
+        assertEquals(decoded.length, comments.size());
+        for (int i = 0; i < decoded.length; i++) {
+            Map<?, ?> map = (Map<?, ?>) decoded[i];
+            Comment comment = comments.get(i);
+            assertEquals(MapUtils.getMapLong(map, "comment_id"), comment.commentID);
+            assertEquals(MapUtils.getMapLong(map, "post_id"), comment.postID);
+            assertEquals(MapUtils.getMapStr(map, "author"), comment.getAuthorName());
+            assertEquals(MapUtils.getMapStr(map, "content"), comment.getCommentText());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testPostsMatchGenericDecoding() throws Exception {
+        Object[] decoded = (Object[]) parseAsset("default-metaWeblog.getRecentPosts.xml", null);
+        List<ContentValues> posts = (List<ContentValues>) parseAsset("default-metaWeblog.getRecentPosts.xml",
+                new WordPressDB.PostValuesBinder(false));
+
+        assertEquals(decoded.length, posts.size());
+        for (int i = 0; i < decoded.length; i++) {
+            Map<?, ?> map = (Map<?, ?>) decoded[i];
+            ContentValues values = posts.get(i);
+            assertEquals(MapUtils.getMapStr(map, "postid"), values.getAsString("postid"));
+            assertEquals(MapUtils.getMapStr(map, "title"), values.getAsString("title"));
+            assertEquals(MapUtils.getMapStr(map, "description"), values.getAsString("description"));
+            assertEquals(MapUtils.getMapDate(map, "date_created_gmt").getTime(),
+                    (long) values.getAsLong("date_created_gmt"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testWpGetPostsBinding() throws Exception {
+        Object[] decoded = (Object[]) parseAsset("default-wp.getPosts.xml", null);
+        List<ContentValues> posts = (List<ContentValues>) parseAsset("default-wp.getPosts.xml",
+                new WordPressDB.WpPostValuesBinder(false));
+        assertEquals(2, posts.size());
+
+        ContentValues post = posts.get(0);
+        Map<?, ?> map = (Map<?, ?>) decoded[0];
+        assertEquals("42", post.getAsString("postid"));
+        assertEquals("Hello world", post.getAsString("title"));
+        assertEquals("Intro", post.getAsString("description"));
+        assertEquals("Rest of the post", post.getAsString("mt_text_more"));
+        assertEquals("[\"Uncategorized\"]", post.getAsString("categories"));
+        assertEquals("android, mobile", post.getAsString("mt_keywords"));
+        assertEquals(1, (int) post.getAsInteger("mt_allow_comments"));
+        assertEquals(0, (int) post.getAsInteger("mt_allow_pings"));
+        assertEquals(MapUtils.getMapDate(map, "post_date_gmt").getTime(), (long) post.getAsLong("date_created_gmt"));
+        assertEquals(MapUtils.getMapDate(map, "post_modified_gmt").getTime(),
+                (long) post.getAsLong("date_modified_gmt"));
+        // not returned by wp.getPosts, the current value must be kept on update
+        assertFalse(post.containsKey("wp_author_display_name"));
+
+        ContentValues draft = posts.get(1);
+        assertEquals("No more tag here", draft.getAsString("description"));
+        assertEquals("", draft.getAsString("mt_text_more"));
+    }
+
+    public void testBindDecodedResult() throws Exception {
+        Object decoded = parseAsset("default-wp.getComments.xml", null);
+        List<Comment> comments = new ApiHelper.CommentBinder().bind(decoded);
+        assertEquals(((Object[]) decoded).length, comments.size());
+    }
+}